@@ -0,0 +1,323 @@
+package au.edu.wehi.idsv;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.google.common.collect.Iterators;
+
+import htsjdk.samtools.BAMRecordCodec;
+import htsjdk.samtools.FileTruncatedException;
+import htsjdk.samtools.QueryInterval;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.Log;
+import htsjdk.samtools.util.RuntimeEOFException;
+import htsjdk.samtools.util.RuntimeIOException;
+
+/**
+ * Compact binary snapshot of the evidence stream consumed by the positional assembler
+ * for a single assembly chunk.
+ *
+ * Each evidence is stored as the index of its evidence source, its evidence identifier
+ * and the BAM encoding of the read the evidence was extracted from. Replaying a snapshot
+ * recreates the evidence from these reads so the assembly of the chunk can be rerun in
+ * isolation without access to the full input files. The evidence sources used for replay
+ * must have the same metrics as the sources used when the snapshot was written.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class AssemblyEvidenceSnapshot {
+	private static final Log log = Log.getInstance(AssemblyEvidenceSnapshot.class);
+	private static final String MAGIC = "GRIDSSASMSNAPSHOT";
+	private static final int VERSION = 1;
+	private static final byte RECORD_EVIDENCE = 1;
+	private static final byte RECORD_END = 0;
+	public static final String SUFFIX = ".snapshot";
+	private AssemblyEvidenceSnapshot() { }
+	/**
+	 * Parses a region of the form contig, contig:start or contig:start-end
+	 * @param dict sequence dictionary
+	 * @param region region string using 1-based inclusive coordinates
+	 * @return region
+	 */
+	public static QueryInterval parseRegion(SAMSequenceDictionary dict, String region) {
+		String contig = region;
+		int start = 1;
+		int end = Integer.MAX_VALUE;
+		int colon = region.lastIndexOf(':');
+		if (colon > 0 && dict.getSequence(region) == null) {
+			contig = region.substring(0, colon);
+			String[] range = region.substring(colon + 1).replace(",", "").split("-");
+			try {
+				start = Integer.parseInt(range[0]);
+				end = range.length > 1 ? Integer.parseInt(range[1]) : start;
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException(String.format("Unable to parse region \"%s\"", region));
+			}
+		}
+		SAMSequenceRecord seq = dict.getSequence(contig);
+		if (seq == null) {
+			throw new IllegalArgumentException(String.format("Region \"%s\" contig not found in reference", region));
+		}
+		return new QueryInterval(seq.getSequenceIndex(), start, Math.min(end, seq.getSequenceLength()));
+	}
+	/**
+	 * Writes the evidence passed through the iterator returned by {@link #record(Iterator)}
+	 * to a snapshot file.
+	 */
+	public static class Writer implements Closeable {
+		private final List<SAMEvidenceSource> sources;
+		private final DataOutputStream out;
+		private final BAMRecordCodec codec;
+		private final int chunkNumber;
+		private final BreakendDirection direction;
+		private long evidenceCount = 0;
+		private boolean closed = false;
+		/**
+		 * Creates a new snapshot
+		 * @param file snapshot file
+		 * @param header header of the evidence reads
+		 * @param sources evidence sources. Evidence is recorded by the index of its source
+		 * @param chunkNumber assembly chunk number
+		 * @param intervals assembly chunk intervals
+		 * @param direction assembly direction. Null if both directions are assembled together.
+		 */
+		public Writer(File file, SAMFileHeader header, List<SAMEvidenceSource> sources, int chunkNumber, QueryInterval[] intervals, BreakendDirection direction) throws IOException {
+			this.sources = sources;
+			this.chunkNumber = chunkNumber;
+			this.direction = direction;
+			this.out = new DataOutputStream(new BlockCompressedOutputStream(file));
+			this.codec = new BAMRecordCodec(header);
+			codec.setOutputStream(out);
+			out.writeUTF(MAGIC);
+			out.writeInt(VERSION);
+			SAMSequenceDictionary dict = header.getSequenceDictionary();
+			out.writeInt(dict.size());
+			for (SAMSequenceRecord seq : dict.getSequences()) {
+				out.writeUTF(seq.getSequenceName());
+				out.writeInt(seq.getSequenceLength());
+			}
+			out.writeInt(chunkNumber);
+			out.writeByte(direction == null ? 0 : direction.toChar());
+			out.writeInt(intervals.length);
+			for (QueryInterval qi : intervals) {
+				out.writeInt(qi.referenceIndex);
+				out.writeInt(qi.start);
+				out.writeInt(qi.end);
+			}
+			out.writeInt(sources.size());
+			for (SAMEvidenceSource source : sources) {
+				out.writeUTF(source.getFile() == null ? "" : source.getFile().getName());
+				out.writeInt(source.getSourceCategory());
+			}
+		}
+		/**
+		 * Records each evidence as it is returned by the given iterator.
+		 */
+		public Iterator<DirectedEvidence> record(Iterator<DirectedEvidence> it) {
+			return Iterators.transform(it, e -> {
+				write(e);
+				return e;
+			});
+		}
+		public void write(DirectedEvidence e) {
+			if (closed) return;
+			int sourceIndex = sources.indexOf(e.getEvidenceSource());
+			SAMRecord r = underlyingRecord(e);
+			if (sourceIndex < 0 || r == null) {
+				throw new IllegalArgumentException(String.format("Unable to snapshot evidence %s not originating from a read evidence source", e.getEvidenceID()));
+			}
+			try {
+				out.writeByte(RECORD_EVIDENCE);
+				out.writeInt(sourceIndex);
+				out.writeUTF(e.getEvidenceID());
+				codec.encode(r);
+				evidenceCount++;
+			} catch (IOException ex) {
+				throw new RuntimeIOException(ex);
+			}
+		}
+		public int getChunkNumber() {
+			return chunkNumber;
+		}
+		public BreakendDirection getDirection() {
+			return direction;
+		}
+		public long getEvidenceCount() {
+			return evidenceCount;
+		}
+		@Override
+		public void close() throws IOException {
+			if (closed) return;
+			closed = true;
+			try {
+				out.writeByte(RECORD_END);
+			} finally {
+				out.close();
+			}
+		}
+	}
+	private static SAMRecord underlyingRecord(DirectedEvidence e) {
+		if (e instanceof SingleReadEvidence) {
+			return ((SingleReadEvidence)e).getSAMRecord();
+		}
+		if (e instanceof NonReferenceReadPair) {
+			return ((NonReferenceReadPair)e).getLocalledMappedRead();
+		}
+		return null;
+	}
+	/**
+	 * Recreates the evidence recorded in a snapshot file.
+	 *
+	 * Snapshots of chunks that did not complete assembly may be truncated.
+	 * Evidence is returned up to the last complete record.
+	 */
+	public static class Reader implements CloseableIterator<DirectedEvidence> {
+		private final List<SAMEvidenceSource> sources;
+		private final DataInputStream in;
+		private final BAMRecordCodec codec;
+		private final int chunkNumber;
+		private final BreakendDirection direction;
+		private final QueryInterval[] intervals;
+		private final List<String> sourceNames = new ArrayList<>();
+		private DirectedEvidence next = null;
+		private boolean eof = false;
+		/**
+		 * Opens a snapshot
+		 * @param file snapshot file
+		 * @param header header of the evidence reads. The sequence dictionary must
+		 * match the dictionary used when writing the snapshot.
+		 * @param sources evidence sources in the same order as when writing the snapshot
+		 */
+		public Reader(File file, SAMFileHeader header, List<SAMEvidenceSource> sources) throws IOException {
+			this.sources = sources;
+			this.in = new DataInputStream(new BlockCompressedInputStream(file));
+			this.codec = new BAMRecordCodec(header);
+			codec.setInputStream(in, file.getName());
+			try {
+				if (!MAGIC.equals(in.readUTF())) {
+					throw new IllegalArgumentException(String.format("%s is not an assembly snapshot", file));
+				}
+				int version = in.readInt();
+				if (version != VERSION) {
+					throw new IllegalArgumentException(String.format("Unsupported assembly snapshot version %d", version));
+				}
+				SAMSequenceDictionary dict = header.getSequenceDictionary();
+				int dictSize = in.readInt();
+				boolean dictMatches = dictSize == dict.size();
+				for (int i = 0; i < dictSize; i++) {
+					String name = in.readUTF();
+					int length = in.readInt();
+					dictMatches &= i < dict.size() && dict.getSequence(i).getSequenceName().equals(name) && dict.getSequence(i).getSequenceLength() == length;
+				}
+				if (!dictMatches) {
+					throw new IllegalArgumentException(String.format("%s was created using a different reference genome", file));
+				}
+				chunkNumber = in.readInt();
+				byte dir = in.readByte();
+				direction = dir == 0 ? null : BreakendDirection.fromChar((char)dir);
+				intervals = new QueryInterval[in.readInt()];
+				for (int i = 0; i < intervals.length; i++) {
+					intervals[i] = new QueryInterval(in.readInt(), in.readInt(), in.readInt());
+				}
+				int sourceCount = in.readInt();
+				for (int i = 0; i < sourceCount; i++) {
+					sourceNames.add(in.readUTF());
+					int category = in.readInt();
+					if (i >= sources.size()) {
+						throw new IllegalArgumentException(String.format("Snapshot requires %d evidence sources but only %d provided", sourceCount, sources.size()));
+					}
+					if (sources.get(i).getSourceCategory() != category) {
+						throw new IllegalArgumentException(String.format("Snapshot evidence source %d (%s) has category %d but corresponding input has category %d",
+								i, sourceNames.get(i), category, sources.get(i).getSourceCategory()));
+					}
+				}
+			} catch (IOException | RuntimeException e) {
+				CloserUtil.close(in);
+				throw e;
+			}
+		}
+		public int getChunkNumber() {
+			return chunkNumber;
+		}
+		/**
+		 * Assembly direction, null if both directions were assembled together
+		 */
+		public BreakendDirection getDirection() {
+			return direction;
+		}
+		public QueryInterval[] getIntervals() {
+			return intervals;
+		}
+		/**
+		 * File names of the evidence sources used to create the snapshot
+		 */
+		public List<String> getSourceNames() {
+			return sourceNames;
+		}
+		private void ensureNext() {
+			while (next == null && !eof) {
+				try {
+					byte type = in.readByte();
+					if (type == RECORD_END) {
+						eof = true;
+						break;
+					}
+					SAMEvidenceSource source = sources.get(in.readInt());
+					String evidenceID = in.readUTF();
+					SAMRecord r = codec.decode();
+					if (r == null) throw new EOFException();
+					next = recreate(source, evidenceID, r);
+				} catch (EOFException | RuntimeEOFException | FileTruncatedException e) {
+					log.warn("Assembly snapshot truncated. Replaying evidence up to point of truncation.");
+					eof = true;
+				} catch (IOException e) {
+					throw new RuntimeIOException(e);
+				}
+			}
+		}
+		private static DirectedEvidence recreate(SAMEvidenceSource source, String evidenceID, SAMRecord r) {
+			DirectedEvidenceIterator it = new DirectedEvidenceIterator(Iterators.singletonIterator(r), source, source.minIndelSize());
+			while (it.hasNext()) {
+				DirectedEvidence e = it.next();
+				if (evidenceID.equals(e.getEvidenceID())) {
+					return e;
+				}
+			}
+			throw new IllegalStateException(String.format("Unable to recreate evidence %s from read %s. Are the evidence sources metrics and configuration identical to those used to create the snapshot?",
+					evidenceID, r.getReadName()));
+		}
+		@Override
+		public boolean hasNext() {
+			ensureNext();
+			return next != null;
+		}
+		@Override
+		public DirectedEvidence next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			DirectedEvidence e = next;
+			next = null;
+			return e;
+		}
+		@Override
+		public void close() {
+			eof = true;
+			CloserUtil.close(in);
+		}
+	}
+}
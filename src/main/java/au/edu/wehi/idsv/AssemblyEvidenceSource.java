@@ -8,6 +8,7 @@ import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -18,12 +19,17 @@ import com.google.common.util.concurrent.MoreExecutors;
 
 import au.edu.wehi.idsv.bed.IntervalBed;
 import au.edu.wehi.idsv.configuration.AssemblyConfiguration;
+import au.edu.wehi.idsv.configuration.VisualisationConfiguration;
 import au.edu.wehi.idsv.debruijn.positional.PositionalAssembler;
 import au.edu.wehi.idsv.sam.CigarUtil;
 import au.edu.wehi.idsv.sam.SAMFileUtil;
 import au.edu.wehi.idsv.sam.SAMRecordUtil;
 import au.edu.wehi.idsv.util.FileHelper;
 import au.edu.wehi.idsv.visualisation.AssemblyTelemetry;
+import au.edu.wehi.idsv.visualisation.ChunkMetrics;
+import au.edu.wehi.idsv.visualisation.PipelineMetrics;
+import au.edu.wehi.idsv.visualisation.TimelineTracer;
+import au.edu.wehi.idsv.visualisation.TimelineTracer.Span;
 import gridss.SoftClipsToSplitReads;
 import gridss.cmdline.CommandLineProgramHelper;
 import htsjdk.samtools.QueryInterval;
@@ -83,17 +89,40 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 		List<QueryInterval[]> chunks = getContext().getReference().getIntervals(getContext().getConfig().chunkSize, getContext().getConfig().chunkSequenceChangePenalty);
 		List<File> assembledChunk = new ArrayList<>();
 		List<Future<Void>> tasks = new ArrayList<>();
+		boolean incremental = getContext().getConfig().incremental;
+		AtomicInteger reassembledChunks = new AtomicInteger(0);
 		for (int i = 0; i < chunks.size(); i++) {
 			QueryInterval[] chunck = chunks.get(i);
 			File f = getContext().getFileSystemContext().getAssemblyChunkBam(getFile(), i);
 			int chunkNumber = i;
 			assembledChunk.add(f);
-			if (!f.exists()) {
+			if (incremental) {
+				tasks.add(threadpool.submit(() -> {
+					// per-category assembly attributes of categories without evidence default to zero
+					String fingerprint = ChunkFingerprint.calculate(getContext().getConfig(), 0, source, getExpanded(chunck));
+					if (!ChunkFingerprint.isUpToDate(f, fingerprint)) {
+						FileHelper.delete(ChunkFingerprint.getFingerprintFile(f), true);
+						FileHelper.delete(f, true);
+						assembleChunk(f, chunkNumber, chunck);
+						ChunkFingerprint.write(f, fingerprint);
+						reassembledChunks.incrementAndGet();
+					}
+					return null;
+				}));
+			} else if (!f.exists()) {
 				tasks.add(threadpool.submit(() -> { assembleChunk(f, chunkNumber, chunck); return null; }));
 			}
 			
 		}
 		runTasks(tasks);
+		if (incremental) {
+			log.info(String.format("Reassembled %d of %d chunks.", reassembledChunks.get(), chunks.size()));
+			if (reassembledChunks.get() == 0 && getFile().exists()) {
+				return;
+			}
+			// split reads need to be identified from the updated assemblies
+			FileHelper.delete(getContext().getFileSystemContext().getSVBam(getFile()), true);
+		}
 		if (telemetry != null) {
 			telemetry.close();
 			telemetry = null;
@@ -117,7 +146,10 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 		if (getContext().getCommandLineProgram() != null) {
 			args.addAll(CommandLineProgramHelper.getCommonArgs(getContext().getCommandLineProgram()));
 		}
-		int returnCode = gather.instanceMain(args.toArray(new String[] {}));
+		int returnCode;
+		try (Span span = TimelineTracer.getInstance().begin("gather", out.getName())) {
+			returnCode = gather.instanceMain(args.toArray(new String[] {}));
+		}
 		if (returnCode != 0) {
 			String msg = String.format("Error executing GatherBamFiles. GatherBamFiles returned status code %d", returnCode);
 			log.error(msg);
@@ -134,11 +166,14 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 			if (tmpout != out) {
 				FileHelper.delete(tmpout, true);
 			}
-			for (File f : assembledChunk) {
-				FileHelper.delete(f, true);
-			}
-			for (File f : deduplicatedChunks) {
-				FileHelper.delete(f, true);
+			if (!incremental) {
+				// chunks are retained in incremental mode for reuse by subsequent runs
+				for (File f : assembledChunk) {
+					FileHelper.delete(f, true);
+				}
+				for (File f : deduplicatedChunks) {
+					FileHelper.delete(f, true);
+				}
 			}
 		}
 		File throttledFilename = new File(getFile().getPath() + ".throttled.bed");
@@ -175,6 +210,8 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 			getContext().getDictionary().getSequence(qi[qi.length-1].referenceIndex).getSequenceName(), qi[qi.length-1].end);
 		log.info(String.format("Starting assembly on %s", chuckName));
 		Stopwatch timer = Stopwatch.createStarted();
+		ChunkMetrics chunkMetrics = PipelineMetrics.getInstance().isEnabled() ? PipelineMetrics.getInstance().startChunk("assembly", chuckName) : null;
+		Span span = TimelineTracer.getInstance().begin("assembly", chuckName);
 		SAMFileHeader header = getContext().getBasicSamHeader();
 		// TODO: add assembly @PG header
 		File filteredout = FileSystemContext.getWorkingFileFor(output, "filtered.");
@@ -199,6 +236,10 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 			throw e;
 		} finally {
 			timer.stop();
+			if (chunkMetrics != null) {
+				chunkMetrics.stop();
+			}
+			span.close();
 			log.info(String.format("Completed assembly on %s in %ds (%s)", chuckName, timer.elapsed(TimeUnit.SECONDS), timer.toString()));
 		}
 		SAMFileUtil.sort(getContext().getFileSystemContext(), tmpout, output, SortOrder.coordinate);
@@ -222,8 +263,14 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 	}
 	private void assembleChunk(SAMFileWriter writer, SAMFileWriter filteredWriter, int chunkNumber, QueryInterval[] intervals, BreakendDirection direction, AssemblyIdGenerator assemblyNameGenerator) {
 		QueryInterval[] expanded = getExpanded(intervals);
-		try (CloseableIterator<DirectedEvidence> input = mergedIterator(source, expanded)) {
+		AssemblyEvidenceSnapshot.Writer snapshot = createSnapshot(chunkNumber, intervals, direction);
+		Stopwatch timer = Stopwatch.createStarted();
+		try (Span span = TimelineTracer.getInstance().begin("assembly", String.format("chunk %d %s", chunkNumber, direction));
+				CloseableIterator<DirectedEvidence> input = mergedIterator(source, expanded)) {
 			Iterator<DirectedEvidence> throttledIt = throttled(input);
+			if (snapshot != null) {
+				throttledIt = snapshot.record(throttledIt);
+			}
 			PositionalAssembler assembler = new PositionalAssembler(getContext(), AssemblyEvidenceSource.this, assemblyNameGenerator, throttledIt, direction);
 			if (telemetry != null) {
 				assembler.setTelemetry(telemetry.getTelemetry(chunkNumber, direction));
@@ -242,6 +289,57 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 					}
 				}
 			}
+		} finally {
+			if (snapshot != null) {
+				closeSnapshot(snapshot, intervals, timer);
+			}
+		}
+	}
+	private File getSnapshotFile(int chunkNumber, BreakendDirection direction) {
+		return new File(getContext().getConfig().getVisualisation().directory,
+				String.format("%s.chunk%d.%s%s", getFile().getName(), chunkNumber, direction.name(), AssemblyEvidenceSnapshot.SUFFIX));
+	}
+	private boolean inSnapshotRegion(QueryInterval[] intervals) {
+		for (String region : getContext().getConfig().getVisualisation().assemblySnapshotRegions) {
+			QueryInterval qi = AssemblyEvidenceSnapshot.parseRegion(getContext().getDictionary(), region);
+			if (QueryIntervalUtil.overlaps(intervals, qi.referenceIndex, qi.start, qi.end)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	/**
+	 * Starts a snapshot of the evidence assembled in the given chunk.
+	 * When a time budget is set, every chunk is snapshot and the snapshot is
+	 * discarded if assembly completes within the time budget. This ensures a
+	 * snapshot is available for chunks that never complete.
+	 * @return snapshot writer, null if no snapshot is to be taken
+	 */
+	private AssemblyEvidenceSnapshot.Writer createSnapshot(int chunkNumber, QueryInterval[] intervals, BreakendDirection direction) {
+		VisualisationConfiguration vis = getContext().getConfig().getVisualisation();
+		if (!vis.isAssemblySnapshotEnabled()) return null;
+		if (vis.assemblySnapshotTimeBudgetInSeconds <= 0 && !inSnapshotRegion(intervals)) return null;
+		File file = getSnapshotFile(chunkNumber, direction);
+		try {
+			return new AssemblyEvidenceSnapshot.Writer(file, getContext().getBasicSamHeader(), source, chunkNumber, intervals, direction);
+		} catch (IOException e) {
+			log.warn(e, "Unable to write assembly snapshot ", file);
+			return null;
+		}
+	}
+	private void closeSnapshot(AssemblyEvidenceSnapshot.Writer snapshot, QueryInterval[] intervals, Stopwatch timer) {
+		VisualisationConfiguration vis = getContext().getConfig().getVisualisation();
+		File file = getSnapshotFile(snapshot.getChunkNumber(), snapshot.getDirection());
+		boolean overBudget = vis.assemblySnapshotTimeBudgetInSeconds > 0 && timer.elapsed(TimeUnit.MILLISECONDS) > vis.assemblySnapshotTimeBudgetInSeconds * 1000;
+		try {
+			snapshot.close();
+			if (overBudget) {
+				log.info(String.format("Assembly of chunk %d %s took %s. Evidence snapshot written to %s", snapshot.getChunkNumber(), snapshot.getDirection(), timer, file));
+			} else if (!inSnapshotRegion(intervals)) {
+				FileHelper.delete(file, true);
+			}
+		} catch (IOException e) {
+			log.warn(e, "Unable to write assembly snapshot ", file);
 		}
 	}
 	@Override
@@ -326,6 +424,21 @@ public class AssemblyEvidenceSource extends SAMEvidenceSource {
 		}
 		return assembly;
 	} 
+	/**
+	 * Records a region in which assembly was not performed on all evidence
+	 * @param referenceIndex contig
+	 * @param start start position
+	 * @param end end position
+	 */
+	public void addThrottledInterval(int referenceIndex, int start, int end) {
+		throttled.addInterval(referenceIndex, start, end);
+	}
+	/**
+	 * Regions in which assembly was not performed on all evidence
+	 */
+	public IntervalBed getThrottledIntervals() {
+		return throttled;
+	}
 	private Iterator<DirectedEvidence> throttled(Iterator<DirectedEvidence> it) {
 		AssemblyConfiguration ap = getContext().getAssemblyParameters();
 		DirectedEvidenceDensityThrottlingIterator dit = new DirectedEvidenceDensityThrottlingIterator(
@@ -0,0 +1,83 @@
+package au.edu.wehi.idsv;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import au.edu.wehi.idsv.configuration.GridssConfiguration;
+import htsjdk.samtools.QueryInterval;
+import htsjdk.samtools.util.Log;
+
+/**
+ * Fingerprint of the evidence and configuration consumed when generating the output for a chunk.
+ *
+ * In incremental mode, a fingerprint is written alongside each chunk output. Subsequent runs
+ * reuse the existing chunk output if the fingerprint of the evidence the chunk would consume
+ * is unchanged. Since sources without evidence in a chunk do not contribute to the fingerprint,
+ * adding a sample to a cohort only requires reassembly of chunks in which the new sample has
+ * evidence.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class ChunkFingerprint {
+	private static final Log log = Log.getInstance(ChunkFingerprint.class);
+	private static final String FINGERPRINT_SUFFIX = ".fingerprint";
+	/**
+	 * Calculates the fingerprint for the given chunk
+	 * @param config configuration
+	 * @param outputCategories number of categories written to the chunk output. Outputs with
+	 * fixed per-category fields, such as VCF genotypes, need to be regenerated whenever a category
+	 * is added. Zero if the output is unaffected by categories without evidence in the chunk.
+	 * @param sources evidence sources consumed by the chunk
+	 * @param intervals intervals the evidence is queried over
+	 * @return fingerprint
+	 */
+	public static String calculate(GridssConfiguration config, int outputCategories, List<? extends SAMEvidenceSource> sources, QueryInterval[] intervals) {
+		Hasher hasher = Hashing.murmur3_128().newHasher();
+		hasher.putString(config.getFingerprint(), StandardCharsets.UTF_8);
+		hasher.putInt(outputCategories);
+		for (QueryInterval qi : intervals) {
+			hasher.putInt(qi.referenceIndex);
+			hasher.putInt(qi.start);
+			hasher.putInt(qi.end);
+		}
+		for (SAMEvidenceSource source : sources) {
+			source.fingerprint(intervals, hasher);
+		}
+		return hasher.hash().toString();
+	}
+	/**
+	 * Determines whether the given chunk output was generated from evidence matching the given fingerprint
+	 * @param chunk chunk output
+	 * @param fingerprint current fingerprint of the chunk evidence
+	 * @return true if the existing chunk output can be reused, false if the chunk needs to be regenerated
+	 */
+	public static boolean isUpToDate(File chunk, String fingerprint) {
+		File file = getFingerprintFile(chunk);
+		if (!chunk.exists() || !file.exists()) return false;
+		try {
+			String existing = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim();
+			return existing.equals(fingerprint);
+		} catch (IOException e) {
+			log.warn(e, "Unable to read ", file);
+			return false;
+		}
+	}
+	/**
+	 * Records the fingerprint of the evidence used to generate the given chunk output
+	 * @param chunk chunk output
+	 * @param fingerprint fingerprint of the chunk evidence
+	 */
+	public static void write(File chunk, String fingerprint) throws IOException {
+		Files.write(getFingerprintFile(chunk).toPath(), (fingerprint + "\n").getBytes(StandardCharsets.UTF_8));
+	}
+	public static File getFingerprintFile(File chunk) {
+		return new File(chunk.getPath() + FINGERPRINT_SUFFIX);
+	}
+}
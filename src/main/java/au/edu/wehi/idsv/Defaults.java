@@ -12,6 +12,10 @@ public class Defaults {
 	public static final boolean NO_LIBSSW;
 	public static final boolean ASYNC_CACHE_REFERENCE;
 	public static final boolean ATTEMPT_ASSEMBLY_RECOVERY;
+	/**
+	 * Use the linked list scanline maximal clique caller instead of the indexed scanline
+	 */
+	public static final boolean LINKED_LIST_CLIQUE_SCANLINE;
 	static {
 		SANITY_CHECK_ASSEMBLY_GRAPH = Boolean.valueOf(System.getProperty("sanitycheck.assembly", "false"));
 		SANITY_CHECK_CLIQUE = Boolean.valueOf(System.getProperty("sanitycheck.clique", "false"));
@@ -22,5 +26,6 @@ public class Defaults {
 		NO_LIBSSW = Boolean.valueOf(System.getProperty("sswjni.disable", "false"));
 		ASYNC_CACHE_REFERENCE = !Boolean.valueOf(System.getProperty("reference.loading.sync", "false"));
 		ATTEMPT_ASSEMBLY_RECOVERY = Boolean.valueOf(System.getProperty("assembly.recover", "true"));
+		LINKED_LIST_CLIQUE_SCANLINE = Boolean.valueOf(System.getProperty("clique.linkedlist", "false"));
 	}
 }
\ No newline at end of file
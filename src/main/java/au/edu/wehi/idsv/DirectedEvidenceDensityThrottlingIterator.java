@@ -4,11 +4,17 @@ import java.util.Iterator;
 
 import au.edu.wehi.idsv.bed.IntervalBed;
 import au.edu.wehi.idsv.util.DensityThrottlingIterator;
+import au.edu.wehi.idsv.util.MemoryGovernor;
 import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.util.Log;
 
 /**
- * Reduces
+ * Reduces the density of evidence in high coverage regions.
+ * 
+ * When the memory governor is enabled, the density thresholds are
+ * relaxed in proportion to the available memory headroom so throttling
+ * is only applied at the configured densities under memory pressure.
+ * 
  * @author Daniel Cameron
  *
  */
@@ -29,6 +35,10 @@ public class DirectedEvidenceDensityThrottlingIterator extends DensityThrottling
 		return lgc.getLinearCoordinate(record.getBreakendSummary().referenceIndex, record.getBreakendSummary().start);
 	}
 	@Override
+	protected double getDensityScale() {
+		return MemoryGovernor.getInstance().getDensityScale();
+	}
+	@Override
 	public DirectedEvidence next() {
 		DirectedEvidence evidence = super.next();
 		if (!isBelowUnconditionalAcceptanceThreshold() && tresholdStart == null) {
@@ -11,6 +11,7 @@ import com.google.common.collect.Lists;
 import au.edu.wehi.idsv.bed.IntervalBed;
 import au.edu.wehi.idsv.picard.ReferenceLookup;
 import au.edu.wehi.idsv.picard.TwoBitBufferedReferenceSequenceFile;
+import au.edu.wehi.idsv.sam.ParallelBAMRecordIterator;
 import au.edu.wehi.idsv.util.AutoClosingIterator;
 import au.edu.wehi.idsv.vcf.GridssVcfConstants;
 import gridss.cmdline.ReferenceCommandLineProgram;
@@ -161,7 +162,7 @@ public class GenomicProcessingContext implements Closeable {
 	}
 
 	private CloseableIterator<SAMRecord> getSamReaderIterator(SamReader reader, SortOrder expectedOrder, File file) {
-		SAMRecordIterator rawIterator = reader.iterator();
+		SAMRecordIterator rawIterator = ParallelBAMRecordIterator.iterator(reader, file, getSamReaderFactory().validationStringency());
 		if (expectedOrder != null && expectedOrder != SortOrder.unsorted) {
 			rawIterator.assertSorted(expectedOrder);
 		}
@@ -286,7 +287,7 @@ public class GenomicProcessingContext implements Closeable {
 	
 	public void setBlacklist(File blacklistFile) throws IOException {
 		this.blacklistFile = blacklistFile;
-		this.blacklist = new IntervalBed(getDictionary(), getLinear(), blacklistFile);
+		this.blacklist = new IntervalBed(getDictionary(), getLinear(), blacklistFile).freeze();
 	}
 	
 	public CommandLineProgram getCommandLineProgram() {
@@ -2,15 +2,13 @@ package au.edu.wehi.idsv;
 
 import java.util.Iterator;
 
-import com.google.common.base.Function;
 import com.google.common.collect.AbstractIterator;
 
-import au.edu.wehi.idsv.graph.RectangleGraphMaximalCliqueIterator;
 import au.edu.wehi.idsv.graph.RectangleGraphNode;
-import au.edu.wehi.idsv.graph.RectangleGraphNodeMergingIterator;
+import au.edu.wehi.idsv.graph.RectangleGraphNodeStore;
+import au.edu.wehi.idsv.graph.RectangleGraphNodeStoreMaximalCliqueIterator;
 import au.edu.wehi.idsv.graph.ScalingHelper;
 import au.edu.wehi.idsv.util.MathUtil;
-import au.edu.wehi.idsv.util.WindowedSortingIterator;
 import au.edu.wehi.idsv.vcf.VcfInfoAttributes;
 import au.edu.wehi.idsv.vcf.VcfSvConstants;
 import htsjdk.samtools.util.Log;
@@ -26,51 +24,45 @@ public class MaximalEvidenceCliqueIterator extends AbstractIterator<VariantConte
 	private VariantContextDirectedBreakpoint lastHigh = null;
 	private final BreakendDirection targetLowDir;
 	private final BreakendDirection targetHighDir;
-	private final RectangleGraphMaximalCliqueIterator calc;
+	private final Iterator<RectangleGraphNode> calc;
 	private final ProcessingContext context;
 	private final VariantIdGenerator idGenerator;
 	public MaximalEvidenceCliqueIterator(ProcessingContext processContext, Iterator<DirectedEvidence> evidenceIt, BreakendDirection lowDir, BreakendDirection highDir, VariantIdGenerator idGenerator) {
 		this.context = processContext;
-		this.calc = new RectangleGraphMaximalCliqueIterator(
-						// collapse evidence at the same location to a single node
-						new RectangleGraphNodeMergingIterator(RectangleGraphNode.ByStartXYEndXY,
-							// make sure nodes to be merged are adjacent in the stream
-							new GraphNodeWindowedSortingIterator(context, 1, 
-								// convert evidence breakpoints to GraphNodes
-								new EvidenceToGraphNodeIterator(evidenceIt))));
+		this.calc = new RectangleGraphNodeStoreMaximalCliqueIterator<DirectedEvidence>(evidenceIt, (e, store) -> toGraphNode(e, store), 1);
 		this.targetLowDir = lowDir;
 		this.targetHighDir = highDir;
 		this.idGenerator = idGenerator;
 	}
-	private class GraphNodeWindowedSortingIterator extends WindowedSortingIterator<RectangleGraphNode> {
-		public GraphNodeWindowedSortingIterator(final GenomicProcessingContext processContext, final int windowSize, final Iterator<RectangleGraphNode> it) {
-			super(it, new Function<RectangleGraphNode, Long>() {
-				public Long apply(RectangleGraphNode arg) {
-					return arg.startX;
-				}
-			}, windowSize, RectangleGraphNode.ByStartXYEndXY);
-		}
+	private MaximalEvidenceCliqueIterator(ProcessingContext processContext, BreakendDirection lowDir, BreakendDirection highDir, VariantIdGenerator idGenerator, Iterator<RectangleGraphNode> cliques) {
+		this.context = processContext;
+		this.calc = cliques;
+		this.targetLowDir = lowDir;
+		this.targetHighDir = highDir;
+		this.idGenerator = idGenerator;
 	}
-	private class EvidenceToGraphNodeIterator extends AbstractIterator<RectangleGraphNode> {
-		private final Iterator<DirectedEvidence> it;
-		public EvidenceToGraphNodeIterator(Iterator<DirectedEvidence> it) {
-			this.it = it;
-		}
-		@Override
-		protected RectangleGraphNode computeNext() {
-			while (it.hasNext()) {
-				DirectedEvidence evidence = it.next();
-				RectangleGraphNode node = toGraphNode(evidence);
-				if (node != null) {
-					return node;
-				}
-			}
-			return endOfData();
+	/**
+	 * Creates variant calls from maximal cliques that have already been called
+	 * @param cliques maximal cliques in the order emitted by the clique calculator
+	 */
+	public static MaximalEvidenceCliqueIterator fromCliques(ProcessingContext processContext, Iterator<RectangleGraphNode> cliques, BreakendDirection lowDir, BreakendDirection highDir, VariantIdGenerator idGenerator) {
+		return new MaximalEvidenceCliqueIterator(processContext, lowDir, highDir, idGenerator, cliques);
+	}
+	private int toGraphNode(DirectedEvidence e, RectangleGraphNodeStore store) {
+		BreakendSummary loc = e.getBreakendSummary();
+		if (loc instanceof BreakpointSummary) {
+			BreakpointSummary bp = (BreakpointSummary)loc;
+			if (bp.direction != targetLowDir || bp.direction2 != targetHighDir) return RectangleGraphNodeStore.NO_NODE;
 		}
+		return toGraphNode(context, e, store);
 	}
-	private RectangleGraphNode toGraphNode(DirectedEvidence e) {
+	/**
+	 * Adds the rectangle graph node of the lower breakend of the given evidence to the given store.
+	 * @return node identifier, or RectangleGraphNodeStore.NO_NODE if the evidence does not contribute to the rectangle graph
+	 */
+	static int toGraphNode(ProcessingContext context, DirectedEvidence e, RectangleGraphNodeStore store) {
 		BreakendSummary loc = e.getBreakendSummary();
-		if (!(loc instanceof BreakpointSummary)) return null;
+		if (!(loc instanceof BreakpointSummary)) return RectangleGraphNodeStore.NO_NODE;
 		BreakpointSummary bp = (BreakpointSummary)loc;
 		if (!bp.isValid(context.getDictionary())) {
 			String msg = String.format("Evidence %s has invalid breakpoint %s", e.getEvidenceID(), bp);
@@ -81,26 +73,22 @@ public class MaximalEvidenceCliqueIterator extends AbstractIterator<VariantConte
 		long endX = startX + bp.end - bp.start;
 		long startY = context.getLinear().getLinearCoordinate(bp.referenceIndex2, bp.start2);
 		long endY = startY + bp.end2 - bp.start2;
-		BreakendDirection lowDir = bp.direction;
-		BreakendDirection highDir = bp.direction2;
 		float weight = ((DirectedBreakpoint)e).getBreakpointQual();
 		long scaledWeight = ScalingHelper.toScaledWeight(weight);
-		if (scaledWeight <= 0) return null;
-		RectangleGraphNode node = new RectangleGraphNode(startX, endX, startY, endY, scaledWeight);
 		// Must have positive phred score  
+		if (scaledWeight <= 0) return RectangleGraphNodeStore.NO_NODE;
 		if (startX > startY) {
 			// only take the lower half of the evidence since both sides of all breakpoints
 			// have evidence
 			// SC -> RemoteRealignedSoftClipEvidence
 			// DP -> other half of the pair
 			// Ass -> RemoteRealignedAssemblyEvidence
-			return null;
+			return RectangleGraphNodeStore.NO_NODE;
 			//node = node.flipAxis();
 			//lowDir = bp.direction2;
 			//highDir = bp.direction;
 		}
-		if (lowDir != targetLowDir || highDir != targetHighDir) return null;
-		return node;
+		return store.add(startX, endX, startY, endY, scaledWeight);
 	}
 	private VariantContextDirectedBreakpoint toVariant(String event, RectangleGraphNode node, BreakpointSummary breakpoint, boolean isHighBreakend) {
 		IdsvVariantContextBuilder builder = new IdsvVariantContextBuilder(context);
@@ -0,0 +1,103 @@
+package au.edu.wehi.idsv;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import com.google.common.collect.ComparisonChain;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+
+import au.edu.wehi.idsv.graph.RectangleGraphNode;
+import au.edu.wehi.idsv.graph.RectangleGraphNodeStoreMaximalCliqueIterator;
+
+/**
+ * Calls the maximal cliques of each chromosome pair of a breakpoint direction concurrently.
+ *
+ * Rectangle graph nodes of different chromosome pairs cannot overlap so each partition
+ * is independent. Merging the cliques of each partition by end X then start Y results
+ * in the same cliques in the same order as calling all partitions with a single scanline.
+ *
+ * All breakpoint evidence of the given direction is held in memory until the
+ * cliques of its partition have been called, and the cliques of each partition are
+ * held in memory until they have been consumed.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class PartitionedMaximalCliqueCaller {
+	private final TreeMap<Partition, FutureTask<List<RectangleGraphNode>>> partitions = new TreeMap<>();
+	private static class Partition implements Comparable<Partition> {
+		private final int referenceIndex;
+		private final int referenceIndex2;
+		public Partition(BreakpointSummary bp) {
+			this.referenceIndex = bp.referenceIndex;
+			this.referenceIndex2 = bp.referenceIndex2;
+		}
+		@Override
+		public int compareTo(Partition o) {
+			return ComparisonChain.start()
+					.compare(referenceIndex, o.referenceIndex)
+					.compare(referenceIndex2, o.referenceIndex2)
+					.result();
+		}
+	}
+	/**
+	 * Partitions the evidence of the given breakpoint direction and starts calling maximal cliques of each partition
+	 * @param context processing context
+	 * @param evidenceIt evidence to call
+	 * @param lowDir direction of the lower breakend
+	 * @param highDir direction of the higher breakend
+	 * @param threadpool executor to call partitions on. The thread consuming cliques will
+	 * call any partitions not yet started so this can safely be the pool the caller is running on.
+	 */
+	public PartitionedMaximalCliqueCaller(ProcessingContext context, Iterator<DirectedEvidence> evidenceIt, BreakendDirection lowDir, BreakendDirection highDir, Executor threadpool) {
+		Map<Partition, List<DirectedEvidence>> evidence = new TreeMap<>();
+		while (evidenceIt.hasNext()) {
+			DirectedEvidence e = evidenceIt.next();
+			if (e.getBreakendSummary() instanceof BreakpointSummary) {
+				BreakpointSummary bp = (BreakpointSummary)e.getBreakendSummary();
+				if (bp.direction == lowDir && bp.direction2 == highDir) {
+					evidence.computeIfAbsent(new Partition(bp), p -> new ArrayList<>()).add(e);
+				}
+			}
+		}
+		for (Map.Entry<Partition, List<DirectedEvidence>> entry : evidence.entrySet()) {
+			List<DirectedEvidence> partition = entry.getValue();
+			// the evidence is released once the task has completed
+			FutureTask<List<RectangleGraphNode>> task = new FutureTask<>(() -> callCliques(context, partition));
+			partitions.put(entry.getKey(), task);
+			threadpool.execute(task);
+		}
+	}
+	private static List<RectangleGraphNode> callCliques(ProcessingContext context, List<DirectedEvidence> evidence) {
+		return Lists.newArrayList(new RectangleGraphNodeStoreMaximalCliqueIterator<DirectedEvidence>(
+				evidence.iterator(),
+				(e, store) -> MaximalEvidenceCliqueIterator.toGraphNode(context, e, store),
+				1));
+	}
+	/**
+	 * Maximal cliques of the breakpoint direction
+	 * @return maximal cliques in the order emitted by the clique calculator
+	 */
+	public Iterator<RectangleGraphNode> getCliques() {
+		List<Iterator<RectangleGraphNode>> cliques = new ArrayList<>();
+		for (FutureTask<List<RectangleGraphNode>> task : partitions.values()) {
+			// process on this thread if no worker has picked up the partition yet
+			task.run();
+			try {
+				cliques.add(task.get().iterator());
+			} catch (InterruptedException | ExecutionException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		partitions.clear();
+		// cliques are emitted when the scanline passes their end X
+		return Iterators.mergeSorted(cliques, RectangleGraphNode.ByEndXStartYEndY);
+	}
+}
@@ -11,8 +11,11 @@ import au.edu.wehi.idsv.configuration.GridssConfiguration;
 import au.edu.wehi.idsv.configuration.SoftClipConfiguration;
 import au.edu.wehi.idsv.configuration.VariantCallingConfiguration;
 import au.edu.wehi.idsv.picard.ReferenceLookup;
+import au.edu.wehi.idsv.util.MemoryGovernor;
 import au.edu.wehi.idsv.vcf.GridssVcfConstants;
 import au.edu.wehi.idsv.visualisation.BufferTracker;
+import au.edu.wehi.idsv.visualisation.PipelineMetrics;
+import au.edu.wehi.idsv.visualisation.TimelineTracer;
 import au.edu.wehi.idsv.visualisation.TrackedBuffer;
 import htsjdk.samtools.metrics.Header;
 import htsjdk.samtools.metrics.MetricBase;
@@ -45,6 +48,12 @@ public class ProcessingContext extends GenomicProcessingContext {
 			bufferTracker = new BufferTracker(new File(config.getVisualisation().directory, "gridss.buffers.csv"), config.getVisualisation().bufferTrackingItervalInSeconds);
 			bufferTracker.start();
 		}
+		if (config.getVisualisation().metrics) {
+			PipelineMetrics.getInstance().startExport(new File(config.getVisualisation().directory, "gridss.metrics.prom"), config.getVisualisation().metricsIntervalInSeconds);
+		}
+		if (config.getVisualisation().timeline) {
+			TimelineTracer.getInstance().start(new File(config.getVisualisation().directory, "gridss.timeline.json"));
+		}
 		this.eidgen = config.hashEvidenceID ? new HashedEvidenceIdentifierGenerator() : new StringEvidenceIdentifierGenerator();
 	}
 	/**
@@ -80,6 +89,7 @@ public class ProcessingContext extends GenomicProcessingContext {
 		if (bufferTracker != null) {
 			bufferTracker.register(context, obj);
 		}
+		MemoryGovernor.getInstance().register(obj);
 	}
 	public int registerCategory(String label) {
 		int offset = categories.indexOf(label);
@@ -2,6 +2,7 @@ package au.edu.wehi.idsv;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Iterator;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -10,6 +11,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.hash.Hasher;
 
 import au.edu.wehi.idsv.bed.IntervalBed;
 import au.edu.wehi.idsv.configuration.GridssConfiguration;
@@ -32,6 +34,7 @@ import gridss.analysis.CollectGridssMetrics;
 import gridss.analysis.StructuralVariantReadMetrics;
 import gridss.cmdline.CommandLineProgramHelper;
 import gridss.cmdline.ReferenceCommandLineProgram;
+import htsjdk.samtools.BAMRecord;
 import htsjdk.samtools.Cigar;
 import htsjdk.samtools.QueryInterval;
 import htsjdk.samtools.SAMFileHeader.SortOrder;
@@ -197,7 +200,9 @@ public class SAMEvidenceSource extends EvidenceSource {
 									"INSERT_SIZE_METRICS=" + getContext().getFileSystemContext().getInsertSizeMetrics(getFile()),
 									// Picard tools does not mark duplicates correctly. We need to keep them so we can
 									// fix the duplicate marking in ComputeSamTags
-									"INCLUDE_DUPLICATES=true");
+									"INCLUDE_DUPLICATES=true",
+									// output is subsequently queryname sorted so ordering is not a concern
+									"GROUP_COORDINATE_SORTED_FRAGMENTS=true");
 							execute(new ExtractSVReads(), args);
 						}
 						SAMFileUtil.sort(getContext().getFileSystemContext(), extractedFile, querysortedFile, SortOrder.queryname);
@@ -242,15 +247,71 @@ public class SAMEvidenceSource extends EvidenceSource {
 	}
 	public CloseableIterator<DirectedEvidence> iterator(final QueryInterval[] intervals) {
 		SamReader reader = getReader();
+		SAMRecordIterator it = tryOpenReader(reader, getRecordQueryIntervals(intervals));
+		Iterator<DirectedEvidence> eit = asEvidence(it);
+		eit = Iterators.filter(eit, e -> QueryIntervalUtil.overlaps(intervals, e.getBreakendSummary()));
+		return new AutoClosingIterator<>(eit, reader, it);
+	}
+	/**
+	 * Intervals of the underlying SAM/BAM records that need to be read to
+	 * find all evidence overlapping the given intervals 
+	 */
+	private QueryInterval[] getRecordQueryIntervals(final QueryInterval[] intervals) {
 		// expand query bounds as the alignment for a discordant read pair could fall before or after the breakend interval we are extracting
 		QueryInterval[] expandedIntervals = QueryIntervalUtil.padIntervals(getContext().getDictionary(), intervals, getMaxConcordantFragmentSize() + 1);
 		// ignore blacklisted regions
 		IntervalBed queryInterval = new IntervalBed(getContext().getDictionary(), getContext().getLinear(), expandedIntervals);
 		queryInterval.remove(getBlacklistedRegions());
-		SAMRecordIterator it = tryOpenReader(reader, queryInterval.asQueryInterval());
-		Iterator<DirectedEvidence> eit = asEvidence(it);
-		eit = Iterators.filter(eit, e -> QueryIntervalUtil.overlaps(intervals, e.getBreakendSummary()));
-		return new AutoClosingIterator<>(eit, reader, it);
+		return queryInterval.asQueryInterval();
+	}
+	/**
+	 * Adds the records from which evidence overlapping the given intervals would be
+	 * extracted to the given fingerprint.
+	 * 
+	 * Any change to the evidence returned by {@link #iterator(QueryInterval[])} results
+	 * in a change to the fingerprint. Sources without any records in the given intervals
+	 * do not contribute to the fingerprint.
+	 * @param intervals intervals to fingerprint
+	 * @param hasher fingerprint
+	 */
+	public void fingerprint(final QueryInterval[] intervals, Hasher hasher) {
+		try (SamReader reader = getReader()) {
+			try (SAMRecordIterator it = tryOpenReader(reader, getRecordQueryIntervals(intervals))) {
+				if (it.hasNext()) {
+					hasher.putInt(getSourceCategory());
+					hasher.putInt(getMaxConcordantFragmentSize());
+					hasher.putInt(getMinConcordantFragmentSize());
+				}
+				while (it.hasNext()) {
+					fingerprint(it.next(), hasher);
+				}
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	/**
+	 * Adds the given record to the fingerprint.
+	 * 
+	 * BAM records are lazily decoded so their fixed-length fields and the raw bytes of their
+	 * variable-length fields are hashed directly without decoding the read name, CIGAR,
+	 * sequence, qualities or tags.
+	 */
+	private static void fingerprint(SAMRecord r, Hasher hasher) {
+		if (r instanceof BAMRecord) {
+			BAMRecord bam = (BAMRecord)r;
+			hasher.putInt(bam.getReferenceIndex());
+			hasher.putInt(bam.getAlignmentStart());
+			hasher.putInt(bam.getMappingQuality());
+			hasher.putInt(bam.getFlags());
+			hasher.putInt(bam.getReadLength());
+			hasher.putInt(bam.getMateReferenceIndex());
+			hasher.putInt(bam.getMateAlignmentStart());
+			hasher.putInt(bam.getInferredInsertSize());
+			hasher.putBytes(bam.getVariableBinaryRepresentation());
+		} else {
+			hasher.putString(r.getSAMString(), StandardCharsets.UTF_8);
+		}
 	}
 	/**
 	 * Attempts to open a new iterator.
@@ -302,7 +363,9 @@ public class SAMEvidenceSource extends EvidenceSource {
 	}
 	private Iterator<DirectedEvidence> asEvidence(Iterator<SAMRecord> it) {
 		it = new BufferedIterator<>(it, 2); // TODO: remove when https://github.com/samtools/htsjdk/issues/760 is resolved 
-		it = Iterators.transform(it, r -> transform(r));
+		// records are coordinate sorted so blacklist lookups of the record alignment location can use a cursor
+		IntervalBed.Cursor blacklistCursor = getBlacklistedRegions().cursor();
+		it = Iterators.transform(it, r -> transform(r, blacklistCursor));
 		it = Iterators.filter(it, r -> !shouldFilter(r));		
 		Iterator<DirectedEvidence> eit = new DirectedEvidenceIterator(it, this, minIndelSize());
 		eit = Iterators.filter(eit, e -> !shouldFilter(e));
@@ -322,10 +385,14 @@ public class SAMEvidenceSource extends EvidenceSource {
 		return total / values.length;
 	}
 	public SAMRecord transform(SAMRecord r) {
+		return transform(r, null);
+	}
+	private SAMRecord transform(SAMRecord r, IntervalBed.Cursor blacklistCursor) {
 		SAMRecordUtil.lowMapqToUnmapped(r, getContext().getConfig().minMapq);
 		// Converts overlaps of blacklisted regions to unmapped
 		if (!r.getReadUnmappedFlag()) {
-			if (getBlacklistedRegions().overlaps(r.getReferenceIndex(), r.getAlignmentStart(), r.getAlignmentEnd())) {
+			if (blacklistCursor != null ? blacklistCursor.overlaps(r.getReferenceIndex(), r.getAlignmentStart(), r.getAlignmentEnd())
+					: getBlacklistedRegions().overlaps(r.getReferenceIndex(), r.getAlignmentStart(), r.getAlignmentEnd())) {
 				r.setReadUnmappedFlag(true);
 			}
 		}
@@ -386,7 +453,7 @@ public class SAMEvidenceSource extends EvidenceSource {
 				blacklist = IntervalBed.merge(getContext().getDictionary(), getContext().getLinear(), ImmutableList.of(
 						getContext().getBlacklistedRegions(),
 						new IntervalBed(getContext().getDictionary(), getContext().getLinear(), coverageBlacklist)
-						));
+						)).freeze();
 			} catch (IOException e) {
 				log.error(e);
 				blacklist = getContext().getBlacklistedRegions();
@@ -398,7 +465,7 @@ public class SAMEvidenceSource extends EvidenceSource {
 	protected void setBlacklistedRegions(IntervalBed blacklist) {
 		this.blacklist = blacklist;
 	}
-	private int minIndelSize() {
+	int minIndelSize() {
 		return Math.min(getContext().getConfig().getSoftClip().minLength, getContext().getVariantCallingParameters().minSize);
 	}
 	public boolean shouldFilter(DirectedEvidence e) {
@@ -9,6 +9,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.stream.IntStream;
 
+import au.edu.wehi.idsv.sam.ParallelBAMRecordIterator;
 import au.edu.wehi.idsv.util.AsyncBufferedIterator;
 import htsjdk.samtools.SAMFileHeader.SortOrder;
 import htsjdk.samtools.SAMRecord;
@@ -47,8 +48,9 @@ public class SequentialCoverageAnnotator<T extends VariantContextDirectedEvidenc
 			assert(ses.getSourceCategory() >= 0);
 			assert(ses.getSourceCategory() < context.getCategoryCount());
 			// one read-ahead thread per input file
-			SamReader reader = SamReaderFactory.makeDefault().referenceSequence(context.getReferenceFile()).open(ses.getFile());
-			SAMRecordIterator rawIterator = reader.iterator();
+			SamReaderFactory factory = SamReaderFactory.makeDefault().referenceSequence(context.getReferenceFile());
+			SamReader reader = factory.open(ses.getFile());
+			SAMRecordIterator rawIterator = ParallelBAMRecordIterator.iterator(reader, ses.getFile(), factory.validationStringency());
 			rawIterator.assertSorted(SortOrder.coordinate);
 			CloseableIterator<SAMRecord> sit = new AsyncBufferedIterator<SAMRecord>(rawIterator, ses.getFile().getName() + "-Coverage");
 			toclose.add(sit); // close the async iterator first to prevent aysnc reading from a closed stream 
@@ -27,6 +27,7 @@ import com.google.common.collect.RangeMap;
 import com.google.common.collect.SetMultimap;
 import com.google.common.collect.TreeRangeMap;
 
+import au.edu.wehi.idsv.util.MemoryGovernor;
 import au.edu.wehi.idsv.util.RangeUtil;
 import au.edu.wehi.idsv.vcf.VcfSvConstants;
 import au.edu.wehi.idsv.visualisation.TrackedBuffer;
@@ -58,6 +59,10 @@ public class SequentialEvidenceAllocator implements Iterator<SequentialEvidenceA
 	private final ArrayDeque<VariantEvidenceSupport> variantBuffer = new ArrayDeque<VariantEvidenceSupport>();
 	private final Map<String, VariantEvidenceSupport> bufferedVariantId = new HashMap<String, VariantEvidenceSupport>();
 	private final SetMultimap<String, VariantEvidenceSupport> assemblyAllocationLookup = HashMultimap.create();
+	/**
+	 * Number of evidence allocated to variants in the buffer
+	 */
+	private volatile long bufferedEvidenceCount = 0;
 	public class VariantEvidenceSupport {
 		private final String id;
 		private final String parid;
@@ -81,6 +86,7 @@ public class SequentialEvidenceAllocator implements Iterator<SequentialEvidenceA
 		}
 		private void attributeEvidence(DirectedEvidence e) {
 			support.add(e);
+			bufferedEvidenceCount++;
 		}
 		public String toString() {
 			return String.format("%s %f %s", location, score, id);
@@ -148,6 +154,7 @@ public class SequentialEvidenceAllocator implements Iterator<SequentialEvidenceA
 			this.breakpointLookup = new LocalOverlapLookup(this.context.getDictionary().getSequences().size());
 		}
 		this.breakendLookup = new LocalOverlapLookup(this.context.getDictionary().getSequences().size());
+		MemoryGovernor.getInstance().register(this);
 	}
 	private void buffer(VariantContextDirectedEvidence variant) {
 		VariantEvidenceSupport av = new VariantEvidenceSupport(variant);
@@ -197,6 +204,7 @@ public class SequentialEvidenceAllocator implements Iterator<SequentialEvidenceA
 		// that they got assembled into. This means we need to load our
 		// assemblies before our reads
 		variant = variantBuffer.poll();
+		bufferedEvidenceCount -= variant.support.size();
 		if (StringUtils.isNotBlank(variant.id)) {
 			bufferedVariantId.remove(variant.id);
 		}
@@ -355,7 +363,7 @@ public class SequentialEvidenceAllocator implements Iterator<SequentialEvidenceA
 	@Override
 	public List<NamedTrackedBuffer> currentTrackedBufferSizes() {
 		return ImmutableList.of(
-				new NamedTrackedBuffer(trackedBufferName_variantBuffer, variantBuffer.size()),
+				new NamedTrackedBuffer(trackedBufferName_variantBuffer, variantBuffer.size(), (variantBuffer.size() + bufferedEvidenceCount) * TrackedBuffer.DEFAULT_RECORD_BYTES),
 				new NamedTrackedBuffer(trackedBufferName_bufferedVariantId, bufferedVariantId.size())
 				);
 	}
@@ -21,6 +21,8 @@ import au.edu.wehi.idsv.sam.SAMFileUtil;
 import au.edu.wehi.idsv.sam.SAMRecordUtil;
 import au.edu.wehi.idsv.util.AsyncBufferedIterator;
 import au.edu.wehi.idsv.util.FileHelper;
+import au.edu.wehi.idsv.visualisation.TimelineTracer;
+import au.edu.wehi.idsv.visualisation.TimelineTracer.Span;
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMFileHeader.SortOrder;
 import htsjdk.samtools.SAMFileWriter;
@@ -299,7 +301,9 @@ public class SplitReadRealigner {
 				File tmpout = gridss.Defaults.OUTPUT_TO_TEMP_FILE ? FileSystemContext.getWorkingFileFor(out) : out;
 				tmpFiles.add(out);
 				tmpFiles.add(tmpout);
-				aligner.align(fq, tmpout, pc.getReferenceFile(), workerThreads);
+				try (Span span = TimelineTracer.getInstance().begin("aligner", fq.getName())) {
+					aligner.align(fq, tmpout, pc.getReferenceFile(), workerThreads);
+				}
 				if (tmpout != out) {
 					FileHelper.move(tmpout, out, true);
 				}
@@ -3,6 +3,7 @@ package au.edu.wehi.idsv;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.Executor;
 import java.util.function.Supplier;
 
 import org.apache.commons.lang3.tuple.Pair;
@@ -30,6 +31,7 @@ public class VariantCallIterator implements CloseableIterator<VariantContextDire
 	private final VariantIdGenerator idGenerator;
 	private final Supplier<Iterator<DirectedEvidence>> iteratorGenerator;
 	private final QueryInterval[] filterInterval;
+	private final Executor threadpool;
 	private Iterator<? extends VariantContextDirectedEvidence> currentIterator;
 	private Iterator<DirectedEvidence> currentUnderlyingIterator;
 	private int currentDirectionOrdinal;
@@ -38,6 +40,7 @@ public class VariantCallIterator implements CloseableIterator<VariantContextDire
 		this.idGenerator = new SequentialIdGenerator("gridss");
 		this.iteratorGenerator = () -> evidence.iterator();
 		this.filterInterval = null;
+		this.threadpool = null;
 		this.currentDirectionOrdinal = 0;
 		reinitialiseIterator();
 	}
@@ -46,16 +49,26 @@ public class VariantCallIterator implements CloseableIterator<VariantContextDire
 		this.idGenerator = new SequentialIdGenerator("gridss");
 		this.iteratorGenerator = () -> source.iterator();
 		this.filterInterval = null;
+		this.threadpool = null;
 		this.currentDirectionOrdinal = 0;
 		reinitialiseIterator();
 	}
 	public VariantCallIterator(AggregateEvidenceSource source, QueryInterval[] interval, int intervalNumber) {
+		this(source, interval, intervalNumber, null);
+	}
+	/**
+	 * Calls breakpoints in the given interval
+	 * @param threadpool thread pool to call maximal cliques on when parallel clique calling is enabled.
+	 * Cliques are called serially if null. 
+	 */
+	public VariantCallIterator(AggregateEvidenceSource source, QueryInterval[] interval, int intervalNumber, Executor threadpool) {
 		this.processContext = source.getContext();
 		this.idGenerator = new SequentialIdGenerator(String.format("gridss%d_", intervalNumber));
 		int expandBy = source.getMaxConcordantFragmentSize() + 1;
 		QueryInterval[] expanded = QueryIntervalUtil.padIntervals(processContext.getDictionary(), interval, expandBy);
 		this.iteratorGenerator = () -> source.iterator(expanded);
 		this.filterInterval = interval;
+		this.threadpool = threadpool;
 		this.currentDirectionOrdinal = 0;
 		reinitialiseIterator();
 	}
@@ -63,10 +76,27 @@ public class VariantCallIterator implements CloseableIterator<VariantContextDire
 		assert(currentIterator == null || !currentIterator.hasNext());
 		CloserUtil.close(currentIterator);
 		CloserUtil.close(currentUnderlyingIterator);
+		currentUnderlyingIterator = null;
 		if (currentDirectionOrdinal >= DIRECTION_ORDER.size()) return;
-		currentUnderlyingIterator = iteratorGenerator.get();
 		Pair<BreakendDirection, BreakendDirection> direction = DIRECTION_ORDER.get(currentDirectionOrdinal);
-		if (direction.getRight() != null) {
+		if (direction.getRight() != null && isParallelCliqueCalling()) {
+			// each breakpoint direction is partitioned separately so only
+			// the evidence of a single direction is held in memory
+			PartitionedMaximalCliqueCaller partitionedCaller;
+			Iterator<DirectedEvidence> it = iteratorGenerator.get();
+			try {
+				partitionedCaller = new PartitionedMaximalCliqueCaller(processContext, it, direction.getLeft(), direction.getRight(), threadpool);
+			} finally {
+				CloserUtil.close(it);
+			}
+			currentIterator = MaximalEvidenceCliqueIterator.fromCliques(
+					processContext,
+					partitionedCaller.getCliques(),
+					direction.getLeft(),
+					direction.getRight(),
+					idGenerator);
+		} else if (direction.getRight() != null) {
+			currentUnderlyingIterator = iteratorGenerator.get();
 			currentIterator = new MaximalEvidenceCliqueIterator(
 					processContext,
 					currentUnderlyingIterator,
@@ -75,6 +105,7 @@ public class VariantCallIterator implements CloseableIterator<VariantContextDire
 					idGenerator);
 		} else {
 			if (processContext.getVariantCallingParameters().callBreakends) {
+				currentUnderlyingIterator = iteratorGenerator.get();
 				currentIterator = new BreakendMaximalEvidenceCliqueIterator(
 						processContext,
 						currentUnderlyingIterator,
@@ -97,6 +128,9 @@ public class VariantCallIterator implements CloseableIterator<VariantContextDire
 			});
 		}
 	}
+	private boolean isParallelCliqueCalling() {
+		return threadpool != null && processContext.getVariantCallingParameters().parallelCliqueCalling;
+	}
 	@Override
 	public boolean hasNext() {
 		if (currentDirectionOrdinal >= DIRECTION_ORDER.size()) return false;
@@ -7,12 +7,17 @@ import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.common.util.concurrent.MoreExecutors;
 
 import au.edu.wehi.idsv.util.AsyncBufferedIterator;
 import au.edu.wehi.idsv.util.FileHelper;
 import au.edu.wehi.idsv.vcf.VcfFileUtil;
+import au.edu.wehi.idsv.visualisation.ChunkMetrics;
+import au.edu.wehi.idsv.visualisation.PipelineMetrics;
+import au.edu.wehi.idsv.visualisation.TimelineTracer;
+import au.edu.wehi.idsv.visualisation.TimelineTracer.Span;
 import htsjdk.samtools.QueryInterval;
 import htsjdk.samtools.util.Log;
 import htsjdk.variant.variantcontext.writer.VariantContextWriter;
@@ -41,34 +46,64 @@ public class VariantCaller {
 		if (threadpool == null) {
 			threadpool = MoreExecutors.newDirectExecutorService();
 		}
+		ExecutorService pool = threadpool;
 		AggregateEvidenceSource es = new AggregateEvidenceSource(
 				processContext,
 				processContext.getVariantCallingParameters().callOnlyAssemblies ? Collections.emptyList() : samEvidence, assemblyEvidence);
 		List<QueryInterval[]> chunks = processContext.getReference().getIntervals(processContext.getConfig().chunkSize, processContext.getConfig().chunkSequenceChangePenalty);
 		List<File> calledChunk = new ArrayList<>();
 		List<Future<Void>> tasks = new ArrayList<>();
+		boolean incremental = processContext.getConfig().incremental;
+		List<SAMEvidenceSource> fingerprintSources = new ArrayList<>(processContext.getVariantCallingParameters().callOnlyAssemblies ? Collections.emptyList() : samEvidence);
+		fingerprintSources.add(assemblyEvidence);
+		AtomicInteger recalledChunks = new AtomicInteger(0);
 		
 		for (int i = 0; i < chunks.size(); i++) {
 			QueryInterval[] chunck = chunks.get(i);
 			File f = processContext.getFileSystemContext().getVariantCallChunkVcf(vcf, i);
 			int chunkNumber = i;
 			calledChunk.add(f);
-			if (!f.exists()) {
-				tasks.add(threadpool.submit(() -> { callChunk(f, es, chunkNumber, chunck); return null; }));
+			if (incremental) {
+				tasks.add(threadpool.submit(() -> {
+					// match the evidence intervals queried by VariantCallIterator
+					QueryInterval[] expanded = QueryIntervalUtil.padIntervals(processContext.getDictionary(), chunck, es.getMaxConcordantFragmentSize() + 1);
+					String fingerprint = ChunkFingerprint.calculate(processContext.getConfig(), processContext.getCategoryCount(), fingerprintSources, expanded);
+					if (!ChunkFingerprint.isUpToDate(f, fingerprint)) {
+						FileHelper.delete(ChunkFingerprint.getFingerprintFile(f), true);
+						FileHelper.delete(f, true);
+						callChunk(f, es, chunkNumber, chunck, pool);
+						ChunkFingerprint.write(f, fingerprint);
+						recalledChunks.incrementAndGet();
+					}
+					return null;
+				}));
+			} else if (!f.exists()) {
+				tasks.add(threadpool.submit(() -> { callChunk(f, es, chunkNumber, chunck, pool); return null; }));
 			}
 		}
 		runTasks(tasks);
+		if (incremental) {
+			log.info(String.format("Called %d of %d chunks. Remaining chunks unchanged.", recalledChunks.get(), chunks.size()));
+		}
 		
 		log.info("Merging identified breakpoints");
 		File mergedOut = FileSystemContext.getWorkingFileFor(vcf, "gridss.merged.");
-		VcfFileUtil.concat(processContext.getReference().getSequenceDictionary(), calledChunk, mergedOut);
+		try (Span span = TimelineTracer.getInstance().begin("gather", vcf.getName())) {
+			VcfFileUtil.concat(processContext.getReference().getSequenceDictionary(), calledChunk, mergedOut);
+		}
 		
 		log.info("Sorting identified breakpoints");
+		if (incremental) {
+			// sorting does not overwrite existing output
+			FileHelper.delete(vcf, true);
+		}
 		VcfFileUtil.sort(processContext, mergedOut, vcf);
 		// clean up chunked
 		if (gridss.Defaults.DELETE_TEMPORARY_FILES) {
-			for (File f : calledChunk) {
-				FileHelper.delete(f, true);
+			if (!incremental) {
+				for (File f : calledChunk) {
+					FileHelper.delete(f, true);
+				}
 			}
 			FileHelper.delete(mergedOut, true);
 		}
@@ -90,13 +125,15 @@ public class VariantCaller {
 			throw new RuntimeException(firstException);
 		}
 	}
-	private void callChunk(File output, AggregateEvidenceSource es, int chunkNumber, QueryInterval[] chunk) {
+	private void callChunk(File output, AggregateEvidenceSource es, int chunkNumber, QueryInterval[] chunk, ExecutorService threadpool) {
 		String chunkMsg = String.format("chunk %d (%s:%d-%s:%d)", chunkNumber,
 				processContext.getDictionary().getSequence(chunk[0].referenceIndex).getSequenceName(), chunk[0].start,
 				processContext.getDictionary().getSequence(chunk[chunk.length-1].referenceIndex).getSequenceName(), chunk[chunk.length-1].end);
 		String msg = "calling maximal cliques in " + chunkMsg;
 		File tmp = gridss.Defaults.OUTPUT_TO_TEMP_FILE ? FileSystemContext.getWorkingFileFor(output) : output;
-		try (VariantCallIterator rawit = new VariantCallIterator(es, chunk, chunkNumber)) {
+		ChunkMetrics chunkMetrics = PipelineMetrics.getInstance().isEnabled() ? PipelineMetrics.getInstance().startChunk("calling", chunkMsg) : null;
+		try (Span span = TimelineTracer.getInstance().begin("calling", chunkMsg);
+				VariantCallIterator rawit = new VariantCallIterator(es, chunk, chunkNumber, threadpool)) {
 			try (VariantContextWriter vcfWriter = processContext.getVariantContextWriter(tmp, false)) {
 				log.info("Start ", msg);
 				try (AsyncBufferedIterator<VariantContextDirectedEvidence> it = new AsyncBufferedIterator<>(rawit, "VariantCaller " + chunkMsg)) {
@@ -110,6 +147,10 @@ public class VariantCaller {
 					}
 				}
 			}
+		} finally {
+			if (chunkMetrics != null) {
+				chunkMetrics.stop();
+			}
 		}
 		try {
 			if (tmp != output) {
@@ -0,0 +1,156 @@
+package au.edu.wehi.idsv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+
+import htsjdk.samtools.util.CloserUtil;
+
+/**
+ * Splits a single pass over a coordinate sorted VCF into a stream of breakend calls
+ * and a stream of all other records, and merges them back together in VCF order.
+ *
+ * Each VCF record is decoded once. Records read from the VCF while satisfying one stream
+ * are buffered until consumed by the other stream. The merged stream only reads ahead of
+ * the breakend stream until it is known that no other record precedes the next breakend
+ * call, so buffering is limited to the lookahead of the breakend stream consumer.
+ *
+ * The breakend stream can be consumed on a different thread to the merged stream.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class VariantContextBreakendTee implements Closeable {
+	private final Iterator<? extends IdsvVariantContext> source;
+	private final Closeable[] alsoClose;
+	private final Queue<VariantContextDirectedEvidence> breakendBuffer = new ArrayDeque<>();
+	private final Queue<IdsvVariantContext> passthroughBuffer = new ArrayDeque<>();
+	private IdsvVariantContext lastRead = null;
+	private boolean closed = false;
+	/**
+	 * @param source coordinate sorted VCF records
+	 * @param alsoClose resources to close when this tee is closed
+	 */
+	public VariantContextBreakendTee(Iterator<? extends IdsvVariantContext> source, Closeable... alsoClose) {
+		this.source = source;
+		this.alsoClose = alsoClose;
+	}
+	/**
+	 * Reads the next source record into the buffer of the stream it belongs to
+	 * @return false if no more records are available
+	 */
+	private boolean readNext() {
+		if (closed || !source.hasNext()) {
+			return false;
+		}
+		IdsvVariantContext v = source.next();
+		lastRead = v;
+		if (v instanceof VariantContextDirectedEvidence) {
+			breakendBuffer.add((VariantContextDirectedEvidence)v);
+		} else {
+			passthroughBuffer.add(v);
+		}
+		return true;
+	}
+	private synchronized VariantContextDirectedEvidence pollBreakend() {
+		while (breakendBuffer.isEmpty() && readNext());
+		return breakendBuffer.poll();
+	}
+	/**
+	 * Returns the next non-breakend record if it could precede the given record.
+	 * @param next next record of the other stream. Can be null.
+	 * @return next non-breakend record, or null if no non-breakend records remain or
+	 * all remaining non-breakend records are at a later position than the given record.
+	 */
+	private synchronized IdsvVariantContext peekPassthrough(IdsvVariantContext next) {
+		while (passthroughBuffer.isEmpty()) {
+			if (next != null && lastRead != null && isBeforePosition(next, lastRead)) {
+				// input is coordinate sorted so all subsequent records are after the given record
+				return null;
+			}
+			if (!readNext()) {
+				return null;
+			}
+		}
+		return passthroughBuffer.peek();
+	}
+	private synchronized IdsvVariantContext pollPassthrough() {
+		return passthroughBuffer.poll();
+	}
+	private static boolean isBeforePosition(IdsvVariantContext a, IdsvVariantContext b) {
+		if (a.getReferenceIndex() != b.getReferenceIndex()) {
+			return a.getReferenceIndex() < b.getReferenceIndex();
+		}
+		return a.getStart() < b.getStart();
+	}
+	/**
+	 * Breakend calls in VCF order.
+	 */
+	public Iterator<VariantContextDirectedEvidence> breakends() {
+		return new AbstractIterator<VariantContextDirectedEvidence>() {
+			@Override
+			protected VariantContextDirectedEvidence computeNext() {
+				VariantContextDirectedEvidence e = pollBreakend();
+				if (e == null) {
+					return endOfData();
+				}
+				return e;
+			}
+		};
+	}
+	/**
+	 * Merges the given breakend calls with all non-breakend records.
+	 *
+	 * The resultant order is identical to Iterators.mergeSorted() of the breakend calls
+	 * and the non-breakend records using IdsvVariantContext.ByLocationStart.
+	 * @param breakendCalls breakend calls sorted by IdsvVariantContext.ByLocationStart
+	 * @return all records
+	 */
+	public Iterator<IdsvVariantContext> merge(Iterator<? extends IdsvVariantContext> breakendCalls) {
+		PeekingIterator<? extends IdsvVariantContext> bpit = Iterators.peekingIterator(breakendCalls);
+		return new AbstractIterator<IdsvVariantContext>() {
+			/**
+			 * Iterators.mergeSorted() breaks ties in favour of the stream that did not return the previous record
+			 */
+			private boolean passthroughReturnedLast = true;
+			@Override
+			protected IdsvVariantContext computeNext() {
+				IdsvVariantContext be = bpit.hasNext() ? bpit.peek() : null;
+				IdsvVariantContext passthrough = peekPassthrough(be);
+				if (be == null && passthrough == null) {
+					return endOfData();
+				}
+				boolean usePassthrough;
+				if (be == null) {
+					usePassthrough = true;
+				} else if (passthrough == null) {
+					usePassthrough = false;
+				} else if (passthroughReturnedLast) {
+					usePassthrough = IdsvVariantContext.ByLocationStart.compare(passthrough, be) < 0;
+				} else {
+					usePassthrough = IdsvVariantContext.ByLocationStart.compare(be, passthrough) >= 0;
+				}
+				passthroughReturnedLast = usePassthrough;
+				if (usePassthrough) {
+					return pollPassthrough();
+				}
+				return bpit.next();
+			}
+		};
+	}
+	@Override
+	public synchronized void close() throws IOException {
+		closed = true;
+		breakendBuffer.clear();
+		passthroughBuffer.clear();
+		for (Closeable c : alsoClose) {
+			CloserUtil.close(c);
+		}
+	}
+}
@@ -10,11 +10,18 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
+import au.edu.wehi.idsv.util.BackgroundExecutor;
+import au.edu.wehi.idsv.visualisation.LatencyMetrics;
+import au.edu.wehi.idsv.visualisation.PipelineMetrics;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SAMRecordIterator;
 import htsjdk.samtools.SamInputResource;
@@ -43,11 +50,16 @@ public class ExternalProcessStreamingAligner implements Closeable, Flushable, St
 	private final SamReaderFactory readerFactory;
 	private Process aligner = null;
 	private NonFlushingBasicFastqWriter toExternalProgram = null;
-	private Thread reader = null;
+	private Future<?> reader = null;
 	// The following are only needed for pretty error messages
 	private final String commandlinestr;
 	private final File reference;
 	private final AtomicBoolean isClosed = new AtomicBoolean(false);
+	/**
+	 * Aligner round trip latency. Null if metrics are not enabled.
+	 */
+	private final LatencyMetrics latency;
+	private final ConcurrentMap<String, Long> submissionTime;
 	public ExternalProcessStreamingAligner(final SamReaderFactory readerFactory, final List<String> commandline, final File reference, final int threads) {
 		this.readerFactory = readerFactory;
 		this.reference = reference;
@@ -55,6 +67,13 @@ public class ExternalProcessStreamingAligner implements Closeable, Flushable, St
 				.map(s -> String.format(s, "-", reference.getPath(), threads))
 				.collect(Collectors.toList());
 		this.commandlinestr = args.stream().collect(Collectors.joining(" "));
+		if (PipelineMetrics.getInstance().isEnabled()) {
+			this.latency = PipelineMetrics.getInstance().getLatency("ExternalProcessStreamingAligner");
+			this.submissionTime = new ConcurrentHashMap<>();
+		} else {
+			this.latency = null;
+			this.submissionTime = null;
+		}
 	}
 	/* (non-Javadoc)
 	 * @see au.edu.wehi.idsv.alignment.StreamingAligner#asyncAlign(htsjdk.samtools.fastq.FastqRecord)
@@ -63,6 +82,9 @@ public class ExternalProcessStreamingAligner implements Closeable, Flushable, St
 	public synchronized void asyncAlign(FastqRecord fq) throws IOException {
 		ensureAligner();
 		outstandingReads.incrementAndGet();
+		if (submissionTime != null) {
+			submissionTime.put(fq.getReadName(), System.nanoTime());
+		}
 		toExternalProgram.write(fq);
 		toExternalProgram.flush();
 	}
@@ -76,9 +98,16 @@ public class ExternalProcessStreamingAligner implements Closeable, Flushable, St
 					.redirectError(Redirect.INHERIT)
 					.start();
 			toExternalProgram = new NonFlushingBasicFastqWriter(new BufferedOutputStream(aligner.getOutputStream()));
-			reader = new Thread(() -> readAllAlignments(readerFactory));
-			reader.setName("ExternalProcessStreamingAligner");
-			reader.start();
+			reader = BackgroundExecutor.getInstance().submit(() -> {
+				Thread current = Thread.currentThread();
+				String poolThreadName = current.getName();
+				current.setName("ExternalProcessStreamingAligner");
+				try {
+					readAllAlignments(readerFactory);
+				} finally {
+					current.setName(poolThreadName);
+				}
+			});
 		}
 	}
 	/* (non-Javadoc)
@@ -122,6 +151,12 @@ public class ExternalProcessStreamingAligner implements Closeable, Flushable, St
 		SAMRecordIterator it = fromExternalProgram.iterator();
 		while (it.hasNext()) {
 			SAMRecord r = it.next();
+			if (submissionTime != null) {
+				Long submitted = submissionTime.remove(r.getReadName());
+				if (submitted != null) {
+					latency.record(System.nanoTime() - submitted);
+				}
+			}
 			buffer.add(r);
 			outstandingReads.decrementAndGet();
 		}
@@ -159,9 +194,11 @@ public class ExternalProcessStreamingAligner implements Closeable, Flushable, St
 		ExternalProcessHelper.shutdownAligner(aligner, commandlinestr, reference);
 		log.info("External alignments complete");
 		try {
-			reader.join();
+			reader.get();
 		} catch (InterruptedException e) {
 			log.warn(e);
+		} catch (ExecutionException e) {
+			log.error(e.getCause(), "Error reading alignments from external aligner");
 		}
 		aligner = null;
 		reader = null;
@@ -0,0 +1,192 @@
+package au.edu.wehi.idsv.alignment;
+
+import java.io.File;
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import au.edu.wehi.idsv.debruijn.KmerEncodingHelper;
+import au.edu.wehi.idsv.picard.ReferenceLookup;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.util.Log;
+
+/**
+ * Compact exact-match seed index of the reference genome.
+ *
+ * Reference kmers starting at every stride-th position of each contig are indexed.
+ * Each entry is stored as a single long containing the 2bit encoded kmer in the
+ * high 32 bits and the position on the concatenated reference in the low 32 bits.
+ * Entries are sorted so all occurrences of a kmer can be found by binary search.
+ *
+ * Looking up every kmer of a query sequence finds all exact matches of at least
+ * k + stride - 1 bases.
+ *
+ * The index requires 8 bytes per indexed kmer (8 / stride bytes per reference base).
+ * Entries are written directly into a single array sized for every indexed position
+ * and sorted in place so no additional copy of the index is required during construction.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class ReferenceKmerIndex {
+	private static final Log log = Log.getInstance(ReferenceKmerIndex.class);
+	public static final int MAX_K = 16;
+	private static final long POSITION_MASK = 0xFFFFFFFFL;
+	private final int k;
+	private final int stride;
+	private final SAMSequenceDictionary dictionary;
+	/**
+	 * Position of the first base of each contig on the concatenated reference
+	 */
+	private final long[] contigOffset;
+	private final long[] index;
+	/**
+	 * Number of valid entries in index. Positions containing ambiguous bases are not indexed.
+	 */
+	private final int entryCount;
+	private static final Map<String, SoftReference<ReferenceKmerIndex>> cache = new HashMap<>();
+	/**
+	 * Gets the index of the given reference genome, reusing a previously constructed
+	 * index of the same reference if it has not yet been garbage collected.
+	 * @param referenceFile reference genome file used as the cache key
+	 * @param reference reference genome
+	 * @param k kmer length. Must be at most 16
+	 * @param stride distance between indexed reference kmers
+	 */
+	public static synchronized ReferenceKmerIndex getInstance(File referenceFile, ReferenceLookup reference, int k, int stride) {
+		String key = String.format("%s:%d:%d", referenceFile.getAbsolutePath(), k, stride);
+		SoftReference<ReferenceKmerIndex> ref = cache.get(key);
+		ReferenceKmerIndex index = ref == null ? null : ref.get();
+		if (index == null) {
+			long startTime = System.nanoTime();
+			index = new ReferenceKmerIndex(reference, k, stride);
+			log.info(String.format("Indexed %d reference kmers of %s in %.1fs", index.size(), referenceFile, (System.nanoTime() - startTime) / 1e9));
+			cache.put(key, new SoftReference<>(index));
+		}
+		return index;
+	}
+	/**
+	 * Indexes the given reference
+	 * @param reference reference genome
+	 * @param k kmer length. Must be at most 16
+	 * @param stride distance between indexed reference kmers
+	 */
+	public ReferenceKmerIndex(ReferenceLookup reference, int k, int stride) {
+		if (k <= 0 || k > MAX_K) {
+			throw new IllegalArgumentException(String.format("Seed kmer length must be between 1 and %d", MAX_K));
+		}
+		if (stride <= 0) {
+			throw new IllegalArgumentException("Seed stride must be positive");
+		}
+		this.k = k;
+		this.stride = stride;
+		this.dictionary = reference.getSequenceDictionary();
+		List<SAMSequenceRecord> contigs = dictionary.getSequences();
+		this.contigOffset = new long[contigs.size() + 1];
+		long offset = 0;
+		long size = 0;
+		for (int i = 0; i < contigs.size(); i++) {
+			contigOffset[i] = offset;
+			offset += contigs.get(i).getSequenceLength();
+			size += Math.max(0, contigs.get(i).getSequenceLength() - k + stride) / stride;
+		}
+		contigOffset[contigs.size()] = offset;
+		if (offset >= POSITION_MASK || size > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Reference genome too large to index.");
+		}
+		long[] entries = new long[(int)size];
+		int count = 0;
+		for (int i = 0; i < contigs.size(); i++) {
+			SAMSequenceRecord contig = contigs.get(i);
+			log.debug("Indexing ", contig.getSequenceName());
+			byte[] bases = reference.getSequence(contig.getSequenceName()).getBases();
+			for (int pos = 0; pos + k <= bases.length; pos += stride) {
+				long kmer = encode(bases, pos, k);
+				if (kmer >= 0) {
+					entries[count++] = (kmer << 32) | (contigOffset[i] + pos);
+				}
+			}
+		}
+		Arrays.sort(entries, 0, count);
+		this.index = entries;
+		this.entryCount = count;
+		log.debug(String.format("Indexed %d reference kmers", entryCount));
+	}
+	/**
+	 * 2bit encodes the given kmer
+	 * @return encoded kmer, or -1 if the kmer contains an ambiguous base
+	 */
+	static long encode(byte[] bases, int offset, int k) {
+		long kmer = 0;
+		for (int i = offset; i < offset + k; i++) {
+			if (KmerEncodingHelper.isAmbiguous(bases[i])) {
+				return -1;
+			}
+			kmer = (kmer << 2) | KmerEncodingHelper.picardBaseToEncoded(bases[i]);
+		}
+		return kmer;
+	}
+	public int getK() {
+		return k;
+	}
+	public int getStride() {
+		return stride;
+	}
+	public SAMSequenceDictionary getSequenceDictionary() {
+		return dictionary;
+	}
+	/**
+	 * Number of indexed kmers
+	 */
+	public int size() {
+		return entryCount;
+	}
+	/**
+	 * Index of the first entry of the given kmer
+	 */
+	public int firstOccurrence(long kmer) {
+		int i = Arrays.binarySearch(index, 0, entryCount, kmer << 32);
+		// exact match when the kmer occurs at the start of the concatenated reference
+		return i >= 0 ? i : -i - 1;
+	}
+	/**
+	 * Index after the last entry of the given kmer
+	 */
+	public int endOccurrence(long kmer) {
+		// all positions are less than POSITION_MASK so this is never found
+		return -Arrays.binarySearch(index, 0, entryCount, (kmer << 32) | POSITION_MASK) - 1;
+	}
+	/**
+	 * Number of occurrences of the given kmer in the index
+	 */
+	public int occurrences(long kmer) {
+		return endOccurrence(kmer) - firstOccurrence(kmer);
+	}
+	/**
+	 * Position of the given index entry on the concatenated reference
+	 */
+	public long position(int entry) {
+		return index[entry] & POSITION_MASK;
+	}
+	/**
+	 * Converts a position on the concatenated reference to a reference index
+	 */
+	public int referenceIndex(long position) {
+		int i = Arrays.binarySearch(contigOffset, position);
+		if (i >= 0) {
+			// skip over empty contigs
+			while (i + 1 < contigOffset.length && contigOffset[i + 1] == position) i++;
+			return i;
+		}
+		return -i - 2;
+	}
+	/**
+	 * Position of the first base of the given contig on the concatenated reference
+	 */
+	public long contigOffset(int referenceIndex) {
+		return contigOffset[referenceIndex];
+	}
+}
@@ -0,0 +1,490 @@
+package au.edu.wehi.idsv.alignment;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.lang3.ArrayUtils;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import au.edu.wehi.idsv.picard.ReferenceLookup;
+import htsjdk.samtools.Cigar;
+import htsjdk.samtools.CigarElement;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.SAMTag;
+import htsjdk.samtools.SAMUtils;
+import htsjdk.samtools.TextCigarCodec;
+import htsjdk.samtools.fastq.FastqRecord;
+import htsjdk.samtools.util.Log;
+import htsjdk.samtools.util.SequenceUtil;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+/**
+ * In-process seed and extend aligner.
+ *
+ * Exact kmer seeds are looked up in a ReferenceKmerIndex, grouped into candidate
+ * alignment locations by diagonal, and the best candidates are extended by
+ * Smith-Waterman alignment against the surrounding reference sequence.
+ *
+ * Records that cannot be confidently aligned are passed to the fallback aligner
+ * if one is provided, or returned unmapped if not. Records containing seeds that
+ * were skipped for occurring too often in the reference are considered not
+ * confidently aligned since the skipped seeds could support alternate alignments.
+ *
+ * When a single thread is used, alignment is performed synchronously on the calling
+ * thread so alignments are available immediately after asyncAlign() returns. When
+ * multiple threads are used, records are aligned in batches and alignments become
+ * available once the batch is full or flush() is called.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class SeedAndExtendStreamingAligner implements StreamingAligner {
+	private static final Log log = Log.getInstance(SeedAndExtendStreamingAligner.class);
+	// bwa mem default scoring
+	private static final int MATCH = 1;
+	private static final int MISMATCH = 4;
+	private static final int AMBIGUOUS = 1;
+	private static final int GAP_OPEN = 6;
+	private static final int GAP_EXTEND = 1;
+	private static final double MAPQ_COEFFICIENT = 30;
+	private static final int MAX_MAPQ = 60;
+	private static final int READ_OFFSET_BITS = 24;
+	private static final long READ_OFFSET_MASK = (1L << READ_OFFSET_BITS) - 1;
+	/**
+	 * Number of records per thread to align in each batch
+	 */
+	private static final int RECORDS_PER_THREAD = 256;
+	/**
+	 * bwa mem mapq penalty coefficient for the number of sub-optimal hits
+	 */
+	private static final double SUBOPTIMAL_HIT_PENALTY = 4.343;
+	private final SAMFileHeader header;
+	private final ReferenceLookup reference;
+	private final ReferenceKmerIndex index;
+	private final Aligner aligner;
+	private final StreamingAligner fallback;
+	private final Queue<SAMRecord> buffer = new ArrayDeque<>();
+	private final List<FastqRecord> pending = new ArrayList<>();
+	private final int threads;
+	private final ExecutorService threadpool;
+	private int maxSeedOccurrences = 64;
+	private int maxCandidates = 8;
+	private int maxIndelLength = 32;
+	private int minScore = 30;
+	private int minResolvedMapq = 20;
+	private long inProcessAlignments = 0;
+	private long fallbackAlignments = 0;
+	/**
+	 * Creates a new aligner
+	 * @param reference reference genome
+	 * @param index seed index of the reference genome
+	 * @param aligner Smith-Waterman aligner used for seed extension
+	 * @param fallback aligner used to align records that could not be confidently aligned. Can be null.
+	 */
+	public SeedAndExtendStreamingAligner(ReferenceLookup reference, ReferenceKmerIndex index, Aligner aligner, StreamingAligner fallback) {
+		this(reference, index, aligner, fallback, 1);
+	}
+	/**
+	 * Creates a new aligner
+	 * @param reference reference genome
+	 * @param index seed index of the reference genome
+	 * @param aligner Smith-Waterman aligner used for seed extension
+	 * @param fallback aligner used to align records that could not be confidently aligned. Can be null.
+	 * @param threads number of threads to use for alignment
+	 */
+	public SeedAndExtendStreamingAligner(ReferenceLookup reference, ReferenceKmerIndex index, Aligner aligner, StreamingAligner fallback, int threads) {
+		this.reference = reference;
+		this.index = index;
+		this.aligner = aligner;
+		this.fallback = fallback;
+		this.header = new SAMFileHeader();
+		this.header.setSequenceDictionary(reference.getSequenceDictionary());
+		this.threads = Math.max(1, threads);
+		if (this.threads > 1) {
+			this.threadpool = Executors.newFixedThreadPool(this.threads, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("SeedAndExtend-%d").build());
+		} else {
+			this.threadpool = null;
+		}
+	}
+	/**
+	 * Maximum number of reference occurrences of a kmer for it to be used as a seed
+	 */
+	public int getMaxSeedOccurrences() {
+		return maxSeedOccurrences;
+	}
+	public void setMaxSeedOccurrences(int maxSeedOccurrences) {
+		this.maxSeedOccurrences = maxSeedOccurrences;
+	}
+	/**
+	 * Maximum number of candidate locations to extend
+	 */
+	public int getMaxCandidates() {
+		return maxCandidates;
+	}
+	public void setMaxCandidates(int maxCandidates) {
+		this.maxCandidates = maxCandidates;
+	}
+	/**
+	 * Maximum diagonal distance between seeds of the same candidate location
+	 */
+	public int getMaxIndelLength() {
+		return maxIndelLength;
+	}
+	public void setMaxIndelLength(int maxIndelLength) {
+		this.maxIndelLength = maxIndelLength;
+	}
+	/**
+	 * Minimum alignment score to report an alignment
+	 */
+	public int getMinScore() {
+		return minScore;
+	}
+	public void setMinScore(int minScore) {
+		this.minScore = minScore;
+	}
+	/**
+	 * Minimum MAPQ for an alignment to be reported without consulting the fallback aligner
+	 */
+	public int getMinResolvedMapq() {
+		return minResolvedMapq;
+	}
+	public void setMinResolvedMapq(int minResolvedMapq) {
+		this.minResolvedMapq = minResolvedMapq;
+	}
+	@Override
+	public void asyncAlign(FastqRecord fq) throws IOException {
+		if (threadpool == null) {
+			addAlignment(fq, alignRead(fq));
+			return;
+		}
+		pending.add(fq);
+		if (pending.size() >= threads * RECORDS_PER_THREAD) {
+			alignPending();
+		}
+	}
+	private void addAlignment(FastqRecord fq, ReadAlignment aln) throws IOException {
+		SAMRecord r = aln.record;
+		if (r.getReadUnmappedFlag() || r.getMappingQuality() < minResolvedMapq || aln.repetitiveSeedOccurrences > 0) {
+			if (fallback != null) {
+				fallbackAlignments++;
+				fallback.asyncAlign(fq);
+				return;
+			}
+		}
+		inProcessAlignments++;
+		buffer.add(r);
+	}
+	/**
+	 * Aligns all pending records in parallel
+	 */
+	private void alignPending() throws IOException {
+		if (pending.isEmpty()) return;
+		int chunkSize = (pending.size() + threads - 1) / threads;
+		List<Callable<List<ReadAlignment>>> tasks = new ArrayList<>(threads);
+		for (int i = 0; i < pending.size(); i += chunkSize) {
+			List<FastqRecord> chunk = pending.subList(i, Math.min(pending.size(), i + chunkSize));
+			tasks.add(() -> {
+				List<ReadAlignment> result = new ArrayList<>(chunk.size());
+				for (FastqRecord fq : chunk) {
+					result.add(alignRead(fq));
+				}
+				return result;
+			});
+		}
+		try {
+			int i = 0;
+			for (Future<List<ReadAlignment>> future : threadpool.invokeAll(tasks)) {
+				for (ReadAlignment aln : future.get()) {
+					addAlignment(pending.get(i++), aln);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+		pending.clear();
+	}
+	private static class ReadAlignment {
+		private final SAMRecord record;
+		/**
+		 * Number of reference occurrences of seeds skipped due to exceeding maxSeedOccurrences
+		 */
+		private final long repetitiveSeedOccurrences;
+		public ReadAlignment(SAMRecord record, long repetitiveSeedOccurrences) {
+			this.record = record;
+			this.repetitiveSeedOccurrences = repetitiveSeedOccurrences;
+		}
+	}
+	private static class Candidate {
+		private final boolean negativeStrand;
+		private final long minDiagonal;
+		private final long maxDiagonal;
+		private final long anchorPosition;
+		private final int seeds;
+		private final int seedCoverage;
+		public Candidate(boolean negativeStrand, long minDiagonal, long maxDiagonal, long anchorPosition, int seeds, int seedCoverage) {
+			this.negativeStrand = negativeStrand;
+			this.minDiagonal = minDiagonal;
+			this.maxDiagonal = maxDiagonal;
+			this.anchorPosition = anchorPosition;
+			this.seeds = seeds;
+			this.seedCoverage = seedCoverage;
+		}
+	}
+	private static class ScoredAlignment {
+		private final Candidate candidate;
+		private final int referenceIndex;
+		private final int alignmentStart;
+		private final Cigar cigar;
+		private final int score;
+		private final int nm;
+		public ScoredAlignment(Candidate candidate, int referenceIndex, int alignmentStart, Cigar cigar, int score, int nm) {
+			this.candidate = candidate;
+			this.referenceIndex = referenceIndex;
+			this.alignmentStart = alignmentStart;
+			this.cigar = cigar;
+			this.score = score;
+			this.nm = nm;
+		}
+		public boolean isSameLocation(ScoredAlignment other) {
+			return candidate.negativeStrand == other.candidate.negativeStrand
+					&& referenceIndex == other.referenceIndex
+					&& alignmentStart == other.alignmentStart;
+		}
+	}
+	/**
+	 * Aligns the given read
+	 * @param fq read
+	 * @return alignment of the read. Unmapped if no alignment could be found
+	 */
+	public SAMRecord align(FastqRecord fq) {
+		return alignRead(fq).record;
+	}
+	private ReadAlignment alignRead(FastqRecord fq) {
+		byte[] bases = fq.getReadString().getBytes();
+		byte[] quals = SAMUtils.fastqToPhred(fq.getBaseQualityString());
+		byte[] rcBases = Arrays.copyOf(bases, bases.length);
+		SequenceUtil.reverseComplement(rcBases);
+		List<Candidate> candidates = new ArrayList<>();
+		long repetitiveSeedOccurrences = 0;
+		if (bases.length >= index.getK() && bases.length <= READ_OFFSET_MASK) {
+			BitSet seedCoverage = new BitSet(bases.length);
+			repetitiveSeedOccurrences += findCandidates(bases, false, candidates, seedCoverage);
+			repetitiveSeedOccurrences += findCandidates(rcBases, true, candidates, seedCoverage);
+		}
+		candidates.sort((a, b) -> Integer.compare(b.seeds, a.seeds));
+		ScoredAlignment best = null;
+		ScoredAlignment second = null;
+		for (Candidate c : candidates.subList(0, Math.min(maxCandidates, candidates.size()))) {
+			ScoredAlignment aln = extend(c.negativeStrand ? rcBases : bases, c);
+			if (aln == null) continue;
+			if (best == null || aln.score > best.score) {
+				if (best != null && !best.isSameLocation(aln)) {
+					second = best;
+				}
+				best = aln;
+			} else if (!best.isSameLocation(aln) && (second == null || aln.score > second.score)) {
+				second = aln;
+			}
+		}
+		SAMRecord r = new SAMRecord(header);
+		r.setReadName(fq.getReadName());
+		if (best == null || best.score < minScore) {
+			r.setReadUnmappedFlag(true);
+			r.setReadBases(bases);
+			r.setBaseQualities(quals);
+			return new ReadAlignment(r, repetitiveSeedOccurrences);
+		}
+		if (best.candidate.negativeStrand) {
+			ArrayUtils.reverse(quals);
+			bases = rcBases;
+		}
+		r.setReadBases(bases);
+		r.setBaseQualities(quals);
+		r.setReadNegativeStrandFlag(best.candidate.negativeStrand);
+		r.setReferenceIndex(best.referenceIndex);
+		r.setAlignmentStart(best.alignmentStart);
+		r.setCigar(best.cigar);
+		r.setMappingQuality(mapq(best, second, bases.length, repetitiveSeedOccurrences));
+		r.setAttribute(SAMTag.NM.name(), best.nm);
+		r.setAttribute(SAMTag.AS.name(), best.score);
+		return new ReadAlignment(r, repetitiveSeedOccurrences);
+	}
+	/**
+	 * Groups seed hits on nearby diagonals into candidate alignment locations
+	 * @return total reference occurrences of seeds skipped due to exceeding maxSeedOccurrences
+	 */
+	private long findCandidates(byte[] bases, boolean negativeStrand, List<Candidate> candidates, BitSet seedCoverage) {
+		int k = index.getK();
+		long repetitiveSeedOccurrences = 0;
+		LongArrayList hits = new LongArrayList();
+		for (int i = 0; i + k <= bases.length; i++) {
+			long kmer = ReferenceKmerIndex.encode(bases, i, k);
+			if (kmer < 0) continue;
+			int first = index.firstOccurrence(kmer);
+			int end = index.endOccurrence(kmer);
+			if (end - first > maxSeedOccurrences) {
+				repetitiveSeedOccurrences += end - first;
+				continue;
+			}
+			for (int j = first; j < end; j++) {
+				long diagonal = index.position(j) - i;
+				hits.add((diagonal << READ_OFFSET_BITS) | i);
+			}
+		}
+		if (hits.isEmpty()) return repetitiveSeedOccurrences;
+		long[] sorted = hits.toLongArray();
+		Arrays.sort(sorted);
+		int clusterStart = 0;
+		for (int i = 1; i <= sorted.length; i++) {
+			if (i == sorted.length || (sorted[i] >> READ_OFFSET_BITS) - (sorted[i - 1] >> READ_OFFSET_BITS) > maxIndelLength) {
+				candidates.add(toCandidate(sorted, clusterStart, i, negativeStrand, k, seedCoverage));
+				clusterStart = i;
+			}
+		}
+		return repetitiveSeedOccurrences;
+	}
+	private static Candidate toCandidate(long[] hits, int start, int end, boolean negativeStrand, int k, BitSet seedCoverage) {
+		seedCoverage.clear();
+		for (int i = start; i < end; i++) {
+			int offset = (int)(hits[i] & READ_OFFSET_MASK);
+			seedCoverage.set(offset, offset + k);
+		}
+		long anchor = (hits[start] >> READ_OFFSET_BITS) + (hits[start] & READ_OFFSET_MASK);
+		return new Candidate(negativeStrand, hits[start] >> READ_OFFSET_BITS, hits[end - 1] >> READ_OFFSET_BITS, anchor, end - start, seedCoverage.cardinality());
+	}
+	/**
+	 * Performs Smith-Waterman alignment against the reference surrounding the given candidate
+	 */
+	private ScoredAlignment extend(byte[] bases, Candidate c) {
+		int referenceIndex = index.referenceIndex(c.anchorPosition);
+		SAMSequenceRecord contig = index.getSequenceDictionary().getSequence(referenceIndex);
+		long contigOffset = index.contigOffset(referenceIndex);
+		int pad = maxIndelLength + index.getStride();
+		// 1-based reference window containing all seed diagonals
+		int windowStart = (int)Math.max(1, c.minDiagonal - contigOffset + 1 - pad);
+		int windowEnd = (int)Math.min(contig.getSequenceLength(), c.maxDiagonal - contigOffset + bases.length + pad);
+		if (windowEnd < windowStart) return null;
+		byte[] ref = reference.getSubsequenceAt(contig.getSequenceName(), windowStart, windowEnd).getBases();
+		Alignment aln = aligner.align_smith_waterman(bases, ref);
+		Cigar cigar = TextCigarCodec.decode(aln.getCigar());
+		int score = 0;
+		int nm = 0;
+		int readOffset = 0;
+		int refOffset = aln.getStartPosition();
+		for (CigarElement ce : cigar.getCigarElements()) {
+			int length = ce.getLength();
+			switch (ce.getOperator()) {
+				case M:
+				case EQ:
+				case X:
+					for (int i = 0; i < length; i++) {
+						byte readBase = bases[readOffset + i];
+						byte refBase = ref[refOffset + i];
+						if (!SequenceUtil.isValidBase(readBase) || !SequenceUtil.isValidBase(refBase)) {
+							score -= AMBIGUOUS;
+							nm++;
+						} else if (SequenceUtil.basesEqual(readBase, refBase)) {
+							score += MATCH;
+						} else {
+							score -= MISMATCH;
+							nm++;
+						}
+					}
+					readOffset += length;
+					refOffset += length;
+					break;
+				case I:
+					score -= GAP_OPEN + GAP_EXTEND * length;
+					nm += length;
+					readOffset += length;
+					break;
+				case D:
+				case N:
+					score -= GAP_OPEN + GAP_EXTEND * length;
+					nm += length;
+					refOffset += length;
+					break;
+				case S:
+					readOffset += length;
+					break;
+				default:
+					break;
+			}
+		}
+		return new ScoredAlignment(c, referenceIndex, windowStart + aln.getStartPosition(), cigar, score, nm);
+	}
+	/**
+	 * Approximates the bwa mem single-end mapping quality
+	 * @param repetitiveSeedOccurrences reference occurrences of skipped seeds. Each skipped
+	 * occurrence is treated as an unscored sub-optimal hit.
+	 */
+	private int mapq(ScoredAlignment best, ScoredAlignment second, int readLength, long repetitiveSeedOccurrences) {
+		int minSeedScore = (index.getK() + index.getStride() - 1) * MATCH;
+		double sub = Math.max(second == null ? 0 : second.score, minSeedScore);
+		if (sub >= best.score) return 0;
+		double mapq = MAPQ_COEFFICIENT * (1.0 - sub / best.score) * Math.log(best.candidate.seedCoverage);
+		double identity = 1.0 - (double)(readLength * MATCH - best.score) / (MATCH + MISMATCH) / readLength;
+		if (identity < 0.95) {
+			mapq *= identity * identity;
+		}
+		mapq -= SUBOPTIMAL_HIT_PENALTY * Math.log(1 + repetitiveSeedOccurrences);
+		return (int)Math.max(0, Math.min(MAX_MAPQ, mapq + 0.499));
+	}
+	@Override
+	public void flush() throws IOException {
+		if (threadpool != null) {
+			alignPending();
+		}
+		if (fallback != null) {
+			fallback.flush();
+		}
+	}
+	@Override
+	public boolean hasAlignmentRecord() {
+		return !buffer.isEmpty() || (fallback != null && fallback.hasAlignmentRecord());
+	}
+	@Override
+	public int processedAlignmentRecords() {
+		return buffer.size() + (fallback == null ? 0 : fallback.processedAlignmentRecords());
+	}
+	@Override
+	public int outstandingAlignmentRecord() {
+		return pending.size() + (fallback == null ? 0 : fallback.outstandingAlignmentRecord());
+	}
+	@Override
+	public SAMRecord getAlignment() {
+		if (!buffer.isEmpty()) {
+			return buffer.poll();
+		}
+		if (fallback != null && fallback.hasAlignmentRecord()) {
+			return fallback.getAlignment();
+		}
+		throw new IllegalStateException("No alignments available. getAlignment() should only be called if at least one alignment record is available.");
+	}
+	@Override
+	public void close() throws IOException {
+		log.info(String.format("%d alignments performed in-process. %d alignments performed by fallback aligner.", inProcessAlignments, fallbackAlignments));
+		if (threadpool != null) {
+			threadpool.shutdown();
+		}
+		if (fallback != null) {
+			fallback.close();
+		}
+	}
+}
@@ -6,6 +6,8 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 
+import com.google.common.collect.BoundType;
+import com.google.common.collect.ImmutableRangeSet;
 import com.google.common.collect.Range;
 import com.google.common.collect.RangeSet;
 import com.google.common.collect.TreeRangeSet;
@@ -20,13 +22,25 @@ import htsjdk.tribble.readers.LineIterator;
 
 /**
  * Minimal bed wrapper retaining only interval information
+ * 
+ * Frozen beds are immutable and additionally store the intervals as sorted
+ * primitive arrays for fast overlap lookups.
  * @author Daniel Cameron
  *
  */
 public class IntervalBed {
+	/**
+	 * Maximum number of intervals a cursor steps over before falling back to binary search
+	 */
+	private static final int CURSOR_MAX_LINEAR_STEPS = 8;
 	private final SAMSequenceDictionary dictionary;
 	private final LinearGenomicCoordinate linear;
 	private final RangeSet<Long> intervals;
+	/**
+	 * Sorted, non-overlapping, half-open linear coordinate intervals. Only present in frozen beds.
+	 */
+	private final long[] frozenStart;
+	private final long[] frozenEnd;
 	public int size() {
 		return intervals.asRanges().size();
 	}
@@ -46,6 +60,35 @@ public class IntervalBed {
 		this.dictionary = dictionary;
 		this.linear = linear;
 		this.intervals = intervals;
+		this.frozenStart = null;
+		this.frozenEnd = null;
+	}
+	private IntervalBed(SAMSequenceDictionary dictionary, LinearGenomicCoordinate linear, ImmutableRangeSet<Long> intervals) {
+		this.dictionary = dictionary;
+		this.linear = linear;
+		this.intervals = intervals;
+		this.frozenStart = new long[intervals.asRanges().size()];
+		this.frozenEnd = new long[frozenStart.length];
+		int i = 0;
+		for (Range<Long> r : intervals.asRanges()) {
+			frozenStart[i] = r.lowerBoundType() == BoundType.CLOSED ? r.lowerEndpoint() : r.lowerEndpoint() + 1;
+			frozenEnd[i] = r.upperBoundType() == BoundType.OPEN ? r.upperEndpoint() : r.upperEndpoint() + 1;
+			i++;
+		}
+	}
+	/**
+	 * Returns an immutable copy of this bed optimised for overlap queries.
+	 * Modifying a frozen bed throws UnsupportedOperationException.
+	 * @return frozen bed
+	 */
+	public synchronized IntervalBed freeze() {
+		if (isFrozen()) {
+			return this;
+		}
+		return new IntervalBed(dictionary, linear, ImmutableRangeSet.copyOf(intervals));
+	}
+	public boolean isFrozen() {
+		return frozenStart != null;
 	}
 	public static IntervalBed merge(SAMSequenceDictionary dictionary, LinearGenomicCoordinate linear, Iterable<IntervalBed> list) {
 		RangeSet<Long> blacklisted = TreeRangeSet.create();
@@ -86,10 +129,85 @@ public class IntervalBed {
 	 * @return
 	 */
 	public boolean overlaps(int referenceIndex, int start, int end) {
+		if (isFrozen()) {
+			long queryStart = linear.getLinearCoordinate(referenceIndex, start);
+			long queryEnd = linear.getLinearCoordinate(referenceIndex, end) + 1;
+			int i = firstEndAfter(frozenEnd, 0, frozenEnd.length, queryStart);
+			return i < frozenEnd.length && frozenStart[i] < queryEnd;
+		}
 		Range<Long> r = Range.closedOpen(linear.getLinearCoordinate(referenceIndex, start), linear.getLinearCoordinate(referenceIndex, end) + 1);
 		RangeSet<Long> hits = intervals.subRangeSet(r);
 		return !hits.isEmpty();
 	}
+	/**
+	 * Finds the first interval ending after the given position
+	 * @param end sorted interval end positions
+	 * @param offset first index to search
+	 * @param length number of elements to search
+	 * @param position position
+	 * @return index of the first element of end[offset, offset + length) greater than position, or offset + length if no such element exists
+	 */
+	private static int firstEndAfter(long[] end, int offset, int length, long position) {
+		if (length == 0) {
+			return offset;
+		}
+		int base = offset;
+		while (length > 1) {
+			int half = length >>> 1;
+			// no data-dependent branch: compiles to a conditional move
+			base = end[base + half] <= position ? base + half : base;
+			length -= half;
+		}
+		return base + (end[base] <= position ? 1 : 0);
+	}
+	/**
+	 * Creates a cursor for overlap queries of a coordinate sorted stream.
+	 * The cursor is a snapshot of the current intervals.
+	 * @return overlap cursor
+	 */
+	public Cursor cursor() {
+		return new Cursor(freeze());
+	}
+	/**
+	 * Overlap lookup for queries in coordinate order. Each query is answered in amortised
+	 * constant time when successive query start positions are non-decreasing. Out of order
+	 * queries are supported but fall back to binary search.
+	 * 
+	 * Cursors are not thread-safe.
+	 */
+	public static class Cursor {
+		private final LinearGenomicCoordinate linear;
+		private final long[] start;
+		private final long[] end;
+		private long lastQueryStart = Long.MIN_VALUE;
+		private int index = 0;
+		private Cursor(IntervalBed frozen) {
+			this.linear = frozen.linear;
+			this.start = frozen.frozenStart;
+			this.end = frozen.frozenEnd;
+		}
+		/**
+		 * Determines whether any of the intervals overlap the given interval
+		 */
+		public boolean overlaps(int referenceIndex, int start, int end) {
+			long queryStart = linear.getLinearCoordinate(referenceIndex, start);
+			long queryEnd = linear.getLinearCoordinate(referenceIndex, end) + 1;
+			if (queryStart < lastQueryStart) {
+				index = firstEndAfter(this.end, 0, this.end.length, queryStart);
+			} else {
+				int steps = 0;
+				while (index < this.end.length && this.end[index] <= queryStart) {
+					if (++steps > CURSOR_MAX_LINEAR_STEPS) {
+						index = firstEndAfter(this.end, index, this.end.length - index, queryStart);
+						break;
+					}
+					index++;
+				}
+			}
+			lastQueryStart = queryStart;
+			return index < this.end.length && this.start[index] < queryEnd;
+		}
+	}
 	/**
 	 * Removes the given set of intervals
 	 * @param toRemove intervals to remove
@@ -2,6 +2,8 @@ package au.edu.wehi.idsv.configuration;
 
 import org.apache.commons.configuration.Configuration;
 
+import au.edu.wehi.idsv.debruijn.Kmer128EncodingHelper;
+
 public class AssemblyConfiguration {
 	public static final String CONFIGURATION_PREFIX = "assembly";
 	public AssemblyConfiguration(Configuration config) {
@@ -19,12 +21,16 @@ public class AssemblyConfiguration {
 		removeMisassembledPartialContigsDuringAssembly = config.getBoolean("removeMisassembledPartialContigsDuringAssembly");
 		maxExpectedBreakendLengthMultiple = config.getFloat("maxExpectedBreakendLengthMultiple");
 		realignContigs = config.getBoolean("realignContigs");
+		if (k < 1 || k > Kmer128EncodingHelper.MAX_K) {
+			throw new IllegalArgumentException(String.format("k must be between 1 and %d", Kmer128EncodingHelper.MAX_K));
+		}
 	}
 	public ErrorCorrectionConfiguration errorCorrection;
 	public DownsamplingConfiguration downsampling;
 	public PositionalAssemblyConfiguration positional;
 	/**
-	 * De Bruijn graph kmer size
+	 * De Bruijn graph kmer size.
+	 * Kmers longer than 32 bases are encoded in two longs so k is limited to 64.
 	 */
 	public int k;
 	/**
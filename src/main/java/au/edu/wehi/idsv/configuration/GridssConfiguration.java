@@ -2,6 +2,9 @@ package au.edu.wehi.idsv.configuration;
 
 import java.io.File;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
 
 import org.apache.commons.configuration.CompositeConfiguration;
 import org.apache.commons.configuration.Configuration;
@@ -9,6 +12,8 @@ import org.apache.commons.configuration.ConfigurationException;
 import org.apache.commons.configuration.PropertiesConfiguration;
 
 import com.google.common.collect.Lists;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 
 import au.edu.wehi.idsv.AdapterHelper;
 import htsjdk.samtools.util.Log;
@@ -75,6 +80,17 @@ public class GridssConfiguration {
 	 * Use a hashed evidenceID to save space and prevent read names exceeding the 254 character limit imposed by BAM 
 	 */
 	public boolean hashEvidenceID;
+	/**
+	 * Reuse existing assembly and variant calling chunk outputs whenever the evidence
+	 * and configuration used to generate the chunk are unchanged.
+	 */
+	public boolean incremental;
+	/**
+	 * Fingerprint of all configuration settings affecting the output
+	 */
+	public String getFingerprint() {
+		return fingerprint;
+	}
 	public AssemblyConfiguration getAssembly() {
 		return assembly;
 	}
@@ -95,6 +111,7 @@ public class GridssConfiguration {
 	private final VisualisationConfiguration visualisation;
 	private final VariantCallingConfiguration variantCalling;
 	private final ScoringConfiguration scoring;
+	private final String fingerprint;
 	public GridssConfiguration() throws ConfigurationException {
 		this((File)null, new File("."));
 	}
@@ -118,6 +135,22 @@ public class GridssConfiguration {
 		chunkSequenceChangePenalty = config.getInt("chunkSequenceChangePenalty");
 		useReadGroupSampleNameCategoryLabel = config.getBoolean("useReadGroupSampleNameCategoryLabel");
 		hashEvidenceID = config.getBoolean("hashEvidenceID");
+		incremental = config.getBoolean("incremental");
+		fingerprint = calculateFingerprint(config);
+	}
+	private static String calculateFingerprint(Configuration config) {
+		Hasher hasher = Hashing.murmur3_128().newHasher();
+		List<String> keys = Lists.newArrayList(config.getKeys());
+		Collections.sort(keys);
+		for (String key : keys) {
+			// settings that do not change the output
+			if (key.startsWith(VisualisationConfiguration.CONFIGURATION_PREFIX + ".") || key.equals("incremental") || key.equals("terminateOnFirstError")) continue;
+			hasher.putString(key, StandardCharsets.UTF_8);
+			for (String value : config.getStringArray(key)) {
+				hasher.putString(value, StandardCharsets.UTF_8);
+			}
+		}
+		return hasher.hash().toString();
 	}
 	public static Configuration LoadConfiguration(File configuration) throws ConfigurationException {
 		CompositeConfiguration config = new CompositeConfiguration();
@@ -12,6 +12,10 @@ public class PositionalAssemblyConfiguration {
 		maximumNodeDensity = config.getFloat("maximumNodeDensity");
 		trimSelfIntersectingReads = config.getBoolean("trimSelfIntersectingReads");
 		forceFullMemoizationRecalculationAt = config.getFloat("forceFullMemoizationRecalculationAt");
+		componentParallelism = config.getInt("componentParallelism");
+		maxComponentEvidence = config.getInt("maxComponentEvidence");
+		regionCpuTimeBudgetInSeconds = config.getFloat("regionCpuTimeBudgetInSeconds");
+		maxLiveNodes = config.getInt("maxLiveNodes");
 		if (retainWidthMultiple < 1) {
 			throw new IllegalArgumentException("retainWidthMultiple must be at least 1");
 		}
@@ -21,6 +25,18 @@ public class PositionalAssemblyConfiguration {
 		if (maximumNodeDensity <= 0) {
 			throw new IllegalArgumentException("maximumNodeDensity must be positive");
 		}
+		if (componentParallelism < 1) {
+			throw new IllegalArgumentException("componentParallelism must be at least 1");
+		}
+		if (maxComponentEvidence < 1) {
+			throw new IllegalArgumentException("maxComponentEvidence must be positive");
+		}
+		if (regionCpuTimeBudgetInSeconds < 0) {
+			throw new IllegalArgumentException("regionCpuTimeBudgetInSeconds must be non-negative");
+		}
+		if (maxLiveNodes < 0) {
+			throw new IllegalArgumentException("maxLiveNodes must be non-negative");
+		}
 	}
 	/**
 	 * Maximum length of a single path node. Leaves longer that this length will not be collapsed.
@@ -55,8 +71,35 @@ public class PositionalAssemblyConfiguration {
 	 */
 	public boolean trimSelfIntersectingReads;
 	/**
-	 * Force full rememoization recalculation whenever more that this portion of the graph is to
-	 * be removed.
+	 * Lazily rememoize the entire region of the graph following the removed nodes
+	 * instead of individually unmemoizing descendant paths whenever more that
+	 * this portion of the graph is to be removed.
 	 */
 	public float forceFullMemoizationRecalculationAt;
-}
\ No newline at end of file
+	/**
+	 * Number of independent graph components of a single chromosome to assemble concurrently.
+	 * Position-disjoint components of the assembly graph share no edges and can be assembled
+	 * independently. 1 disables component parallelism.
+	 */
+	public int componentParallelism;
+	/**
+	 * Maximum number of evidence to buffer when identifying independent graph components.
+	 * The remainder of a chromosome with a component exceeding this size is assembled without
+	 * any further splitting into components.
+	 */
+	public int maxComponentEvidence;
+	/**
+	 * Maximum CPU time spent assembling any single region of the loaded graph.
+	 * Regions exceeding this budget are progressively degraded by downsampling
+	 * evidence, raising the path collapse threshold, then skipping the region.
+	 * Skipped regions are reported in the throttled regions BED file.
+	 * Zero disables the CPU time budget.
+	 */
+	public float regionCpuTimeBudgetInSeconds;
+	/**
+	 * Maximum number of positional de Bruijn graph nodes loaded at any one time.
+	 * Assembly of regions exceeding this number of nodes is degraded as per
+	 * regionCpuTimeBudgetInSeconds. Zero disables the live node budget.
+	 */
+	public int maxLiveNodes;
+}
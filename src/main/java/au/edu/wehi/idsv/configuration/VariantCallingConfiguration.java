@@ -31,6 +31,7 @@ public class VariantCallingConfiguration {
 		breakendHomologyAlignmentMargin = config.getInt("breakendHomologyAlignmentMargin");
 		requireAssemblyCategorySupport = config.getBoolean("requireAssemblyCategorySupport");
 		callBreakends = config.getBoolean("callBreakends");
+		parallelCliqueCalling = config.getBoolean("parallelCliqueCalling");
 //		switch (config.getString("format")) {
 //			case "vcf4.2":
 //				placeholderBreakend = false;
@@ -88,6 +89,16 @@ public class VariantCallingConfiguration {
 	 * Include unpaired breakends in variant calls
 	 */
 	public boolean callBreakends;
+	/**
+	 * Call the maximal cliques of each chromosome pair and breakpoint direction
+	 * of a chunk concurrently on the variant calling thread pool.
+	 * 
+	 * All breakpoint evidence of the chunk with the breakpoint direction being called
+	 * is loaded into memory, along with all maximal cliques of that direction. This
+	 * typically requires around a quarter of the memory of loading all breakpoint
+	 * evidence of the chunk.
+	 */
+	public boolean parallelCliqueCalling;
 	public BreakendSummary withMargin(BreakendSummary bp) {
 		if (bp == null) return null;
 		return bp.expandBounds(marginFor(bp));
@@ -1,6 +1,9 @@
 package au.edu.wehi.idsv.configuration;
 
 import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import org.apache.commons.configuration.Configuration;
 
@@ -18,8 +21,19 @@ public class VisualisationConfiguration {
 		evidenceAllocation = config.getBoolean("evidenceAllocation");
 		buffers = config.getBoolean("buffers");
 		bufferTrackingItervalInSeconds = config.getFloat("bufferTrackingItervalInSeconds");
+		metrics = config.getBoolean("metrics");
+		metricsIntervalInSeconds = config.getFloat("metricsIntervalInSeconds");
+		timeline = config.getBoolean("timeline");
+		assemblySnapshotRegions = Arrays.stream(config.getStringArray("assemblySnapshotRegions"))
+				.map(String::trim)
+				.filter(s -> !s.isEmpty())
+				.collect(Collectors.toList());
+		assemblySnapshotTimeBudgetInSeconds = config.getFloat("assemblySnapshotTimeBudgetInSeconds");
+		if (assemblySnapshotTimeBudgetInSeconds < 0) {
+			throw new IllegalArgumentException("assemblySnapshotTimeBudgetInSeconds must be non-negative");
+		}
 		
-		if (!directory.exists() && (timeouts || assemblyGraph || assemblyGraphFullSize || assemblyProgress || evidenceAllocation || buffers)) {
+		if (!directory.exists() && (timeouts || assemblyGraph || assemblyGraphFullSize || assemblyProgress || evidenceAllocation || buffers || metrics || timeline || isAssemblySnapshotEnabled())) {
 			directory.mkdir();
 		}
 	}
@@ -42,4 +56,28 @@ public class VisualisationConfiguration {
 	public boolean buffers;
 	public float bufferTrackingItervalInSeconds;
 	public boolean assemblyTelemetry;
+	/**
+	 * Expose pipeline stage throughput and chunk timings through JMX and
+	 * periodically write them in Prometheus text format
+	 */
+	public boolean metrics;
+	public float metricsIntervalInSeconds;
+	/**
+	 * Write a Chrome trace event timeline of chunk processing, sorting, gathering and alignment
+	 */
+	public boolean timeline;
+	/**
+	 * Write a snapshot of the assembly evidence of each assembly chunk overlapping
+	 * any of these regions. Regions are specified as contig, contig:start or contig:start-end
+	 */
+	public List<String> assemblySnapshotRegions;
+	/**
+	 * Write a snapshot of the assembly evidence of any assembly chunk that takes
+	 * longer than this to assemble. Snapshots are replayed using ReplayAssembly.
+	 * Zero disables time budgeted snapshots.
+	 */
+	public float assemblySnapshotTimeBudgetInSeconds;
+	public boolean isAssemblySnapshotEnabled() {
+		return !assemblySnapshotRegions.isEmpty() || assemblySnapshotTimeBudgetInSeconds > 0;
+	}
 }
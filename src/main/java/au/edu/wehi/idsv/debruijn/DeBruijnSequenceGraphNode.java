@@ -5,4 +5,9 @@ import au.edu.wehi.idsv.graph.WeightedSequenceGraphNode;
 
 public interface DeBruijnSequenceGraphNode extends WeightedSequenceGraphNode {
 	long kmer(int offset);
+	/**
+	 * High word of the Kmer128EncodingHelper encoding of the given kmer.
+	 * kmer(offset) is the low word. Always zero for k <= 32.
+	 */
+	default long kmerHigh(int offset) { return 0; }
 }
@@ -105,7 +105,7 @@ public class DeBruijnSequenceGraphNodeUtil {
 				} else {
 					// compare bases
 					if (isFirstKmer) {
-						diff = KmerEncodingHelper.basesDifference(k, currentA.kmer(offsetA), currentB.kmer(offsetB));
+						diff = Kmer128EncodingHelper.basesDifference(k, currentA.kmerHigh(offsetA), currentA.kmer(offsetA), currentB.kmerHigh(offsetB), currentB.kmer(offsetB));
 						isFirstKmer = false;
 					} else if (!KmerEncodingHelper.lastBaseMatches(k, currentA.kmer(offsetA), currentB.kmer(offsetB))) {
 						diff++;
@@ -115,7 +115,7 @@ public class DeBruijnSequenceGraphNodeUtil {
 				}
 			}
 		}
-		if (Defaults.SANITY_CHECK_ASSEMBLY_GRAPH) {
+		if (Defaults.SANITY_CHECK_ASSEMBLY_GRAPH && k <= KmerEncodingHelper.MAX_K) {
 			int streamDiff = basesDifferent(k,
 					StreamSupport.stream(pathA.spliterator(), false).flatMapToLong(n -> IntStream.range(0, n.length()).mapToLong(i -> n.kmer(i))).skip(initialSkipCountA),
 					StreamSupport.stream(pathB.spliterator(), false).flatMapToLong(n -> IntStream.range(0, n.length()).mapToLong(i -> n.kmer(i))).skip(initialSkipCountB),
@@ -0,0 +1,275 @@
+package au.edu.wehi.idsv.debruijn;
+
+import java.util.Arrays;
+import java.util.List;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+/**
+ * 2bit kmer encoding for kmers of up to 64 bases stored in a pair of longs.
+ *
+ * The kmer is encoded as a 128 bit integer using the same base encoding and
+ * base ordering as KmerEncodingHelper: the last base of the kmer is stored
+ * in the lowest 2 bits of the low word, and the first k - 32 bases (if any)
+ * are stored in the high word. For k <= 32, the high word is always zero and
+ * the low word is identical to the KmerEncodingHelper encoding.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class Kmer128EncodingHelper {
+	private Kmer128EncodingHelper() { }
+	/**
+	 * Maximum kmer size able to be encoded in a pair of longs
+	 */
+	public static final int MAX_K = 2 * KmerEncodingHelper.MAX_K;
+	private static final long HIGH_BITS = 0xAAAAAAAAAAAAAAAAL;
+	private static final int WORD_BASES = KmerEncodingHelper.MAX_K;
+	private static void assertValidK(int k) {
+		if (k < 1 || k > MAX_K) {
+			throw new IllegalArgumentException(String.format("k=%d outside of supported range 1-%d", k, MAX_K));
+		}
+	}
+	private static int lowBases(int k) {
+		return Math.min(k, WORD_BASES);
+	}
+	private static int highBases(int k) {
+		return Math.max(0, k - WORD_BASES);
+	}
+	private static long mask(int bases) {
+		if (bases >= WORD_BASES) return -1L;
+		return (1L << (2 * bases)) - 1;
+	}
+	/**
+	 * Bits of the low word used by a kmer of length k
+	 */
+	public static long lowMask(int k) {
+		return mask(lowBases(k));
+	}
+	/**
+	 * Bits of the high word used by a kmer of length k
+	 */
+	public static long highMask(int k) {
+		return mask(highBases(k));
+	}
+	private static long encode(byte[] bases, int offset, int length) {
+		long result = 0;
+		for (int i = 0; i < length; i++) {
+			result <<= 2;
+			result |= KmerEncodingHelper.picardBaseToEncoded(bases[offset + i]);
+		}
+		return result;
+	}
+	/**
+	 * Encodes the high word of the kmer starting at the given offset
+	 * @param k kmer size
+	 * @param bases read bases
+	 * @param offset offset of first kmer base
+	 * @return high word of 2bit encoded kmer
+	 */
+	public static long picardBaseToEncodedHigh(int k, byte[] bases, int offset) {
+		assertValidK(k);
+		if (offset + k > bases.length) throw new IllegalArgumentException("fewer bases than k");
+		return encode(bases, offset, highBases(k));
+	}
+	/**
+	 * Encodes the low word of the kmer starting at the given offset
+	 * @param k kmer size
+	 * @param bases read bases
+	 * @param offset offset of first kmer base
+	 * @return low word of 2bit encoded kmer
+	 */
+	public static long picardBaseToEncodedLow(int k, byte[] bases, int offset) {
+		assertValidK(k);
+		if (offset + k > bases.length) throw new IllegalArgumentException("fewer bases than k");
+		return encode(bases, offset + highBases(k), lowBases(k));
+	}
+	/**
+	 * High word of the kmer following the given kmer
+	 * @param k kmer size
+	 * @param high high word of kmer
+	 * @param low low word of kmer
+	 * @return high word of next kmer
+	 */
+	public static long nextStateHigh(int k, long high, long low) {
+		return ((high << 2) | (low >>> (Long.SIZE - 2))) & highMask(k);
+	}
+	/**
+	 * Low word of the kmer following the given kmer
+	 * @param k kmer size
+	 * @param low low word of kmer
+	 * @param picardBase base appended to the kmer
+	 * @return low word of next kmer
+	 */
+	public static long nextStateLow(int k, long low, byte picardBase) {
+		return ((low << 2) | KmerEncodingHelper.picardBaseToEncoded(picardBase)) & lowMask(k);
+	}
+	public static boolean isNext(int k, long high, long low, long nextHigh, long nextLow) {
+		return nextStateHigh(k, high, low) == nextHigh
+				&& ((low << 2) & lowMask(k)) == (nextLow & ~3L);
+	}
+	private static long[] reverseComplement(int k, long high, long low) {
+		// complement
+		high ^= HIGH_BITS & highMask(k);
+		low ^= HIGH_BITS & lowMask(k);
+		// reversing the 128 bit word swaps and reverses both words
+		long rhigh = KmerEncodingHelper.reverse(WORD_BASES, low);
+		long rlow = KmerEncodingHelper.reverse(WORD_BASES, high);
+		// then shift so the bits we're using are the lowest 2k bits
+		int shift = 2 * (MAX_K - k);
+		if (shift >= Long.SIZE) {
+			rlow = rhigh >>> (shift - Long.SIZE);
+			rhigh = 0;
+		} else if (shift > 0) {
+			rlow = (rlow >>> shift) | (rhigh << (Long.SIZE - shift));
+			rhigh >>>= shift;
+		}
+		return new long[] { rhigh, rlow };
+	}
+	public static long reverseComplementHigh(int k, long high, long low) {
+		return reverseComplement(k, high, low)[0];
+	}
+	public static long reverseComplementLow(int k, long high, long low) {
+		return reverseComplement(k, high, low)[1];
+	}
+	/**
+	 * Converts a 2bit encoded kmer into picard bases
+	 * @param k kmer size
+	 * @param high high word of kmer
+	 * @param low low word of kmer
+	 * @return kmer bases
+	 */
+	public static byte[] encodedToPicardBases(int k, long high, long low) {
+		assertValidK(k);
+		byte[] result = new byte[k];
+		int lowBases = lowBases(k);
+		for (int i = 0; i < lowBases; i++) {
+			result[k - i - 1] = KmerEncodingHelper.lastBaseEncodedToPicardBase(low);
+			low >>>= 2;
+		}
+		for (int i = lowBases; i < k; i++) {
+			result[k - i - 1] = KmerEncodingHelper.lastBaseEncodedToPicardBase(high);
+			high >>>= 2;
+		}
+		return result;
+	}
+	public static String toString(int k, long high, long low) {
+		return new String(encodedToPicardBases(k, high, low));
+	}
+	/**
+	 * Returns the number of bases difference between the two kmers
+	 * @return number of mismatching bases
+	 */
+	public static int basesDifference(int k, long high1, long low1, long high2, long low2) {
+		int diff = KmerEncodingHelper.basesDifference(lowBases(k), low1, low2);
+		if (k > WORD_BASES) {
+			diff += KmerEncodingHelper.basesDifference(highBases(k), high1, high2);
+		}
+		return diff;
+	}
+	public static boolean firstBaseMatches(int k, long high1, long low1, long high2, long low2) {
+		if (k > WORD_BASES) {
+			int shift = 2 * (highBases(k) - 1);
+			return high1 >>> shift == high2 >>> shift;
+		}
+		return KmerEncodingHelper.firstBaseMatches(k, low1, low2);
+	}
+	/**
+	 * Converts the kmer to the best string with unknown k.
+	 * @return base sequence missing leading Ts.
+	 */
+	public static String toApproximateString(long high, long low) {
+		if (high == 0) return KmerEncodingHelper.toApproximateString(low);
+		return KmerEncodingHelper.toApproximateString(high) + KmerEncodingHelper.toString(WORD_BASES, low);
+	}
+	/**
+	 * Base calls of contig
+	 * @param k kmer size
+	 * @param firstKmerHigh high word of the first kmer
+	 * @param path low words of the contig kmers
+	 * @return base calls of a positive strand SAMRecord readout of contig
+	 */
+	public static byte[] baseCalls(int k, long firstKmerHigh, List<Long> path) {
+		byte[] bases = encodedToPicardBases(k, firstKmerHigh, path.get(0));
+		bases = Arrays.copyOf(bases, path.size() + k - 1);
+		for (int i = 1; i < path.size(); i++) {
+			bases[k - 1 + i] = KmerEncodingHelper.lastBaseEncodedToPicardBase(path.get(i));
+		}
+		return bases;
+	}
+	/**
+	 * Sums base counts for the given sequence
+	 * @param k kmer size
+	 * @param firstKmerHigh high word of the first kmer
+	 * @param path low words of the sequence kmers
+	 * @return base counts
+	 */
+	public static int[] baseCounts(int k, long firstKmerHigh, LongArrayList path) {
+		int[] counts = new int[4];
+		long startKmer = path.getLong(0);
+		for (int i = 0; i < lowBases(k); i++) {
+			counts[(int)startKmer & 3]++;
+			startKmer >>>= 2;
+		}
+		for (int i = 0; i < highBases(k); i++) {
+			counts[(int)firstKmerHigh & 3]++;
+			firstKmerHigh >>>= 2;
+		}
+		for (int i = 1; i < path.size(); i++) {
+			counts[(int)path.getLong(i) & 3]++;
+		}
+		return counts;
+	}
+	private static long high(LongArrayList high, int offset) {
+		return high == null ? 0 : high.getLong(offset);
+	}
+	/**
+	 * Calculates the additional bases difference by incorporating the given
+	 * kmers to a larger sequence anchored at the start or the end of the reference
+	 * sequence.
+	 * 
+	 * @see KmerEncodingHelper#partialSequenceBasesDifferent(int, LongArrayList, LongArrayList, int, boolean)
+	 * @param refHigh high words of the reference sequence kmers. null if all zero
+	 * @param ref low words of the reference sequence kmers
+	 * @param kmersHigh high words of the kmers to compare. null if all zero
+	 * @param kmers low words of the kmers to compare
+	 * @return number of bases different
+	 */
+	public static int partialSequenceBasesDifferent(int k, LongArrayList refHigh, LongArrayList ref, LongArrayList kmersHigh, LongArrayList kmers, int offset, boolean startAnchored) {
+		int basesDiff = 0;
+		if (startAnchored) {
+			if (offset == 0) {
+				// anchored at end
+				basesDiff = basesDifference(k, high(refHigh, 0), ref.getLong(0), high(kmersHigh, 0), kmers.getLong(0));
+			}
+			int loopEnd = Math.min(kmers.size(), ref.size() - offset);
+			for (int i = offset == 0 ? 1 : 0; i < loopEnd; i++) {
+				if (!KmerEncodingHelper.lastBaseMatches(k, ref.getLong(offset + i),  kmers.getLong(i))) {
+					basesDiff++;
+				}
+			}
+		} else {
+			int loopEnd = kmers.size();
+			if (offset + kmers.size() == ref.size()) {
+				// anchored at end
+				basesDiff = basesDifference(k, high(refHigh, ref.size() - 1), ref.getLong(ref.size() - 1), high(kmersHigh, kmers.size() - 1), kmers.getLong(kmers.size() - 1));
+				loopEnd--;
+			}
+			for (int i = Math.max(0, -offset); i < loopEnd; i++) {
+				if (!firstBaseMatches(k, high(refHigh, offset + i), ref.getLong(offset + i), high(kmersHigh, i), kmers.getLong(i))) {
+					basesDiff++;
+				}
+			}
+		}
+		return basesDiff;
+	}
+	/**
+	 * Hashes the given kmer
+	 */
+	public static int hash(long high, long low) {
+		long h = low * 0x9E3779B97F4A7C15L + high;
+		h ^= h >>> 32;
+		h *= 0xC2B2AE3D27D4EB4FL;
+		return (int)(h ^ (h >>> 29));
+	}
+}
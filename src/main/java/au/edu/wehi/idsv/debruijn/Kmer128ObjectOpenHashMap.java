@@ -0,0 +1,159 @@
+package au.edu.wehi.idsv.debruijn;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Open addressing hash map keyed by a 128 bit kmer encoded by Kmer128EncodingHelper.
+ *
+ * Keys are stored in parallel primitive arrays to avoid allocating a key object
+ * per kmer. Null values are not permitted.
+ *
+ * @author Daniel Cameron
+ *
+ * @param <V> value type
+ */
+public class Kmer128ObjectOpenHashMap<V> {
+	private static final float LOAD_FACTOR = 0.75f;
+	private long[] high;
+	private long[] low;
+	private Object[] value;
+	private int mask;
+	private int size = 0;
+	private int maxFill;
+	public Kmer128ObjectOpenHashMap() {
+		this(16);
+	}
+	public Kmer128ObjectOpenHashMap(int expected) {
+		allocate(Math.max(16, Integer.highestOneBit((int)Math.ceil(Math.max(1, expected) / LOAD_FACTOR)) << 1));
+	}
+	private void allocate(int capacity) {
+		high = new long[capacity];
+		low = new long[capacity];
+		value = new Object[capacity];
+		mask = capacity - 1;
+		maxFill = (int)(capacity * LOAD_FACTOR);
+	}
+	private int slot(long h, long l) {
+		int pos = Kmer128EncodingHelper.hash(h, l) & mask;
+		while (value[pos] != null && (high[pos] != h || low[pos] != l)) {
+			pos = (pos + 1) & mask;
+		}
+		return pos;
+	}
+	public int size() {
+		return size;
+	}
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	public boolean containsKey(long h, long l) {
+		return value[slot(h, l)] != null;
+	}
+	@SuppressWarnings("unchecked")
+	public V get(long h, long l) {
+		return (V)value[slot(h, l)];
+	}
+	/**
+	 * Associates the given value with the given kmer
+	 * @return previous value associated with the kmer, null if no such value
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long h, long l, V v) {
+		if (v == null) throw new NullPointerException("null values not supported");
+		int pos = slot(h, l);
+		V existing = (V)value[pos];
+		if (existing == null) {
+			high[pos] = h;
+			low[pos] = l;
+			size++;
+		}
+		value[pos] = v;
+		if (size > maxFill) {
+			rehash();
+		}
+		return existing;
+	}
+	/**
+	 * Removes the given kmer
+	 * @return value associated with the kmer, null if no such value
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long h, long l) {
+		int pos = slot(h, l);
+		V existing = (V)value[pos];
+		if (existing == null) return null;
+		size--;
+		// backward shift deletion so lookups do not require tombstones
+		int last = pos;
+		pos = (pos + 1) & mask;
+		while (value[pos] != null) {
+			int ideal = Kmer128EncodingHelper.hash(high[pos], low[pos]) & mask;
+			// move entry into the hole if the hole lies cyclically between its ideal slot and its current slot
+			if (((pos - ideal) & mask) >= ((pos - last) & mask)) {
+				high[last] = high[pos];
+				low[last] = low[pos];
+				value[last] = value[pos];
+				last = pos;
+			}
+			pos = (pos + 1) & mask;
+		}
+		value[last] = null;
+		return existing;
+	}
+	/**
+	 * Read-only view of the values in the map.
+	 * The map must not be modified while the view is being iterated.
+	 */
+	public Collection<V> values() {
+		return new AbstractCollection<V>() {
+			@Override
+			public Iterator<V> iterator() {
+				return new Iterator<V>() {
+					private int pos = advance(0);
+					private int advance(int from) {
+						while (from < value.length && value[from] == null) from++;
+						return from;
+					}
+					@Override
+					public boolean hasNext() {
+						return pos < value.length;
+					}
+					@SuppressWarnings("unchecked")
+					@Override
+					public V next() {
+						if (!hasNext()) throw new NoSuchElementException();
+						V v = (V)value[pos];
+						pos = advance(pos + 1);
+						return v;
+					}
+				};
+			}
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+	public void clear() {
+		Arrays.fill(value, null);
+		size = 0;
+	}
+	private void rehash() {
+		long[] oldHigh = high;
+		long[] oldLow = low;
+		Object[] oldValue = value;
+		allocate(oldValue.length * 2);
+		for (int i = 0; i < oldValue.length; i++) {
+			if (oldValue[i] != null) {
+				int pos = slot(oldHigh[i], oldLow[i]);
+				high[pos] = oldHigh[i];
+				low[pos] = oldLow[i];
+				value[pos] = oldValue[i];
+			}
+		}
+	}
+}
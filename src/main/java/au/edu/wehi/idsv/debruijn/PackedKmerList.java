@@ -34,9 +34,26 @@ public class PackedKmerList extends PackedSequence {
 		}
 		return weights;
 	}
+	/**
+	 * Kmer starting at the given offset. For k > 32, this is the low word of
+	 * the Kmer128EncodingHelper encoding containing the final 32 kmer bases.
+	 */
 	public long kmer(int offset) {
+		if (k > KmerEncodingHelper.MAX_K) {
+			return getKmer(offset + k - KmerEncodingHelper.MAX_K, KmerEncodingHelper.MAX_K);
+		}
 		return getKmer(offset, k); 
 	}
+	/**
+	 * High word of the Kmer128EncodingHelper encoding of the kmer starting at
+	 * the given offset. Always zero for k <= 32.
+	 */
+	public long kmerHigh(int offset) {
+		if (k > KmerEncodingHelper.MAX_K) {
+			return getKmer(offset, k - KmerEncodingHelper.MAX_K);
+		}
+		return 0;
+	}
 	public int weight(int offset) {
 		return weights[offset];
 	}
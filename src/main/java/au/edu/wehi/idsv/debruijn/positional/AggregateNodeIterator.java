@@ -3,15 +3,15 @@ package au.edu.wehi.idsv.debruijn.positional;
 import java.util.Iterator;
 import java.util.PriorityQueue;
 
+import com.google.common.collect.ComparisonChain;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Ordering;
 import com.google.common.collect.PeekingIterator;
 import com.google.common.primitives.Ints;
-import com.google.common.primitives.Longs;
 
 import au.edu.wehi.idsv.Defaults;
+import au.edu.wehi.idsv.debruijn.Kmer128ObjectOpenHashMap;
 import au.edu.wehi.idsv.debruijn.positional.AggregateNodeIterator.KmerNodeAggregator.KmerNodeAggregatorSnapshot;
-import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 
 /**
  * Transforms a start position sorted sequence of KmerNodes to a
@@ -22,7 +22,7 @@ import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 public class AggregateNodeIterator implements PeekingIterator<KmerNode> {
 	private final PeekingIterator<? extends KmerNode> underlying;
 	private PriorityQueue<ImmutableKmerNode> outputSortBuffer = new PriorityQueue<ImmutableKmerNode>(1024, KmerNodeUtil.ByFirstStart);
-	private Long2ObjectOpenHashMap<KmerNodeAggregator> byKmer = new Long2ObjectOpenHashMap<KmerNodeAggregator>();
+	private Kmer128ObjectOpenHashMap<KmerNodeAggregator> byKmer = new Kmer128ObjectOpenHashMap<KmerNodeAggregator>();
 	private PriorityQueue<KmerNodeAggregatorSnapshot> byEnd = new PriorityQueue<KmerNodeAggregatorSnapshot>(1024, BySnapshotEnd);
 	private int maxWidth = 0;
 	private int inputPosition = Integer.MIN_VALUE;
@@ -70,11 +70,12 @@ public class AggregateNodeIterator implements PeekingIterator<KmerNode> {
 			KmerNode n = underlying.next();
 			consumed++;
 			assert(n.firstStart() == inputPosition || inputPosition == Integer.MAX_VALUE); // input should be sorted by start position
+			long kmerHigh = n.firstKmerHigh();
 			long kmer = n.firstKmer();
-			KmerNodeAggregator ag = byKmer.get(kmer);
+			KmerNodeAggregator ag = byKmer.get(kmerHigh, kmer);
 			if (ag == null) {
-				ag = new KmerNodeAggregator(kmer);
-				byKmer.put(kmer, ag);
+				ag = new KmerNodeAggregator(kmerHigh, kmer);
+				byKmer.put(kmerHigh, kmer, ag);
 			}
 			ag.add(n);
 			byEnd.add(ag.new KmerNodeAggregatorSnapshot());
@@ -91,7 +92,7 @@ public class AggregateNodeIterator implements PeekingIterator<KmerNode> {
 			KmerNodeAggregator ag = snapshot.aggregator();
 			ag.advanceTo(inputPosition - 1);
 			if (ag.isEmpty()) {
-				byKmer.remove(ag.kmer);
+				byKmer.remove(ag.kmerHigh, ag.kmer);
 			} else {
 				KmerNodeAggregatorSnapshot newSnapshot = ag.new KmerNodeAggregatorSnapshot();
 				assert(newSnapshot.snapshotEnd >= inputPosition);
@@ -127,7 +128,8 @@ public class AggregateNodeIterator implements PeekingIterator<KmerNode> {
 			// what's the correct syntax for doing this from outside the class?
 			public KmerNodeAggregator aggregator() { return KmerNodeAggregator.this; }
 		}
-		public KmerNodeAggregator(long kmer) {
+		public KmerNodeAggregator(long kmerHigh, long kmer) {
+			this.kmerHigh = kmerHigh;
 			this.kmer = kmer;
 		}
 		public boolean isEmpty() { return active.isEmpty(); }
@@ -152,18 +154,19 @@ public class AggregateNodeIterator implements PeekingIterator<KmerNode> {
 		 * @param node next node
 		 * @param emitTo collection to emit aggregate records to
 		 */
+		private final long kmerHigh;
 		private final long kmer;
 		public int end() {
 			if (active.isEmpty()) return Integer.MAX_VALUE;
 			return active.peek().firstEnd();
 		}
 		public void add(KmerNode node) {
-			assert(node.firstKmer() == kmer);
+			assert(node.firstKmer() == kmer && node.firstKmerHigh() == kmerHigh);
 			assert(node.firstStart() >= start);
 			maxWidth = Math.max(maxWidth, node.width());
 			advanceTo(node.firstStart() - 1);
 			if (weight > 0 && start < node.firstStart()) {
-				outputSortBuffer.add(new ImmutableKmerNode(kmer, start, node.firstStart() - 1, referenceCount > 0, weight));
+				outputSortBuffer.add(new ImmutableKmerNode(kmerHigh, kmer, start, node.firstStart() - 1, referenceCount > 0, weight));
 			}
 			start = node.firstStart();
 			if (node.isReference()) {
@@ -180,10 +183,10 @@ public class AggregateNodeIterator implements PeekingIterator<KmerNode> {
 		public void advanceTo(int position) {
 			while (!active.isEmpty() && active.peek().firstEnd() <= position) {
 				int end = active.peek().firstEnd();
-				outputSortBuffer.add(new ImmutableKmerNode(kmer, start, end, referenceCount > 0, weight));
+				outputSortBuffer.add(new ImmutableKmerNode(kmerHigh, kmer, start, end, referenceCount > 0, weight));
 				while (!active.isEmpty() && active.peek().firstEnd() == end) {
 					KmerNode endingHere = active.poll();
-					assert(endingHere.firstKmer() == kmer);
+					assert(endingHere.firstKmer() == kmer && endingHere.firstKmerHigh() == kmerHigh);
 					weight -= endingHere.weight();
 					if (endingHere.isReference()) {
 						referenceCount--;
@@ -194,7 +197,10 @@ public class AggregateNodeIterator implements PeekingIterator<KmerNode> {
 		}
 		@Override
 		public int compareTo(KmerNodeAggregator right) {
-			return Longs.compare(kmer, right.kmer);
+			return ComparisonChain.start()
+					.compare(kmerHigh, right.kmerHigh)
+					.compare(kmer, right.kmer)
+					.result();
 		}
 	}
 	@Override
@@ -203,12 +209,12 @@ public class AggregateNodeIterator implements PeekingIterator<KmerNode> {
 	}
 	private boolean sanityCheck() {
 		// kmer lookup is correct
-		assert(byKmer.long2ObjectEntrySet().stream().allMatch(kvp -> kvp.getLongKey() == kvp.getValue().kmer));
+		assert(byKmer.values().stream().allMatch(ag -> byKmer.get(ag.kmerHigh, ag.kmer) == ag));
 		// empty aggregators have been removed
 		assert(byKmer.values().stream().allMatch(ag -> !ag.active.isEmpty()));
 		// could have many start position entries, but only one position is valid (and even that could have duplicate entries)
 		assert(byEnd.size() >= byKmer.size());
-		assert(byEnd.stream().allMatch(snapshot -> !snapshot.isValid() || byKmer.containsKey(snapshot.aggregator().kmer)));
+		assert(byEnd.stream().allMatch(snapshot -> !snapshot.isValid() || byKmer.containsKey(snapshot.aggregator().kmerHigh, snapshot.aggregator().kmer)));
 		assert(byKmer.values().stream().allMatch(ag -> ag.end() >= inputPosition));
 		if (outputSortBuffer.isEmpty()) {
 			assert(byKmer.isEmpty());
@@ -0,0 +1,166 @@
+package au.edu.wehi.idsv.debruijn.positional;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.function.Predicate;
+
+import au.edu.wehi.idsv.DirectedEvidence;
+
+/**
+ * Per-region CPU time and live node budget for positional assembly.
+ *
+ * Each time the budget of the region currently being assembled is exceeded,
+ * assembly of that region is further degraded: first by downsampling incoming
+ * evidence, then by raising the path collapse threshold, and finally by skipping
+ * the region entirely. Normal assembly resumes once assembly has moved past the region.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class AssemblyBudget implements Predicate<DirectedEvidence> {
+	private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+	/**
+	 * Portion of evidence retained when downsampling
+	 */
+	private static final int DOWNSAMPLE_RETAIN_PER_65536 = 65536 / 4;
+	public enum Degradation {
+		NONE,
+		DOWNSAMPLE,
+		RAISE_COLLAPSE_THRESHOLD,
+		SKIP,
+	}
+	private final long cpuBudgetNanos;
+	private final int maxLiveNodes;
+	private final boolean cpuTimeSupported;
+	private CollapseIterator collapseIt = null;
+	private int baseMaxBasesMismatch;
+	private int regionWidth = Integer.MAX_VALUE;
+	private Degradation level = Degradation.NONE;
+	private int regionStart = Integer.MIN_VALUE;
+	private long regionCpuNanos = 0;
+	private long lastCpuNanos = -1;
+	private int liveNodesAtEscalation = 0;
+	private long regionsDegraded = 0;
+	private long regionsSkipped = 0;
+	/**
+	 * @param cpuBudgetNanos maximum CPU time spent on a single region. Zero for no limit.
+	 * @param maxLiveNodes maximum number of graph nodes loaded at any one time. Zero for no limit.
+	 */
+	public AssemblyBudget(long cpuBudgetNanos, int maxLiveNodes) {
+		this.cpuBudgetNanos = cpuBudgetNanos;
+		this.maxLiveNodes = maxLiveNodes;
+		this.cpuTimeSupported = threads.isCurrentThreadCpuTimeSupported();
+	}
+	/**
+	 * Sets the collapse iterator whose threshold is to be raised when degrading assembly
+	 */
+	public void setCollapseIterator(CollapseIterator collapseIt) {
+		this.collapseIt = collapseIt;
+		if (collapseIt != null) {
+			this.baseMaxBasesMismatch = collapseIt.getMaxBasesMismatch();
+		}
+	}
+	/**
+	 * Sets the width of each region. Budgets are reset whenever the start of the
+	 * loaded graph advances by this many bases.
+	 */
+	public void setRegionWidth(int regionWidth) {
+		this.regionWidth = Math.max(1, regionWidth);
+	}
+	public boolean isEnabled() {
+		return cpuBudgetNanos > 0 || maxLiveNodes > 0;
+	}
+	private long now() {
+		return cpuTimeSupported ? threads.getCurrentThreadCpuTime() : System.nanoTime();
+	}
+	/**
+	 * Starts accounting CPU time used by the current thread to the current region
+	 */
+	public void resume() {
+		lastCpuNanos = now();
+	}
+	/**
+	 * Stops accounting CPU time to the current region
+	 */
+	public void pause() {
+		accumulate();
+		lastCpuNanos = -1;
+	}
+	private void accumulate() {
+		if (lastCpuNanos >= 0) {
+			long current = now();
+			regionCpuNanos += current - lastCpuNanos;
+			lastCpuNanos = current;
+		}
+	}
+	/**
+	 * Updates the budget usage.
+	 * @param regionPosition start position of the loaded graph
+	 * @param liveNodes number of graph nodes currently loaded
+	 * @return current assembly degradation level
+	 */
+	public Degradation update(int regionPosition, int liveNodes) {
+		accumulate();
+		if (regionStart == Integer.MIN_VALUE || regionPosition >= regionStart + regionWidth) {
+			reset(regionPosition);
+		}
+		boolean overCpu = cpuBudgetNanos > 0 && regionCpuNanos > cpuBudgetNanos;
+		boolean overNodes = maxLiveNodes > 0 && liveNodes > maxLiveNodes && liveNodes >= liveNodesAtEscalation;
+		if ((overCpu || overNodes) && level != Degradation.SKIP) {
+			escalate(liveNodes);
+		}
+		return level;
+	}
+	private void escalate(int liveNodes) {
+		if (level == Degradation.NONE) {
+			regionsDegraded++;
+		}
+		level = Degradation.values()[level.ordinal() + 1];
+		if (level == Degradation.RAISE_COLLAPSE_THRESHOLD) {
+			if (collapseIt == null) {
+				level = Degradation.SKIP;
+			} else {
+				collapseIt.setMaxBasesMismatch(Math.max(baseMaxBasesMismatch + 1, 2 * baseMaxBasesMismatch));
+			}
+		}
+		if (level == Degradation.SKIP) {
+			regionsSkipped++;
+		}
+		regionCpuNanos = 0;
+		liveNodesAtEscalation = liveNodes;
+	}
+	/**
+	 * Starts a new region with a full budget
+	 * @param regionPosition start position of the new region
+	 */
+	public void reset(int regionPosition) {
+		regionStart = regionPosition;
+		regionCpuNanos = 0;
+		liveNodesAtEscalation = 0;
+		level = Degradation.NONE;
+		if (collapseIt != null) {
+			collapseIt.setMaxBasesMismatch(baseMaxBasesMismatch);
+		}
+	}
+	public int getRegionStart() {
+		return regionStart;
+	}
+	public Degradation getDegradation() {
+		return level;
+	}
+	/**
+	 * Determines whether the given evidence should be included in the assembly
+	 */
+	@Override
+	public boolean test(DirectedEvidence e) {
+		if (level == Degradation.NONE) return true;
+		// deterministic so replays produce identical results
+		return (e.getEvidenceID().hashCode() & 0xFFFF) < DOWNSAMPLE_RETAIN_PER_65536;
+	}
+	public long tracking_regionsDegraded() {
+		return regionsDegraded;
+	}
+	public long tracking_regionsSkipped() {
+		return regionsSkipped;
+	}
+}
@@ -35,7 +35,7 @@ public abstract class CollapseIterator implements PeekingIterator<KmerPathNode>
 	private final PeekingIterator<KmerPathNode> underlying;
 	protected final int k;
 	private final int maxCollapseLength;
-	protected final int maxBasesMismatch;
+	protected int maxBasesMismatch;
 	private final NavigableSet<KmerPathNode> processed = new TreeSet<KmerPathNode>(KmerNodeUtil.ByFirstStartEndKmerReference);
 	private final NavigableSet<KmerPathNode> unprocessed = new TreeSet<KmerPathNode>(KmerNodeUtil.ByLastEndStartKmerReference);
 	private final int processOffset;
@@ -84,6 +84,17 @@ public abstract class CollapseIterator implements PeekingIterator<KmerPathNode>
 		this.maxCollapseLength = maxPathCollapseLength;
 		this.processOffset = maxPathCollapseLength + 1 + preCollapseBufferSize;
 	}
+	public int getMaxBasesMismatch() {
+		return maxBasesMismatch;
+	}
+	/**
+	 * Changes the maximum number of mismatching bases allowed when collapsing paths.
+	 * The new threshold applies only to subsequent collapse operations.
+	 * @param maxBasesMismatch maximum number of bases mismatch
+	 */
+	public void setMaxBasesMismatch(int maxBasesMismatch) {
+		this.maxBasesMismatch = maxBasesMismatch;
+	}
 	@Override
 	public boolean hasNext() {
 		ensureBuffer();
@@ -8,9 +8,9 @@ import java.util.LinkedList;
 import java.util.ListIterator;
 import java.util.Set;
 
+import au.edu.wehi.idsv.debruijn.Kmer128ObjectOpenHashMap;
 import au.edu.wehi.idsv.util.IntervalUtil;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
-import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
 import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
 
@@ -23,7 +23,7 @@ import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
  */
 public class EvidenceTracker {
 	//public static EvidenceTracker TEMP_HACK_CURRENT_TRACKER = null;
-	private final Long2ObjectOpenHashMap<LinkedList<KmerSupportNode>> lookup = new Long2ObjectOpenHashMap<LinkedList<KmerSupportNode>>();
+	private final Kmer128ObjectOpenHashMap<LinkedList<KmerSupportNode>> lookup = new Kmer128ObjectOpenHashMap<LinkedList<KmerSupportNode>>();
 	private final ObjectOpenHashSet<String> id = new ObjectOpenHashSet<String>();
 	private long evidenceTotal = 0;
 	/**
@@ -37,11 +37,12 @@ public class EvidenceTracker {
 	 * @param evidence
 	 */
 	public KmerSupportNode track(KmerSupportNode support) {
+		long kmerHigh = support.lastKmerHigh();
 		long kmer = support.lastKmer();
-		LinkedList<KmerSupportNode> list = lookup.get(kmer);
+		LinkedList<KmerSupportNode> list = lookup.get(kmerHigh, kmer);
 		if (list == null) {
 			list = new LinkedList<KmerSupportNode>();
-			lookup.put(kmer, list);
+			lookup.put(kmerHigh, kmer, list);
 		}
 		list.add(support);
 		if (id.add(support.evidence().evidence().getEvidenceID())) {
@@ -55,8 +56,7 @@ public class EvidenceTracker {
 	 */
 	public void remove(KmerEvidence evidence) {
 		for (int i = 0; i < evidence.length(); i++) {
-			long kmer = evidence.kmer(i);
-			remove(kmer, evidence);
+			remove(evidence.kmerHigh(i), evidence.kmer(i), evidence);
 		}
 		id.remove(evidence.evidence().getEvidenceID());
 	}
@@ -64,8 +64,8 @@ public class EvidenceTracker {
 	 * Stops tracking all nodes associated with the given evidence 
 	 * @param evidence
 	 */
-	private void remove(long kmer, KmerEvidence evidence) {
-		LinkedList<KmerSupportNode> list = lookup.get(kmer);
+	private void remove(long kmerHigh, long kmer, KmerEvidence evidence) {
+		LinkedList<KmerSupportNode> list = lookup.get(kmerHigh, kmer);
 		if (list != null) {
 			ListIterator<KmerSupportNode> it = list.listIterator();
 			while (it.hasNext()) {
@@ -75,7 +75,7 @@ public class EvidenceTracker {
 				}
 			}
 			if (list.size() == 0) {
-				lookup.remove(kmer);
+				lookup.remove(kmerHigh, kmer);
 			}
 		}
 	}
@@ -101,13 +101,13 @@ public class EvidenceTracker {
 			int start = sn.firstStart();
 			int end = sn.firstEnd();
 			for (int i = 0; i < sn.length(); i++) {
-				toCollection(evidence, sn.kmer(i), start + i, end + i, remove);
+				toCollection(evidence, sn.kmerHigh(i), sn.kmer(i), start + i, end + i, remove);
 			}
 			LongArrayList collapsed = sn.node().collapsedKmers();
 			IntArrayList collapsedOffset = sn.node().collapsedKmerOffsets();
 			for (int i = 0; i < collapsed.size(); i++) {
 				int offset = collapsedOffset.getInt(i);
-				toCollection(evidence, collapsed.getLong(i), start + offset, end + offset, remove);
+				toCollection(evidence, sn.node().collapsedKmerHigh(i), collapsed.getLong(i), start + offset, end + offset, remove);
 			}
 		}
 		if (remove) {
@@ -122,12 +122,13 @@ public class EvidenceTracker {
 	 * Stops tracking all evidence overlapping the given kmer interval and adds to the given collection
 	 * 
 	 * @param collection
+	 * @param kmerHigh
 	 * @param kmer
 	 * @param start
 	 * @param end
 	 */
-	private void toCollection(Collection<KmerEvidence> collection, long kmer, int start, int end, boolean remove) {
-		LinkedList<KmerSupportNode> list = lookup.get(kmer);
+	private void toCollection(Collection<KmerEvidence> collection, long kmerHigh, long kmer, int start, int end, boolean remove) {
+		LinkedList<KmerSupportNode> list = lookup.get(kmerHigh, kmer);
 		if (list != null) {
 			ListIterator<KmerSupportNode> it = list.listIterator();
 			while (it.hasNext()) {
@@ -143,23 +144,26 @@ public class EvidenceTracker {
 	}
 	public boolean matchesExpected(KmerPathSubnode pn) {
 		for (int i = 0; i < pn.length(); i++) {
+			LongArrayList kmersHigh = new LongArrayList();
 			LongArrayList kmers = new LongArrayList();
+			kmersHigh.add(pn.kmerHigh(i));
 			kmers.add(pn.kmer(i));
 			for (int j = 0; j < pn.node().collapsedKmerOffsets().size(); j++) {
 				if (pn.node().collapsedKmerOffsets().getInt(j) == i) {
+					kmersHigh.add(pn.node().collapsedKmerHigh(j));
 					kmers.add(pn.node().collapsedKmers().getLong(j));
 				}
 			}
-			if (!matchesExpected(pn.weight(i) * pn.width(), kmers, pn.firstStart() + i, pn.firstEnd() + i)) {
+			if (!matchesExpected(pn.weight(i) * pn.width(), kmersHigh, kmers, pn.firstStart() + i, pn.firstEnd() + i)) {
 				return false;
 			}
 		}
 		return true;
 	}
-	public boolean matchesExpected(int expectedWidthWeight, LongArrayList kmers, int start, int end) {
+	public boolean matchesExpected(int expectedWidthWeight, LongArrayList kmersHigh, LongArrayList kmers, int start, int end) {
 		int evidenceWeight = 0;
-		for (long kmer : kmers) {
-			LinkedList<KmerSupportNode> list = lookup.get(kmer);
+		for (int i = 0; i < kmers.size(); i++) {
+			LinkedList<KmerSupportNode> list = lookup.get(kmersHigh.getLong(i), kmers.getLong(i));
 			if (list != null) {
 				for (KmerSupportNode n : list) {
 					evidenceWeight += n.weight() * IntervalUtil.overlapsWidthClosed(start, end, n.lastStart(), n.lastEnd());
@@ -206,7 +210,7 @@ public class EvidenceTracker {
 		@Override
 		public KmerNode next() {
 			KmerNode node = underlying.next();
-			assert(matchesExpected(node.width() * node.weight(), LongArrayList.wrap(new long[] { node.firstKmer() }), node.firstStart(), node.firstEnd()));
+			assert(matchesExpected(node.width() * node.weight(), LongArrayList.wrap(new long[] { node.firstKmerHigh() }), LongArrayList.wrap(new long[] { node.firstKmer() }), node.firstStart(), node.firstEnd()));
 			return node;
 		}
 	}
@@ -0,0 +1,109 @@
+package au.edu.wehi.idsv.debruijn.positional;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+
+import au.edu.wehi.idsv.BreakendSummary;
+import au.edu.wehi.idsv.DirectedEvidence;
+
+/**
+ * Splits a start position sorted evidence iterator into groups of evidence
+ * whose positional de Bruijn graphs are independent of each other.
+ *
+ * Kmer support nodes are only connected to nodes at adjacent positions.
+ * If no evidence provides support for any position between two sets of
+ * evidence, there can be no edges between the graphs of those sets of
+ * evidence, and they can be assembled independently.
+ *
+ *  =======----   ======      evidence
+ *  |<- component ->| |<-- next component
+ *                 ^ no kmer support at this position
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class GraphComponentIterator implements Iterator<Iterator<DirectedEvidence>> {
+	private final PeekingIterator<DirectedEvidence> underlying;
+	private final int maxSupportStartPositionOffset;
+	private final int maxSupportEndPositionOffset;
+	private final int minComponentEvidence;
+	private final int maxComponentEvidence;
+	private boolean exhausted = false;
+	/**
+	 * @param it underlying evidence iterator sorted by evidence start position.
+	 * All evidence must be on the same chromosome.
+	 * @param maxSupportStartPositionOffset maximum number of bases kmer support for
+	 * an evidence can start before the breakend start position
+	 * @param maxSupportEndPositionOffset maximum number of bases kmer support for
+	 * an evidence can extend past the breakend end position
+	 * @param minComponentEvidence minimum number of evidence in each returned group.
+	 * Independent components are merged until this size is reached to reduce the
+	 * overhead of assembling many small components.
+	 * @param maxComponentEvidence maximum number of evidence to buffer.
+	 * If a component exceeds this size, the remainder of the underlying iterator
+	 * is returned as the final group. The final group is not buffered and can be
+	 * identified using isUnbuffered().
+	 */
+	public GraphComponentIterator(PeekingIterator<DirectedEvidence> it, int maxSupportStartPositionOffset, int maxSupportEndPositionOffset, int minComponentEvidence, int maxComponentEvidence) {
+		this.underlying = it;
+		this.maxSupportStartPositionOffset = maxSupportStartPositionOffset;
+		this.maxSupportEndPositionOffset = maxSupportEndPositionOffset;
+		this.minComponentEvidence = minComponentEvidence;
+		this.maxComponentEvidence = maxComponentEvidence;
+	}
+	/**
+	 * Once the final unbuffered group has been returned, the underlying
+	 * iterator is owned by the consumer of that group and is not touched
+	 * again by this iterator.
+	 */
+	@Override
+	public boolean hasNext() {
+		return !exhausted && underlying.hasNext();
+	}
+	@Override
+	public Iterator<DirectedEvidence> next() {
+		if (!hasNext()) throw new NoSuchElementException();
+		List<DirectedEvidence> component = new ArrayList<>();
+		int componentEnd = Integer.MIN_VALUE;
+		while (underlying.hasNext()) {
+			BreakendSummary bs = underlying.peek().getBreakendSummary();
+			if (component.size() >= minComponentEvidence && bs.start - maxSupportStartPositionOffset > componentEnd + 1) {
+				// no evidence spans the gap
+				break;
+			}
+			if (component.size() >= maxComponentEvidence) {
+				exhausted = true;
+				return new UnbufferedComponent(Iterators.concat(component.iterator(), underlying));
+			}
+			component.add(underlying.next());
+			componentEnd = Math.max(componentEnd, bs.end + maxSupportEndPositionOffset);
+		}
+		return component.iterator();
+	}
+	/**
+	 * Determines whether the given group contains the remainder of the underlying
+	 * iterator. Consumers should stream such groups as they can be arbitrarily large.
+	 */
+	public static boolean isUnbuffered(Iterator<DirectedEvidence> group) {
+		return group instanceof UnbufferedComponent;
+	}
+	private static class UnbufferedComponent implements Iterator<DirectedEvidence> {
+		private final Iterator<DirectedEvidence> it;
+		public UnbufferedComponent(Iterator<DirectedEvidence> it) {
+			this.it = it;
+		}
+		@Override
+		public boolean hasNext() {
+			return it.hasNext();
+		}
+		@Override
+		public DirectedEvidence next() {
+			return it.next();
+		}
+	}
+}
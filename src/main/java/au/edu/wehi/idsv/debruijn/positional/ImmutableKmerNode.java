@@ -5,7 +5,7 @@ import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import au.edu.wehi.idsv.debruijn.DeBruijnSequenceGraphNode;
-import au.edu.wehi.idsv.debruijn.KmerEncodingHelper;
+import au.edu.wehi.idsv.debruijn.Kmer128EncodingHelper;
 
 /**
  * Total support for the given kmer over the given interval
@@ -14,16 +14,22 @@ import au.edu.wehi.idsv.debruijn.KmerEncodingHelper;
  */
 public class ImmutableKmerNode implements KmerNode {
 	public long lastKmer() { return kmer; }
+	public long lastKmerHigh() { return kmerHigh; }
 	public int lastStart() { return start; }
 	public int lastEnd() { return end; }
 	public int weight() { return weight; }
 	public boolean isReference() { return reference; }
+	private final long kmerHigh;
 	private final long kmer;
 	private final int weight;
 	private final int start;
 	private final int end;
 	private final boolean reference;
 	public ImmutableKmerNode(long kmer, int start, int end, boolean reference, int weight) {
+		this(0, kmer, start, end, reference, weight);
+	}
+	public ImmutableKmerNode(long kmerHigh, long kmer, int start, int end, boolean reference, int weight) {
+		this.kmerHigh = kmerHigh;
 		this.kmer = kmer;
 		this.weight = weight;
 		this.start = start;
@@ -31,11 +37,11 @@ public class ImmutableKmerNode implements KmerNode {
 		this.reference = reference;
 	}
 	public ImmutableKmerNode(KmerNode node) {
-		this(node.lastKmer(), node.lastEnd(), node.weight(), node.isReference(), node.lastStart());
+		this(node.lastKmerHigh(), node.lastKmer(), node.lastEnd(), node.weight(), node.isReference(), node.lastStart());
 	}
 	@Override
 	public String toString() {
-		return String.format("[%d-%d]%s%d, %s", lastStart(), lastEnd(), isReference() ? "R" : " ", weight(), KmerEncodingHelper.toApproximateString(lastKmer()));
+		return String.format("[%d-%d]%s%d, %s", lastStart(), lastEnd(), isReference() ? "R" : " ", weight(), Kmer128EncodingHelper.toApproximateString(lastKmerHigh(), lastKmer()));
 	}
 	@Override
 	public int hashCode() {
@@ -43,6 +49,7 @@ public class ImmutableKmerNode implements KmerNode {
 		int result = 1;
 		result = prime * result + end;
 		result = prime * result + (int) (kmer ^ (kmer >>> 32));
+		result = prime * result + (int) (kmerHigh ^ (kmerHigh >>> 32));
 		result = prime * result + (reference ? 1231 : 1237);
 		result = prime * result + start;
 		result = prime * result + weight;
@@ -61,6 +68,8 @@ public class ImmutableKmerNode implements KmerNode {
 			return false;
 		if (kmer != other.lastKmer())
 			return false;
+		if (kmerHigh != other.lastKmerHigh())
+			return false;
 		if (reference != other.isReference())
 			return false;
 		if (start != other.lastStart())
@@ -77,7 +86,7 @@ public class ImmutableKmerNode implements KmerNode {
 	public static Stream<ImmutableKmerNode> splitKmers(KmerNode node) {
 		DeBruijnSequenceGraphNode sgn = (DeBruijnSequenceGraphNode)node;
 		return IntStream.range(0, node.length())
-				.mapToObj(i -> new ImmutableKmerNode(sgn.kmer(i), node.firstStart() + i, node.firstEnd() + i, node.isReference(), sgn.weight(i)));
+				.mapToObj(i -> new ImmutableKmerNode(sgn.kmerHigh(i), sgn.kmer(i), node.firstStart() + i, node.firstEnd() + i, node.isReference(), sgn.weight(i)));
 	}
 	/**
 	 * Splits the given node into each individual position
@@ -87,7 +96,7 @@ public class ImmutableKmerNode implements KmerNode {
 	public static Stream<ImmutableKmerNode> splitPositions(KmerNode node) {
 		if (node instanceof DeBruijnSequenceGraphNode) throw new IllegalArgumentException("copyPath() should be called before fragment()");
 		return IntStream.range(node.lastStart(), node.lastEnd() + 1)
-				.mapToObj(p -> new ImmutableKmerNode(node.lastKmer(), p, p, node.isReference(), node.weight()));
+				.mapToObj(p -> new ImmutableKmerNode(node.lastKmerHigh(), node.lastKmer(), p, p, node.isReference(), node.weight()));
 	}
 	/**
 	 * Splits the given node into position de Bruijn graph nodes 
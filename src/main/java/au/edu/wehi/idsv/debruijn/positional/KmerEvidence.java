@@ -16,6 +16,7 @@ import au.edu.wehi.idsv.EvidenceSource;
 import au.edu.wehi.idsv.NonReferenceReadPair;
 import au.edu.wehi.idsv.ProcessingContext;
 import au.edu.wehi.idsv.SingleReadEvidence;
+import au.edu.wehi.idsv.debruijn.Kmer128EncodingHelper;
 import au.edu.wehi.idsv.debruijn.KmerEncodingHelper;
 import au.edu.wehi.idsv.debruijn.PackedKmerList;
 import au.edu.wehi.idsv.picard.ReferenceLookup;
@@ -138,13 +139,14 @@ public class KmerEvidence extends PackedKmerList {
 			KmerSupportNode n = nodes[i];
 			if (n != null) {
 				long currentkmer = n.firstKmer();
-				for (long kmer : KmerEncodingHelper.nextStates(k, currentkmer)) {
+				long nextHigh = Kmer128EncodingHelper.nextStateHigh(k, n.firstKmerHigh(), currentkmer);
+				for (long kmer : KmerEncodingHelper.nextStates(Math.min(k, KmerEncodingHelper.MAX_K), currentkmer)) {
 					List<KmerSupportNode> kmerList = lookup.get(kmer);
 					if (kmerList != null) {
 						for (KmerSupportNode adj : kmerList) {
 							// we only need to track unexpected adjacencies
 							// we already know that it is adjacent to its successor
-							if (adj.offset() != n.offset() + 1) {  
+							if (adj.offset() != n.offset() + 1 && adj.firstKmerHigh() == nextHigh) {
 								if (IntervalUtil.overlapsClosed(n.firstStart() + 1, n.firstEnd() + 1, adj.firstStart(), adj.firstEnd())) {
 									unexpectedAdjacencies.add(Pair.of(n.offset(), adj.offset()));
 								}
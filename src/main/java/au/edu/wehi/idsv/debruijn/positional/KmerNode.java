@@ -3,6 +3,11 @@ package au.edu.wehi.idsv.debruijn.positional;
 
 public interface KmerNode {
 	long lastKmer();
+	/**
+	 * High word of the Kmer128EncodingHelper encoding of the last kmer.
+	 * lastKmer() is the low word. Always zero for k <= 32.
+	 */
+	long lastKmerHigh();
 	int lastStart();
 	int lastEnd();
 	int weight();
@@ -11,5 +16,6 @@ public interface KmerNode {
 	default int firstStart() { return lastStart(); }
 	default int firstEnd() { return lastEnd(); }
 	default long firstKmer() { return lastKmer(); }
+	default long firstKmerHigh() { return lastKmerHigh(); }
 	default int length() { return 1; }
 }
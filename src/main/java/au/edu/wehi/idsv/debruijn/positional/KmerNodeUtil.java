@@ -29,6 +29,7 @@ public class KmerNodeUtil {
 		public int compare(KmerNode left, KmerNode right) {
 			return ComparisonChain.start()
 					.compare(left.firstStart(), right.firstStart())
+					.compare(left.firstKmerHigh(), right.firstKmerHigh())
 					.compare(left.firstKmer(), right.firstKmer())
 					.result();
 		}
@@ -38,6 +39,7 @@ public class KmerNodeUtil {
 		public int compare(KmerNode left, KmerNode right) {
 			return ComparisonChain.start()
 					.compare(left.firstEnd(), right.firstEnd())
+					.compare(left.firstKmerHigh(), right.firstKmerHigh())
 					.compare(left.firstKmer(), right.firstKmer())
 					.result();
 		}
@@ -51,6 +53,7 @@ public class KmerNodeUtil {
 			return ComparisonChain.start()
 					.compare(left.firstStart(), right.firstStart())
 					.compare(left.firstEnd(), right.firstEnd())
+					.compare(left.firstKmerHigh(), right.firstKmerHigh())
 					.compare(left.firstKmer(), right.firstKmer())
 					.compareTrueFirst(left.isReference(), right.isReference())
 					.result();
@@ -73,6 +76,7 @@ public class KmerNodeUtil {
 		public int compare(KmerNode left, KmerNode right) {
 			return ComparisonChain.start()
 					.compare(left.lastEnd(), right.lastEnd())
+					.compare(left.lastKmerHigh(), right.lastKmerHigh())
 					.compare(left.lastKmer(), right.lastKmer())
 					.result();
 		}
@@ -83,6 +87,7 @@ public class KmerNodeUtil {
 			return ComparisonChain.start()
 					.compare(left.lastStart(), right.lastStart())
 					.compare(left.lastEnd(), right.lastEnd())
+					.compare(left.lastKmerHigh(), right.lastKmerHigh())
 					.compare(left.lastKmer(), right.lastKmer())
 					.compareTrueFirst(left.isReference(), right.isReference())
 					.compare(left.weight(), right.weight())
@@ -98,6 +103,7 @@ public class KmerNodeUtil {
 			return ComparisonChain.start()
 					.compare(left.lastEnd(), right.lastEnd())
 					.compare(left.lastStart(), right.lastStart())
+					.compare(left.lastKmerHigh(), right.lastKmerHigh())
 					.compare(left.lastKmer(), right.lastKmer())
 					.compareTrueFirst(left.isReference(), right.isReference())
 					.result();
@@ -126,7 +132,8 @@ public class KmerNodeUtil {
 		public boolean equals(T a, T b) {
 			return (a == b) || (a != null && b != null &&
 					a.lastEnd() == b.lastEnd()
-					&& a.lastKmer() == b.lastKmer());
+					&& a.lastKmer() == b.lastKmer()
+					&& a.lastKmerHigh() == b.lastKmerHigh());
 		}
 	}
 	public static class HashByLastStartKmer<T extends KmerNode> implements Hash.Strategy<T> {
@@ -140,7 +147,8 @@ public class KmerNodeUtil {
 		public boolean equals(T a, T b) {
 			return (a == b) || (a != null && b != null &&
 					a.lastStart() == b.lastStart()
-					&& a.lastKmer() == b.lastKmer());
+					&& a.lastKmer() == b.lastKmer()
+					&& a.lastKmerHigh() == b.lastKmerHigh());
 		}
 	}
 }
@@ -15,6 +15,7 @@ import com.google.common.collect.PeekingIterator;
 
 import au.edu.wehi.idsv.Defaults;
 import au.edu.wehi.idsv.debruijn.DeBruijnSequenceGraphNode;
+import au.edu.wehi.idsv.debruijn.Kmer128EncodingHelper;
 import au.edu.wehi.idsv.debruijn.KmerEncodingHelper;
 import au.edu.wehi.idsv.util.CollectionUtil;
 import au.edu.wehi.idsv.util.IntervalUtil;
@@ -36,6 +37,14 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 	private LongArrayList kmers; // FIXME: replace with 2-bit encoding of kmer sequence
 	private LongArrayList additionalKmers = null;
 	private IntArrayList additionalKmerOffsets = null;
+	/**
+	 * High words of the path kmers for k > 32. null if all high words are zero.
+	 */
+	private LongArrayList kmersHigh = null;
+	/**
+	 * High words of the collapsed kmers for k > 32. null if all high words are zero.
+	 */
+	private LongArrayList additionalKmersHigh = null;
 	private IntArrayList weight;
 	private int totalWeight;
 	private int start;
@@ -52,6 +61,8 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 	 */
 	public long lastKmer() { return kmer(length() - 1); }
 	public long firstKmer() { return kmer(0); }
+	public long lastKmerHigh() { return kmerHigh(length() - 1); }
+	public long firstKmerHigh() { return kmerHigh(0); }
 	/**
 	 * First possible position of final kmer
 	 */
@@ -63,10 +74,17 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 	public int firstStart() { return start; }
 	public int firstEnd() { return end; }
 	public long kmer(int offset) { return kmers.getLong(offset); }
+	@Override
+	public long kmerHigh(int offset) { return kmersHigh == null ? 0 : kmersHigh.getLong(offset); }
 	public int startPosition(int offset) { return start + offset; }
 	public int endPosition(int offset) { return end + offset; }
 	public int weight() { return totalWeight; }
 	public LongArrayList pathKmers() { return kmers; }
+	/**
+	 * High words of the path kmers
+	 * @return high words, or null if all high words are zero. Callers must not modify the returned list
+	 */
+	public LongArrayList pathKmersHigh() { return kmersHigh; }
 	public IntArrayList pathWeights() { return weight; }
 	@Override
 	public int weight(int offset) {
@@ -89,9 +107,45 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 	{
 		return additionalKmerOffsets != null ? additionalKmerOffsets : EMPTY_OFFSET_LIST;
 	}
+	/**
+	 * High word of the given collapsed kmer
+	 * @param index index into collapsedKmers()
+	 */
+	public long collapsedKmerHigh(int index)
+	{
+		return additionalKmersHigh == null ? 0 : additionalKmersHigh.getLong(index);
+	}
+	/**
+	 * Concatenates high word lists in which null represents a list of zeros
+	 * @param high high words of the first list. This list may be modified.
+	 * @param size length of first list
+	 * @param toAppend high words of the second list
+	 * @param toAppendSize length of the second list
+	 * @return concatenated high words, null if all high words are zero
+	 */
+	private static LongArrayList concatHigh(LongArrayList high, int size, LongArrayList toAppend, int toAppendSize) {
+		if (high == null && toAppend == null) return null;
+		if (high == null) {
+			high = new LongArrayList(size + toAppendSize);
+			high.size(size);
+		}
+		if (toAppend == null) {
+			high.size(high.size() + toAppendSize);
+		} else {
+			high.addAll(toAppend);
+		}
+		return high;
+	}
 	public KmerPathNode(long kmer, int start, int end, boolean reference, int weight) {
+		this(0, kmer, start, end, reference, weight);
+	}
+	public KmerPathNode(long kmerHigh, long kmer, int start, int end, boolean reference, int weight) {
 		this.kmers = new LongArrayList(1);
 		this.kmers.add(kmer);
+		if (kmerHigh != 0) {
+			this.kmersHigh = new LongArrayList(1);
+			this.kmersHigh.add(kmerHigh);
+		}
 		this.weight = new IntArrayList(1);
 		this.weight.add(weight);
 		this.totalWeight = weight;
@@ -99,19 +153,20 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 		this.end = end;
 		this.reference = reference;
 	}
-	private KmerPathNode(LongArrayList kmer, int start, int end, boolean reference, int totalWeight, IntArrayList weight) {
+	private KmerPathNode(LongArrayList kmerHigh, LongArrayList kmer, int start, int end, boolean reference, int totalWeight, IntArrayList weight) {
 		this.kmers = kmer.clone();
+		this.kmersHigh = kmerHigh == null ? null : kmerHigh.clone();
 		this.weight = weight.clone();
 		this.totalWeight = totalWeight;
 		this.start = start;
 		this.end = end;
 		this.reference = reference;
 	}
-	private KmerPathNode(LongArrayList kmer, int start, int end, boolean reference, IntArrayList weight) {
-		this(kmer, start, end, reference, sumWeights(weight), weight);
+	private KmerPathNode(LongArrayList kmerHigh, LongArrayList kmer, int start, int end, boolean reference, IntArrayList weight) {
+		this(kmerHigh, kmer, start, end, reference, sumWeights(weight), weight);
 	}
 	public KmerPathNode(KmerNode node) {
-		this(node.lastKmer(), node.lastStart(), node.lastEnd(), node.isReference(), node.weight());
+		this(node.lastKmerHigh(), node.lastKmer(), node.lastStart(), node.lastEnd(), node.isReference(), node.weight());
 	}
 	private static int sumWeights(IntArrayList weight) {
 		int sum = 0;
@@ -126,6 +181,10 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 		assert(node.lastEnd() == lastEnd() + 1);
 		assert(node.isReference() == isReference());
 		assert(nextList == null || nextList.size() == 0);
+		long high = node.lastKmerHigh();
+		if (kmersHigh != null || high != 0) {
+			kmersHigh = concatHigh(kmersHigh, kmers.size(), LongArrayList.wrap(new long[] { high }), 1);
+		}
 		kmers.add(node.lastKmer());
 		weight.add(node.weight());
 		totalWeight += node.weight();
@@ -149,6 +208,7 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 		assert(prevList.size() == 1);
 		assert(prevList.get(0) == node);
 		int nodeLength = node.length();
+		kmersHigh = concatHigh(node.kmersHigh, nodeLength, kmersHigh, length());
 		node.kmers.addAll(kmers);
 		kmers = node.kmers;
 		node.weight.addAll(weight);
@@ -162,6 +222,7 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 			}
 		}
 		if (node.additionalKmers != null) {
+			additionalKmersHigh = concatHigh(additionalKmersHigh, collapsedKmers().size(), node.additionalKmersHigh, node.additionalKmers.size());
 			if (additionalKmers == null) {
 				additionalKmers = new LongArrayList(node.additionalKmers.size());
 				additionalKmerOffsets = new IntArrayList(node.additionalKmers.size());
@@ -192,6 +253,7 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 				&& reference == node.reference
 				&& totalWeight == node.totalWeight 
 				&& kmers.equals(node.kmers)
+				&& highEquals(kmersHigh, node.kmersHigh)
 				&& weight.equals(node.weight)
 				&& hasSameCollapsedKmers(node);
 	}
@@ -225,19 +287,31 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 		}
 		return next;
 	}
+	private static boolean highEquals(LongArrayList a, LongArrayList b) {
+		if (a == b) return true;
+		if (a == null) return isZero(b);
+		if (b == null) return isZero(a);
+		return a.equals(b);
+	}
+	private static boolean isZero(LongArrayList high) {
+		for (int i = 0; i < high.size(); i++) {
+			if (high.getLong(i) != 0) return false;
+		}
+		return true;
+	}
 	private boolean hasSameCollapsedKmers(KmerPathNode node) {
 		if (collapsedKmers().size() != node.collapsedKmers().size()) return false;
 		for (int i = 0; i < node.collapsedKmers().size(); i++) {
-			if (!containsCollapsedKmer(node.additionalKmers.getLong(i), node.additionalKmerOffsets.getInt(i))) {
+			if (!containsCollapsedKmer(node.collapsedKmerHigh(i), node.additionalKmers.getLong(i), node.additionalKmerOffsets.getInt(i))) {
 				return false;
 			}
 		}
 		return true;
 	}
-	private boolean containsCollapsedKmer(long kmer, int offset) {
+	private boolean containsCollapsedKmer(long kmerHigh, long kmer, int offset) {
 		if (additionalKmers == null) return false;
 		for (int i = 0; i < additionalKmers.size(); i++) {
-			if (additionalKmers.getLong(i) == kmer && additionalKmerOffsets.getInt(i) == offset) {
+			if (additionalKmers.getLong(i) == kmer && additionalKmerOffsets.getInt(i) == offset && collapsedKmerHigh(i) == kmerHigh) {
 				return true;
 			}
 		}
@@ -269,6 +343,10 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 		assert(toMerge.firstEnd() == firstEnd());
 		assert(toMerge.length() == length());
 		reference |= toMerge.reference;
+		int collapsedCount = collapsedKmers().size();
+		int toMergeCollapsedCount = toMerge.collapsedKmers().size();
+		additionalKmersHigh = concatHigh(additionalKmersHigh, collapsedCount, toMerge.additionalKmersHigh, toMergeCollapsedCount);
+		additionalKmersHigh = concatHigh(additionalKmersHigh, collapsedCount + toMergeCollapsedCount, toMerge.kmersHigh, toMerge.length());
 		if (additionalKmers == null) {
 			additionalKmers = toMerge.additionalKmers;
 			additionalKmerOffsets = toMerge.additionalKmerOffsets;
@@ -304,10 +382,12 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 		assert(nextList == null || nextList.size() == 0);
 		assert(prevList == null || prevList.size() == 0);
 		kmers = null;
+		kmersHigh = null;
 		weight = null;
 		nextList = null;
 		prevList = null;
 		additionalKmers = null;
+		additionalKmersHigh = null;
 		totalWeight = 0;
 	}
 	public boolean isValid() {
@@ -519,11 +599,16 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 		assert(firstNodeLength < length());
 		// copy our new kmers and weights
 		LongArrayList kmerSecond = new LongArrayList(kmers.subList(firstNodeLength, length()));
+		LongArrayList kmerHighSecond = kmersHigh == null ? null : new LongArrayList(kmersHigh.subList(firstNodeLength, length()));
 		IntArrayList weightSecond = new IntArrayList(weight.subList(firstNodeLength, length()));
 		// let split own our current arrays
 		this.kmers.removeElements(firstNodeLength, this.kmers.size());
+		if (this.kmersHigh != null) {
+			this.kmersHigh.removeElements(firstNodeLength, this.kmersHigh.size());
+		}
 		this.weight.removeElements(firstNodeLength, this.weight.size());
 		KmerPathNode split = new KmerPathNode(
+				this.kmersHigh,
 				this.kmers,
 				start,
 				end,
@@ -540,6 +625,7 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 		}
 		// outgoing edges remain unchanged since our end kmer is unchanged
 		this.kmers = kmerSecond;
+		this.kmersHigh = kmerHighSecond;
 		this.weight = weightSecond;
 		this.totalWeight -= split.weight();
 		this.start += firstNodeLength;
@@ -550,19 +636,25 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 			IntArrayList nodeOffsets = new IntArrayList();
 			LongArrayList splitKmers = new LongArrayList();
 			IntArrayList splitOffsets = new IntArrayList();
+			LongArrayList nodeKmersHigh = additionalKmersHigh == null ? null : new LongArrayList();
+			LongArrayList splitKmersHigh = additionalKmersHigh == null ? null : new LongArrayList();
 			for (int i = 0; i < additionalKmerOffsets.size(); i++) {
 				if (additionalKmerOffsets.getInt(i) < firstNodeLength) {
 					splitKmers.add(additionalKmers.getLong(i));
 					splitOffsets.add(additionalKmerOffsets.getInt(i));
+					if (splitKmersHigh != null) splitKmersHigh.add(additionalKmersHigh.getLong(i));
 				} else {
 					nodeKmers.add(additionalKmers.getLong(i));
 					nodeOffsets.add(additionalKmerOffsets.getInt(i) - firstNodeLength);
+					if (nodeKmersHigh != null) nodeKmersHigh.add(additionalKmersHigh.getLong(i));
 				}
 			}
 			this.additionalKmers = nodeKmers;
 			this.additionalKmerOffsets = nodeOffsets;
+			this.additionalKmersHigh = nodeKmersHigh;
 			split.additionalKmers = splitKmers;
 			split.additionalKmerOffsets = splitOffsets;
+			split.additionalKmersHigh = splitKmersHigh;
 		}
 		if (Defaults.SANITY_CHECK_ASSEMBLY_GRAPH) {
 			this.sanityCheck();
@@ -589,7 +681,7 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 	public KmerPathNode splitAtStartPosition(int newStartPosition) {
 		assert(newStartPosition > start);
 		assert(newStartPosition <= end);
-		KmerPathNode split = new KmerPathNode(kmers, start, newStartPosition - 1, reference, totalWeight, weight);
+		KmerPathNode split = new KmerPathNode(kmersHigh, kmers, start, newStartPosition - 1, reference, totalWeight, weight);
 		this.start = newStartPosition;
 		if (nextList != null) {
 			ArrayList<KmerPathNode> newNextThis = new ArrayList<KmerPathNode>(nextList.size());
@@ -637,6 +729,9 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 		if (this.additionalKmers != null) {
 			split.additionalKmers = new LongArrayList(this.additionalKmers);
 			split.additionalKmerOffsets = new IntArrayList(this.additionalKmerOffsets);
+			if (this.additionalKmersHigh != null) {
+				split.additionalKmersHigh = new LongArrayList(this.additionalKmersHigh);
+			}
 		}
 		if (Defaults.SANITY_CHECK_ASSEMBLY_GRAPH) {
 			this.sanityCheck();
@@ -650,7 +745,7 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 			return String.format("[%d-%d]%s %dw (INVALID) ", firstStart(), firstEnd(), isReference() ? "R" : " ", weight());
 		}
 		StringBuilder sb = new StringBuilder(String.format("[%d-%d]%s %dw ", firstStart(), firstEnd(), isReference() ? "R" : " ", weight()));
-		sb.append(KmerEncodingHelper.toApproximateString(firstKmer()));
+		sb.append(Kmer128EncodingHelper.toApproximateString(firstKmerHigh(), firstKmer()));
 		sb.append(' ');
 		for (int i = 1; i < length(); i++) {
 			sb.append((char)KmerEncodingHelper.lastBaseEncodedToPicardBase(kmer(i)));
@@ -693,6 +788,8 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 				return false;
 		} else if (!kmers.equals(other.kmers))
 			return false;
+		if (!highEquals(kmersHigh, other.kmersHigh))
+			return false;
 		if (reference != other.reference)
 			return false;
 		if (start != other.start)
@@ -713,7 +810,7 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 			assert(removed);
 		}
 		nextList = null;
-		for (KmerPathNode n : prevList) {
+		for (KmerPathNode n : prev()) {
 			boolean removed = CollectionUtil.removeByReference(n.nextList, this);
 			assert(removed);
 		}
@@ -762,6 +859,9 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 		totalWeight -= weight.getInt(offset);
 		weight.removeInt(offset);
 		kmers.removeLong(offset);
+		if (kmersHigh != null) {
+			kmersHigh.removeLong(offset);
+		}
 		if (additionalKmers != null) {
 			if (length() > 0) {
 				int offsetShift = offset == 0 ? 1 : 0;
@@ -771,6 +871,9 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 					if (newOffset < 0 || newOffset >= length()) {
 						additionalKmerOffsets.removeInt(i);
 						additionalKmers.removeLong(i);
+						if (additionalKmersHigh != null) {
+							additionalKmersHigh.removeLong(i);
+						}
 					} else if (newOffset != currentOffset) {
 						additionalKmerOffsets.set(i, newOffset);
 					}
@@ -809,10 +912,11 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 				if (list != null) {
 					for (KmerNode n : list) {
 						long nkmer = n.firstKmer();
-						if (nkmer != node.kmer(i)) {
+						long nkmerHigh = n.firstKmerHigh();
+						if (nkmer != node.kmer(i) || nkmerHigh != node.kmerHigh(i)) {
 							boolean foundMatchingAltKmer = false;
 							for (int j = 0; j < node.collapsedKmers().size(); j++) {
-								if (node.collapsedKmers().getLong(j) == nkmer) {
+								if (node.collapsedKmers().getLong(j) == nkmer && node.collapsedKmerHigh(j) == nkmerHigh) {
 									if (node.collapsedKmerOffsets().getInt(j) == i) {
 										// found an alt kmer that goes to the expected node
 										foundMatchingAltKmer = true;
@@ -992,7 +1096,8 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 		public boolean equals(T a, T b) {
 			return (a == b) || (a != null && b != null &&
 					a.firstEnd() == b.firstEnd()
-					&& a.firstKmer() == b.firstKmer());
+					&& a.firstKmer() == b.firstKmer()
+					&& a.firstKmerHigh() == b.firstKmerHigh());
 		}
 	}
 	public static class HashByFirstKmerStartPositionKmer<T extends KmerPathNode> implements Hash.Strategy<T> {
@@ -1006,7 +1111,8 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 		public boolean equals(T a, T b) {
 			return (a == b) || (a != null && b != null &&
 					a.firstStart() == b.firstStart()
-					&& a.firstKmer() == b.firstKmer());
+					&& a.firstKmer() == b.firstKmer()
+					&& a.firstKmerHigh() == b.firstKmerHigh());
 		}
 	}
 	public boolean sanityCheck(int k, int maxSupportWidth, int maxPathLength) {
@@ -1014,17 +1120,17 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 		assert(length() <= maxPathLength);
 		assert(end - start <= maxSupportWidth);
 		for (int i = 1; i < length(); i++) {
-			assert(KmerEncodingHelper.isNext(k, kmers.getLong(i - 1), kmers.getLong(i)));
+			assert(Kmer128EncodingHelper.isNext(k, kmerHigh(i - 1), kmers.getLong(i - 1), kmerHigh(i), kmers.getLong(i)));
 		}
 		assert(sumWeights(weight) == totalWeight);
 		if (nextList != null) {
 			for (KmerPathNode next : nextList) {
-				assert(KmerEncodingHelper.isNext(k, lastKmer(), next.firstKmer()));
+				assert(Kmer128EncodingHelper.isNext(k, lastKmerHigh(), lastKmer(), next.firstKmerHigh(), next.firstKmer()));
 			}
 		}
 		if (prevList != null) {
 			for (KmerPathNode prev : prevList) {
-				assert(KmerEncodingHelper.isNext(k, prev.lastKmer(), firstKmer()));
+				assert(Kmer128EncodingHelper.isNext(k, prev.lastKmerHigh(), prev.lastKmer(), firstKmerHigh(), firstKmer()));
 			}
 		}
 		return true;
@@ -1041,6 +1147,8 @@ public class KmerPathNode implements KmerNode, DeBruijnSequenceGraphNode {
 		assert(EMPTY_KMER_LIST != null && EMPTY_KMER_LIST.size() == 0); // fastutil doesn't have ImmutableList wrappers
 		assert((additionalKmerOffsets == null && additionalKmers == null) ||
 				(additionalKmerOffsets != null && additionalKmers != null && additionalKmerOffsets.size() == additionalKmers.size()));
+		assert(kmersHigh == null || kmersHigh.size() == length());
+		assert(additionalKmersHigh == null || additionalKmersHigh.size() == collapsedKmers().size());
 		//if (additionalKmers != null) {
 		//	for (int i = 0; i < additionalKmers.size(); i++) {
 		//		assert(additionalKmerOffsets.getInt(i) < length());
@@ -42,6 +42,11 @@ public class KmerPathNodeKmerNode implements KmerNode {
 		return node.collapsedKmers().getLong(alternateKmerIndex());
 	}
 	@Override
+	public long lastKmerHigh() {
+		if (offset >= 0) return node.kmerHigh(offset);
+		return node.collapsedKmerHigh(alternateKmerIndex());
+	}
+	@Override
 	public int lastStart() {
 		return node.startPosition(offsetOfPrimaryKmer());
 	}
@@ -87,6 +92,7 @@ public class KmerPathNodeKmerNode implements KmerNode {
 		@Override
 		public int compare(KmerPathNodeKmerNode left, KmerPathNodeKmerNode right) {
 			return ComparisonChain.start()
+					.compare(left.node.firstKmerHigh(), right.node.firstKmerHigh())
 					.compare(left.node.firstKmer(), right.node.firstKmer())
 					.compare(left.node.firstStart(), right.node.firstStart())
 					.compare(left.offsetOfPrimaryKmer(), right.offsetOfPrimaryKmer())
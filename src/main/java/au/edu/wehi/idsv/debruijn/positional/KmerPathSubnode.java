@@ -38,6 +38,8 @@ public class KmerPathSubnode implements DeBruijnSequenceGraphNode, KmerNode {
 	public KmerPathNode node() { return n; }
 	public long firstKmer() { return n.firstKmer(); }
 	public long lastKmer() { return n.lastKmer(); }
+	public long firstKmerHigh() { return n.firstKmerHigh(); }
+	public long lastKmerHigh() { return n.lastKmerHigh(); }
 	public int firstStart() { return start; }
 	public int firstEnd() { return end; }
 	public int lastStart() { return firstStart() + length() - 1; }
@@ -47,6 +49,7 @@ public class KmerPathSubnode implements DeBruijnSequenceGraphNode, KmerNode {
 	public int weight() { return n.weight(); }
 	public int weight(int offset) { return n.weight(offset); }
 	public long kmer(int offset) { return n.kmer(offset); }
+	public long kmerHigh(int offset) { return n.kmerHigh(offset); }
 	public boolean isReference() { return n.isReference(); }
 	/**
 	 * Returns the subset of valid position of this node for the given next traversal 
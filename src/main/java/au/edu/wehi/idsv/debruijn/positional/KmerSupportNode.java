@@ -1,6 +1,6 @@
 package au.edu.wehi.idsv.debruijn.positional;
 
-import au.edu.wehi.idsv.debruijn.KmerEncodingHelper;
+import au.edu.wehi.idsv.debruijn.Kmer128EncodingHelper;
 
 /**
  * Evidence contribution to the given kmer position of a single piece of evidence
@@ -11,6 +11,7 @@ public class KmerSupportNode implements KmerNode {
 	private final int offset;
 	private final KmerEvidence evidence;
 	public long lastKmer() { return evidence.kmer(offset); }
+	public long lastKmerHigh() { return evidence.kmerHigh(offset); }
 	public int lastStart() { return evidence.startPosition() + offset; }
 	public int lastEnd() { return evidence.endPosition() + offset; }
 	public int weight() { return evidence.weight(offset); }
@@ -23,7 +24,7 @@ public class KmerSupportNode implements KmerNode {
 	}
 	@Override
 	public String toString() {
-		return String.format("[%d-%d]%s %d %s", lastStart(), lastEnd(), isReference() ? "R" : " ", weight(), KmerEncodingHelper.toApproximateString(lastKmer()));
+		return String.format("[%d-%d]%s %d %s", lastStart(), lastEnd(), isReference() ? "R" : " ", weight(), Kmer128EncodingHelper.toApproximateString(lastKmerHigh(), lastKmer()));
 	}
 	@Override
 	public int hashCode() {
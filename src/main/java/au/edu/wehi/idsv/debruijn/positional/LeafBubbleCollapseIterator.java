@@ -11,7 +11,7 @@ import java.util.TreeMap;
 
 import com.google.common.collect.Range;
 
-import au.edu.wehi.idsv.debruijn.KmerEncodingHelper;
+import au.edu.wehi.idsv.debruijn.Kmer128EncodingHelper;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
 
 /**
@@ -172,13 +172,14 @@ public class LeafBubbleCollapseIterator extends CollapseIterator {
 		if (refnodes.contains(sn.node())) return true;
 		return node.traversingWouldCauseSelfIntersection(sn.node());
 	}
-	private int partialSequenceBasesDifferent(LongArrayList toCollapsePathKmers, TraversalNode tn, boolean traversalForward) {
+	private int partialSequenceBasesDifferent(LongArrayList toCollapsePathKmersHigh, LongArrayList toCollapsePathKmers, TraversalNode tn, boolean traversalForward) {
 		LongArrayList nodeKmers = tn.node.node().pathKmers();
+		LongArrayList nodeKmersHigh = tn.node.node().pathKmersHigh();
 		int basesDifference;
 		if (traversalForward) {
-			basesDifference = KmerEncodingHelper.partialSequenceBasesDifferent(k, toCollapsePathKmers, nodeKmers, tn.pathLength - tn.node.length(), true);
+			basesDifference = Kmer128EncodingHelper.partialSequenceBasesDifferent(k, toCollapsePathKmersHigh, toCollapsePathKmers, nodeKmersHigh, nodeKmers, tn.pathLength - tn.node.length(), true);
 		} else {
-			basesDifference = KmerEncodingHelper.partialSequenceBasesDifferent(k, toCollapsePathKmers, nodeKmers, toCollapsePathKmers.size() - tn.pathLength, false);
+			basesDifference = Kmer128EncodingHelper.partialSequenceBasesDifferent(k, toCollapsePathKmersHigh, toCollapsePathKmers, nodeKmersHigh, nodeKmers, toCollapsePathKmers.size() - tn.pathLength, false);
 		}
 		return basesDifference;
 	}
@@ -244,7 +245,20 @@ public class LeafBubbleCollapseIterator extends CollapseIterator {
 	 */
 	private boolean memoizedCollapse(Set<KmerPathNode> collapseNodes, TraversalNode toCollapse, boolean traversalForward, KmerPathNode terminalNode) {
 		LongArrayList toCollapsePathKmers = new LongArrayList(toCollapse.pathLength);
+		// high words are only required for k > 32
+		LongArrayList toCollapsePathKmersHigh = null;
 		for (KmerPathSubnode sn : traversalForward ? toCollapse.toSubnodeNextPath() : toCollapse.toSubnodePrevPath()) {
+			if (sn.node().pathKmersHigh() != null && toCollapsePathKmersHigh == null) {
+				toCollapsePathKmersHigh = new LongArrayList(toCollapse.pathLength);
+				toCollapsePathKmersHigh.size(toCollapsePathKmers.size());
+			}
+			if (toCollapsePathKmersHigh != null) {
+				if (sn.node().pathKmersHigh() != null) {
+					toCollapsePathKmersHigh.addAll(sn.node().pathKmersHigh());
+				} else {
+					toCollapsePathKmersHigh.size(toCollapsePathKmersHigh.size() + sn.length());
+				}
+			}
 			toCollapsePathKmers.addAll(sn.node().pathKmers());
 		}
 		assert(toCollapsePathKmers.size() == toCollapse.pathLength);
@@ -255,13 +269,13 @@ public class LeafBubbleCollapseIterator extends CollapseIterator {
 		KmerPathSubnode root = traversalForward ? toCollapse.toSubnodeNextPath().getFirst() : toCollapse.toSubnodePrevPath().getLast();
 		// set up frontier
 		for (TraversalNode tn : successors(collapseNodes, new TraversalNode(root, 0), traversalForward)) {
-			MemoizedPath mp = new MemoizedPath(tn, partialSequenceBasesDifferent(toCollapsePathKmers, tn, traversalForward));
+			MemoizedPath mp = new MemoizedPath(tn, partialSequenceBasesDifferent(toCollapsePathKmersHigh, toCollapsePathKmers, tn, traversalForward));
 			if (frontierProcess(frontier, mp, toCollapse, traversalForward, terminalNode)) return true;
 		}
 		while (!frontier.isEmpty()) {
 			for (MemoizedPath mp : frontierPop(frontier)) {
 				for (TraversalNode tn : successors(collapseNodes, mp.path, traversalForward)) {
-					int basesDifferent = mp.basesDifferent + partialSequenceBasesDifferent(toCollapsePathKmers, tn, traversalForward);
+					int basesDifferent = mp.basesDifferent + partialSequenceBasesDifferent(toCollapsePathKmersHigh, toCollapsePathKmers, tn, traversalForward);
 					MemoizedPath mpnext = new MemoizedPath(tn, basesDifferent);
 					if (frontierProcess(frontier, mpnext, toCollapse, traversalForward, terminalNode)) return true;
 				}
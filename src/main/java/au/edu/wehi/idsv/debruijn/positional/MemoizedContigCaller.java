@@ -8,16 +8,17 @@ import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NavigableSet;
 import java.util.Set;
-import java.util.SortedSet;
 import java.util.TreeSet;
-import java.util.stream.Collectors;
 
+import com.google.common.collect.ComparisonChain;
 import com.google.common.collect.ImmutableSet;
 
 import au.edu.wehi.idsv.Defaults;
 import au.edu.wehi.idsv.SanityCheckFailureException;
+import au.edu.wehi.idsv.util.IndexedBinaryHeap;
 import au.edu.wehi.idsv.util.IntervalUtil;
 import au.edu.wehi.idsv.visualisation.PositionalDeBruijnGraphTracker.MemoizationStats;
 import htsjdk.samtools.util.Log;
@@ -58,21 +59,30 @@ public class MemoizedContigCaller extends ContigCaller {
 	private static final Log log = Log.getInstance(MemoizedContigCaller.class);
 	/**
 	 * Path scores in order of descending score
+	 * 
+	 * Only the best path is ever required so heaps are used in place of sorted sets.
+	 * As the heap position is stored in the TraversalNode itself, removal of a
+	 * path not in the heap is a constant time operation.
 	 */
-	private final SortedSet<TraversalNode> contigByScore = new TreeSet<>(TraversalNode.ByScoreDescPathFirstEndSubnode);
-	// We could convert this into an AbstractInt2IntSortedMap if we changed MemoizedContigTraverse
-	// to only call onFrontierRemove() on nodes that are actually in the frontier
-	private final SortedSet<TraversalNode> frontierByPathStart = new TreeSet<>(TraversalNode.ByPathFirstStartEndSubnode);
-	private final MemoizedContigTraverse frontier = new MemoizedContigTraverse();
+	private final IndexedBinaryHeap<TraversalNode> contigByScore;
+	private final IndexedBinaryHeap<TraversalNode> frontierByPathStart;
+	private final MemoizedContigTraverse frontier;
 	
 	private int contigByScoreBeforePosition_startPosition = Integer.MIN_VALUE;
-	private SortedSet<TraversalNode> contigByScoreBeforePosition = new TreeSet<>(TraversalNode.ByScoreDescPathFirstEndSubnode);;
+	private final IndexedBinaryHeap<TraversalNode> contigByScoreBeforePosition;
 	/**
 	 * Scoring bonus for anchoring the start/end of a contig at a reference node. 
 	 */
 	private final int anchoredScore;
 	private int maxVisitedEndPosition = Integer.MIN_VALUE;
+	/**
+	 * Number of frontier nodes visited 
+	 */
+	private long rememoizedNodeCount = 0;
 	private class MemoizedContigTraverse extends MemoizedTraverse {
+		MemoizedContigTraverse(MemoizedTraverse.HeapFactory heapFactory) {
+			super(heapFactory);
+		}
 		@Override
 		protected void onMemoizeAdd(TraversalNode tn) {
 			if (tn.node.isReference()) {
@@ -120,8 +130,21 @@ public class MemoizedContigCaller extends ContigCaller {
 		}
 	}
 	public MemoizedContigCaller(int anchoredScore, int maxEvidenceSupportIntervalWidth) {
+		this(anchoredScore, maxEvidenceSupportIntervalWidth, IndexedBinaryHeap::new);
+	}
+	/**
+	 * @param heapFactory creates the heaps used for path orderings
+	 */
+	MemoizedContigCaller(int anchoredScore, int maxEvidenceSupportIntervalWidth, MemoizedTraverse.HeapFactory heapFactory) {
 		super(maxEvidenceSupportIntervalWidth);
 		this.anchoredScore = anchoredScore;
+		this.contigByScore = heapFactory.create(TraversalNode.ByScoreDescPathFirstEndSubnode,
+				tn -> tn.scoreHeapIndex, (tn, i) -> tn.scoreHeapIndex = i);
+		this.frontierByPathStart = heapFactory.create(TraversalNode.ByPathFirstStartEndSubnode,
+				tn -> tn.pathStartHeapIndex, (tn, i) -> tn.pathStartHeapIndex = i);
+		this.contigByScoreBeforePosition = heapFactory.create(TraversalNode.ByScoreDescPathFirstEndSubnode,
+				tn -> tn.scoreBeforePositionHeapIndex, (tn, i) -> tn.scoreBeforePositionHeapIndex = i);
+		this.frontier = new MemoizedContigTraverse(heapFactory);
 	}
 	/**
 	 * Adds a new node to the graph.
@@ -187,6 +210,7 @@ public class MemoizedContigCaller extends ContigCaller {
 		while (!frontier.isEmptyFrontier() && frontier.peekFrontier().node.lastEnd() < unprocessedPosition - 1) {
 			TraversalNode tn = frontier.pollFrontier();
 			visit(tn, unprocessedPosition);
+			rememoizedNodeCount++;
 		}
 		if (Defaults.SANITY_CHECK_MEMOIZATION && Defaults.SANITY_CHECK_MEMOIZATION_ALL_OPERATIONS) {
 			sanityCheck();
@@ -261,6 +285,44 @@ public class MemoizedContigCaller extends ContigCaller {
 			sanityCheck();
 		}
 	}
+	/**
+	 * Removes the given nodes from the graph, lazily recalculating the
+	 * memoization of the region of the graph that could be affected by
+	 * the removal.
+	 * 
+	 * Unlike remove(), descendant paths of the removed nodes are not traced.
+	 * Instead, every node ending after the start of the first removed node
+	 * is restarted and rememoized as the frontier is advanced by subsequent
+	 * contig calls. This is considerably cheaper than remove() when a large
+	 * portion of the graph is removed. 
+	 * 
+	 * @param nodes nodes to remove
+	 */
+	public void invalidate(Set<KmerPathNode> nodes) {
+		List<KmerPathNode> dirty = frontier.invalidate(nodes);
+		for (KmerPathNode node : dirty) {
+			TraversalNode tn = new TraversalNode(new KmerPathSubnode(node), node.isReference() ? anchoredScore - node.weight() : 0);
+			frontier.memoize(tn);
+		}
+		int reset = 0;
+		for (KmerPathNode node : dirty) {
+			// paths from unaffected predecessors need to be extended into the dirty region
+			for (KmerPathNode prev : node.prev()) {
+				for (TraversalNode prevtn : frontier.memoized(prev)) {
+					if (IntervalUtil.overlapsClosed(prevtn.node.lastStart() + 1, prevtn.node.lastEnd() + 1, node.firstStart(), node.firstEnd())) {
+						frontier.addFrontier(prevtn);
+						reset++;
+					}
+				}
+			}
+		}
+		frontier.tracking_lastRemoval().pathsReset = reset;
+		frontier.tracking_lastRemoval().pathsRestarted = dirty.size();
+		if (Defaults.SANITY_CHECK_MEMOIZATION) {
+			sanityCheckAreRemovedFromPaths(nodes);
+			sanityCheck();
+		}
+	}
 	private int restartChildren(Set<KmerPathNode> nodes) {
 		int count = 0;
 		for (KmerPathNode node : nodes) {
@@ -345,10 +407,12 @@ public class MemoizedContigCaller extends ContigCaller {
 	}
 	private void ensureContigByScoreBeforePosition(int contigStartsBefore) {
 		if (contigByScoreBeforePosition_startPosition != contigStartsBefore) {
-			contigByScoreBeforePosition = new TreeSet<>(TraversalNode.ByScoreDescPathFirstEndSubnode);
-			contigByScore.stream()
-				.filter(n -> n.pathFirstStart() < contigStartsBefore)
-				.collect(Collectors.toCollection(() -> contigByScoreBeforePosition));
+			contigByScoreBeforePosition.clear();
+			for (TraversalNode tn : contigByScore) {
+				if (tn.pathFirstStart() < contigStartsBefore) {
+					contigByScoreBeforePosition.add(tn);
+				}
+			}
 			contigByScoreBeforePosition_startPosition = contigStartsBefore;
 		}
 	}
@@ -381,6 +445,12 @@ public class MemoizedContigCaller extends ContigCaller {
 	public int tracking_memoizedNodeCount() {
 		return frontier.tracking_memoizedNodeCount();
 	}
+	/**
+	 * Number of frontier nodes visited whilst (re)calculating the memoization
+	 */
+	public long tracking_rememoizedNodeCount() {
+		return rememoizedNodeCount;
+	}
 	@Override
 	public int tracking_frontierSize() {
 		return frontier.tracking_frontierSize();
@@ -396,7 +466,7 @@ public class MemoizedContigCaller extends ContigCaller {
 	public void exportScores(File file) throws IOException {
 		try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
 			writer.write("start,score\n");
-			for (TraversalNode tn : contigByScore) {
+			for (TraversalNode tn : TraversalNode.ByScoreDescPathFirstEndSubnode.sortedCopy(contigByScore)) {
 				writer.write(String.format("%d,%d\n", tn.score, tn.pathFirstStart()));
 			}
 		}
@@ -519,8 +589,12 @@ public class MemoizedContigCaller extends ContigCaller {
 		int overlap = 0;
 		while (it.hasNext()) {
 			TraversalNode tn = it.next();
-			if (tn.node.firstKmer() < node.node.firstKmer()) continue;
-			if (tn.node.firstKmer() > node.node.firstKmer()) break;
+			int kmerCmp = ComparisonChain.start()
+					.compare(tn.node.firstKmerHigh(), node.node.firstKmerHigh())
+					.compare(tn.node.firstKmer(), node.node.firstKmer())
+					.result();
+			if (kmerCmp < 0) continue;
+			if (kmerCmp > 0) break;
 			if (tn.node.firstEnd() < node.node.firstStart()) continue;
 			if (tn.node.firstStart() > node.node.firstEnd()) continue;
 			if (tn.node.weight() == node.node.weight()) {
@@ -5,20 +5,22 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.SortedSet;
 import java.util.Stack;
-import java.util.TreeSet;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ToIntFunction;
 import java.util.stream.Stream;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.io.Files;
 
 import au.edu.wehi.idsv.Defaults;
+import au.edu.wehi.idsv.util.IndexedBinaryHeap;
 import au.edu.wehi.idsv.util.IntervalUtil;
 import au.edu.wehi.idsv.util.MessageThrottler;
 import au.edu.wehi.idsv.visualisation.PositionalDeBruijnGraphTracker.MemoizationStats;
@@ -41,8 +43,28 @@ public class MemoizedTraverse {
 	 * of each node. 
 	 */
 	private final IdentityHashMap<KmerPathNode, AbstractInt2ObjectSortedMap<TraversalNode>> memoized = new IdentityHashMap<>();
-	private final SortedSet<TraversalNode> frontier = new TreeSet<>(TraversalNode.ByLastEndKmer);
+	/**
+	 * Paths requiring (re)visitation. An indexed heap is used instead of a sorted set
+	 * as frontier nodes are only ever accessed at the head or removed directly.
+	 */
+	private final IndexedBinaryHeap<TraversalNode> frontier;
 	private final MemoizationStats stats = new MemoizationStats();
+	/**
+	 * Creates the heap holding paths in the given ordering
+	 */
+	interface HeapFactory {
+		IndexedBinaryHeap<TraversalNode> create(Comparator<TraversalNode> ordering, ToIntFunction<TraversalNode> getIndex, ObjIntConsumer<TraversalNode> setIndex);
+	}
+	public MemoizedTraverse() {
+		this(IndexedBinaryHeap::new);
+	}
+	/**
+	 * @param heapFactory creates the heaps used for path orderings
+	 */
+	MemoizedTraverse(HeapFactory heapFactory) {
+		this.frontier = heapFactory.create(TraversalNode.ByLastEndKmer,
+				tn -> tn.frontierHeapIndex, (tn, i) -> tn.frontierHeapIndex = i);
+	}
 	/**
 	 * Removes all given nodes from the graph
 	 * @param nodes nodes to remove
@@ -103,6 +125,71 @@ public class MemoizedTraverse {
 			assert(sanityCheck());
 		}
 	}
+	/**
+	 * Removes all given nodes from the graph and invalidates the memoization of
+	 * every node that could have a memoized path passing through them.
+	 * 
+	 * Since memoized paths only ever traverse forward in position space, a path
+	 * can only contain a removed node if the path ends at or after the first
+	 * start position of the removed nodes. Instead of individually tracing
+	 * each descendant path, all memoized nodes ending on or after this position
+	 * are considered dirty and their memoized paths discarded. Memoized
+	 * paths entirely before the dirty region are unaffected and retained.
+	 * 
+	 * Dirty nodes remain memoized but without any paths. Recreation of the
+	 * starting paths of the dirty nodes is left to the caller. These will be
+	 * rememoized by subsequent frontier advancement.
+	 * 
+	 * @param nodes nodes to remove
+	 * @return dirty nodes requiring rememoization 
+	 */
+	public List<KmerPathNode> invalidate(Set<KmerPathNode> nodes) {
+		int initialSize = memoized.size();
+		int dirtyStart = Integer.MAX_VALUE;
+		Collection<TraversalNode> tns = new ArrayList<>();
+		for (KmerPathNode node : nodes) {
+			if (node == null) {
+				if (!MessageThrottler.Current.shouldSupress(log, "removal of null KmerPathNode")) {
+					log.error("Sanity check failure: removal of KmerPathNode (null)");
+				}
+				continue;
+			}
+			AbstractInt2ObjectSortedMap<TraversalNode> cache = memoized.remove(node);
+			if (cache == null) {
+				if (!MessageThrottler.Current.shouldSupress(log, "removal of unmemoized nodes")) {
+					log.error(String.format("Sanity check failure: %s not memoized", node));
+				}
+			} else {
+				tns.addAll(cache.values());
+			}
+			dirtyStart = Math.min(dirtyStart, node.firstStart());
+		}
+		Collection<TraversalNode> frontierTns = new ArrayList<>();
+		for (TraversalNode tn : frontier) {
+			if (tn.node.node().lastEnd() >= dirtyStart) {
+				frontierTns.add(tn);
+			}
+		}
+		frontier.removeAll(frontierTns);
+		onFrontierRemove(frontierTns);
+		List<KmerPathNode> dirty = new ArrayList<>();
+		for (Entry<KmerPathNode, AbstractInt2ObjectSortedMap<TraversalNode>> entry : memoized.entrySet()) {
+			KmerPathNode node = entry.getKey();
+			if (node.lastEnd() >= dirtyStart) {
+				AbstractInt2ObjectSortedMap<TraversalNode> cache = entry.getValue();
+				tns.addAll(cache.values());
+				cache.clear();
+				dirty.add(node);
+			}
+		}
+		onMemoizeRemove(tns);
+		stats.nodes = initialSize;
+		stats.removed = nodes.size();
+		stats.pathsRemoved = tns.size();
+		stats.descendentPathsRemoved = 0;
+		stats.pathsReset = 0;
+		return dirty;
+	}
 	/**
 	 * Finds all child paths coming from any of the given parents
 	 * @param toCheck nodes to check for children 
@@ -272,7 +359,7 @@ public class MemoizedTraverse {
 				break;
 			}
 			// ok, so now we know the nodes overlap
-			assert(existingsn.firstKmer() == sn.firstKmer() && IntervalUtil.overlapsClosed(existingsn.firstStart(), existingsn.firstEnd(), sn.firstStart(), sn.firstEnd()));
+			assert(existingsn.firstKmer() == sn.firstKmer() && existingsn.firstKmerHigh() == sn.firstKmerHigh() && IntervalUtil.overlapsClosed(existingsn.firstStart(), existingsn.firstEnd(), sn.firstStart(), sn.firstEnd()));
 			if (node.score > existing.score) {
 				// remove existing node in overlapping interval
 				it.remove();
@@ -370,8 +457,7 @@ public class MemoizedTraverse {
 	 * @return
 	 */
 	public TraversalNode pollFrontier() {
-		TraversalNode head = frontier.first();
-		frontier.remove(head);
+		TraversalNode head = frontier.poll();
 		onFrontierRemove(head);
 		return head;
 	}
@@ -380,8 +466,7 @@ public class MemoizedTraverse {
 	 * @return
 	 */
 	public TraversalNode peekFrontier() {
-		if (frontier.isEmpty()) return null;
-		return frontier.first();	
+		return frontier.peek();
 	}
 	/**
 	 * Chcks if the frontier is empty
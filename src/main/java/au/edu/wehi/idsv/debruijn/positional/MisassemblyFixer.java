@@ -16,9 +16,8 @@ import com.google.common.collect.Multiset;
 import com.google.common.collect.SortedMultiset;
 import com.google.common.collect.TreeMultiset;
 
+import au.edu.wehi.idsv.debruijn.Kmer128ObjectOpenHashMap;
 import au.edu.wehi.idsv.util.IntervalUtil;
-import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
-import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
 import it.unimi.dsi.fastutil.longs.LongList;
 
@@ -31,13 +30,15 @@ class MisassemblyFixer {
 	private final List<KmerPathSubnode> contig;
 	/**
 	 * path kmer offset -> { path node offset, pretransition kmers, posttransition kmers }
+	 * 
+	 * Kmers are stored as interleaved high and low words
 	 */
 	private final NavigableMap<Integer, ImmutableTriple<Integer, LongList, LongList>> contigTransitionOffsetLookup;
 	/**
 	 * kmer -> { start, end, path kmer offset }
 	 * unordered for now: ideally this should be an IntIntervalTreeMultimap
 	 */
-	private final Long2ObjectMap<List<ImmutableTriple<Integer, Integer, Integer>>> contigOffsetLookup;
+	private final Kmer128ObjectOpenHashMap<List<ImmutableTriple<Integer, Integer, Integer>>> contigOffsetLookup;
 	public MisassemblyFixer(Collection<KmerPathSubnode> contig) {
 		this.contig = Lists.newArrayList(contig);
 		this.contigTransitionOffsetLookup = createContigTransitionOffsetLookup(this.contig);
@@ -49,19 +50,23 @@ class MisassemblyFixer {
 		for (int i = 0; i < contig.size() - 1; i++) {
 			KmerPathSubnode sn = contig.get(i);
 			LongArrayList snendkmers = new LongArrayList();
+			snendkmers.add(sn.lastKmerHigh());
 			snendkmers.add(sn.lastKmer());
 			for (int j = 0; j < sn.node().collapsedKmerOffsets().size(); j++) {
 				int offset = sn.node().collapsedKmerOffsets().getInt(j);
 				if (offset == sn.length() - 1) {
+					snendkmers.add(sn.node().collapsedKmerHigh(j));
 					snendkmers.add(sn.node().collapsedKmers().getLong(j));
 				}
 			}
 			KmerPathSubnode snext = contig.get(i + 1);
 			LongArrayList snextstartkmers = new LongArrayList();
+			snextstartkmers.add(snext.firstKmerHigh());
 			snextstartkmers.add(snext.firstKmer());
 			for (int j = 0; j < snext.node().collapsedKmerOffsets().size(); j++) {
 				int offset = snext.node().collapsedKmerOffsets().getInt(j);
 				if (offset == 0) {
+					snextstartkmers.add(snext.node().collapsedKmerHigh(j));
 					snextstartkmers.add(snext.node().collapsedKmers().getLong(j));
 				}
 			}
@@ -70,26 +75,26 @@ class MisassemblyFixer {
 		}
 		return lookup;
 	}
-	private static Long2ObjectMap<List<ImmutableTriple<Integer, Integer, Integer>>> createContigOffsetLookup(Collection<KmerPathSubnode> contig) {
-		Long2ObjectMap<List<ImmutableTriple<Integer, Integer, Integer>>> contigOffsetLookup = new Long2ObjectOpenHashMap<List<ImmutableTriple<Integer, Integer, Integer>>>();
+	private static Kmer128ObjectOpenHashMap<List<ImmutableTriple<Integer, Integer, Integer>>> createContigOffsetLookup(Collection<KmerPathSubnode> contig) {
+		Kmer128ObjectOpenHashMap<List<ImmutableTriple<Integer, Integer, Integer>>> contigOffsetLookup = new Kmer128ObjectOpenHashMap<List<ImmutableTriple<Integer, Integer, Integer>>>();
 		int snoffset = 0;
 		for (KmerPathSubnode sn : contig) {
 			for (int i = 0; i < sn.length(); i++) {
-				contigOffsetLookupAdd(contigOffsetLookup, snoffset + i, sn.node().kmer(i), sn.firstStart() + i, sn.firstEnd() + i);
+				contigOffsetLookupAdd(contigOffsetLookup, snoffset + i, sn.node().kmerHigh(i), sn.node().kmer(i), sn.firstStart() + i, sn.firstEnd() + i);
 			}
 			for (int j = 0; j < sn.node().collapsedKmerOffsets().size(); j++) {
 				int i = sn.node().collapsedKmerOffsets().getInt(j);
-				contigOffsetLookupAdd(contigOffsetLookup, snoffset + i, sn.node().collapsedKmers().getLong(j), sn.firstStart() + i, sn.firstEnd() + i);
+				contigOffsetLookupAdd(contigOffsetLookup, snoffset + i, sn.node().collapsedKmerHigh(j), sn.node().collapsedKmers().getLong(j), sn.firstStart() + i, sn.firstEnd() + i);
 			}
 			snoffset += sn.length();
 		}
 		return contigOffsetLookup;
 	}
-	private static void contigOffsetLookupAdd(Long2ObjectMap<List<ImmutableTriple<Integer, Integer, Integer>>> contigOffsetLookup, int offset, long kmer, int start, int end) {
-		List<ImmutableTriple<Integer, Integer, Integer>> list = contigOffsetLookup.get(kmer);
+	private static void contigOffsetLookupAdd(Kmer128ObjectOpenHashMap<List<ImmutableTriple<Integer, Integer, Integer>>> contigOffsetLookup, int offset, long kmerHigh, long kmer, int start, int end) {
+		List<ImmutableTriple<Integer, Integer, Integer>> list = contigOffsetLookup.get(kmerHigh, kmer);
 		if (list == null) {
 			list = new ArrayList<ImmutableTriple<Integer,Integer,Integer>>();
-			contigOffsetLookup.put(kmer, list);
+			contigOffsetLookup.put(kmerHigh, kmer, list);
 		}
 		list.add(new ImmutableTriple<Integer, Integer, Integer>(start, end, offset));
 	}
@@ -151,14 +156,22 @@ class MisassemblyFixer {
 	}
 	private void addSupport(int[] transitionSupport, KmerEvidence evidence, int offset) {
 		for (Entry<Integer, ImmutableTriple<Integer, LongList, LongList>> entry : contigTransitionOffsetLookup.subMap(offset, offset + evidence.length() - 1).entrySet()) {
-			long readKmerPreTransition = evidence.kmer(entry.getKey() - offset);
-			long readKmerPostTransition = evidence.kmer(entry.getKey() - offset + 1);
+			int preOffset = entry.getKey() - offset;
 			ImmutableTriple<Integer, LongList, LongList> transition = entry.getValue();
-			if (transition.middle.contains(readKmerPreTransition) && transition.right.contains(readKmerPostTransition)) {
+			if (containsKmer(transition.middle, evidence.kmerHigh(preOffset), evidence.kmer(preOffset))
+					&& containsKmer(transition.right, evidence.kmerHigh(preOffset + 1), evidence.kmer(preOffset + 1))) {
 				transitionSupport[transition.left]++;
 			}
 		}
 	}
+	private static boolean containsKmer(LongList interleavedKmers, long kmerHigh, long kmer) {
+		for (int i = 0; i < interleavedKmers.size(); i += 2) {
+			if (interleavedKmers.getLong(i) == kmerHigh && interleavedKmers.getLong(i + 1) == kmer) {
+				return true;
+			}
+		}
+		return false;
+	}
 	/**
 	 * Returns the inferred contig offset of the starting read kmer for every kmer match  
 	 * @param e read
@@ -169,7 +182,7 @@ class MisassemblyFixer {
 		for (int i = 0; i < evidence.length(); i++) {
 			KmerSupportNode n = evidence.node(i);
 			if (n != null) {
-				offsetLookup(counts, i, n.firstKmer(), n.firstStart(), n.firstEnd());
+				offsetLookup(counts, i, n.firstKmerHigh(), n.firstKmer(), n.firstStart(), n.firstEnd());
 			}
 		}
 		int maxCount = counts.entrySet().stream()
@@ -182,8 +195,8 @@ class MisassemblyFixer {
 				.collect(Collectors.toList());
 		return new int[] { best.get(0), best.get(best.size() - 1) };
 	}
-	private void offsetLookup(Multiset<Integer> counts, int readOffset, long kmer, int positionStart, int positionEnd) {
-		List<ImmutableTriple<Integer, Integer, Integer>> validPositionRanges = contigOffsetLookup.get(kmer);
+	private void offsetLookup(Multiset<Integer> counts, int readOffset, long kmerHigh, long kmer, int positionStart, int positionEnd) {
+		List<ImmutableTriple<Integer, Integer, Integer>> validPositionRanges = contigOffsetLookup.get(kmerHigh, kmer);
 		if (validPositionRanges != null) {
 			for (ImmutableTriple<Integer, Integer, Integer> entry : validPositionRanges)  {
 				if (IntervalUtil.overlapsClosed(entry.left, entry.middle, positionStart, positionEnd)) {
@@ -34,7 +34,8 @@ import au.edu.wehi.idsv.Defaults;
 import au.edu.wehi.idsv.DirectedEvidence;
 import au.edu.wehi.idsv.SanityCheckFailureException;
 import au.edu.wehi.idsv.debruijn.DeBruijnGraphBase;
-import au.edu.wehi.idsv.debruijn.KmerEncodingHelper;
+import au.edu.wehi.idsv.debruijn.Kmer128EncodingHelper;
+import au.edu.wehi.idsv.debruijn.Kmer128ObjectOpenHashMap;
 import au.edu.wehi.idsv.graph.ScalingHelper;
 import au.edu.wehi.idsv.model.Models;
 import au.edu.wehi.idsv.sam.SamTags;
@@ -46,10 +47,6 @@ import au.edu.wehi.idsv.visualisation.PositionalDeBruijnGraphTracker.ContigStats
 import au.edu.wehi.idsv.visualisation.PositionalExporter;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.util.Log;
-import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
-import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
-import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
-import it.unimi.dsi.fastutil.longs.LongSet;
 import it.unimi.dsi.fastutil.objects.ObjectOpenCustomHashSet;
 
 
@@ -68,6 +65,8 @@ public class NonReferenceContigAssembler implements Iterator<SAMRecord> {
 	private long telemetryLastflushContigs = System.nanoTime();
 	private long telemetryLastflushReferenceNodes = System.nanoTime();
 	private long telemetryLastloadGraphs = System.nanoTime();
+	private long telemetryLastCallContig = System.nanoTime();
+	private long telemetryLastRememoizedNodeCount = 0;
 	/**
 	 * Since reference kmers are not scored, calculating 
 	 * highest weighted results in a preference for paths
@@ -87,7 +86,7 @@ public class NonReferenceContigAssembler implements Iterator<SAMRecord> {
 	 * expensive approach overall
 	 */
 	private static final boolean SIMPLIFY_AFTER_REMOVAL = false;
-	private Long2ObjectMap<Collection<KmerPathNodeKmerNode>> graphByKmerNode = new Long2ObjectOpenHashMap<Collection<KmerPathNodeKmerNode>>();
+	private Kmer128ObjectOpenHashMap<Collection<KmerPathNodeKmerNode>> graphByKmerNode = new Kmer128ObjectOpenHashMap<Collection<KmerPathNodeKmerNode>>();
 	private TreeSet<KmerPathNode> graphByPosition = new TreeSet<KmerPathNode>(KmerNodeUtil.ByFirstStartKmer);
 	private SortedSet<KmerPathNode> nonReferenceGraphByPosition = new TreeSet<KmerPathNode>(KmerNodeUtil.ByFirstStartKmer);
 	private final EvidenceTracker evidenceTracker;
@@ -105,11 +104,12 @@ public class NonReferenceContigAssembler implements Iterator<SAMRecord> {
 	private int lastUnderlyingStartPosition = Integer.MIN_VALUE;
 	private int lastNextPosition = Integer.MIN_VALUE;
 	private RangeSet<Integer> toFlush = TreeRangeSet.create();
-	private MemoizedContigCaller bestContigCaller;
+	private final MemoizedContigCaller bestContigCaller;
 	private int contigsCalled = 0;
 	private long consumed = 0;
 	private PositionalDeBruijnGraphTracker exportTracker = null;
 	private AssemblyChunkTelemetry telemetry = null;
+	private AssemblyBudget budget = null;
 	public int getReferenceIndex() { return referenceIndex; }
 	private int retainWidth() {
 		return  maxContigAnchorLength() + Math.max(
@@ -173,13 +173,7 @@ public class NonReferenceContigAssembler implements Iterator<SAMRecord> {
 		this.evidenceTracker = tracker;
 		this.contigName = contigName;
 		this.preferredContigDirection = preferredContigDirection;
-		initialiseBestCaller();
-	}
-	private void initialiseBestCaller() {
 		this.bestContigCaller = new MemoizedContigCaller(ANCHORED_SCORE, maxEvidenceSupportIntervalWidth);
-		for (KmerPathNode n : graphByPosition) {
-			bestContigCaller.add(n);
-		}
 	}
 	@Override
 	public boolean hasNext() {
@@ -240,7 +234,20 @@ public class NonReferenceContigAssembler implements Iterator<SAMRecord> {
 		return Math.max(breakendContigLength, maxAnchorLength);
 	}
 	private void ensureCalledContig() {
+		if (budget == null) {
+			ensureCalledContigWithinBudget();
+			return;
+		}
+		budget.resume();
+		try {
+			ensureCalledContigWithinBudget();
+		} finally {
+			budget.pause();
+		}
+	}
+	private void ensureCalledContigWithinBudget() {
 		while (called.isEmpty()) {
+			enforceBudget();
 			flushExcessivelyDenseIntervals();
 			// remove misassembled partial contigs
 			if (aes.getContext().getAssemblyParameters().removeMisassembledPartialContigsDuringAssembly) {
@@ -341,6 +348,26 @@ public class NonReferenceContigAssembler implements Iterator<SAMRecord> {
 		}
 		advanceUnderlying(loadUntil);
 	}
+	/**
+	 * Skips assembly of the current region if it has exceeded its assembly budget
+	 */
+	private void enforceBudget() {
+		if (budget == null) return;
+		int regionPosition = nonReferenceGraphByPosition.isEmpty() ? nextPosition() : nonReferenceGraphByPosition.first().firstStart();
+		if (regionPosition == Integer.MAX_VALUE) return;
+		if (budget.update(regionPosition, graphByPosition.size()) == AssemblyBudget.Degradation.SKIP) {
+			int start = Math.min(budget.getRegionStart(), regionPosition);
+			int end = nextPosition();
+			if (end == Integer.MAX_VALUE) {
+				end = graphByPosition.isEmpty() ? start + 1 : graphByPosition.last().lastEnd() + 1;
+			}
+			end = Math.max(start + 1, end);
+			log.info(String.format("Assembly budget exceeded at %s:%d-%d. Skipping assembly of region.", contigName, start, end));
+			toFlush.add(Range.closedOpen(start, end));
+			aes.addThrottledInterval(referenceIndex, start, end);
+			budget.reset(end);
+		}
+	}
 	/**
 	 * Ensures that portions of the graph exceeding the maximum density are flushed
 	 */
@@ -429,6 +456,13 @@ public class NonReferenceContigAssembler implements Iterator<SAMRecord> {
 	 */
 	private SAMRecord callContig(ArrayDeque<KmerPathSubnode> rawcontig) {
 		if (rawcontig == null) return null;
+		if (getTelemetry() != null) {
+			long currentTime = System.nanoTime();
+			long rememoizedNodeCount = bestContigCaller.tracking_rememoizedNodeCount();
+			getTelemetry().rememoize(referenceIndex, rawcontig.getFirst().firstStart(), rawcontig.getLast().lastEnd(), rememoizedNodeCount - telemetryLastRememoizedNodeCount, currentTime - telemetryLastCallContig);
+			telemetryLastCallContig = currentTime;
+			telemetryLastRememoizedNodeCount = rememoizedNodeCount;
+		}
 		ArrayDeque<KmerPathSubnode> contig = rawcontig;
 		if (containsKmerRepeat(contig)) {
 			// recalculate the called contig, this may break the contig at the repeated kmer
@@ -466,7 +500,7 @@ public class NonReferenceContigAssembler implements Iterator<SAMRecord> {
 			endingAnchor.addFirst(endIt.next());
 		}
 		
-		byte[] bases = KmerEncodingHelper.baseCalls(fullContig.stream().flatMap(sn -> sn.node().pathKmers().stream()).collect(Collectors.toList()), k);
+		byte[] bases = Kmer128EncodingHelper.baseCalls(k, fullContig.getFirst().firstKmerHigh(), fullContig.stream().flatMap(sn -> sn.node().pathKmers().stream()).collect(Collectors.toList()));
 		byte[] quals = DeBruijnGraphBase.kmerWeightsToBaseQuals(k, fullContig.stream().flatMapToInt(sn -> sn.node().pathWeights().stream().mapToInt(Integer::intValue)).toArray());
 		assert(quals.length == bases.length);
 		// left aligned anchor position although it shouldn't matter since anchoring should be a single base wide
@@ -607,15 +641,15 @@ public class NonReferenceContigAssembler implements Iterator<SAMRecord> {
 		return startAnchorPath.headNode().asSubnodes();
 	}
 	private boolean containsKmerRepeat(Collection<KmerPathSubnode> contig) {
-		LongSet existing = new LongOpenHashSet();
+		Kmer128ObjectOpenHashMap<KmerPathSubnode> existing = new Kmer128ObjectOpenHashMap<>();
 		for (KmerPathSubnode n : contig) {
 			for (int i = 0; i < n.length(); i++) {
-				if (!existing.add(n.node().kmer(i))) {
+				if (existing.put(n.node().kmerHigh(i), n.node().kmer(i), n) != null) {
 					return true;
 				}
 			}
-			for (long kmer : n.node().collapsedKmers()) {
-				if (!existing.add(kmer)) {
+			for (int i = 0; i < n.node().collapsedKmers().size(); i++) {
+				if (existing.put(n.node().collapsedKmerHigh(i), n.node().collapsedKmers().getLong(i), n) != null) {
 					return true;
 				}
 			}
@@ -634,9 +668,10 @@ public class NonReferenceContigAssembler implements Iterator<SAMRecord> {
 			updateRemovalList(toRemove, e);
 		}
 		if (toRemove.size() > aes.getContext().getAssemblyParameters().positional.forceFullMemoizationRecalculationAt * graphByPosition.size()) {
-			bestContigCaller = null;
-		}
-		if (bestContigCaller != null) {
+			// removing so much of the graph that it's cheaper to rememoize everything after the removal
+			// than to track down the individual descendant paths
+			bestContigCaller.invalidate(toRemove.keySet());
+		} else {
 			// removes all KmerPathNodes that need mutation from the memoization 
 			bestContigCaller.remove(toRemove.keySet());
 		}
@@ -656,15 +691,12 @@ public class NonReferenceContigAssembler implements Iterator<SAMRecord> {
 			assert(sanityCheck());
 			assert(sanityCheckDisjointNodeIntervals());
 		}
-		if (Defaults.SANITY_CHECK_MEMOIZATION && bestContigCaller != null) {
+		if (Defaults.SANITY_CHECK_MEMOIZATION) {
 			// Force memoization recalculation now
 			bestContigCaller.bestContig(nextPosition());
 			// so we can check that our removal was correct
 			verifyMemoization();
 		}
-		if (bestContigCaller == null) {
-			initialiseBestCaller();
-		}
 	}
 	/**
 	 * Attempts to simplify the given nodes
@@ -712,7 +744,7 @@ public class NonReferenceContigAssembler implements Iterator<SAMRecord> {
 		}
 	}
 	private void updateRemovalList(Map<KmerPathNode, List<List<KmerNode>>> toRemove, KmerSupportNode support) {
-		Collection<KmerPathNodeKmerNode> kpnknList = graphByKmerNode.get(support.lastKmer());
+		Collection<KmerPathNodeKmerNode> kpnknList = graphByKmerNode.get(support.lastKmerHigh(), support.lastKmer());
 		if (kpnknList != null) {
 			for (KmerPathNodeKmerNode n : kpnknList) {
 				if (IntervalUtil.overlapsClosed(support.lastStart(), support.lastEnd(), n.lastStart(), n.lastEnd())) {
@@ -772,15 +804,11 @@ public class NonReferenceContigAssembler implements Iterator<SAMRecord> {
 		for (int i = 0; i < node.collapsedKmers().size(); i++) {
 			addToGraph(new KmerPathNodeKmerNode(i, node));
 		}
-		if (bestContigCaller != null) {
-			bestContigCaller.add(node);
-		}
+		bestContigCaller.add(node);
 	}
 	private void removeFromGraph(KmerPathNode node, boolean includeMemoizationRemoval) {
 		if (includeMemoizationRemoval) {
-			if (bestContigCaller != null) {
-				bestContigCaller.remove(node);
-			}
+			bestContigCaller.remove(node);
 		}
 		boolean removed = graphByPosition.remove(node);
 		nonReferenceGraphByPosition.remove(node);
@@ -793,23 +821,23 @@ public class NonReferenceContigAssembler implements Iterator<SAMRecord> {
 		}
 	}
 	private void addToGraph(KmerPathNodeKmerNode node) {
-		Collection<KmerPathNodeKmerNode> list = graphByKmerNode.get(node.firstKmer());
+		Collection<KmerPathNodeKmerNode> list = graphByKmerNode.get(node.firstKmerHigh(), node.firstKmer());
 		if (list == null) {
 			list = new ArrayList<KmerPathNodeKmerNode>();
-			graphByKmerNode.put(node.firstKmer(), list);
+			graphByKmerNode.put(node.firstKmerHigh(), node.firstKmer(), list);
 		}
 		list.add(node);
 	}
 	private void removeFromGraph(KmerPathNodeKmerNode node) {
-		Collection<KmerPathNodeKmerNode> list = graphByKmerNode.get(node.firstKmer());
+		Collection<KmerPathNodeKmerNode> list = graphByKmerNode.get(node.firstKmerHigh(), node.firstKmer());
 		if (list == null) return;
 		list.remove(node);
 		if (list.size() == 0) {
-			graphByKmerNode.remove(node.firstKmer());
+			graphByKmerNode.remove(node.firstKmerHigh(), node.firstKmer());
 		}
 	}
 	public boolean sanityCheck() {
-		graphByKmerNode.long2ObjectEntrySet().stream().flatMap(e -> e.getValue().stream()).forEach(kn -> { 
+		graphByKmerNode.values().stream().flatMap(e -> e.stream()).forEach(kn -> { 
 			assert(kn.node().isValid());
 			assert(graphByPosition.contains(kn.node()));
 		});
@@ -818,14 +846,14 @@ public class NonReferenceContigAssembler implements Iterator<SAMRecord> {
 			assert(evidenceTracker.matchesExpected(new KmerPathSubnode(n)));
 		}
 		if (Defaults.SANITY_CHECK_MEMOIZATION && Defaults.SANITY_CHECK_MEMOIZATION_ALL_OPERATIONS) {
-			if (bestContigCaller != null) assert(bestContigCaller.sanityCheck());
+			assert(bestContigCaller.sanityCheck());
 		}
 		return true;
 	}
 	public boolean sanityCheckDisjointNodeIntervals() {
-		Map<Long, List<KmerPathNode>> byKmer = graphByPosition
+		Map<List<Long>, List<KmerPathNode>> byKmer = graphByPosition
 	            .stream()
-	            .collect(Collectors.groupingBy(KmerPathNode::firstKmer));
+	            .collect(Collectors.groupingBy(n -> Arrays.asList(n.firstKmerHigh(), n.firstKmer())));
 		for (List<KmerPathNode> list : byKmer.values()) {
 			if (list.size() == 1) continue;
 			ArrayList<KmerPathNode> al = Lists.newArrayList(list);
@@ -858,6 +886,18 @@ public class NonReferenceContigAssembler implements Iterator<SAMRecord> {
 	public void setExportTracker(PositionalDeBruijnGraphTracker exportTracker) {
 		this.exportTracker = exportTracker;
 	}
+	public AssemblyBudget getBudget() {
+		return budget;
+	}
+	/**
+	 * Limits the CPU time and memory used to assemble any single region.
+	 */
+	public void setBudget(AssemblyBudget budget) {
+		this.budget = budget;
+		if (budget != null) {
+			budget.setRegionWidth(retainWidth() + flushWidth());
+		}
+	}
 	public AssemblyChunkTelemetry getTelemetry() {
 		return telemetry;
 	}
@@ -11,6 +11,7 @@ import java.util.Set;
 import au.edu.wehi.idsv.Defaults;
 import au.edu.wehi.idsv.debruijn.DeBruijnGraph;
 import au.edu.wehi.idsv.debruijn.DeBruijnSequenceGraphNodeUtil;
+import au.edu.wehi.idsv.debruijn.Kmer128EncodingHelper;
 import au.edu.wehi.idsv.debruijn.KmerEncodingHelper;
 import au.edu.wehi.idsv.debruijn.positional.KmerPathNodeBasePath.TraversalNode;
 import au.edu.wehi.idsv.util.IntervalUtil;
@@ -268,8 +269,10 @@ public class PathCollapseIterator extends CollapseIterator implements DeBruijnGr
 				if ((traverseForward && !KmerEncodingHelper.lastBaseMatches(k,
 						headPathNode.kmer(offset - headPathStartOffset),
 						refPathNode.kmer(offset - nodePathStartOffset)))
-					|| (!traverseForward && !KmerEncodingHelper.firstBaseMatches(k,
+					|| (!traverseForward && !Kmer128EncodingHelper.firstBaseMatches(k,
+						headPathNode.kmerHigh(headPathNode.length() - 1 - (offset - headPathStartOffset)),
 						headPathNode.kmer(headPathNode.length() - 1 - (offset - headPathStartOffset)),
+						refPathNode.kmerHigh(refPathNode.length() - 1 - (offset - nodePathStartOffset)),
 						refPathNode.kmer(refPathNode.length() - 1 - (offset - nodePathStartOffset))))) {
 					diff++;
 				}
@@ -352,7 +355,7 @@ public class PathCollapseIterator extends CollapseIterator implements DeBruijnGr
 	}
 	private boolean hasSufficientEntropy(KmerPathNode node) {
 		if (minimumPathNodeEntropy <= 0) return true;
-		double entropy = SequenceUtil.shannonEntropy(KmerEncodingHelper.baseCounts(k, node.pathKmers()));
+		double entropy = SequenceUtil.shannonEntropy(Kmer128EncodingHelper.baseCounts(k, node.firstKmerHigh(), node.pathKmers()));
 		return entropy > minimumPathNodeEntropy;
 	}
 	@Override
@@ -392,7 +395,7 @@ public class PathCollapseIterator extends CollapseIterator implements DeBruijnGr
 		return String.format("[%d-%d] %s",
 			path.iterator().next().firstStart(),
 			path.iterator().next().firstEnd(),
-			new String(KmerEncodingHelper.baseCalls(DeBruijnSequenceGraphNodeUtil.asKmers(path), k)));
+			new String(Kmer128EncodingHelper.baseCalls(k, path.iterator().next().firstKmerHigh(), DeBruijnSequenceGraphNodeUtil.asKmers(path))));
 	}
 	@Override
 	public int getK() {
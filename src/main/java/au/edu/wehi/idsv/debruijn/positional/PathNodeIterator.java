@@ -11,6 +11,7 @@ import com.google.common.collect.Iterators;
 import com.google.common.collect.PeekingIterator;
 
 import au.edu.wehi.idsv.Defaults;
+import au.edu.wehi.idsv.debruijn.Kmer128EncodingHelper;
 import au.edu.wehi.idsv.debruijn.KmerEncodingHelper;
 import au.edu.wehi.idsv.util.IntervalUtil;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
@@ -25,6 +26,10 @@ public class PathNodeIterator implements Iterator<KmerPathNode> {
 	private final PeekingIterator<? extends KmerNode> underlying;
 	private final int maxNodeLength;
 	private final int k;
+	/**
+	 * Number of bases encoded in the low kmer word
+	 */
+	private final int lowK;
 	/**
 	 * Edge lookup. This lookup contains each KmerNode/KmerPathNode at the start/end kmers
 	 * As a KmerPathNode is constructed, the KmerNode lookup entries are replaced
@@ -65,18 +70,21 @@ public class PathNodeIterator implements Iterator<KmerPathNode> {
 		this.underlying = Iterators.peekingIterator(it);
 		this.maxNodeLength = maxPathLength;
 		this.k = k;
+		this.lowK = Math.min(k, KmerEncodingHelper.MAX_K);
 	}
 	/**
 	 * Edge lookup
 	 */
 	private List<KmerNode> nextNodes(KmerNode node) {
 		List<KmerNode> adj = new ArrayList<KmerNode>(4);
-		for (long kmer : KmerEncodingHelper.nextStates(k, node.lastKmer())) {
+		// lookups are by low word so we also need to check the high word matches
+		long nextHigh = Kmer128EncodingHelper.nextStateHigh(k, node.lastKmerHigh(), node.lastKmer());
+		for (long kmer : KmerEncodingHelper.nextStates(lowK, node.lastKmer())) {
 			List<KmerNode> list = edgeLookup.get(kmer);
 			if (list != null) {
 				for (KmerNode n : list) {
-					if (!(n instanceof KmerPathNode) && IntervalUtil.overlapsClosed(node.lastStart() + 1, node.lastEnd() + 1, n.firstStart(), n.firstEnd())) {
-						assert(KmerEncodingHelper.isNext(k, node.lastKmer(), n.firstKmer()));
+					if (!(n instanceof KmerPathNode) && n.firstKmerHigh() == nextHigh && IntervalUtil.overlapsClosed(node.lastStart() + 1, node.lastEnd() + 1, n.firstStart(), n.firstEnd())) {
+						assert(Kmer128EncodingHelper.isNext(k, node.lastKmerHigh(), node.lastKmer(), n.firstKmerHigh(), n.firstKmer()));
 						adj.add(n);
 					}
 				}
@@ -84,8 +92,8 @@ public class PathNodeIterator implements Iterator<KmerPathNode> {
 			List<KmerPathNode> pnList = firstKmerEdgeLookup.get(kmer);
 			if (pnList != null) {
 				for (KmerNode n : pnList) {
-					if (IntervalUtil.overlapsClosed(node.lastStart() + 1, node.lastEnd() + 1, n.firstStart(), n.firstEnd())) {
-						assert(KmerEncodingHelper.isNext(k, node.lastKmer(), n.firstKmer()));
+					if (n.firstKmerHigh() == nextHigh && IntervalUtil.overlapsClosed(node.lastStart() + 1, node.lastEnd() + 1, n.firstStart(), n.firstEnd())) {
+						assert(Kmer128EncodingHelper.isNext(k, node.lastKmerHigh(), node.lastKmer(), n.firstKmerHigh(), n.firstKmer()));
 						adj.add(n);
 					}
 				}
@@ -95,12 +103,13 @@ public class PathNodeIterator implements Iterator<KmerPathNode> {
 	}
 	private List<KmerNode> prevNodes(KmerNode node) {
 		List<KmerNode> adj = new ArrayList<KmerNode>(4);
-		for (long kmer : KmerEncodingHelper.prevStates(k, node.firstKmer())) {
+		for (long kmer : KmerEncodingHelper.prevStates(lowK, node.firstKmer())) {
 			List<KmerNode> list = edgeLookup.get(kmer);
 			if (list != null) {
 				for (KmerNode n : list) {
-					if (IntervalUtil.overlapsClosed(n.lastStart() + 1, n.lastEnd() + 1, node.firstStart(), node.firstEnd())) {
-						assert(KmerEncodingHelper.isNext(k, n.lastKmer(), node.firstKmer()));
+					if (Kmer128EncodingHelper.nextStateHigh(k, n.lastKmerHigh(), n.lastKmer()) == node.firstKmerHigh()
+							&& IntervalUtil.overlapsClosed(n.lastStart() + 1, n.lastEnd() + 1, node.firstStart(), node.firstEnd())) {
+						assert(Kmer128EncodingHelper.isNext(k, n.lastKmerHigh(), n.lastKmer(), node.firstKmerHigh(), node.firstKmer()));
 						adj.add(n);
 					}
 				}
@@ -208,7 +217,7 @@ public class PathNodeIterator implements Iterator<KmerPathNode> {
 					&& toMerge.isReference() == node.isReference()
 					&& toMerge.length() < maxNodeLength) {
 				// we can merge
-				assert(KmerEncodingHelper.isNext(k, toMerge.lastKmer(), node.firstKmer()));
+				assert(Kmer128EncodingHelper.isNext(k, toMerge.lastKmerHigh(), toMerge.lastKmer(), node.firstKmerHigh(), node.firstKmer()));
 				assert(toMerge instanceof KmerPathNode); // must have already processed our previous node
 				KmerPathNode pn = (KmerPathNode)toMerge;
 				List<KmerNode> pnNext = nextNodes(pn);
@@ -126,7 +126,7 @@ public class PathSimplificationIterator implements PeekingIterator<KmerPathNode>
 		return false;
 	}
 	private KmerPathNode adjacentBeforeKmerToMergeWith(KmerPathNode node) {
-		KmerPathNode adj = endLookup.get(new KmerPathNode(node.lastKmer(), 0, node.lastStart() - 1, false, 0));
+		KmerPathNode adj = endLookup.get(new KmerPathNode(node.lastKmerHigh(), node.lastKmer(), 0, node.lastStart() - 1, false, 0));
 		if (adj != null
 				&& node.canCoaleseBeforeAdjacent(adj)
 				&& adj.width() + node.width() <= maxWidth
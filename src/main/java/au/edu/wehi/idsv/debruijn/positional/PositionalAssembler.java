@@ -2,21 +2,31 @@ package au.edu.wehi.idsv.debruijn.positional;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.PeekingIterator;
 
 import au.edu.wehi.idsv.AssemblyEvidenceSource;
 import au.edu.wehi.idsv.AssemblyIdGenerator;
 import au.edu.wehi.idsv.BreakendDirection;
+import au.edu.wehi.idsv.BreakendSummary;
 import au.edu.wehi.idsv.Defaults;
 import au.edu.wehi.idsv.DirectedEvidence;
 import au.edu.wehi.idsv.ProcessingContext;
 import au.edu.wehi.idsv.configuration.AssemblyConfiguration;
 import au.edu.wehi.idsv.configuration.VisualisationConfiguration;
 import au.edu.wehi.idsv.sam.SamTags;
+import au.edu.wehi.idsv.util.ParallelTransformIterator;
 import au.edu.wehi.idsv.visualisation.AssemblyTelemetry.AssemblyChunkTelemetry;
 import au.edu.wehi.idsv.visualisation.PositionalDeBruijnGraphTracker;
 import htsjdk.samtools.SAMRecord;
@@ -30,12 +40,18 @@ import htsjdk.samtools.util.Log;
  */
 public class PositionalAssembler implements Iterator<SAMRecord> {
 	private static final Log log = Log.getInstance(PositionalAssembler.class);
+	/**
+	 * Minimum number of evidence to assemble as a single parallel task 
+	 */
+	private static final int MIN_COMPONENT_EVIDENCE = 256;
+	private static ForkJoinPool componentPool = null;
 	private final ProcessingContext context;
 	private final AssemblyEvidenceSource source;
 	private final AssemblyIdGenerator assemblyNameGenerator;
 	private final PeekingIterator<DirectedEvidence> it;
 	private final BreakendDirection direction;
 	private NonReferenceContigAssembler currentAssembler = null;
+	private Iterator<SAMRecord> currentComponents = null;
 	private String currentContig = "";
 	private AssemblyChunkTelemetry telemetry = null;
 	public PositionalAssembler(ProcessingContext context, AssemblyEvidenceSource source, AssemblyIdGenerator assemblyNameGenerator, Iterator<DirectedEvidence> backingIterator, BreakendDirection direction) {
@@ -51,15 +67,29 @@ public class PositionalAssembler implements Iterator<SAMRecord> {
 	public PositionalAssembler(ProcessingContext context, AssemblyEvidenceSource source, AssemblyIdGenerator assemblyNameGenerator, Iterator<DirectedEvidence> it) {
 		this(context, source, assemblyNameGenerator, it, null);
 	}
+	private boolean isComponentParallel() {
+		return context.getAssemblyParameters().positional.componentParallelism > 1;
+	}
 	@Override
 	public boolean hasNext() {
+		if (isComponentParallel()) {
+			ensureComponentAssembler();
+			return currentComponents != null && currentComponents.hasNext();
+		}
 		ensureAssembler(Defaults.ATTEMPT_ASSEMBLY_RECOVERY);
 		return currentAssembler != null && currentAssembler.hasNext();
 	}
 	@Override
 	public SAMRecord next() {
-		ensureAssembler(Defaults.ATTEMPT_ASSEMBLY_RECOVERY);
-		SAMRecord r = currentAssembler.next();
+		SAMRecord r;
+		if (isComponentParallel()) {
+			ensureComponentAssembler();
+			if (currentComponents == null) throw new NoSuchElementException();
+			r = currentComponents.next();
+		} else {
+			ensureAssembler(Defaults.ATTEMPT_ASSEMBLY_RECOVERY);
+			r = currentAssembler.next();
+		}
 		if (direction != null) {
 			// force assembly direction to match the direction supplied
 			r.setAttribute(SamTags.ASSEMBLY_DIRECTION, direction.toChar());
@@ -72,14 +102,17 @@ public class PositionalAssembler implements Iterator<SAMRecord> {
 		}
 	}
 	private void closeCurrentAssembler() {
-		if (currentAssembler.getExportTracker() != null) {
+		closeExportTracker(currentAssembler);
+		currentAssembler = null;
+	}
+	private static void closeExportTracker(NonReferenceContigAssembler assembler) {
+		if (assembler.getExportTracker() != null) {
 			try {
-				currentAssembler.getExportTracker().close();
+				assembler.getExportTracker().close();
 			} catch (IOException e) {
 				log.debug(e);
 			}
 		}
-		currentAssembler = null;
 	}
 	private void ensureAssembler(boolean attemptRecovery) {
 		try {
@@ -114,7 +147,174 @@ public class PositionalAssembler implements Iterator<SAMRecord> {
 			flushIfRequired();
 		}
 	}
+	/**
+	 * Splits the evidence for the next chromosome into independent graph components
+	 * and assembles the components in parallel.
+	 */
+	private void ensureComponentAssembler() {
+		while ((currentComponents == null || !currentComponents.hasNext()) && it.hasNext()) {
+			// all components of the previous chromosome have been assembled so we
+			// are guaranteed that no component assembly is still consuming our input
+			int referenceIndex = it.peek().getBreakendSummary().referenceIndex;
+			currentContig = context.getDictionary().getSequence(referenceIndex).getSequenceName();
+			AssemblyConfiguration ap = context.getAssemblyParameters();
+			GraphComponentIterator components = new GraphComponentIterator(
+					new ReferenceIndexIterator(it, referenceIndex),
+					source.getMaxConcordantFragmentSize() + 1,
+					source.getMaxConcordantFragmentSize() + source.getMaxReadLength() + 1,
+					MIN_COMPONENT_EVIDENCE,
+					ap.positional.maxComponentEvidence);
+			ParallelTransformIterator<Iterator<DirectedEvidence>, ComponentAssembly> assembled = new ParallelTransformIterator<>(
+					components,
+					evidence -> assembleComponent(evidence, referenceIndex),
+					ap.positional.componentParallelism,
+					getComponentExecutor());
+			currentComponents = Iterators.concat(Iterators.transform(assembled, ca -> ca.iterator()));
+		}
+	}
+	private static synchronized Executor getComponentExecutor() {
+		if (componentPool == null) {
+			componentPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		}
+		return componentPool;
+	}
+	private ComponentAssembly assembleComponent(Iterator<DirectedEvidence> evidence, int referenceIndex) {
+		if (GraphComponentIterator.isUnbuffered(evidence)) {
+			// the final component contains the remainder of the chromosome so
+			// is assembled as it is consumed instead of being buffered in memory
+			return new StreamingComponentAssembly(evidence, referenceIndex);
+		}
+		DeferredIdGenerator idGenerator = new DeferredIdGenerator();
+		List<SAMRecord> assemblies = new ArrayList<>();
+		PeekingIterator<DirectedEvidence> evidenceIt = Iterators.peekingIterator(evidence);
+		int firstPosition = evidenceIt.peek().getBreakendSummary().start;
+		NonReferenceContigAssembler assembler = null;
+		try {
+			assembler = createAssembler(evidenceIt, referenceIndex, idGenerator);
+			while (assembler.hasNext()) {
+				assemblies.add(assembler.next());
+			}
+			return new BufferedComponentAssembly(assemblies, idGenerator, null);
+		} catch (AssertionError|Exception e) {
+			log.error(e, String.format("Error assembling %s:%d. This should not happen. Please raise an issue at https://github.com/PapenfussLab/gridss/issues",
+					context.getDictionary().getSequence(referenceIndex).getSequenceName(), firstPosition));
+			return new BufferedComponentAssembly(assemblies, idGenerator, e);
+		} finally {
+			if (assembler != null) {
+				closeExportTracker(assembler);
+			}
+		}
+	}
+	/**
+	 * Assemblies of an independent graph component
+	 */
+	private interface ComponentAssembly {
+		Iterator<SAMRecord> iterator();
+	}
+	/**
+	 * Assemblies of a graph component assembled on a worker thread
+	 */
+	private class BufferedComponentAssembly implements ComponentAssembly {
+		private final List<SAMRecord> assemblies;
+		private final DeferredIdGenerator idGenerator;
+		private final Throwable error;
+		public BufferedComponentAssembly(List<SAMRecord> assemblies, DeferredIdGenerator idGenerator, Throwable error) {
+			this.assemblies = assemblies;
+			this.idGenerator = idGenerator;
+			this.error = error;
+		}
+		/**
+		 * Assigns final assembly names in output order so naming does not
+		 * depend on the order in which components were assembled.
+		 */
+		@Override
+		public Iterator<SAMRecord> iterator() {
+			if (error != null && !Defaults.ATTEMPT_ASSEMBLY_RECOVERY) {
+				if (error instanceof Error) throw (Error)error;
+				if (error instanceof RuntimeException) throw (RuntimeException)error;
+				throw new RuntimeException(error);
+			}
+			if (assemblies.isEmpty()) return Collections.emptyIterator();
+			return Iterators.transform(assemblies.iterator(), r -> idGenerator.rename(r, assemblyNameGenerator));
+		}
+	}
+	/**
+	 * Assemblies of a graph component assembled on the consuming thread.
+	 * 
+	 * The component is only assembled once all prior components have been returned
+	 * so assembly names are generated directly in output order.
+	 */
+	private class StreamingComponentAssembly implements ComponentAssembly {
+		private final Iterator<DirectedEvidence> evidence;
+		private final int referenceIndex;
+		public StreamingComponentAssembly(Iterator<DirectedEvidence> evidence, int referenceIndex) {
+			this.evidence = evidence;
+			this.referenceIndex = referenceIndex;
+		}
+		@Override
+		public Iterator<SAMRecord> iterator() {
+			PeekingIterator<DirectedEvidence> evidenceIt = Iterators.peekingIterator(evidence);
+			int firstPosition = evidenceIt.peek().getBreakendSummary().start;
+			NonReferenceContigAssembler assembler = createAssembler(evidenceIt, referenceIndex, assemblyNameGenerator);
+			return new AbstractIterator<SAMRecord>() {
+				@Override
+				protected SAMRecord computeNext() {
+					try {
+						if (assembler.hasNext()) {
+							return assembler.next();
+						}
+					} catch (AssertionError|Exception e) {
+						log.error(e, String.format("Error assembling %s:%d. This should not happen. Please raise an issue at https://github.com/PapenfussLab/gridss/issues",
+								context.getDictionary().getSequence(referenceIndex).getSequenceName(), firstPosition));
+						if (!Defaults.ATTEMPT_ASSEMBLY_RECOVERY) {
+							closeExportTracker(assembler);
+							throw e;
+						}
+					}
+					closeExportTracker(assembler);
+					return endOfData();
+				}
+			};
+		}
+	}
+	/**
+	 * Records the assembly name generation arguments so the name can be generated
+	 * once the assembly order is known.
+	 */
+	private static class DeferredIdGenerator implements AssemblyIdGenerator {
+		private static class Arguments {
+			private final BreakendSummary breakpoint;
+			private final byte[] baseCalls;
+			private final int startAnchoredBaseCount;
+			private final int endAnchoredBaseCount;
+			public Arguments(BreakendSummary breakpoint, byte[] baseCalls, int startAnchoredBaseCount, int endAnchoredBaseCount) {
+				this.breakpoint = breakpoint;
+				this.baseCalls = baseCalls;
+				this.startAnchoredBaseCount = startAnchoredBaseCount;
+				this.endAnchoredBaseCount = endAnchoredBaseCount;
+			}
+		}
+		private final Map<String, Arguments> deferred = new HashMap<>();
+		@Override
+		public String generate(BreakendSummary breakpoint, byte[] baseCalls, int startAnchoredBaseCount, int endAnchoredBaseCount) {
+			String name = "deferred" + deferred.size();
+			deferred.put(name, new Arguments(breakpoint, baseCalls, startAnchoredBaseCount, endAnchoredBaseCount));
+			return name;
+		}
+		public SAMRecord rename(SAMRecord r, AssemblyIdGenerator generator) {
+			Arguments args = deferred.remove(r.getReadName());
+			if (args != null) {
+				r.setReadName(generator.generate(args.breakpoint, args.baseCalls, args.startAnchoredBaseCount, args.endAnchoredBaseCount));
+			}
+			return r;
+		}
+	}
 	private NonReferenceContigAssembler createAssembler() {
+		int referenceIndex = it.peek().getBreakendSummary().referenceIndex;
+		currentContig = context.getDictionary().getSequence(referenceIndex).getSequenceName();
+		return createAssembler(new ReferenceIndexIterator(it, referenceIndex), referenceIndex, assemblyNameGenerator);
+	}
+	private NonReferenceContigAssembler createAssembler(PeekingIterator<DirectedEvidence> evidenceIt, int referenceIndex, AssemblyIdGenerator assemblyNameGenerator) {
 		AssemblyConfiguration ap = context.getAssemblyParameters();
 		int maxKmerSupportIntervalWidth = source.getMaxConcordantFragmentSize() - source.getMinConcordantFragmentSize() + 1; 		
 		int maxReadLength = source.getMaxReadLength();
@@ -123,11 +323,15 @@ public class PositionalAssembler implements Iterator<SAMRecord> {
 		int maxPathLength = ap.positional.maxPathLengthInBases(maxReadLength);
 		int maxPathCollapseLength = ap.errorCorrection.maxPathCollapseLengthInBases(maxReadLength);
 		int anchorAssemblyLength = ap.anchorLength;
-		int referenceIndex = it.peek().getBreakendSummary().referenceIndex;
-		int firstPosition = it.peek().getBreakendSummary().start;
-		currentContig = context.getDictionary().getSequence(referenceIndex).getSequenceName();
-		ReferenceIndexIterator evidenceIt = new ReferenceIndexIterator(it, referenceIndex);
+		int firstPosition = evidenceIt.peek().getBreakendSummary().start;
+		String contigName = context.getDictionary().getSequence(referenceIndex).getSequenceName();
 		EvidenceTracker evidenceTracker = new EvidenceTracker();
+		AssemblyBudget budget = new AssemblyBudget((long)(ap.positional.regionCpuTimeBudgetInSeconds * 1000000000L), ap.positional.maxLiveNodes);
+		if (budget.isEnabled()) {
+			evidenceIt = Iterators.peekingIterator(Iterators.filter(evidenceIt, budget::test));
+		} else {
+			budget = null;
+		}
 		SupportNodeIterator supportIt = new SupportNodeIterator(k, evidenceIt, source.getMaxConcordantFragmentSize(), evidenceTracker, ap.includePairAnchors, ap.pairAnchorMismatchIgnoreEndBases);
 		AggregateNodeIterator agIt = new AggregateNodeIterator(supportIt);
 		Iterator<KmerNode> knIt = agIt;
@@ -158,22 +362,26 @@ public class PositionalAssembler implements Iterator<SAMRecord> {
 				pnIt = evidenceTracker.new PathNodeAssertionInterceptor(pnIt, "PathSimplificationIterator");
 			}
 		}
-		currentAssembler = new NonReferenceContigAssembler(pnIt, referenceIndex, maxEvidenceSupportIntervalWidth, anchorAssemblyLength, k, source, assemblyNameGenerator, evidenceTracker, currentContig, BreakendDirection.Forward);
+		NonReferenceContigAssembler assembler = new NonReferenceContigAssembler(pnIt, referenceIndex, maxEvidenceSupportIntervalWidth, anchorAssemblyLength, k, source, assemblyNameGenerator, evidenceTracker, contigName, BreakendDirection.Forward);
+		if (budget != null) {
+			budget.setCollapseIterator(collapseIt);
+			assembler.setBudget(budget);
+		}
 		VisualisationConfiguration vis = context.getConfig().getVisualisation();
 		if (vis.assemblyProgress) {
 			String filename = String.format("positional-%s_%d-%s.csv", context.getDictionary().getSequence(referenceIndex).getSequenceName(), firstPosition, direction);
 			File file = new File(vis.directory, filename);
 			PositionalDeBruijnGraphTracker exportTracker;
 			try {
-				exportTracker = new PositionalDeBruijnGraphTracker(file, supportIt, agIt, pathNodeIt, collapseIt, simplifyIt, evidenceTracker, currentAssembler);
+				exportTracker = new PositionalDeBruijnGraphTracker(file, supportIt, agIt, pathNodeIt, collapseIt, simplifyIt, evidenceTracker, assembler);
 				exportTracker.writeHeader();
-				currentAssembler.setExportTracker(exportTracker);
+				assembler.setExportTracker(exportTracker);
 			} catch (IOException e) {
 				log.debug(e);
 			}
 		}
-		currentAssembler.setTelemetry(getTelemetry());
-		return currentAssembler;
+		assembler.setTelemetry(getTelemetry());
+		return assembler;
 	}
 	public AssemblyChunkTelemetry getTelemetry() {
 		return telemetry;
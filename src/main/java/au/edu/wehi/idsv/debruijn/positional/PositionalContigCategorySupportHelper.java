@@ -15,8 +15,8 @@ import au.edu.wehi.idsv.NonReferenceReadPair;
 import au.edu.wehi.idsv.SAMEvidenceSource;
 import au.edu.wehi.idsv.configuration.AssemblyConfiguration;
 import au.edu.wehi.idsv.debruijn.ContigCategorySupportHelper;
+import au.edu.wehi.idsv.debruijn.Kmer128ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
-import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
 
 public class PositionalContigCategorySupportHelper extends ContigCategorySupportHelper {
@@ -28,7 +28,7 @@ public class PositionalContigCategorySupportHelper extends ContigCategorySupport
 				.mapToInt(x -> ((SAMEvidenceSource)x.evidence().getEvidenceSource()).getSourceCategory())
 				.max()
 				.orElse(0) + 1;
-		Long2ObjectOpenHashMap<RangeMap<Integer, Integer>> lookup = buildLookup(fullContig);
+		Kmer128ObjectOpenHashMap<RangeMap<Integer, Integer>> lookup = buildLookup(fullContig);
 		List<BitSet> supportedKmers = Stream.generate(() -> new BitSet(kmersInPath))
 				.limit(categories)
 				.collect(Collectors.toList());
@@ -50,48 +50,48 @@ public class PositionalContigCategorySupportHelper extends ContigCategorySupport
 		String cigars = asSupportCigars(kmersInPath + k - 1, supportedBases);
 		return cigars;
 	}
-	private static void trackEvidence(Long2ObjectOpenHashMap<RangeMap<Integer, Integer>> lookup,
+	private static void trackEvidence(Kmer128ObjectOpenHashMap<RangeMap<Integer, Integer>> lookup,
 			List<BitSet> supportedKmers, KmerEvidence e) {
 		int category = ((SAMEvidenceSource)e.evidence().getEvidenceSource()).getSourceCategory();
 		BitSet support = supportedKmers.get(category);
 		setSupportedBits(support, e, lookup);
 	}
-	private static void setSupportedBits(BitSet bs, KmerEvidence e, Long2ObjectOpenHashMap<RangeMap<Integer, Integer>> lookup) {
+	private static void setSupportedBits(BitSet bs, KmerEvidence e, Kmer128ObjectOpenHashMap<RangeMap<Integer, Integer>> lookup) {
 		for (int i = 0; i < e.length(); i++) {
-			setSupportedBits(bs, e.kmer(i), e.startPosition() + i, e.endPosition() + i, lookup);
+			setSupportedBits(bs, e.kmerHigh(i), e.kmer(i), e.startPosition() + i, e.endPosition() + i, lookup);
 		}
 	}
-	private static void setSupportedBits(BitSet bs, long kmer, int start, int end, Long2ObjectOpenHashMap<RangeMap<Integer, Integer>> lookup) {
-		RangeMap<Integer, Integer> rm = lookup.get(kmer);
+	private static void setSupportedBits(BitSet bs, long kmerHigh, long kmer, int start, int end, Kmer128ObjectOpenHashMap<RangeMap<Integer, Integer>> lookup) {
+		RangeMap<Integer, Integer> rm = lookup.get(kmerHigh, kmer);
 		if (rm == null) return;
 		RangeMap<Integer, Integer> srm = rm.subRangeMap(Range.closedOpen(start, end + 1));
 		for (Integer offset : srm.asMapOfRanges().values()) {
 			bs.set(offset);
 		}
 	}
-	private static Long2ObjectOpenHashMap<RangeMap<Integer, Integer>> buildLookup(Collection<KmerPathSubnode> fullContig) {
-		Long2ObjectOpenHashMap<RangeMap<Integer, Integer>> lookup = new Long2ObjectOpenHashMap<>(512);
+	private static Kmer128ObjectOpenHashMap<RangeMap<Integer, Integer>> buildLookup(Collection<KmerPathSubnode> fullContig) {
+		Kmer128ObjectOpenHashMap<RangeMap<Integer, Integer>> lookup = new Kmer128ObjectOpenHashMap<>(512);
 		int offset = 0;
 		for (KmerPathSubnode n : fullContig) {
 			// primary kmers
 			for (int i = 0; i < n.length(); i++) {
-				addToLookup(offset + i, n.kmer(i), n.firstStart() + i, n.firstEnd() + i, lookup);
+				addToLookup(offset + i, n.kmerHigh(i), n.kmer(i), n.firstStart() + i, n.firstEnd() + i, lookup);
 			}
 			// error corrected kmers
 			LongArrayList kmers = n.node().collapsedKmers();
 			IntArrayList offsets = n.node().collapsedKmerOffsets();
 			for (int i = 0; i < kmers.size(); i++) {
-				addToLookup(offset + offsets.getInt(i), kmers.getLong(i), n.firstStart() + offsets.getInt(i), n.firstEnd() + offsets.getInt(i), lookup);
+				addToLookup(offset + offsets.getInt(i), n.node().collapsedKmerHigh(i), kmers.getLong(i), n.firstStart() + offsets.getInt(i), n.firstEnd() + offsets.getInt(i), lookup);
 			}
 			offset += n.length();
 		}
 		return lookup;
 	}
-	private static void addToLookup(int offset, long kmer, int start, int end, Long2ObjectOpenHashMap<RangeMap<Integer, Integer>> lookup) {
-		RangeMap<Integer, Integer> rm = lookup.get(kmer);
+	private static void addToLookup(int offset, long kmerHigh, long kmer, int start, int end, Kmer128ObjectOpenHashMap<RangeMap<Integer, Integer>> lookup) {
+		RangeMap<Integer, Integer> rm = lookup.get(kmerHigh, kmer);
 		if (rm == null) {
 			rm = TreeRangeMap.create();
-			lookup.put(kmer, rm);
+			lookup.put(kmerHigh, kmer, rm);
 		}
 		rm.put(Range.closedOpen(start, end + 1), offset);
 	}
@@ -16,6 +16,22 @@ public class TraversalNode {
 	 */
 	public final int pathLength;
 	public final TraversalNode parent;
+	/**
+	 * Position of this node in the memoization frontier heap
+	 */
+	int frontierHeapIndex = -1;
+	/**
+	 * Position of this node in the frontier by path start heap
+	 */
+	int pathStartHeapIndex = -1;
+	/**
+	 * Position of this node in the contig by score heap
+	 */
+	int scoreHeapIndex = -1;
+	/**
+	 * Position of this node in the contig by score starting before position heap
+	 */
+	int scoreBeforePositionHeapIndex = -1;
 	public TraversalNode(KmerPathSubnode node, int baseScore) {
 		this.node = node;
 		this.score = baseScore + node.weight();
@@ -171,6 +187,7 @@ public class TraversalNode {
 					.compare(left.score, right.score)
 					.compare(left.node.firstStart(), right.node.firstStart())
 					.compare(left.node.firstEnd(), right.node.firstEnd())
+					.compare(left.node.firstKmerHigh(), right.node.firstKmerHigh())
 					.compare(left.node.firstKmer(), right.node.firstKmer())
 					.result();
 		}
@@ -179,6 +196,7 @@ public class TraversalNode {
 		@Override
 		public int compare(TraversalNode left, TraversalNode right) {
 			return ComparisonChain.start()
+					.compare(left.node.firstKmerHigh(), right.node.firstKmerHigh())
 					.compare(left.node.firstKmer(), right.node.firstKmer())
 					.compare(left.score, right.score)
 					.compare(left.node.firstStart(), right.node.firstStart())
@@ -0,0 +1,29 @@
+package au.edu.wehi.idsv.graph;
+
+import java.util.List;
+
+/**
+ * Streaming maximal clique caller of a rectangle graph
+ *
+ * @author Daniel Cameron
+ */
+public interface RectangleGraphCliqueCalculator {
+	/**
+	 * Adds the given node to the graph
+	 * @param node next node ordered by start X then start Y
+	 * @return maximal cliques that can no longer change
+	 */
+	List<RectangleGraphNode> next(RectangleGraphNode node);
+	/**
+	 * Adds the given node to the graph
+	 * @return maximal cliques that can no longer change
+	 */
+	default List<RectangleGraphNode> next(long startX, long endX, long startY, long endY, long weight) {
+		return next(new RectangleGraphNode(startX, endX, startY, endY, weight));
+	}
+	/**
+	 * Completes maximal clique calling
+	 * @return remaining maximal cliques
+	 */
+	List<RectangleGraphNode> complete();
+}
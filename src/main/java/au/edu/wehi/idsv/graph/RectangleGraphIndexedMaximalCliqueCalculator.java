@@ -0,0 +1,417 @@
+package au.edu.wehi.idsv.graph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.collect.ImmutableList;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+/**
+ * Calculates all maximal cliques of a rectangle graph
+ *
+ * Calls the same maximal cliques as RectangleGraphMaximalCliqueCalculator but
+ * stores the scanline in a treap of half-open intervals keyed by start Y.
+ * Interval weights and maximal clique start positions are updated with lazily
+ * propagated range operations, and each subtree tracks whether it contains
+ * a maximal clique so calling only visits intervals that are maximal. Each
+ * rectangle is thus incorporated in logarithmic time irrespective of the
+ * number of overlapping rectangles.
+ * 
+ * Active nodes are held in a RectangleGraphNodeStore so incorporating a node
+ * does not require any per-node object allocation.
+ *
+ * @author Daniel Cameron
+ */
+public class RectangleGraphIndexedMaximalCliqueCalculator implements RectangleGraphCliqueCalculator {
+	private static final long NOT_MAXIMAL = Long.MAX_VALUE;
+	private static final long NO_ASSIGNMENT = Long.MIN_VALUE;
+	private static final long SCANLINE_END = Long.MAX_VALUE - 1;
+	private final Random priority = new Random(0);
+	private final RectangleGraphNodeStore nodes = new RectangleGraphNodeStore();
+	private final RectangleGraphNodeHeap activeEndingX = new RectangleGraphNodeHeap((a, b) -> {
+		int cmp = nodes.compareByEndXStartYEndY(a, b);
+		if (cmp == 0) cmp = Integer.compare(a, b);
+		return cmp;
+	});
+	/**
+	 * Nodes starting at the current scanline
+	 */
+	private final IntArrayList startingCurrentScanline = new IntArrayList();
+	private final IntArrayList endingCurrentScanline = new IntArrayList();
+	private long lastStartX = Long.MIN_VALUE;
+	private long lastStartY = Long.MIN_VALUE;
+	private List<RectangleGraphNode> outBuffer;
+	private long scanlineX = Long.MIN_VALUE;
+	private ScanlineInterval root;
+	// split() results
+	private ScanlineInterval splitBefore;
+	private ScanlineInterval splitAfter;
+	/**
+	 * Intervals removed from the scanline available for reuse. Linked by right child.
+	 */
+	private ScanlineInterval freeIntervals;
+	public RectangleGraphIndexedMaximalCliqueCalculator() {
+		root = merge(newInterval(Long.MIN_VALUE, SCANLINE_END, 0), newInterval(SCANLINE_END, Long.MAX_VALUE, 0));
+	}
+	private ScanlineInterval newInterval(long startY, long endY, long weight) {
+		if (freeIntervals == null) {
+			return new ScanlineInterval(startY, endY, weight);
+		}
+		ScanlineInterval interval = freeIntervals;
+		freeIntervals = interval.right;
+		interval.reset(startY, endY, weight);
+		return interval;
+	}
+	private void releaseInterval(ScanlineInterval interval) {
+		interval.left = null;
+		interval.right = freeIntervals;
+		freeIntervals = interval;
+	}
+	/**
+	 * Scanline interval of the rectangle graph.
+	 * Scanline coordinates use half-open intervals.
+	 */
+	private class ScanlineInterval {
+		private long startY;
+		private long endY;
+		private long weight;
+		/**
+		 * Long.MAX_VALUE indicates this interval is not maximal
+		 */
+		private long startX = NOT_MAXIMAL;
+		/**
+		 * Number of active nodes starting at the start of this interval
+		 */
+		private int startHere = 0;
+		/**
+		 * Number of active nodes ending at the end of this interval
+		 */
+		private int endHere = 0;
+		private final int priority;
+		private ScanlineInterval left;
+		private ScanlineInterval right;
+		private long pendingWeight = 0;
+		private long pendingStartX = NO_ASSIGNMENT;
+		private boolean subtreeMaximal = false;
+		private boolean subtreeEligible = false;
+		private ScanlineInterval(long startY, long endY, long weight) {
+			this.startY = startY;
+			this.endY = endY;
+			this.weight = weight;
+			this.priority = RectangleGraphIndexedMaximalCliqueCalculator.this.priority.nextInt();
+		}
+		private void reset(long startY, long endY, long weight) {
+			this.startY = startY;
+			this.endY = endY;
+			this.weight = weight;
+			this.startX = NOT_MAXIMAL;
+			this.startHere = 0;
+			this.endHere = 0;
+			this.left = null;
+			this.right = null;
+			this.pendingWeight = 0;
+			this.pendingStartX = NO_ASSIGNMENT;
+			this.subtreeMaximal = false;
+			this.subtreeEligible = false;
+		}
+		/**
+		 * An interval can be a maximal clique only if a node starts at the start of the
+		 * interval and a node ends at the end of the interval
+		 */
+		private boolean isEligible() {
+			return startHere > 0 && endHere > 0;
+		}
+		private void addWeight(long w) {
+			weight += w;
+			pendingWeight += w;
+		}
+		private void assignStartX(long x) {
+			startX = x != NOT_MAXIMAL && isEligible() ? x : NOT_MAXIMAL;
+			pendingStartX = x;
+			subtreeMaximal = x != NOT_MAXIMAL && subtreeEligible;
+		}
+		private void push() {
+			if (pendingWeight != 0) {
+				if (left != null) left.addWeight(pendingWeight);
+				if (right != null) right.addWeight(pendingWeight);
+				pendingWeight = 0;
+			}
+			if (pendingStartX != NO_ASSIGNMENT) {
+				if (left != null) left.assignStartX(pendingStartX);
+				if (right != null) right.assignStartX(pendingStartX);
+				pendingStartX = NO_ASSIGNMENT;
+			}
+		}
+		private void pull() {
+			subtreeEligible = isEligible() || (left != null && left.subtreeEligible) || (right != null && right.subtreeEligible);
+			subtreeMaximal = startX != NOT_MAXIMAL || (left != null && left.subtreeMaximal) || (right != null && right.subtreeMaximal);
+		}
+		@Override
+		public String toString() {
+			return String.format("[%d,%d)(w=%d,s=%d,e=%d,x=%d)", startY, endY, weight, startHere, endHere, startX);
+		}
+	}
+	/**
+	 * Splits the given treap into the intervals starting before the given position
+	 * and the intervals starting at or after the given position.
+	 */
+	private void split(ScanlineInterval t, long y) {
+		if (t == null) {
+			splitBefore = null;
+			splitAfter = null;
+			return;
+		}
+		t.push();
+		if (t.startY < y) {
+			split(t.right, y);
+			t.right = splitBefore;
+			t.pull();
+			splitBefore = t;
+		} else {
+			split(t.left, y);
+			t.left = splitAfter;
+			t.pull();
+			splitAfter = t;
+		}
+	}
+	private ScanlineInterval merge(ScanlineInterval a, ScanlineInterval b) {
+		if (a == null) return b;
+		if (b == null) return a;
+		if (a.priority > b.priority) {
+			a.push();
+			a.right = merge(a.right, b);
+			a.pull();
+			return a;
+		} else {
+			b.push();
+			b.left = merge(a, b.left);
+			b.pull();
+			return b;
+		}
+	}
+	/**
+	 * Start position of the interval containing the given position
+	 */
+	private long intervalStartContaining(long y) {
+		long start = Long.MIN_VALUE;
+		for (ScanlineInterval n = root; n != null; ) {
+			if (n.startY <= y) {
+				start = n.startY;
+				n = n.right;
+			} else {
+				n = n.left;
+			}
+		}
+		return start;
+	}
+	/**
+	 * Ensures an interval starts at the given position
+	 */
+	private void ensureIntervalStartsAt(long y) {
+		long containingStart = intervalStartContaining(y);
+		if (containingStart == y) return;
+		split(root, containingStart);
+		ScanlineInterval before = splitBefore;
+		split(splitAfter, y);
+		ScanlineInterval existing = splitBefore;
+		ScanlineInterval after = splitAfter;
+		assert(existing.left == null && existing.right == null);
+		ScanlineInterval created = newInterval(y, existing.endY, existing.weight);
+		created.endHere = existing.endHere;
+		existing.endY = y;
+		existing.endHere = 0;
+		existing.startX = NOT_MAXIMAL;
+		existing.pull();
+		created.pull();
+		root = merge(merge(before, existing), merge(created, after));
+	}
+	private void updateCounts(long startY, int startDelta, int endDelta) {
+		updateCounts(root, startY, startDelta, endDelta);
+	}
+	private void updateCounts(ScanlineInterval t, long startY, int startDelta, int endDelta) {
+		assert(t != null);
+		t.push();
+		if (t.startY == startY) {
+			t.startHere += startDelta;
+			t.endHere += endDelta;
+		} else {
+			updateCounts(t.startY < startY ? t.right : t.left, startY, startDelta, endDelta);
+		}
+		t.pull();
+	}
+	private void addWeight(long startY, long endYExclusive, long weight) {
+		split(root, startY);
+		ScanlineInterval before = splitBefore;
+		split(splitAfter, endYExclusive);
+		splitBefore.addWeight(weight);
+		root = merge(before, merge(splitBefore, splitAfter));
+	}
+	private void assignStartX(long startY, long endYExclusive, long x) {
+		split(root, startY);
+		ScanlineInterval before = splitBefore;
+		split(splitAfter, endYExclusive);
+		splitBefore.assignStartX(x);
+		root = merge(before, merge(splitBefore, splitAfter));
+	}
+	/**
+	 * Merges the interval starting at the given position with the preceding
+	 * interval if no active nodes start or end at the given position
+	 */
+	private void mergeIfUnused(long y) {
+		if (y == Long.MIN_VALUE || y >= SCANLINE_END) return;
+		long previousStart = intervalStartContaining(y - 1);
+		split(root, previousStart);
+		ScanlineInterval before = splitBefore;
+		split(splitAfter, y);
+		ScanlineInterval previous = splitBefore;
+		split(splitAfter, y + 1);
+		ScanlineInterval interval = splitBefore;
+		ScanlineInterval after = splitAfter;
+		if (interval != null && previous.endHere == 0 && interval.startHere == 0) {
+			assert(previous.weight == interval.weight);
+			assert(previous.startX == NOT_MAXIMAL);
+			assert(interval.startX == NOT_MAXIMAL);
+			previous.endY = interval.endY;
+			previous.endHere = interval.endHere;
+			previous.pull();
+			releaseInterval(interval);
+			interval = null;
+		}
+		root = merge(merge(before, previous), merge(interval, after));
+	}
+	private void callMaximalCliques(ScanlineInterval t) {
+		if (t == null || !t.subtreeMaximal) return;
+		t.push();
+		callMaximalCliques(t.left);
+		if (t.startX != NOT_MAXIMAL) {
+			if (outBuffer == null) {
+				outBuffer = new ArrayList<RectangleGraphNode>();
+			}
+			outBuffer.add(new RectangleGraphNode(
+					t.startX, scanlineX,
+					t.startY, t.endY - 1, // convert back from half-open to close interval
+					t.weight));
+		}
+		callMaximalCliques(t.right);
+	}
+	private void callMaximalCliques(long startY, long endYExclusive) {
+		split(root, startY);
+		ScanlineInterval before = splitBefore;
+		split(splitAfter, endYExclusive);
+		ScanlineInterval interval = splitBefore;
+		assert(interval != null);
+		callMaximalCliques(interval);
+		root = merge(before, merge(interval, splitAfter));
+	}
+	/**
+	 * Incorporates the nodes in the current scanline
+	 */
+	private void processStartingCurrentScanline() {
+		if (startingCurrentScanline.isEmpty()) return;
+		for (int i = 0; i < startingCurrentScanline.size(); i++) {
+			int node = startingCurrentScanline.getInt(i);
+			ensureIntervalStartsAt(nodes.startY(node));
+			ensureIntervalStartsAt(nodes.endY(node) + 1);
+		}
+		for (int i = 0; i < startingCurrentScanline.size(); i++) {
+			int node = startingCurrentScanline.getInt(i);
+			updateCounts(nodes.startY(node), 1, 0);
+			updateCounts(intervalStartContaining(nodes.endY(node)), 0, 1);
+			addWeight(nodes.startY(node), nodes.endY(node) + 1, nodes.weight(node));
+		}
+		// intervals covered by the new nodes could now be maximal
+		assignStartXOfUnion(startingCurrentScanline, scanlineX);
+		startingCurrentScanline.clear();
+	}
+	/**
+	 * Applies the start X assignment to all intervals covered by the given nodes
+	 * @param nodes nodes sorted by start Y
+	 */
+	private void assignStartXOfUnion(IntArrayList ids, long x) {
+		int index = 0;
+		while (index < ids.size()) {
+			long startY = nodes.startY(ids.getInt(index));
+			long endYexclusive = nodes.endY(ids.getInt(index)) + 1;
+			index++;
+			while (index < ids.size() && nodes.startY(ids.getInt(index)) <= endYexclusive) {
+				endYexclusive = Math.max(endYexclusive, nodes.endY(ids.getInt(index)) + 1);
+				index++;
+			}
+			assignStartX(startY, endYexclusive, x);
+		}
+	}
+	private void processEndingXOnCurrentScanline() {
+		endingCurrentScanline.clear();
+		while (!activeEndingX.isEmpty() && nodes.endX(activeEndingX.peek()) == scanlineX) {
+			endingCurrentScanline.add(activeEndingX.poll());
+		}
+		int index = 0;
+		while (index < endingCurrentScanline.size()) {
+			long startY = nodes.startY(endingCurrentScanline.getInt(index));
+			long endYexclusive = nodes.endY(endingCurrentScanline.getInt(index)) + 1;
+			index++;
+			while (index < endingCurrentScanline.size() && nodes.startY(endingCurrentScanline.getInt(index)) <= endYexclusive) {
+				// expand the current calling interval due to overlap
+				endYexclusive = Math.max(endYexclusive, nodes.endY(endingCurrentScanline.getInt(index)) + 1);
+				index++;
+			}
+			callMaximalCliques(startY, endYexclusive);
+		}
+		for (int i = 0; i < endingCurrentScanline.size(); i++) {
+			int node = endingCurrentScanline.getInt(i);
+			updateCounts(nodes.startY(node), -1, 0);
+			updateCounts(intervalStartContaining(nodes.endY(node)), 0, -1);
+			addWeight(nodes.startY(node), nodes.endY(node) + 1, -nodes.weight(node));
+		}
+		// removing evidence means the covered intervals are no longer maximal
+		assignStartXOfUnion(endingCurrentScanline, NOT_MAXIMAL);
+		for (int i = 0; i < endingCurrentScanline.size(); i++) {
+			int node = endingCurrentScanline.getInt(i);
+			mergeIfUnused(nodes.startY(node));
+			mergeIfUnused(nodes.endY(node) + 1);
+			nodes.release(node);
+		}
+	}
+	private void processEndXBefore(long endBeforeX) {
+		while (!activeEndingX.isEmpty() && nodes.endX(activeEndingX.peek()) < endBeforeX) {
+			scanlineX = nodes.endX(activeEndingX.peek());
+			processEndingXOnCurrentScanline();
+		}
+	}
+	private List<RectangleGraphNode> getCalledCliques() {
+		List<RectangleGraphNode> result = outBuffer == null ? ImmutableList.<RectangleGraphNode>of() : outBuffer;
+		outBuffer = null;
+		return result;
+	}
+	@Override
+	public List<RectangleGraphNode> next(RectangleGraphNode node) {
+		return next(node.startX, node.endX, node.startY, node.endY, node.weight);
+	}
+	@Override
+	public List<RectangleGraphNode> next(long startX, long endX, long startY, long endY, long weight) {
+		assert(startX <= endX);
+		assert(startY <= endY);
+		assert(weight > 0);
+		assert(startX >= scanlineX);
+		assert(startX > lastStartX || (startX == lastStartX && startY >= lastStartY));
+		lastStartX = startX;
+		lastStartY = startY;
+		if (startX != scanlineX) {
+			processStartingCurrentScanline();
+			processEndXBefore(startX);
+			scanlineX = startX;
+		}
+		int node = nodes.add(startX, endX, startY, endY, weight);
+		startingCurrentScanline.add(node);
+		activeEndingX.add(node);
+		return getCalledCliques();
+	}
+	@Override
+	public List<RectangleGraphNode> complete() {
+		processStartingCurrentScanline();
+		processEndXBefore(Long.MAX_VALUE);
+		return getCalledCliques();
+	}
+}
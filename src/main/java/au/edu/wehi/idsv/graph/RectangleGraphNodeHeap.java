@@ -0,0 +1,134 @@
+package au.edu.wehi.idsv.graph;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import it.unimi.dsi.fastutil.ints.IntComparator;
+
+/**
+ * Array-backed binary min-heap of RectangleGraphNodeStore node identifiers
+ * supporting O(log n) removal of arbitrary nodes.
+ *
+ * The heap position of each node is stored in an array indexed by node
+ * identifier so neither nodes nor comparisons require boxing.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class RectangleGraphNodeHeap {
+	private static final int NOT_IN_HEAP = -1;
+	private final IntComparator comparator;
+	private int[] heap = new int[16];
+	private int[] position = new int[0];
+	private int size = 0;
+	/**
+	 * Creates a new heap
+	 * @param comparator heap ordering of node identifiers
+	 */
+	public RectangleGraphNodeHeap(IntComparator comparator) {
+		this.comparator = comparator;
+	}
+	public int size() {
+		return size;
+	}
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	public boolean contains(int id) {
+		return id < position.length && position[id] != NOT_IN_HEAP;
+	}
+	/**
+	 * Adds the given node to the heap
+	 * @return true if the node was added, false if the node was already in the heap
+	 */
+	public boolean add(int id) {
+		if (id >= position.length) {
+			int oldLength = position.length;
+			position = Arrays.copyOf(position, Math.max(2 * oldLength, id + 1));
+			Arrays.fill(position, oldLength, position.length, NOT_IN_HEAP);
+		}
+		if (position[id] != NOT_IN_HEAP) return false;
+		if (size == heap.length) {
+			heap = Arrays.copyOf(heap, heap.length * 2);
+		}
+		heap[size] = id;
+		position[id] = size;
+		size++;
+		siftUp(size - 1);
+		return true;
+	}
+	/**
+	 * Returns the smallest node in the heap
+	 * @return smallest node, RectangleGraphNodeStore.NO_NODE if the heap is empty
+	 */
+	public int peek() {
+		if (size == 0) return RectangleGraphNodeStore.NO_NODE;
+		return heap[0];
+	}
+	/**
+	 * Removes and returns the smallest node in the heap
+	 * @throws NoSuchElementException if the heap is empty
+	 */
+	public int poll() {
+		if (size == 0) throw new NoSuchElementException();
+		int head = heap[0];
+		removeAt(0);
+		return head;
+	}
+	public boolean remove(int id) {
+		if (!contains(id)) return false;
+		removeAt(position[id]);
+		return true;
+	}
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			position[heap[i]] = NOT_IN_HEAP;
+		}
+		size = 0;
+	}
+	private void removeAt(int i) {
+		position[heap[i]] = NOT_IN_HEAP;
+		size--;
+		if (i != size) {
+			int last = heap[size];
+			heap[i] = last;
+			position[last] = i;
+			siftDown(i);
+			if (heap[i] == last) {
+				siftUp(i);
+			}
+		}
+	}
+	private void siftUp(int i) {
+		int e = heap[i];
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			int p = heap[parent];
+			if (comparator.compare(e, p) >= 0) break;
+			heap[i] = p;
+			position[p] = i;
+			i = parent;
+		}
+		heap[i] = e;
+		position[e] = i;
+	}
+	private void siftDown(int i) {
+		int e = heap[i];
+		int half = size >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			int c = heap[child];
+			int right = child + 1;
+			if (right < size && comparator.compare(c, heap[right]) > 0) {
+				child = right;
+				c = heap[child];
+			}
+			if (comparator.compare(e, c) <= 0) break;
+			heap[i] = c;
+			position[c] = i;
+			i = child;
+		}
+		heap[i] = e;
+		position[e] = i;
+	}
+}
@@ -0,0 +1,119 @@
+package au.edu.wehi.idsv.graph;
+
+import java.util.Arrays;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+/**
+ * Struct of arrays storage of rectangle graph nodes.
+ *
+ * Nodes are identified by their integer slot in the store. Slots of
+ * released nodes are reused by subsequently added nodes.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class RectangleGraphNodeStore {
+	public static final int NO_NODE = -1;
+	private long[] startX = new long[16];
+	private long[] endX = new long[16];
+	private long[] startY = new long[16];
+	private long[] endY = new long[16];
+	private long[] weight = new long[16];
+	private final IntArrayList freeSlots = new IntArrayList();
+	private int slotCount = 0;
+	/**
+	 * Adds a node to the store
+	 * @return identifier of the added node
+	 */
+	public int add(long startX, long endX, long startY, long endY, long weight) {
+		assert(weight > 0);
+		int id;
+		if (!freeSlots.isEmpty()) {
+			id = freeSlots.popInt();
+		} else {
+			if (slotCount == this.startX.length) {
+				int size = 2 * slotCount;
+				this.startX = Arrays.copyOf(this.startX, size);
+				this.endX = Arrays.copyOf(this.endX, size);
+				this.startY = Arrays.copyOf(this.startY, size);
+				this.endY = Arrays.copyOf(this.endY, size);
+				this.weight = Arrays.copyOf(this.weight, size);
+			}
+			id = slotCount++;
+		}
+		this.startX[id] = startX;
+		this.endX[id] = endX;
+		this.startY[id] = startY;
+		this.endY[id] = endY;
+		this.weight[id] = weight;
+		return id;
+	}
+	/**
+	 * Releases the given node. The identifier can be reused by subsequent nodes.
+	 */
+	public void release(int id) {
+		assert(weight[id] > 0);
+		weight[id] = 0;
+		freeSlots.add(id);
+	}
+	/**
+	 * Number of identifiers allocated by this store.
+	 * All node identifiers are less than this value.
+	 */
+	public int capacity() {
+		return slotCount;
+	}
+	/**
+	 * Number of nodes in the store
+	 */
+	public int size() {
+		return slotCount - freeSlots.size();
+	}
+	public long startX(int id) {
+		return startX[id];
+	}
+	public long endX(int id) {
+		return endX[id];
+	}
+	public long startY(int id) {
+		return startY[id];
+	}
+	public long endY(int id) {
+		return endY[id];
+	}
+	public long weight(int id) {
+		return weight[id];
+	}
+	public void addWeight(int id, long weight) {
+		this.weight[id] += weight;
+	}
+	public boolean isSameCoordinate(int id1, int id2) {
+		return startX[id1] == startX[id2] &&
+				endX[id1] == endX[id2] &&
+				startY[id1] == startY[id2] &&
+				endY[id1] == endY[id2];
+	}
+	/**
+	 * Orders by start X, start Y, end X, end Y. Matches RectangleGraphNode.ByStartXYEndXY.
+	 */
+	public int compareByStartXYEndXY(int id1, int id2) {
+		int cmp = Long.compare(startX[id1], startX[id2]);
+		if (cmp == 0) cmp = Long.compare(startY[id1], startY[id2]);
+		if (cmp == 0) cmp = Long.compare(endX[id1], endX[id2]);
+		if (cmp == 0) cmp = Long.compare(endY[id1], endY[id2]);
+		return cmp;
+	}
+	/**
+	 * Orders by end X, start Y, end Y. Matches RectangleGraphNode.ByEndXStartYEndY.
+	 */
+	public int compareByEndXStartYEndY(int id1, int id2) {
+		int cmp = Long.compare(endX[id1], endX[id2]);
+		if (cmp == 0) cmp = Long.compare(startY[id1], startY[id2]);
+		if (cmp == 0) cmp = Long.compare(endY[id1], endY[id2]);
+		return cmp;
+	}
+	public RectangleGraphNode toNode(int id) {
+		return new RectangleGraphNode(startX[id], endX[id], startY[id], endY[id], weight[id]);
+	}
+}
@@ -0,0 +1,116 @@
+package au.edu.wehi.idsv.graph;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.function.ToIntBiFunction;
+
+import com.google.common.collect.AbstractIterator;
+
+import au.edu.wehi.idsv.Defaults;
+
+/**
+ * Streaming maximal clique caller of records converted to rectangle graph nodes
+ * held in a RectangleGraphNodeStore.
+ *
+ * Performs the windowed sort, same coordinate merging and maximal clique calling of
+ * RectangleGraphMaximalCliqueIterator(RectangleGraphNodeMergingIterator(WindowedSortingIterator))
+ * without allocating a RectangleGraphNode for every record.
+ *
+ * @author Daniel Cameron
+ *
+ * @param <T> record type
+ */
+public class RectangleGraphNodeStoreMaximalCliqueIterator<T> extends AbstractIterator<RectangleGraphNode> {
+	private final Queue<RectangleGraphNode> buffer = new ArrayDeque<RectangleGraphNode>();
+	private final RectangleGraphNodeStore store;
+	private final RectangleGraphNodeHeap sortBuffer;
+	private final Iterator<T> it;
+	private final ToIntBiFunction<T, RectangleGraphNodeStore> toNode;
+	private final long windowSize;
+	private RectangleGraphCliqueCalculator calc = Defaults.LINKED_LIST_CLIQUE_SCANLINE ? new RectangleGraphMaximalCliqueCalculator() : new RectangleGraphIndexedMaximalCliqueCalculator();
+	/**
+	 * Next node read from the underlying iterator but not yet added to the sort buffer
+	 */
+	private int nextNode = RectangleGraphNodeStore.NO_NODE;
+	private long lastStartX = Long.MIN_VALUE;
+	private long lastStartY = Long.MIN_VALUE;
+	private long lastEndX = Long.MIN_VALUE;
+	private long lastEndY = Long.MIN_VALUE;
+	/**
+	 * Creates a new maximal clique iterator
+	 * @param it underlying records. Records must be sorted by node start X to within windowSize.
+	 * @param toNode adds the graph node of the given record to the given store. Returns the identifier
+	 * of the added node or RectangleGraphNodeStore.NO_NODE if the record has no graph node.
+	 * @param windowSize maximum start X distance that records can deviate from a sorted sequence
+	 */
+	public RectangleGraphNodeStoreMaximalCliqueIterator(Iterator<T> it, ToIntBiFunction<T, RectangleGraphNodeStore> toNode, long windowSize) {
+		this.it = it;
+		this.toNode = toNode;
+		this.windowSize = windowSize;
+		this.store = new RectangleGraphNodeStore();
+		this.sortBuffer = new RectangleGraphNodeHeap((a, b) -> {
+			int cmp = store.compareByStartXYEndXY(a, b);
+			if (cmp == 0) cmp = Integer.compare(a, b);
+			return cmp;
+		});
+	}
+	private void ensureNextNode() {
+		while (nextNode == RectangleGraphNodeStore.NO_NODE && it.hasNext()) {
+			nextNode = toNode.applyAsInt(it.next(), store);
+		}
+	}
+	/**
+	 * Reads the underlying iterator until no subsequent record can precede the head of the sort buffer
+	 */
+	private void advanceUnderlying() {
+		ensureNextNode();
+		while (nextNode != RectangleGraphNodeStore.NO_NODE && (sortBuffer.isEmpty() || store.startX(nextNode) <= store.startX(sortBuffer.peek()) + windowSize)) {
+			sortBuffer.add(nextNode);
+			nextNode = RectangleGraphNodeStore.NO_NODE;
+			ensureNextNode();
+		}
+	}
+	private int pollSorted() {
+		int node = sortBuffer.poll();
+		if (store.startX(node) < lastStartX
+				|| (store.startX(node) == lastStartX && (store.startY(node) < lastStartY
+				|| (store.startY(node) == lastStartY && (store.endX(node) < lastEndX
+				|| (store.endX(node) == lastEndX && store.endY(node) < lastEndY)))))) {
+			throw new IllegalStateException(String.format("Unable to sort output with window size of %d. %s emitted after (x=[%d, %d], y=[%d, %d])",
+					windowSize, store.toNode(node), lastStartX, lastEndX, lastStartY, lastEndY));
+		}
+		lastStartX = store.startX(node);
+		lastStartY = store.startY(node);
+		lastEndX = store.endX(node);
+		lastEndY = store.endY(node);
+		return node;
+	}
+	@Override
+	protected RectangleGraphNode computeNext() {
+		while (buffer.isEmpty()) {
+			advanceUnderlying();
+			if (sortBuffer.isEmpty()) break;
+			int node = pollSorted();
+			long weight = store.weight(node);
+			// collapse nodes at the same location to a single node
+			advanceUnderlying();
+			while (!sortBuffer.isEmpty() && store.isSameCoordinate(node, sortBuffer.peek())) {
+				int duplicate = pollSorted();
+				weight += store.weight(duplicate);
+				store.release(duplicate);
+				advanceUnderlying();
+			}
+			buffer.addAll(calc.next(store.startX(node), store.endX(node), store.startY(node), store.endY(node), weight));
+			store.release(node);
+		}
+		if (buffer.isEmpty() && calc != null) {
+			buffer.addAll(calc.complete());
+			calc = null;
+		}
+		if (!buffer.isEmpty()) {
+			return buffer.poll();
+		}
+		return endOfData();
+	}
+}
@@ -12,7 +12,6 @@ import com.google.common.collect.Ordering;
 import com.google.common.primitives.Longs;
 
 import au.edu.wehi.idsv.GenomicProcessingContext;
-import au.edu.wehi.idsv.util.MathUtil;
 import gridss.analysis.CigarDetailMetrics;
 import gridss.analysis.CigarSizeDistribution;
 import gridss.analysis.IdsvMetrics;
@@ -133,27 +132,30 @@ public class IdsvSamFileMetrics {
 		}
 		return maxSoftClipLength;
 	}
+	private volatile ReadPairScoringTable readPairScoringTable;
+	/**
+	 * Returns the precomputed read pair scoring table of this library.
+	 * The table is built on first use.
+	 */
+	public ReadPairScoringTable getReadPairScoringTable() {
+		ReadPairScoringTable table = readPairScoringTable;
+		if (table == null) {
+			// concurrent callers build identical immutable tables so no locking is required
+			table = new ReadPairScoringTable(idsvMetrics, insertDistribution);
+			readPairScoringTable = table;
+		}
+		return table;
+	}
 	/**
 	 * Returns the phred-scaled likelihood of a fragment size at least as extreme as the given size.
 	 * @param fragmentSize fragment size
 	 * @return phred-scaled likelihood of a fragment as or more extreme
 	 */
 	public double getReadPairPhred(int fragmentSize) {
-		return MathUtil.prToPhred(readPairFoldedCumulativeDistribution(fragmentSize));
+		return getReadPairScoringTable().getReadPairPhred(fragmentSize);
 	}
 	public double readPairFoldedCumulativeDistribution(int fragmentSize) {
-		double pairsFromFragmentDistribution = 0;
-		if (fragmentSize > 0) {
-			if (fragmentSize >= insertDistribution.getSupportLowerBound() && fragmentSize <= insertDistribution.getSupportUpperBound()) {
-				double prUpper = 1.0 - insertDistribution.cumulativeProbability(fragmentSize - 1);
-				double prLower = insertDistribution.cumulativeProbability(fragmentSize);
-				double pr = Math.min(prUpper, prLower);
-				pairsFromFragmentDistribution = pr * insertDistribution.getTotalMappedPairs();
-			}
-		}
-		double totalPairs = idsvMetrics.READ_PAIRS_BOTH_MAPPED;
-		double dpPairs = totalPairs - insertDistribution.getTotalMappedPairs() + pairsFromFragmentDistribution;
-		return dpPairs / totalPairs;
+		return getReadPairScoringTable().readPairFoldedCumulativeDistribution(fragmentSize);
 	}
 	
 	/**
@@ -0,0 +1,144 @@
+package au.edu.wehi.idsv.metrics;
+
+import au.edu.wehi.idsv.util.MathUtil;
+import gridss.analysis.IdsvMetrics;
+import gridss.analysis.InsertSizeDistribution;
+
+/**
+ * Immutable per-library read pair scoring lookup table.
+ *
+ * The folded cumulative fragment size distribution and corresponding phred scores
+ * are precomputed over the full support of the insert size distribution so scoring
+ * requires only array lookups and no synchronisation on the underlying distribution.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class ReadPairScoringTable {
+	/**
+	 * Smallest fragment size with a tabulated value
+	 */
+	private final int offset;
+	private final double[] foldedCdf;
+	private final double[] phred;
+	private final double outsideSupportFoldedCdf;
+	private final double outsideSupportPhred;
+	private final double unmappedMatePr;
+	private final double unmappedMatePhred;
+	private final double unmappedMatePerMappedReadPhred;
+	private final double bothMappedPr;
+	public ReadPairScoringTable(IdsvMetrics idsvMetrics, InsertSizeDistribution insertDistribution) {
+		// completely unmapped read pairs are excluded for consistency with sc and dp calculation
+		double readPairs = idsvMetrics.READ_PAIRS - idsvMetrics.READ_PAIRS_ZERO_MAPPED;
+		this.unmappedMatePr = idsvMetrics.READ_PAIRS_ONE_MAPPED / readPairs;
+		this.unmappedMatePhred = MathUtil.prToPhred(unmappedMatePr);
+		this.unmappedMatePerMappedReadPhred = MathUtil.prToPhred((double)idsvMetrics.READ_PAIRS_ONE_MAPPED / (double)(idsvMetrics.MAPPED_READS));
+		this.bothMappedPr = idsvMetrics.READ_PAIRS_BOTH_MAPPED / readPairs;
+		if (insertDistribution == null) {
+			this.offset = 0;
+			this.foldedCdf = null;
+			this.phred = null;
+			this.outsideSupportFoldedCdf = Double.NaN;
+			this.outsideSupportPhred = Double.NaN;
+			return;
+		}
+		double totalPairs = idsvMetrics.READ_PAIRS_BOTH_MAPPED;
+		long totalMappedPairs = insertDistribution.getTotalMappedPairs();
+		this.outsideSupportFoldedCdf = foldedCumulativeDistribution(totalPairs, totalMappedPairs, 0);
+		this.outsideSupportPhred = MathUtil.prToPhred(outsideSupportFoldedCdf);
+		int lowerBound = insertDistribution.getSupportLowerBound();
+		int upperBound = insertDistribution.getSupportUpperBound();
+		double[] cdf = cumulativeProbability(insertDistribution, lowerBound - 1, upperBound);
+		this.offset = lowerBound;
+		this.foldedCdf = new double[upperBound - lowerBound + 1];
+		this.phred = new double[foldedCdf.length];
+		for (int i = 0; i < foldedCdf.length; i++) {
+			int fragmentSize = lowerBound + i;
+			if (fragmentSize > 0) {
+				double prUpper = 1.0 - cdf[i];
+				double prLower = cdf[i + 1];
+				double pr = Math.min(prUpper, prLower);
+				foldedCdf[i] = foldedCumulativeDistribution(totalPairs, totalMappedPairs, pr * totalMappedPairs);
+				phred[i] = MathUtil.prToPhred(foldedCdf[i]);
+			} else {
+				foldedCdf[i] = outsideSupportFoldedCdf;
+				phred[i] = outsideSupportPhred;
+			}
+		}
+	}
+	private static double foldedCumulativeDistribution(double totalPairs, long totalMappedPairs, double pairsFromFragmentDistribution) {
+		double dpPairs = totalPairs - totalMappedPairs + pairsFromFragmentDistribution;
+		return dpPairs / totalPairs;
+	}
+	/**
+	 * Tabulates the cumulative probability of the given distribution.
+	 *
+	 * The cumulative probability only changes at the singletons of the distribution
+	 * so the distribution is only evaluated at those points.
+	 */
+	private static double[] cumulativeProbability(InsertSizeDistribution insertDistribution, int from, int to) {
+		double[] cdf = new double[to - from + 1];
+		boolean[] isSingleton = new boolean[cdf.length];
+		for (int x : insertDistribution.getSingletons()) {
+			if (x >= from && x <= to) {
+				isSingleton[x - from] = true;
+			}
+		}
+		cdf[0] = insertDistribution.cumulativeProbability(from);
+		for (int i = 1; i < cdf.length; i++) {
+			cdf[i] = isSingleton[i] ? insertDistribution.cumulativeProbability(from + i) : cdf[i - 1];
+		}
+		return cdf;
+	}
+	private void ensureInsertSizeDistribution() {
+		if (foldedCdf == null) {
+			throw new IllegalStateException("Read pair scoring requires an insert size distribution.");
+		}
+	}
+	/**
+	 * Returns the proportion of read pairs with a fragment size at least as extreme as the given size.
+	 * @param fragmentSize fragment size
+	 * @return folded cumulative fragment size distribution
+	 */
+	public double readPairFoldedCumulativeDistribution(int fragmentSize) {
+		ensureInsertSizeDistribution();
+		int i = fragmentSize - offset;
+		if (i < 0 || i >= foldedCdf.length) return outsideSupportFoldedCdf;
+		return foldedCdf[i];
+	}
+	/**
+	 * Returns the phred-scaled likelihood of a fragment size at least as extreme as the given size.
+	 * @param fragmentSize fragment size
+	 * @return phred-scaled likelihood of a fragment as or more extreme
+	 */
+	public double getReadPairPhred(int fragmentSize) {
+		ensureInsertSizeDistribution();
+		int i = fragmentSize - offset;
+		if (i < 0 || i >= phred.length) return outsideSupportPhred;
+		return phred[i];
+	}
+	/**
+	 * Proportion of read pairs with at least one mapped read that have exactly one mapped read
+	 */
+	public double getUnmappedMatePr() {
+		return unmappedMatePr;
+	}
+	/**
+	 * Phred-scaled proportion of read pairs with at least one mapped read that have exactly one mapped read
+	 */
+	public double getUnmappedMatePhred() {
+		return unmappedMatePhred;
+	}
+	/**
+	 * Phred-scaled ratio of read pairs with exactly one mapped read to mapped reads
+	 */
+	public double getUnmappedMatePerMappedReadPhred() {
+		return unmappedMatePerMappedReadPhred;
+	}
+	/**
+	 * Proportion of read pairs with at least one mapped read that have both reads mapped
+	 */
+	public double getBothMappedPr() {
+		return bothMappedPr;
+	}
+}
@@ -4,8 +4,8 @@ import com.google.common.primitives.Doubles;
 import com.google.common.primitives.Ints;
 
 import au.edu.wehi.idsv.metrics.IdsvSamFileMetrics;
+import au.edu.wehi.idsv.metrics.ReadPairScoringTable;
 import au.edu.wehi.idsv.util.MathUtil;
-import gridss.analysis.IdsvMetrics;
 import htsjdk.samtools.CigarOperator;
 
 /**
@@ -54,12 +54,10 @@ public class EmpiricalLlrModel implements VariantScoringModel {
 
 	@Override
 	public double scoreUnmappedMate(IdsvSamFileMetrics metrics, int mapq) {
-		IdsvMetrics im = metrics.getIdsvMetrics();
-		// completely unmapped read pairs are excluded for consistency with sc and dp calculation
-		double readPairs = im.READ_PAIRS - im.READ_PAIRS_ZERO_MAPPED;
-		double prEgivenMR = im.READ_PAIRS_ONE_MAPPED / readPairs;
+		ReadPairScoringTable table = metrics.getReadPairScoringTable();
+		double prEgivenMR = table.getUnmappedMatePr();
 		// we assume that in our variant case, the read correctly maps across the breakpoint
-		double prEgivenMV = 0.5 * im.READ_PAIRS_BOTH_MAPPED / readPairs; // TODO: actually calculate the inferred variant fragment size
+		double prEgivenMV = 0.5 * table.getBothMappedPr(); // TODO: actually calculate the inferred variant fragment size
 		return llr(prEgivenMR, prEgivenMV, mapq);
 	}
 }
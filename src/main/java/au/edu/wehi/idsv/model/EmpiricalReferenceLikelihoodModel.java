@@ -2,7 +2,6 @@ package au.edu.wehi.idsv.model;
 
 import au.edu.wehi.idsv.metrics.IdsvSamFileMetrics;
 import au.edu.wehi.idsv.util.MathUtil;
-import gridss.analysis.IdsvMetrics;
 import htsjdk.samtools.CigarOperator;
 
 /**
@@ -38,10 +37,7 @@ public class EmpiricalReferenceLikelihoodModel implements VariantScoringModel {
 
 	@Override
 	public double scoreUnmappedMate(IdsvSamFileMetrics metrics, int mapq) {
-		IdsvMetrics im = metrics.getIdsvMetrics();
-		// completely unmapped read pairs are excluded for consistency with sc and dp calculation
-		double prEgivenRM = (double)im.READ_PAIRS_ONE_MAPPED / (double)(im.READ_PAIRS - im.READ_PAIRS_ZERO_MAPPED);
-		double score = MathUtil.phredOr(MathUtil.prToPhred(prEgivenRM), mapq);
+		double score = MathUtil.phredOr(metrics.getReadPairScoringTable().getUnmappedMatePhred(), mapq);
 		return score;
 	}
 }
@@ -1,8 +1,6 @@
 package au.edu.wehi.idsv.model;
 
 import au.edu.wehi.idsv.metrics.IdsvSamFileMetrics;
-import au.edu.wehi.idsv.util.MathUtil;
-import gridss.analysis.IdsvMetrics;
 import htsjdk.samtools.CigarOperator;
 
 /**
@@ -45,9 +43,7 @@ public class FastEmpiricalReferenceLikelihoodModel implements VariantScoringMode
 
 	@Override
 	public double scoreUnmappedMate(IdsvSamFileMetrics metrics, int mapq) {
-		IdsvMetrics im = metrics.getIdsvMetrics();
-		// completely unmapped read pairs are excluded for consistency with sc and dp calculation
-		double score = MathUtil.prToPhred((double)im.READ_PAIRS_ONE_MAPPED / (double)(im.MAPPED_READS));
+		double score = metrics.getReadPairScoringTable().getUnmappedMatePerMappedReadPhred();
 		score = Math.min(score, mapq);
 		return score;
 	}
@@ -12,10 +12,11 @@ import com.google.common.primitives.Ints;
 import au.edu.wehi.idsv.BreakendDirection;
 import au.edu.wehi.idsv.BreakendSummary;
 import htsjdk.samtools.Cigar;
+import htsjdk.samtools.CigarElement;
+import htsjdk.samtools.CigarOperator;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.SAMTag;
-import htsjdk.samtools.TextCigarCodec;
 
 /**
  * SA Z Other canonical alignments in a chimeric alignment, formatted as a semicolon-delimited
@@ -48,37 +49,167 @@ public class ChimericAlignment {
 		this.mapq = r.getMappingQuality();
 		this.nm = r.getIntegerAttribute(SAMTag.NM.name());
 	}
+	/**
+	 * Parses a single SA tag alignment
+	 * @param str alignment in the SA tag format rname,pos,strand,CIGAR,mapQ,NM
+	 * @throws IllegalArgumentException if the alignment is malformed
+	 */
 	public ChimericAlignment(String str) {
-		str = str.replace(';', ' ').trim();
-		String[] splits = str.split(",");
-		this.rname = splits[0];
-		this.pos = Integer.parseInt(splits[1]);
-		this.isNegativeStrand = "-".equals(splits[2]);
-		this.cigar = TextCigarCodec.decode(splits[3]);
-		this.mapq = Integer.parseInt(splits[4]);
+		this(str, 0, str.length());
+	}
+	/**
+	 * Parses the SA tag alignment in the given substring without allocating
+	 * intermediate field strings.
+	 */
+	private ChimericAlignment(String str, int start, int end) {
+		while (start < end && (str.charAt(start) <= ' ' || str.charAt(start) == ';')) start++;
+		while (end > start && (str.charAt(end - 1) <= ' ' || str.charAt(end - 1) == ';')) end--;
+		int rnameEnd = nextField(str, start, end);
+		int posEnd = nextField(str, rnameEnd + 1, end);
+		int strandEnd = nextField(str, posEnd + 1, end);
+		int cigarEnd = nextField(str, strandEnd + 1, end);
+		int mapqEnd = str.indexOf(',', cigarEnd + 1);
+		if (mapqEnd < 0 || mapqEnd > end) mapqEnd = end;
+		this.rname = str.substring(start, rnameEnd);
+		this.pos = parseInt(str, rnameEnd + 1, posEnd);
+		this.isNegativeStrand = strandEnd == posEnd + 2 && str.charAt(posEnd + 1) == '-';
+		this.cigar = parseCigar(str, strandEnd + 1, cigarEnd);
+		this.mapq = parseInt(str, cigarEnd + 1, mapqEnd);
 		Integer nmParsed = null;
-		try {
-			if (splits.length >= 6) {
-				nmParsed = Integer.parseInt(splits[5]);
+		if (mapqEnd < end) {
+			int nmEnd = str.indexOf(',', mapqEnd + 1);
+			if (nmEnd < 0 || nmEnd > end) nmEnd = end;
+			try {
+				nmParsed = parseInt(str, mapqEnd + 1, nmEnd);
+			} catch (NumberFormatException nfe) {
+				// swallow and fall back to null
 			}
-		} catch (NumberFormatException nfe) {
-			// swallow and fall back to null
 		}
 		this.nm = nmParsed;
 	}
+	private static int nextField(String str, int start, int end) {
+		int offset = start > end ? -1 : str.indexOf(',', start);
+		if (offset < 0 || offset >= end) {
+			throw new IllegalArgumentException(String.format("Malformed SA tag alignment \"%s\": expected rname,pos,strand,CIGAR,mapQ,NM", str.substring(Math.min(start, end), end)));
+		}
+		return offset;
+	}
+	/**
+	 * Parses a signed decimal integer with the same semantics as Integer.parseInt
+	 */
+	private static int parseInt(String str, int start, int end) {
+		if (start >= end) {
+			throw new NumberFormatException(String.format("Missing integer field in \"%s\"", str));
+		}
+		boolean negative = false;
+		int i = start;
+		char first = str.charAt(i);
+		if (first == '-' || first == '+') {
+			negative = first == '-';
+			i++;
+			if (i == end) {
+				throw new NumberFormatException(String.format("For input string: \"%s\"", str.substring(start, end)));
+			}
+		}
+		long value = 0;
+		for (; i < end; i++) {
+			int digit = str.charAt(i) - '0';
+			if (digit < 0 || digit > 9) {
+				throw new NumberFormatException(String.format("For input string: \"%s\"", str.substring(start, end)));
+			}
+			value = value * 10 + digit;
+			if (value > (long)Integer.MAX_VALUE + 1) {
+				throw new NumberFormatException(String.format("For input string: \"%s\"", str.substring(start, end)));
+			}
+		}
+		if (negative) value = -value;
+		if (value > Integer.MAX_VALUE) {
+			throw new NumberFormatException(String.format("For input string: \"%s\"", str.substring(start, end)));
+		}
+		return (int)value;
+	}
+	/**
+	 * Parses a CIGAR string with the same semantics as TextCigarCodec.decode
+	 */
+	private static Cigar parseCigar(String str, int start, int end) {
+		if (end - start == 1 && str.charAt(start) == '*') return new Cigar();
+		List<CigarElement> elements = new ArrayList<CigarElement>((end - start) / 2);
+		int i = start;
+		while (i < end) {
+			long length = 0;
+			int digitStart = i;
+			for (; i < end && str.charAt(i) >= '0' && str.charAt(i) <= '9'; i++) {
+				length = length * 10 + (str.charAt(i) - '0');
+				if (length > Integer.MAX_VALUE) {
+					throw new IllegalArgumentException(String.format("Malformed CIGAR string: %s", str.substring(start, end)));
+				}
+			}
+			if (i == digitStart || i == end) {
+				throw new IllegalArgumentException(String.format("Malformed CIGAR string: %s", str.substring(start, end)));
+			}
+			elements.add(new CigarElement((int)length, CigarOperator.characterToEnum(str.charAt(i))));
+			i++;
+		}
+		return new Cigar(elements);
+	}
+	/**
+	 * Parses the given SA tag
+	 * @param sa SA tag value
+	 * @return alignments of each non-empty semicolon-delimited SA tag element
+	 * @throws IllegalArgumentException if any alignment is malformed
+	 */
 	public static List<ChimericAlignment> getChimericAlignments(String sa) {
 		if (StringUtils.isEmpty(sa)) return Collections.emptyList();
-		List<ChimericAlignment> list = new ArrayList<ChimericAlignment>();
-		String[] splits = sa.split(";");
-		for (String s : splits) {
-			if (!StringUtils.isEmpty(sa)) {
-				list.add(new ChimericAlignment(s));
+		List<ChimericAlignment> list = new ArrayList<ChimericAlignment>(4);
+		int start = 0;
+		while (start < sa.length()) {
+			int end = sa.indexOf(';', start);
+			if (end < 0) end = sa.length();
+			if (!isBlank(sa, start, end)) {
+				list.add(new ChimericAlignment(sa, start, end));
 			}
+			start = end + 1;
 		}
 		return list;
 	}
+	private static boolean isBlank(String str, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (str.charAt(i) > ' ') return false;
+		}
+		return true;
+	}
+	/**
+	 * Transient attribute key of the parsed SA tag of a record
+	 */
+	private static final String PARSED_SA_TAG_KEY = ChimericAlignment.class.getName() + ".SA";
+	private static class ParsedSATag {
+		private final String sa;
+		private final List<ChimericAlignment> alignments;
+		public ParsedSATag(String sa, List<ChimericAlignment> alignments) {
+			this.sa = sa;
+			this.alignments = alignments;
+		}
+	}
+	/**
+	 * Gets the split read alignments of the given record.
+	 * 
+	 * The parsed SA tag is cached in the transient attributes of the record
+	 * and is reparsed only if the SA tag is subsequently changed.
+	 * @param r record
+	 * @return unmodifiable list of the alignments in the SA tag of the record
+	 * @throws IllegalArgumentException if the SA tag is malformed
+	 */
 	public static List<ChimericAlignment> getChimericAlignments(SAMRecord r) {
-		return getChimericAlignments(r.getStringAttribute(SAMTag.SA.name()));
+		String sa = r.getStringAttribute(SAMTag.SA.name());
+		if (StringUtils.isEmpty(sa)) return Collections.emptyList();
+		Object cached = r.getTransientAttribute(PARSED_SA_TAG_KEY);
+		// SA tag values are immutable so reference equality ensures the cache is current
+		if (cached instanceof ParsedSATag && ((ParsedSATag)cached).sa == sa) {
+			return ((ParsedSATag)cached).alignments;
+		}
+		List<ChimericAlignment> alignments = Collections.unmodifiableList(getChimericAlignments(sa));
+		r.setTransientAttribute(PARSED_SA_TAG_KEY, new ParsedSATag(sa, alignments));
+		return alignments;
 	}
 	private BreakendSummary startBreakend(SAMSequenceDictionary dict) {
 		return new BreakendSummary(rnameToReferenceIndex(dict, rname), BreakendDirection.Backward, pos);
@@ -0,0 +1,293 @@
+package au.edu.wehi.idsv.sam;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+
+import com.google.common.collect.Iterators;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.common.collect.PeekingIterator;
+
+import htsjdk.samtools.BAMRecordCodec;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordQueryNameComparator;
+import htsjdk.samtools.SAMTag;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.Log;
+import htsjdk.samtools.util.SortingCollection;
+
+/**
+ * Groups the alignments of each fragment of a coordinate sorted input.
+ *
+ * Alignments are held in a pending buffer keyed by read name until every
+ * alignment of the fragment has been encountered. The expected alignments of each
+ * fragment are determined from the flags and SA tag of each record: every segment
+ * of a paired read is expected to have a primary alignment record (including unmapped
+ * mates), and each segment is expected to have one record for each SA tag alignment.
+ *
+ * Secondary alignments are not listed in any tag so are included only if they
+ * are encountered whilst their fragment is pending. Secondary alignments encountered
+ * when the fragment is not pending are returned as a fragment by themselves.
+ *
+ * When the pending buffer exceeds the given size, the records of the oldest pending
+ * fragments are spilled to disk and the fragments are removed from the pending buffer.
+ * The read names of spilled fragments are recorded in a fixed size Bloom filter and
+ * all subsequent records of fragments not pending in memory whose name is in the filter
+ * are also spilled. Bloom filter false positives cause the entire fragment to be spilled,
+ * so fragments are never split between memory and disk. Spilled fragments are returned
+ * after all in-memory fragments. Fragments with missing alignments are returned when the
+ * input has been exhausted.
+ *
+ * Records can also be pushed into the iterator using add(). In this mode, next() returns
+ * the fragments completed so far and the remaining fragments are available once
+ * finishAdding() has been called.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class CoordinateSortedFragmentIterator implements CloseableIterator<List<SAMRecord>> {
+	private static final Log log = Log.getInstance(CoordinateSortedFragmentIterator.class);
+	/**
+	 * Number of spilled fragment names per maxRecordsInRam the Bloom filter is sized for
+	 */
+	private static final int SPILLED_NAMES_PER_RECORD_IN_RAM = 4;
+	private static final double SPILLED_NAMES_FALSE_POSITIVE_RATE = 0.01;
+	private final Iterator<SAMRecord> it;
+	private final SAMFileHeader header;
+	private final int maxRecordsInRam;
+	private final File tmpDir;
+	private final LinkedHashMap<String, PendingFragment> pending = new LinkedHashMap<>();
+	private final Queue<List<SAMRecord>> ready = new ArrayDeque<>();
+	private int pendingRecords = 0;
+	private SortingCollection<SAMRecord> spill = null;
+	private BloomFilter<CharSequence> spilledNames = null;
+	private CloseableIterator<SAMRecord> spillCit = null;
+	private PeekingIterator<SAMRecord> spillIt = null;
+	private boolean inputExhausted = false;
+	private long spilledFragments = 0;
+	private long incompleteFragments = 0;
+	private static class PendingFragment {
+		private final List<SAMRecord> records = new ArrayList<>(2);
+		/**
+		 * Number of alignments expected for each segment. -1 if not yet known
+		 */
+		private int[] expected;
+		private int[] seen;
+		private PendingFragment(SAMRecord r) {
+			int segments = r.getReadPairedFlag() ? 2 : 1;
+			expected = new int[segments];
+			seen = new int[segments];
+			Arrays.fill(expected, -1);
+		}
+		private void add(SAMRecord r) {
+			if (!r.isSecondaryAlignment()) {
+				int segment = SAMRecordUtil.getSegmentIndex(r);
+				if (segment >= expected.length) {
+					int oldLength = expected.length;
+					expected = Arrays.copyOf(expected, segment + 1);
+					seen = Arrays.copyOf(seen, segment + 1);
+					Arrays.fill(expected, oldLength, expected.length, -1);
+				}
+				expected[segment] = 1 + splitAlignmentCount(r);
+				seen[segment]++;
+			}
+		}
+		private boolean isComplete() {
+			for (int i = 0; i < expected.length; i++) {
+				if (expected[i] < 0 || seen[i] < expected[i]) return false;
+			}
+			return true;
+		}
+	}
+	/**
+	 * @param it coordinate sorted records
+	 * @param header input header
+	 * @param maxRecordsInRam maximum number of pending records held in memory
+	 * @param tmpDir directory used to spill pending records
+	 */
+	public CoordinateSortedFragmentIterator(Iterator<SAMRecord> it, SAMFileHeader header, int maxRecordsInRam, File tmpDir) {
+		if (it == null) throw new IllegalArgumentException("it");
+		this.it = it;
+		this.header = header;
+		this.maxRecordsInRam = Math.max(1, maxRecordsInRam);
+		this.tmpDir = tmpDir;
+	}
+	/**
+	 * Creates an iterator to which records are pushed using add()
+	 * @param header input header
+	 * @param maxRecordsInRam maximum number of pending records held in memory
+	 * @param tmpDir directory used to spill pending records
+	 */
+	public CoordinateSortedFragmentIterator(SAMFileHeader header, int maxRecordsInRam, File tmpDir) {
+		this.it = null;
+		this.header = header;
+		this.maxRecordsInRam = Math.max(1, maxRecordsInRam);
+		this.tmpDir = tmpDir;
+	}
+	/**
+	 * Adds the next coordinate sorted record
+	 */
+	public void add(SAMRecord r) {
+		if (it != null) throw new IllegalStateException("Records can only be added to an iterator created without an underlying iterator");
+		if (inputExhausted) throw new IllegalStateException("finishAdding() already called");
+		process(r);
+	}
+	/**
+	 * Indicates that all records have been added
+	 */
+	public void finishAdding() {
+		if (it != null) throw new IllegalStateException("Records can only be added to an iterator created without an underlying iterator");
+		if (!inputExhausted) {
+			onInputExhausted();
+		}
+	}
+	private static int splitAlignmentCount(SAMRecord r) {
+		String sa = r.getStringAttribute(SAMTag.SA.name());
+		if (sa == null) return 0;
+		int count = 0;
+		boolean inEntry = false;
+		for (int i = 0; i < sa.length(); i++) {
+			if (sa.charAt(i) == ';') {
+				inEntry = false;
+			} else if (!inEntry) {
+				inEntry = true;
+				count++;
+			}
+		}
+		return count;
+	}
+	private void ensureNext() {
+		while (ready.isEmpty() && !inputExhausted && it != null) {
+			if (!it.hasNext()) {
+				onInputExhausted();
+				break;
+			}
+			process(it.next());
+		}
+		if (ready.isEmpty() && spillIt != null && spillIt.hasNext()) {
+			List<SAMRecord> records = new ArrayList<>(2);
+			String readName = spillIt.peek().getReadName();
+			while (spillIt.hasNext() && readName.equals(spillIt.peek().getReadName())) {
+				records.add(spillIt.next());
+			}
+			ready.add(records);
+		}
+	}
+	private void process(SAMRecord r) {
+		String readName = r.getReadName();
+		PendingFragment f = readName == null ? null : pending.get(readName);
+		if (f == null) {
+			if (readName == null) {
+				ready.add(Arrays.asList(r));
+				return;
+			}
+			if (spilledNames != null && spilledNames.mightContain(readName)) {
+				spill.add(r);
+				return;
+			}
+			if (r.isSecondaryAlignment()) {
+				ready.add(Arrays.asList(r));
+				return;
+			}
+			f = new PendingFragment(r);
+		}
+		f.add(r);
+		f.records.add(r);
+		pendingRecords++;
+		if (f.isComplete()) {
+			pending.remove(readName);
+			pendingRecords -= f.records.size();
+			ready.add(f.records);
+		} else {
+			pending.putIfAbsent(readName, f);
+			if (pendingRecords > maxRecordsInRam) {
+				spillOldest();
+			}
+		}
+	}
+	private void spillOldest() {
+		if (spill == null) {
+			spill = SortingCollection.newInstance(
+					SAMRecord.class,
+					new BAMRecordCodec(header),
+					new SAMRecordQueryNameComparator(),
+					maxRecordsInRam,
+					tmpDir.toPath());
+			spilledNames = BloomFilter.create(
+					Funnels.stringFunnel(StandardCharsets.UTF_8),
+					(long)maxRecordsInRam * SPILLED_NAMES_PER_RECORD_IN_RAM,
+					SPILLED_NAMES_FALSE_POSITIVE_RATE);
+		}
+		Iterator<Map.Entry<String, PendingFragment>> pendingIt = pending.entrySet().iterator();
+		while (pendingRecords > maxRecordsInRam / 2 && pendingIt.hasNext()) {
+			Map.Entry<String, PendingFragment> entry = pendingIt.next();
+			PendingFragment f = entry.getValue();
+			for (SAMRecord r : f.records) {
+				spill.add(r);
+			}
+			pendingRecords -= f.records.size();
+			spilledNames.put(entry.getKey());
+			pendingIt.remove();
+			spilledFragments++;
+		}
+	}
+	private void onInputExhausted() {
+		inputExhausted = true;
+		for (PendingFragment f : pending.values()) {
+			incompleteFragments++;
+			ready.add(f.records);
+		}
+		pending.clear();
+		pendingRecords = 0;
+		spilledNames = null;
+		if (spill != null) {
+			spill.doneAdding();
+			spillCit = spill.iterator();
+			spillIt = Iterators.peekingIterator(spillCit);
+		}
+		if (spilledFragments > 0 || incompleteFragments > 0) {
+			log.info(String.format("%d fragments spilled to disk. %d in-memory fragments with missing alignments.", spilledFragments, incompleteFragments));
+		}
+	}
+	@Override
+	public boolean hasNext() {
+		ensureNext();
+		return !ready.isEmpty();
+	}
+	@Override
+	public List<SAMRecord> next() {
+		if (!hasNext()) throw new NoSuchElementException();
+		return ready.poll();
+	}
+	/**
+	 * Number of fragments spilled to disk so far
+	 */
+	public long getSpilledFragmentCount() {
+		return spilledFragments;
+	}
+	/**
+	 * Number of records held in memory awaiting the remaining alignments of their fragment
+	 */
+	public int getPendingRecordCount() {
+		return pendingRecords;
+	}
+	@Override
+	public void close() {
+		CloserUtil.close(spillCit);
+		if (spill != null) {
+			spill.cleanup();
+			spill = null;
+		}
+	}
+}
@@ -0,0 +1,425 @@
+package au.edu.wehi.idsv.sam;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import au.edu.wehi.idsv.util.ParallelTransformIterator;
+import htsjdk.samtools.BAMRecordCodec;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileHeader.SortOrder;
+import htsjdk.samtools.SAMFormatException;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordIterator;
+import htsjdk.samtools.SAMSortOrderChecker;
+import htsjdk.samtools.SAMUtils;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.ValidationStringency;
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.RuntimeIOException;
+
+/**
+ * Iterates over all records of a BAM file, inflating BGZF blocks and decoding
+ * records on a shared thread pool. Records are returned in file order.
+ *
+ * Compressed blocks are read sequentially on the calling thread and inflated in
+ * batches in parallel. The inflated data is split into batches of complete
+ * records which are decoded, and validated according to the given validation
+ * stringency, in parallel. As with htsjdk, records are decoded lazily if
+ * validation is not performed.
+ *
+ * The number of threads used is controlled by {@link gridss.Defaults#BAM_THREADS}.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class ParallelBAMRecordIterator implements SAMRecordIterator {
+	private static final int BLOCKS_PER_BATCH = 64;
+	private static final int BGZF_HEADER_LENGTH = 12;
+	private static final int BGZF_FOOTER_LENGTH = 8;
+	private static final byte[] BAM_MAGIC = "BAM\1".getBytes();
+	private static ExecutorService threadpool = null;
+	private final File file;
+	private final SAMFileHeader header;
+	private final ValidationStringency stringency;
+	private final InputStream in;
+	private final Iterator<DecodedBatch> it;
+	private Iterator<SAMRecord> current = Collections.emptyIterator();
+	private SAMSortOrderChecker sortOrderChecker = null;
+	private SortOrder sortOrder = null;
+	private SAMRecord last = null;
+	private boolean closed = false;
+	private static synchronized ExecutorService getThreadpool() {
+		if (threadpool == null) {
+			threadpool = Executors.newFixedThreadPool(gridss.Defaults.BAM_THREADS, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("BAMDecode-%d").build());
+		}
+		return threadpool;
+	}
+	/**
+	 * Determines whether the given file should be read by this iterator
+	 */
+	public static boolean isSupported(File file) {
+		return gridss.Defaults.BAM_THREADS > 1 && isBAMFile(file);
+	}
+	/**
+	 * Determines whether the given file is a BAM file
+	 */
+	public static boolean isBAMFile(File file) {
+		if (file == null || !file.isFile()) return false;
+		try (BlockCompressedInputStream bcis = new BlockCompressedInputStream(file)) {
+			byte[] magic = new byte[BAM_MAGIC.length];
+			return bcis.read(magic) == magic.length && Arrays.equals(BAM_MAGIC, magic);
+		} catch (IOException | RuntimeException e) {
+			return false;
+		}
+	}
+	/**
+	 * Iterates over all records of the given reader, decoding in parallel when possible.
+	 * @param reader reader
+	 * @param file file the reader was opened from. Can be null.
+	 * @param stringency validation stringency of the reader
+	 * @return iterator over all records
+	 */
+	public static SAMRecordIterator iterator(SamReader reader, File file, ValidationStringency stringency) {
+		if (isSupported(file)) {
+			return new ParallelBAMRecordIterator(file, reader.getFileHeader(), stringency);
+		}
+		return reader.iterator();
+	}
+	public ParallelBAMRecordIterator(File file, SAMFileHeader header, ValidationStringency stringency) {
+		this.file = file;
+		this.header = header;
+		this.stringency = stringency;
+		try {
+			this.in = new BufferedInputStream(new FileInputStream(file));
+		} catch (IOException e) {
+			throw new RuntimeIOException(e);
+		}
+		ExecutorService pool = getThreadpool();
+		int lookahead = 2 * gridss.Defaults.BAM_THREADS;
+		// exceptions thrown on worker threads are returned so they can be rethrown on the calling thread
+		Iterator<InflatedBatch> inflated = new ParallelTransformIterator<byte[][], InflatedBatch>(new CompressedBatchIterator(), blocks -> {
+			try {
+				return new InflatedBatch(inflate(blocks));
+			} catch (RuntimeException e) {
+				return new InflatedBatch(e);
+			}
+		}, lookahead, pool);
+		this.it = new ParallelTransformIterator<RecordBatch, DecodedBatch>(new RecordBatchIterator(inflated), batch -> {
+			try {
+				return new DecodedBatch(decode(batch));
+			} catch (RuntimeException e) {
+				return new DecodedBatch(e);
+			}
+		}, lookahead, pool);
+	}
+	private static class InflatedBatch {
+		private final byte[] data;
+		private final RuntimeException error;
+		private InflatedBatch(byte[] data) {
+			this.data = data;
+			this.error = null;
+		}
+		private InflatedBatch(RuntimeException error) {
+			this.data = null;
+			this.error = error;
+		}
+	}
+	private static class RecordBatch {
+		private final byte[] data;
+		private final int length;
+		private final long firstRecordNumber;
+		private RecordBatch(byte[] data, int length, long firstRecordNumber) {
+			this.data = data;
+			this.length = length;
+			this.firstRecordNumber = firstRecordNumber;
+		}
+	}
+	private static class DecodedBatch {
+		private final List<SAMRecord> records;
+		private final RuntimeException error;
+		private DecodedBatch(List<SAMRecord> records) {
+			this.records = records;
+			this.error = null;
+		}
+		private DecodedBatch(RuntimeException error) {
+			this.records = null;
+			this.error = error;
+		}
+	}
+	private static int readUInt16(byte[] data, int offset) {
+		return (data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8);
+	}
+	private static int readInt32(byte[] data, int offset) {
+		return (data[offset] & 0xFF)
+				| ((data[offset + 1] & 0xFF) << 8)
+				| ((data[offset + 2] & 0xFF) << 16)
+				| ((data[offset + 3] & 0xFF) << 24);
+	}
+	private static void readFully(InputStream in, byte[] buffer, int offset, int length) throws IOException {
+		while (length > 0) {
+			int read = in.read(buffer, offset, length);
+			if (read < 0) throw new EOFException();
+			offset += read;
+			length -= read;
+		}
+	}
+	/**
+	 * Reads batches of raw BGZF blocks
+	 */
+	private class CompressedBatchIterator implements Iterator<byte[][]> {
+		private byte[][] next = null;
+		private boolean eof = false;
+		@Override
+		public boolean hasNext() {
+			if (next == null && !eof) {
+				next = readBatch();
+			}
+			return next != null;
+		}
+		@Override
+		public byte[][] next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			byte[][] result = next;
+			next = null;
+			return result;
+		}
+		private byte[][] readBatch() {
+			List<byte[]> blocks = new ArrayList<>(BLOCKS_PER_BATCH);
+			try {
+				while (blocks.size() < BLOCKS_PER_BATCH) {
+					byte[] block = readBlock();
+					if (block == null) {
+						eof = true;
+						break;
+					}
+					blocks.add(block);
+				}
+			} catch (IOException e) {
+				throw new RuntimeIOException(e);
+			}
+			return blocks.isEmpty() ? null : blocks.toArray(new byte[blocks.size()][]);
+		}
+		private byte[] readBlock() throws IOException {
+			byte[] header = new byte[BGZF_HEADER_LENGTH];
+			int first = in.read();
+			if (first < 0) return null;
+			header[0] = (byte)first;
+			readFully(in, header, 1, header.length - 1);
+			if ((header[0] & 0xFF) != 31 || (header[1] & 0xFF) != 139 || (header[3] & 4) == 0) {
+				throw new SAMFormatException(String.format("%s is not a valid BGZF file", file));
+			}
+			int xlen = readUInt16(header, 10);
+			byte[] extra = new byte[xlen];
+			readFully(in, extra, 0, xlen);
+			int blockSize = -1;
+			for (int i = 0; i + 4 <= xlen; i += 4 + readUInt16(extra, i + 2)) {
+				if (extra[i] == 'B' && extra[i + 1] == 'C') {
+					blockSize = readUInt16(extra, i + 4) + 1;
+				}
+			}
+			if (blockSize < 0) {
+				throw new SAMFormatException(String.format("%s is not a valid BGZF file", file));
+			}
+			byte[] block = new byte[blockSize];
+			System.arraycopy(header, 0, block, 0, header.length);
+			System.arraycopy(extra, 0, block, header.length, xlen);
+			readFully(in, block, header.length + xlen, blockSize - header.length - xlen);
+			return block;
+		}
+	}
+	private static byte[] inflate(byte[][] blocks) {
+		int size = 0;
+		for (byte[] block : blocks) {
+			size += readInt32(block, block.length - 4);
+		}
+		byte[] out = new byte[size];
+		int offset = 0;
+		Inflater inflater = new Inflater(true);
+		try {
+			for (byte[] block : blocks) {
+				int isize = readInt32(block, block.length - 4);
+				int dataOffset = BGZF_HEADER_LENGTH + readUInt16(block, 10);
+				inflater.reset();
+				inflater.setInput(block, dataOffset, block.length - dataOffset - BGZF_FOOTER_LENGTH);
+				int inflated = 0;
+				while (inflated < isize) {
+					int n = inflater.inflate(out, offset + inflated, isize - inflated);
+					if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+						throw new SAMFormatException("Truncated BGZF block");
+					}
+					inflated += n;
+				}
+				offset += isize;
+			}
+		} catch (DataFormatException e) {
+			throw new SAMFormatException("Invalid BGZF block: " + e.getMessage());
+		} finally {
+			inflater.end();
+		}
+		return out;
+	}
+	/**
+	 * Splits the inflated BAM data into batches of complete records
+	 */
+	private class RecordBatchIterator implements Iterator<RecordBatch> {
+		private final Iterator<InflatedBatch> inflated;
+		private byte[] buffer = new byte[0];
+		private int bufferLength = 0;
+		private boolean headerSkipped = false;
+		private long recordNumber = 1;
+		private RecordBatch next = null;
+		private RecordBatchIterator(Iterator<InflatedBatch> inflated) {
+			this.inflated = inflated;
+		}
+		@Override
+		public boolean hasNext() {
+			while (next == null && inflated.hasNext()) {
+				InflatedBatch batch = inflated.next();
+				if (batch.error != null) throw batch.error;
+				append(batch.data);
+				if (!headerSkipped) {
+					skipHeader();
+				}
+				if (headerSkipped) {
+					next = takeCompleteRecords();
+				}
+			}
+			if (next == null && bufferLength > 0) {
+				throw new SAMFormatException(String.format("%s is truncated", file));
+			}
+			return next != null;
+		}
+		@Override
+		public RecordBatch next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			RecordBatch result = next;
+			next = null;
+			return result;
+		}
+		private void append(byte[] data) {
+			if (bufferLength == 0) {
+				buffer = data;
+				bufferLength = data.length;
+				return;
+			}
+			byte[] combined = Arrays.copyOf(buffer, bufferLength + data.length);
+			System.arraycopy(data, 0, combined, bufferLength, data.length);
+			buffer = combined;
+			bufferLength = combined.length;
+		}
+		private void consume(int length) {
+			buffer = Arrays.copyOfRange(buffer, length, bufferLength);
+			bufferLength -= length;
+		}
+		private void skipHeader() {
+			if (bufferLength < 12) return;
+			for (int i = 0; i < BAM_MAGIC.length; i++) {
+				if (buffer[i] != BAM_MAGIC[i]) {
+					throw new SAMFormatException(String.format("%s is not a BAM file", file));
+				}
+			}
+			long offset = 8 + (long)readInt32(buffer, 4);
+			if (offset + 4 > bufferLength) return;
+			int references = readInt32(buffer, (int)offset);
+			offset += 4;
+			for (int i = 0; i < references; i++) {
+				if (offset + 4 > bufferLength) return;
+				offset += 4 + readInt32(buffer, (int)offset) + 4;
+			}
+			if (offset > bufferLength) return;
+			consume((int)offset);
+			headerSkipped = true;
+		}
+		private RecordBatch takeCompleteRecords() {
+			int offset = 0;
+			long records = 0;
+			while (offset + 4 <= bufferLength) {
+				int recordLength = 4 + readInt32(buffer, offset);
+				if (offset + recordLength > bufferLength) break;
+				offset += recordLength;
+				records++;
+			}
+			if (records == 0) return null;
+			RecordBatch batch = new RecordBatch(buffer, offset, recordNumber);
+			recordNumber += records;
+			if (offset == bufferLength) {
+				buffer = new byte[0];
+				bufferLength = 0;
+			} else {
+				consume(offset);
+			}
+			return batch;
+		}
+	}
+	private List<SAMRecord> decode(RecordBatch batch) {
+		BAMRecordCodec codec = new BAMRecordCodec(header);
+		codec.setInputStream(new ByteArrayInputStream(batch.data, 0, batch.length), file.getName());
+		List<SAMRecord> records = new ArrayList<>();
+		SAMRecord r;
+		long recordNumber = batch.firstRecordNumber;
+		while ((r = codec.decode()) != null) {
+			r.setValidationStringency(stringency);
+			if (stringency != ValidationStringency.SILENT) {
+				SAMUtils.processValidationErrors(r.isValid(stringency == ValidationStringency.STRICT), recordNumber, stringency);
+			}
+			records.add(r);
+			recordNumber++;
+		}
+		return records;
+	}
+	@Override
+	public boolean hasNext() {
+		if (closed) return false;
+		while (!current.hasNext() && it.hasNext()) {
+			DecodedBatch batch = it.next();
+			if (batch.error != null) throw batch.error;
+			current = batch.records.iterator();
+		}
+		return current.hasNext();
+	}
+	@Override
+	public SAMRecord next() {
+		if (!hasNext()) throw new NoSuchElementException();
+		SAMRecord r = current.next();
+		if (sortOrderChecker != null && !sortOrderChecker.isSorted(r)) {
+			throw new IllegalStateException(String.format("Record %s should come after %s when sorting with %s ordering.",
+					last == null ? "" : last.getSAMString().trim(), r.getSAMString().trim(), sortOrder));
+		}
+		last = r;
+		return r;
+	}
+	@Override
+	public SAMRecordIterator assertSorted(SortOrder sortOrder) {
+		if (sortOrder != null && sortOrder != SortOrder.unsorted) {
+			this.sortOrder = sortOrder;
+			this.sortOrderChecker = new SAMSortOrderChecker(sortOrder);
+		}
+		return this;
+	}
+	@Override
+	public void close() {
+		if (!closed) {
+			closed = true;
+			current = Collections.emptyIterator();
+			CloserUtil.close(in);
+		}
+	}
+}
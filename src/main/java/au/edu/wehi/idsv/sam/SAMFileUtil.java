@@ -22,6 +22,8 @@ import au.edu.wehi.idsv.IntermediateFileUtil;
 import au.edu.wehi.idsv.util.AsyncBufferedIterator;
 import au.edu.wehi.idsv.util.FileHelper;
 import au.edu.wehi.idsv.validation.OrderAssertingIterator;
+import au.edu.wehi.idsv.visualisation.TimelineTracer;
+import au.edu.wehi.idsv.visualisation.TimelineTracer.Span;
 import htsjdk.samtools.BAMRecordCodec;
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMFileHeader.SortOrder;
@@ -111,6 +113,11 @@ public class SAMFileUtil {
 		}
 		@Override
 		public Void call() throws IOException {
+			try (Span span = TimelineTracer.getInstance().begin("sort", unsorted.getName())) {
+				return doSort();
+			}
+		}
+		private Void doSort() throws IOException {
 			if (IntermediateFileUtil.checkIntermediate(output)) {
 				log.info("Not sorting as output already exists: " + output);
 				return null;
@@ -145,7 +152,7 @@ public class SAMFileUtil {
 					if (headerCallback != null) {
 						header = headerCallback.apply(header);
 					}
-					try (CloseableIterator<SAMRecord> rit = reader.iterator()) {
+					try (CloseableIterator<SAMRecord> rit = ParallelBAMRecordIterator.iterator(reader, unsorted, readerFactory.validationStringency())) {
 						collection = SortingCollection.newInstance(
 								SAMRecord.class,
 								new BAMRecordCodec(header),
@@ -837,7 +837,7 @@ public class SAMRecordUtil {
 	private static void recalculateSupplementaryFromSA(List<SAMRecord> segments) {
 		HashMap<List<ChimericAlignment>, List<SAMRecord>> saLookup = new HashMap<>();
 		for (SAMRecord r : segments) {
-			List<ChimericAlignment> splitca = ChimericAlignment.getChimericAlignments(r);
+			List<ChimericAlignment> splitca = new ArrayList<>(ChimericAlignment.getChimericAlignments(r));
 			if (splitca.isEmpty() || r.getReadUnmappedFlag()) {
 				r.setSupplementaryAlignmentFlag(false);
 			} else {
@@ -1077,7 +1077,7 @@ public class SAMRecordUtil {
 			}
 		}
 		Set<ChimericAlignment> referencedReads = list.stream()
-				.flatMap(r -> ChimericAlignment.getChimericAlignments(r.getStringAttribute(SAMTag.SA.name())).stream())
+				.flatMap(r -> ChimericAlignment.getChimericAlignments(r).stream())
 				.collect(Collectors.toSet());
 		// validate SA tags
 		for (SAMRecord r : list) {
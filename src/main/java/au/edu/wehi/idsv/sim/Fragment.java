@@ -19,6 +19,30 @@ public class Fragment {
 		this.seq = new String(seq, StandardCharsets.US_ASCII);
 		this.negative = negative;
 	}
+	/**
+	 * Creates a fragment of novel sequence not found in the reference
+	 */
+	public static Fragment novel(byte[] seq) {
+		return new Fragment(-1, 0, seq, false);
+	}
+	public boolean isNovel() {
+		return referenceIndex < 0;
+	}
+	public int getReferenceIndex() {
+		return referenceIndex;
+	}
+	/**
+	 * @return genomic position of the first reference base of this fragment
+	 */
+	public int getStart() {
+		return start;
+	}
+	public int length() {
+		return end - start;
+	}
+	public boolean isNegative() {
+		return negative;
+	}
 	public String getSequence() {
 		if (negative) {
 			return SequenceUtil.reverseComplement(seq);
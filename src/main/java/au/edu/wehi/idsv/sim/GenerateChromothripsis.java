@@ -40,6 +40,7 @@ public class GenerateChromothripsis extends SimulationGenerator {
         		fc = new RepeatFragmentedChromosome(pc, CHR, PADDING, FRAGMENT_SIZE, REPEATMASKER_OUTPUT, CLASS_FAMILY, RANDOM_SEED);
         	}
         	fc.assemble(FASTA, VCF, FRAGMENTS, INCLUDE_REFERENCE);
+        	writeReads(pc, fc);
         } catch (Exception e) {
 			e.printStackTrace();
 			return 1;
@@ -34,6 +34,7 @@ public class GenerateSimpleVariants extends SimulationGenerator {
         	GenomicProcessingContext pc = getProcessingContext();
         	SimpleVariantChromosome gen = new SimpleVariantChromosome(pc, CHR, PADDING, RANDOM_SEED);
         	gen.assemble(FASTA, VCF, INCLUDE_REFERENCE, TYPE, SIZE, COPIES == null ? Integer.MAX_VALUE : COPIES);
+        	writeReads(pc, gen);
         } catch (Exception e) {
 			e.printStackTrace();
 			return 1;
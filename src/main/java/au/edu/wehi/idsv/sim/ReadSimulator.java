@@ -0,0 +1,374 @@
+package au.edu.wehi.idsv.sim;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import au.edu.wehi.idsv.sam.ChimericAlignment;
+import htsjdk.samtools.Cigar;
+import htsjdk.samtools.CigarElement;
+import htsjdk.samtools.CigarOperator;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileHeader.SortOrder;
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMFileWriterFactory;
+import htsjdk.samtools.SAMReadGroupRecord;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMTag;
+import htsjdk.samtools.SamPairUtil;
+import htsjdk.samtools.SamPairUtil.PairOrientation;
+import htsjdk.samtools.util.Log;
+import htsjdk.samtools.util.SequenceUtil;
+
+/**
+ * Simulates paired-end sequencing of simulated haplotypes.
+ *
+ * Reads are output with the alignments implied by the reference composition
+ * of the haplotype they were sequenced from, thus removing the need for an
+ * external aligner. Small indels are reported in the CIGAR, larger events as
+ * soft clipped split reads with supplementary alignments and SA tags.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class ReadSimulator {
+	private static final Log log = Log.getInstance(ReadSimulator.class);
+	private static final byte[] DNA_BASES = { 'A', 'C', 'G', 'T' };
+	private static final String READ_GROUP = "simulated";
+	private final SAMFileHeader header;
+	private final Random rng;
+	public int readLength = 150;
+	public double fragmentSizeMean = 300;
+	public double fragmentSizeStdDev = 30;
+	/**
+	 * Read coverage of each haplotype
+	 */
+	public double coverage = 30;
+	/**
+	 * Sequencing substitution error rate of the first base of each read
+	 */
+	public double errorRateStart = 0.001;
+	/**
+	 * Sequencing substitution error rate of the last base of each read. Error rates for
+	 * bases in between are linearly interpolated.
+	 */
+	public double errorRateEnd = 0.01;
+	/**
+	 * Proportion of read pairs that also have a PCR duplicate
+	 */
+	public double duplicateRate = 0;
+	/**
+	 * Minimum number of aligned bases required to report an alignment
+	 */
+	public int minAlignedBases = 20;
+	/**
+	 * Largest event reported as an indel instead of a split read
+	 */
+	public int maxIndelSize = 32;
+	public int mapq = 60;
+	public ReadSimulator(SAMSequenceDictionary dictionary, String sample, int seed) {
+		this.rng = new Random(seed);
+		this.header = new SAMFileHeader();
+		header.setSequenceDictionary(dictionary);
+		header.setSortOrder(SortOrder.coordinate);
+		SAMReadGroupRecord rg = new SAMReadGroupRecord(READ_GROUP);
+		rg.setSample(sample);
+		rg.setLibrary(sample);
+		rg.setPlatform("ILLUMINA");
+		header.addReadGroup(rg);
+	}
+	public SAMFileHeader getHeader() {
+		return header;
+	}
+	/**
+	 * Writes reads from the given haplotypes to a coordinate sorted BAM
+	 */
+	public void simulate(List<List<Fragment>> haplotypes, File bam, SAMFileWriterFactory factory) {
+		try (SAMFileWriter writer = factory.makeSAMOrBAMWriter(header, false, bam)) {
+			for (int i = 0; i < haplotypes.size(); i++) {
+				simulate(haplotypes.get(i), String.format("h%d_", i), writer::addAlignment);
+			}
+		}
+	}
+	/**
+	 * Simulates reads from the given haplotype
+	 * @param haplotype reference fragments composing the haplotype
+	 * @param readNamePrefix read name prefix
+	 * @param callback simulated read alignments
+	 */
+	public void simulate(List<Fragment> haplotype, String readNamePrefix, Consumer<SAMRecord> callback) {
+		Haplotype hap = new Haplotype(haplotype);
+		if (hap.seq.length < readLength) {
+			log.warn(String.format("Haplotype length %d shorter than read length. No reads simulated.", hap.seq.length));
+			return;
+		}
+		long pairs = Math.round(coverage * hap.seq.length / (2.0 * readLength));
+		log.info(String.format("Simulating %d read pairs from haplotype of length %d", pairs, hap.seq.length));
+		for (long i = 0; i < pairs; i++) {
+			int fragmentSize = (int)Math.round(fragmentSizeMean + rng.nextGaussian() * fragmentSizeStdDev);
+			fragmentSize = Math.min(hap.seq.length, Math.max(readLength, fragmentSize));
+			int start = rng.nextInt(hap.seq.length - fragmentSize + 1);
+			boolean read1Reversed = rng.nextBoolean();
+			String readName = readNamePrefix + i;
+			emitPair(hap, readName, start, fragmentSize, read1Reversed, false, callback);
+			if (rng.nextDouble() < duplicateRate) {
+				emitPair(hap, readName + "_dup", start, fragmentSize, read1Reversed, true, callback);
+			}
+		}
+	}
+	private void emitPair(Haplotype hap, String readName, int start, int fragmentSize, boolean read1Reversed, boolean duplicate, Consumer<SAMRecord> callback) {
+		int forwardStart = start;
+		int reverseStart = start + fragmentSize - readLength;
+		List<SAMRecord> r1 = createRead(hap, readName, read1Reversed ? reverseStart : forwardStart, read1Reversed);
+		List<SAMRecord> r2 = createRead(hap, readName, read1Reversed ? forwardStart : reverseStart, !read1Reversed);
+		SAMRecord p1 = r1.get(0);
+		SAMRecord p2 = r2.get(0);
+		SamPairUtil.setMateInfo(p1, p2, true);
+		boolean properPair = !p1.getReadUnmappedFlag()
+				&& !p2.getReadUnmappedFlag()
+				&& p1.getReferenceIndex().equals(p2.getReferenceIndex())
+				&& SamPairUtil.getPairOrientation(p1) == PairOrientation.FR
+				&& Math.abs(p1.getInferredInsertSize()) <= fragmentSizeMean + 3 * fragmentSizeStdDev;
+		for (SAMRecord r : r1) {
+			r.setFirstOfPairFlag(true);
+		}
+		for (SAMRecord r : r2) {
+			r.setSecondOfPairFlag(true);
+		}
+		for (SAMRecord r : r1.subList(1, r1.size())) {
+			SamPairUtil.setMateInformationOnSupplementalAlignment(r, p2, true);
+		}
+		for (SAMRecord r : r2.subList(1, r2.size())) {
+			SamPairUtil.setMateInformationOnSupplementalAlignment(r, p1, true);
+		}
+		for (List<SAMRecord> read : Arrays.asList(r1, r2)) {
+			for (SAMRecord r : read) {
+				r.setProperPairFlag(properPair);
+				r.setDuplicateReadFlag(duplicate);
+				callback.accept(r);
+			}
+		}
+	}
+	/**
+	 * Creates the alignments of a read
+	 * @param hap source haplotype
+	 * @param hapStart haplotype offset of the first read base
+	 * @param reversed read is sequenced from the reverse strand of the haplotype
+	 * @return read alignments with the primary alignment first
+	 */
+	private List<SAMRecord> createRead(Haplotype hap, String readName, int hapStart, boolean reversed) {
+		// all read data is stored in haplotype orientation
+		byte[] bases = Arrays.copyOfRange(hap.seq, hapStart, hapStart + readLength);
+		byte[] quals = new byte[readLength];
+		boolean[] error = new boolean[readLength];
+		for (int i = 0; i < readLength; i++) {
+			int offset = reversed ? readLength - 1 - i : i;
+			double errorRate = errorRateStart + (errorRateEnd - errorRateStart) * i / Math.max(1, readLength - 1);
+			quals[offset] = (byte)Math.min(41, Math.round(-10 * Math.log10(Math.max(errorRate, 1e-5))));
+			if (rng.nextDouble() < errorRate) {
+				byte b = bases[offset];
+				while (b == bases[offset]) {
+					b = DNA_BASES[rng.nextInt(DNA_BASES.length)];
+				}
+				bases[offset] = b;
+				error[offset] = true;
+			}
+		}
+		List<List<Block>> alignments = new ArrayList<>();
+		List<Block> current = null;
+		for (Block b : hap.blocks(hapStart, readLength)) {
+			if (b.referenceIndex < 0) continue;
+			if (current != null && isIndel(current.get(current.size() - 1), b)) {
+				current.add(b);
+			} else {
+				current = new ArrayList<>();
+				current.add(b);
+				alignments.add(current);
+			}
+		}
+		alignments = alignments.stream()
+				.filter(a -> alignedBases(a) >= minAlignedBases)
+				.collect(Collectors.toList());
+		List<SAMRecord> result = new ArrayList<>();
+		if (alignments.isEmpty()) {
+			SAMRecord r = createRecord(readName, bases, quals, reversed);
+			r.setReadUnmappedFlag(true);
+			result.add(r);
+			return result;
+		}
+		// primary alignment is the alignment with the most aligned bases
+		List<Block> primary = Collections.max(alignments, (a, b) -> Integer.compare(alignedBases(a), alignedBases(b)));
+		alignments.remove(primary);
+		alignments.add(0, primary);
+		for (List<Block> a : alignments) {
+			result.add(createRecord(readName, bases, quals, error, reversed, a));
+		}
+		result.get(0).setSupplementaryAlignmentFlag(false);
+		if (result.size() > 1) {
+			List<ChimericAlignment> ca = result.stream().map(r -> new ChimericAlignment(r)).collect(Collectors.toList());
+			for (int i = 0; i < result.size(); i++) {
+				StringBuilder sb = new StringBuilder();
+				for (int j = 0; j < ca.size(); j++) {
+					if (i != j) {
+						sb.append(ca.get(j).toString());
+						sb.append(';');
+					}
+				}
+				result.get(i).setAttribute(SAMTag.SA.name(), sb.toString());
+			}
+		}
+		return result;
+	}
+	private boolean isIndel(Block a, Block b) {
+		if (a.referenceIndex != b.referenceIndex || a.negative != b.negative) return false;
+		int inserted = b.readOffset - (a.readOffset + a.length);
+		int deleted = a.negative ? (a.referenceFirst - a.length) - b.referenceFirst : b.referenceFirst - (a.referenceFirst + a.length);
+		return deleted >= 0 && deleted <= maxIndelSize && inserted <= maxIndelSize;
+	}
+	private static int alignedBases(List<Block> alignment) {
+		return alignment.stream().mapToInt(b -> b.length).sum();
+	}
+	private SAMRecord createRecord(String readName, byte[] hapBases, byte[] hapQuals, boolean readNegativeStrand) {
+		SAMRecord r = new SAMRecord(header);
+		r.setReadName(readName);
+		r.setReadPairedFlag(true);
+		r.setReadBases(readNegativeStrand ? reverseComplement(hapBases) : hapBases.clone());
+		r.setBaseQualities(readNegativeStrand ? reverse(hapQuals) : hapQuals.clone());
+		r.setAttribute(SAMTag.RG.name(), READ_GROUP);
+		return r;
+	}
+	private SAMRecord createRecord(String readName, byte[] hapBases, byte[] hapQuals, boolean[] error, boolean reversed, List<Block> alignment) {
+		Block first = alignment.get(0);
+		Block last = alignment.get(alignment.size() - 1);
+		List<CigarElement> ce = new ArrayList<>();
+		int nm = 0;
+		if (first.readOffset > 0) {
+			ce.add(new CigarElement(first.readOffset, CigarOperator.SOFT_CLIP));
+		}
+		Block prev = null;
+		for (Block b : alignment) {
+			if (prev != null) {
+				int inserted = b.readOffset - (prev.readOffset + prev.length);
+				int deleted = b.negative ? (prev.referenceFirst - prev.length) - b.referenceFirst : b.referenceFirst - (prev.referenceFirst + prev.length);
+				if (inserted > 0) {
+					ce.add(new CigarElement(inserted, CigarOperator.INSERTION));
+				}
+				if (deleted > 0) {
+					ce.add(new CigarElement(deleted, CigarOperator.DELETION));
+				}
+				nm += inserted + deleted;
+			}
+			ce.add(new CigarElement(b.length, CigarOperator.MATCH_OR_MISMATCH));
+			for (int i = b.readOffset; i < b.readOffset + b.length; i++) {
+				if (error[i]) nm++;
+			}
+			prev = b;
+		}
+		int endClip = readLength - (last.readOffset + last.length);
+		if (endClip > 0) {
+			ce.add(new CigarElement(endClip, CigarOperator.SOFT_CLIP));
+		}
+		// SAM records are in reference orientation
+		boolean negative = first.negative;
+		if (negative) {
+			Collections.reverse(ce);
+		}
+		SAMRecord r = createRecord(readName, hapBases, hapQuals, negative);
+		r.setReadNegativeStrandFlag(negative ^ reversed);
+		r.setReferenceIndex(first.referenceIndex);
+		r.setAlignmentStart(negative ? last.referenceFirst - last.length + 1 : first.referenceFirst);
+		r.setCigar(new Cigar(ce));
+		r.setMappingQuality(mapq);
+		r.setSupplementaryAlignmentFlag(true);
+		r.setAttribute(SAMTag.NM.name(), nm);
+		return r;
+	}
+	private static byte[] reverse(byte[] b) {
+		byte[] r = new byte[b.length];
+		for (int i = 0; i < b.length; i++) {
+			r[i] = b[b.length - 1 - i];
+		}
+		return r;
+	}
+	private static byte[] reverseComplement(byte[] b) {
+		byte[] r = b.clone();
+		SequenceUtil.reverseComplement(r);
+		return r;
+	}
+	/**
+	 * Contiguous read bases with a single reference mapping
+	 */
+	private static class Block {
+		/**
+		 * Offset from start of read in haplotype orientation
+		 */
+		public final int readOffset;
+		public final int length;
+		/**
+		 * Reference index. Negative for novel sequence.
+		 */
+		public final int referenceIndex;
+		/**
+		 * Reference position of the first base in haplotype orientation
+		 */
+		public final int referenceFirst;
+		/**
+		 * Haplotype is the reverse complement of the reference
+		 */
+		public final boolean negative;
+		public Block(int readOffset, int length, int referenceIndex, int referenceFirst, boolean negative) {
+			this.readOffset = readOffset;
+			this.length = length;
+			this.referenceIndex = referenceIndex;
+			this.referenceFirst = referenceFirst;
+			this.negative = negative;
+		}
+	}
+	private static class Haplotype {
+		public final List<Fragment> fragments;
+		public final byte[] seq;
+		/**
+		 * Haplotype offset of the start of each fragment
+		 */
+		private final int[] fragmentOffset;
+		public Haplotype(List<Fragment> fragments) {
+			this.fragments = fragments;
+			this.fragmentOffset = new int[fragments.size()];
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < fragments.size(); i++) {
+				fragmentOffset[i] = sb.length();
+				sb.append(fragments.get(i).getSequence());
+			}
+			this.seq = sb.toString().toUpperCase().getBytes(StandardCharsets.US_ASCII);
+		}
+		/**
+		 * Reference mappings of the given haplotype interval
+		 */
+		public List<Block> blocks(int start, int length) {
+			List<Block> blocks = new ArrayList<>();
+			int i = Arrays.binarySearch(fragmentOffset, start);
+			if (i < 0) {
+				i = -i - 2;
+			}
+			// skip zero length fragments
+			while (i + 1 < fragmentOffset.length && fragmentOffset[i + 1] <= start) i++;
+			for (; i < fragments.size() && fragmentOffset[i] < start + length; i++) {
+				Fragment f = fragments.get(i);
+				int blockStart = Math.max(start, fragmentOffset[i]);
+				int blockEnd = Math.min(start + length, fragmentOffset[i] + f.length());
+				if (blockEnd <= blockStart) continue;
+				int fragmentOffsetOfBlock = blockStart - fragmentOffset[i];
+				int referenceFirst = f.isNegative() ? f.getStart() + f.length() - 1 - fragmentOffsetOfBlock : f.getStart() + fragmentOffsetOfBlock;
+				blocks.add(new Block(blockStart - start, blockEnd - blockStart, f.getReferenceIndex(), referenceFirst, f.isNegative()));
+			}
+			return blocks;
+		}
+	}
+}
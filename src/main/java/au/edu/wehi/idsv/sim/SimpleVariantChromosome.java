@@ -6,6 +6,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.google.common.collect.Lists;
 import com.google.common.io.Files;
 
 import au.edu.wehi.idsv.GenomicProcessingContext;
@@ -50,6 +51,7 @@ public class SimpleVariantChromosome extends SimulatedChromosome {
 		List<VariantContext> list = new ArrayList<VariantContext>();
 		
 		StringBuilder sb = new StringBuilder(">variant." + getChr() + "\n");
+		List<Fragment> fragList = new ArrayList<>();
 		
 		int genomicPosition = 0; // emitting up to and including this genomic position
 		for (Event e : variantList) {
@@ -61,10 +63,13 @@ public class SimpleVariantChromosome extends SimulatedChromosome {
 			// emit up to start location exclusive
 			String beforeAnchorSequence = new String(seq, genomicPosition, e.start - genomicPosition - 1);
 			sb.append(beforeAnchorSequence);
+			addFragment(fragList, genomicPosition + 1, beforeAnchorSequence.length(), false);
 			genomicPosition = e.start;
 			String refBefore =  new String(seq, genomicPosition - 1, 1);
 			String altSeq = getVariantSeq(e.type, e.size, genomicPosition, 1, 0);
 			sb.append(altSeq);
+			addFragment(fragList, genomicPosition, 1, false);
+			addVariantFragments(fragList, e, altSeq.substring(1));
 			VariantContextBuilder builder = new VariantContextBuilder();
 			builder.id(String.format("%s.%d.%s%d", getChr(), e.start, e.type, e.size))
 				.chr(getChr())
@@ -89,8 +94,12 @@ public class SimpleVariantChromosome extends SimulatedChromosome {
 			genomicPosition += getGenomicWidth(e.type, e.size);
 		}
 		sb.append(new String(seq, genomicPosition, margin));
+		addFragment(fragList, genomicPosition + 1, margin, false);
 		genomicPosition += margin;
+		haplotypes.clear();
+		haplotypes.add(fragList);
 		if (includeReference) {
+			haplotypes.add(Lists.newArrayList(createFragment(1, genomicPosition, false)));
 			sb.append("\n>");
 			sb.append(getChr());
 			sb.append("\n");
@@ -100,6 +109,29 @@ public class SimpleVariantChromosome extends SimulatedChromosome {
 		Files.asCharSink(fasta, StandardCharsets.US_ASCII).write(sb.toString());
 		writeVcf(vcf, list);
 	}
+	private void addFragment(List<Fragment> fragList, int genomicStart, int length, boolean reversed) {
+		if (length > 0) {
+			fragList.add(createFragment(genomicStart, length, reversed));
+		}
+	}
+	private void addVariantFragments(List<Fragment> fragList, Event e, String variantSeq) {
+		switch (e.type) {
+		case INS:
+			fragList.add(Fragment.novel(variantSeq.getBytes(StandardCharsets.US_ASCII)));
+			break;
+		case DEL:
+			break;
+		case INV:
+			addFragment(fragList, e.start + 1, e.size, true);
+			break;
+		case DUP:
+			addFragment(fragList, e.start + 1, e.size, false);
+			addFragment(fragList, e.start + 1, e.size, false);
+			break;
+		default:
+			throw new RuntimeException("NYI");
+		}
+	}
 	private int homLenBefore(SvType t, int size, int genomicPosition) {
 		int len = 0;
 		while (genomicPosition - (len + 1) > 0 &&
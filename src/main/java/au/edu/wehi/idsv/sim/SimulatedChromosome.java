@@ -3,6 +3,7 @@ package au.edu.wehi.idsv.sim;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -32,6 +33,10 @@ public class SimulatedChromosome {
 	protected final ReferenceLookup ref;
 	protected final String chr;
 	protected final GenomicProcessingContext context;
+	/**
+	 * Reference fragments making up each of the simulated haplotypes
+	 */
+	protected final List<List<Fragment>> haplotypes = new ArrayList<>();
 	protected Fragment createFragment(int genomicStart, int length, boolean reversed) {
 		return new Fragment(referenceIndex, genomicStart, Arrays.copyOfRange(seq, genomicStart - 1,  genomicStart - 1 + length), reversed);
 	}
@@ -56,6 +61,13 @@ public class SimulatedChromosome {
 		writer.close();
 	}
 	protected String getChr() { return chr; }
+	/**
+	 * Gets the composition of each haplotype output by the most recent call to assemble
+	 * @return reference fragments in haplotype order for each haplotype
+	 */
+	public List<List<Fragment>> getHaplotypes() {
+		return haplotypes;
+	}
 	/**
 	 * Calculates the ranges where a breakpoint would not have sufficient margin on either side
 	 * @param basesBuffer
@@ -86,7 +98,10 @@ public class SimulatedChromosome {
 	}
 	protected void assemble(File fasta, File vcf, List<Fragment> fragList, boolean includeReference) throws IOException {
 		StringBuilder sb = new StringBuilder();
+		haplotypes.clear();
+		haplotypes.add(fragList);
 		if (includeReference) {
+			haplotypes.add(Lists.newArrayList(createFragment(1, seq.length, false)));
 			sb.append(">");
 			sb.append( getChr());
 			sb.append("\n");
@@ -7,10 +7,9 @@ import org.broadinstitute.barclay.argparser.Argument;
 import au.edu.wehi.idsv.FileSystemContext;
 import au.edu.wehi.idsv.GenomicProcessingContext;
 import picard.cmdline.CommandLineProgram;
-import picard.cmdline.StandardOptionDefinitions;
 
 public abstract class SimulationGenerator extends CommandLineProgram {
-    @Argument(doc="Reference used for alignment", shortName=StandardOptionDefinitions.REFERENCE_SHORT_NAME)
+    @Argument(doc="Reference used for alignment")
     public File REFERENCE;
     @Argument(doc="Variant list")
     public File VCF;
@@ -24,6 +23,36 @@ public abstract class SimulationGenerator extends CommandLineProgram {
     public String CHR;
     @Argument(doc="Include reference chromosome in output as separate contig", optional=true)
     public boolean INCLUDE_REFERENCE = false;
+    @Argument(doc="Simulated paired-end reads aligned to REFERENCE. Reads are simulated from each output haplotype.", optional=true)
+    public File BAM = null;
+    @Argument(doc="Read coverage of each haplotype", optional=true)
+    public double COVERAGE = 30;
+    @Argument(doc="Read length", optional=true)
+    public int READ_LENGTH = 150;
+    @Argument(doc="Mean sequenced fragment size", optional=true)
+    public double INSERT_SIZE = 300;
+    @Argument(doc="Standard deviation of sequenced fragment size", optional=true)
+    public double INSERT_SIZE_STDDEV = 30;
+    @Argument(doc="Substitution error rate of the first base of each read", optional=true)
+    public double ERROR_RATE_START = 0.001;
+    @Argument(doc="Substitution error rate of the last base of each read", optional=true)
+    public double ERROR_RATE_END = 0.01;
+    @Argument(doc="Proportion of read pairs with a PCR duplicate", optional=true)
+    public double DUPLICATE_RATE = 0;
+    @Argument(doc="Sample name of simulated reads", optional=true)
+    public String SAMPLE = "simulated";
+    protected void writeReads(GenomicProcessingContext pc, SimulatedChromosome sc) {
+    	if (BAM == null) return;
+    	ReadSimulator sim = new ReadSimulator(pc.getReference().getSequenceDictionary(), SAMPLE, RANDOM_SEED);
+    	sim.coverage = COVERAGE;
+    	sim.readLength = READ_LENGTH;
+    	sim.fragmentSizeMean = INSERT_SIZE;
+    	sim.fragmentSizeStdDev = INSERT_SIZE_STDDEV;
+    	sim.errorRateStart = ERROR_RATE_START;
+    	sim.errorRateEnd = ERROR_RATE_END;
+    	sim.duplicateRate = DUPLICATE_RATE;
+    	sim.simulate(sc.getHaplotypes(), BAM, pc.getSamFileWriterFactory(true).setMaxRecordsInRam(MAX_RECORDS_IN_RAM));
+    }
     protected GenomicProcessingContext getProcessingContext() {
     	GenomicProcessingContext pc = new GenomicProcessingContext(new FileSystemContext(TMP_DIR.get(0), new File("."), MAX_RECORDS_IN_RAM), REFERENCE, null);
     	pc.setCommandLineProgram(this);
@@ -4,16 +4,20 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.PeekingIterator;
+import com.google.common.util.concurrent.Uninterruptibles;
 
+import au.edu.wehi.idsv.visualisation.PipelineMetrics;
+import au.edu.wehi.idsv.visualisation.StageMetrics;
 import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.CloserUtil;
 import htsjdk.samtools.util.Log;
@@ -21,18 +25,32 @@ import htsjdk.samtools.util.Log;
 /**
  * Wrapper iterator that uses a background thread to read from a given source iterator.
  * 
+ * Background reads are performed on the shared {@link BackgroundExecutor} and
+ * records are handed off to the calling thread through a lock-free queue.
+ * 
  * @author Daniel Cameron
  *
  */
 public class AsyncBufferedIterator<T> implements CloseableIterator<T>, PeekingIterator<T>, AutoCloseable {
 	private static AtomicInteger threadsCreated = new AtomicInteger(0);
 	private static final Log log = Log.getInstance(AsyncBufferedIterator.class);
-    private final Thread reader;
+    private final String readerName;
     private final ReaderRunnable readerRunnable;
+    private final CountDownLatch readerStarted = new CountDownLatch(1);
+    private final CountDownLatch readerFinished = new CountDownLatch(1);
+    private final Object readerLock = new Object();
+    private Thread readerThread = null;
+    private boolean readerInterruptRequested = false;
     private final AtomicReference<Throwable> ex = new AtomicReference<Throwable>(null);
     private final Iterator<T> underlying;
-	private final BlockingQueue<List<Object>> buffer;
-	private boolean closeCalled = false;
+	private final SpscBlockingQueue<Batch> buffer;
+	private final MemoryGovernor governor = MemoryGovernor.getInstance();
+	/**
+	 * Throughput metrics for this stage. Null if metrics are not enabled.
+	 */
+	private final StageMetrics metrics;
+	private final LongSupplier queueDepth;
+	private volatile boolean closeCalled = false;
 	private final int batchSize;
 	private final Semaphore closingCriticalSection = new Semaphore(1);
     private PeekingIterator<Object> currentBuffer = Iterators.peekingIterator(ImmutableList.<Object>of().iterator());
@@ -53,13 +71,21 @@ public class AsyncBufferedIterator<T> implements CloseableIterator<T>, PeekingIt
 		if (iterator == null) throw new IllegalArgumentException();
 		if (bufferCount <= 0 || batchSize <= 0) throw new IllegalArgumentException("Buffer size must be at least 1.");
 		this.underlying = iterator;
-		this.buffer = new ArrayBlockingQueue<List<Object>>(bufferCount);
+		this.buffer = new SpscBlockingQueue<Batch>(bufferCount);
 		this.batchSize = batchSize;
         this.readerRunnable = new ReaderRunnable();
-        this.reader = new Thread(readerRunnable, description == null ? getThreadNamePrefix() + threadsCreated.incrementAndGet() : description);
-        this.reader.setDaemon(true);
-        log.debug("Starting thread " + this.reader.getName());
-        this.reader.start();
+        this.readerName = description == null ? getThreadNamePrefix() + threadsCreated.incrementAndGet() : description;
+        if (PipelineMetrics.getInstance().isEnabled()) {
+        	this.metrics = PipelineMetrics.getInstance().getStage(description == null ? getThreadNamePrefix() : description);
+        	this.queueDepth = () -> (long)buffer.size() * batchSize;
+        	this.metrics.registerQueue(queueDepth);
+        } else {
+        	this.metrics = null;
+        	this.queueDepth = null;
+        }
+        log.debug("Starting thread " + this.readerName);
+        BackgroundExecutor.getInstance().execute(readerRunnable);
+        Uninterruptibles.awaitUninterruptibly(readerStarted);
 	}
 	protected String getThreadNamePrefix() {
 		return "AsyncBufferedIterator";
@@ -102,13 +128,35 @@ public class AsyncBufferedIterator<T> implements CloseableIterator<T>, PeekingIt
 				//    at java.util.concurrent.locks.AbstractQueuedSynchronizer.acquireSharedInterruptibly(AbstractQueuedSynchronizer.java:1304)
 				//    at java.util.concurrent.Semaphore.acquire(Semaphore.java:312)
 				//    at htsjdk.samtools.util.AsyncBlockCompressedInputStream.flushReadAhead(AsyncBlockCompressedInputStream.java:149)
-				reader.interrupt();
+				interruptReader();
 				closingCriticalSection.release();
 			}
-			buffer.clear(); // flush buffer so EOS indicator can be written if writer is blocking
-			reader.join();
+			// keep flushing the buffer so EOS indicator can be written if writer is blocking
+			do {
+				releaseBuffered();
+			} while (!readerFinished.await(1, TimeUnit.MILLISECONDS));
+			releaseBuffered();
 		} catch (InterruptedException ie) { }
 	}
+	/**
+	 * Interrupts the background reader. Since background threads are shared,
+	 * the interrupt is only raised whilst the reader is running on the thread. 
+	 */
+	private void interruptReader() {
+		synchronized (readerLock) {
+			readerInterruptRequested = true;
+			if (readerThread != null) {
+				readerThread.interrupt();
+			}
+		}
+	}
+	private void releaseBuffered() {
+		List<Batch> flushed = new ArrayList<>(buffer.size());
+		buffer.drainTo(flushed);
+		for (Batch b : flushed) {
+			governor.release(b.bytes);
+		}
+	}
 	private void syncClose() {
 		CloserUtil.close(underlying);
 	}
@@ -118,7 +166,9 @@ public class AsyncBufferedIterator<T> implements CloseableIterator<T>, PeekingIt
 		if (closeCalled) return false;
 		if (!currentBuffer.hasNext()) {
 			try {
-				currentBuffer = Iterators.peekingIterator(buffer.take().iterator());
+				Batch batch = buffer.take();
+				governor.release(batch.bytes);
+				currentBuffer = Iterators.peekingIterator(batch.iterator());
 			} catch (InterruptedException e) {
 				throw new RuntimeException(e);
 			}
@@ -153,24 +203,59 @@ public class AsyncBufferedIterator<T> implements CloseableIterator<T>, PeekingIt
         }
     }
 	/**
+	 * Read-ahead records with the estimated size reserved from the memory governor
+	 */
+	private static class Batch extends ArrayList<Object> {
+		private static final long serialVersionUID = 1L;
+		private long bytes = 0;
+		public Batch(int initialCapacity) {
+			super(initialCapacity);
+		}
+	}
+	/**
      * Reads the given iterator and passing back to the calling thread
      * in chunks
      */
     private class ReaderRunnable implements Runnable {
     	private boolean eosWritten = false;
         public void run() {
+        	Thread current = Thread.currentThread();
+        	String poolThreadName = current.getName();
+        	synchronized (readerLock) {
+        		readerThread = current;
+        		if (readerInterruptRequested) {
+        			current.interrupt();
+        		}
+        	}
+        	current.setName(readerName);
+        	readerStarted.countDown();
         	try {
         		while (underlying.hasNext()) {
-		        	List<Object> readAhead = new ArrayList<Object>(batchSize + 1);
+		        	Batch readAhead = new Batch(batchSize + 1);
 		    		for (int i = 0; i < batchSize; i++) {
 		    			if (!underlying.hasNext()) break;
-		    			readAhead.add(underlying.next());
+		    			Object record = underlying.next();
+		    			if (governor.isEnabled()) {
+		    				readAhead.bytes += MemoryGovernor.estimateSize(record);
+		    			}
+		    			if (metrics != null) {
+		    				metrics.record(record);
+		    			}
+		    			readAhead.add(record);
 		    		}
 		    		if (!underlying.hasNext()) {
 		    			readAhead.add(eos);
 		    			eosWritten = true;
 		    		}
-		    		buffer.put(readAhead);
+		    		// apply backpressure when over our memory budget but always
+		    		// allow a write if the consumer has nothing left to read
+		    		governor.acquire(readAhead.bytes, () -> buffer.isEmpty());
+		    		try {
+		    			buffer.put(readAhead);
+		    		} catch (InterruptedException e) {
+		    			governor.release(readAhead.bytes);
+		    			throw e;
+		    		}
         		}
         	} catch (InterruptedException ie) {
         		// log.debug("Thread interrupt received - closing on background thread.");
@@ -201,11 +286,22 @@ public class AsyncBufferedIterator<T> implements CloseableIterator<T>, PeekingIt
         		try {
 	        		Thread.interrupted(); // clear thread interrupt flag again so we can write the eos indicator if needed
         			if (!eosWritten) {
-        				buffer.put(ImmutableList.of(eos));
+        				Batch eosBatch = new Batch(1);
+        				eosBatch.add(eos);
+        				buffer.put(eosBatch);
         			}
 				} catch (InterruptedException e2) {
 					log.warn("Thread interrupt received whilst writing end of stream indicator");
 				}
+        		synchronized (readerLock) {
+        			readerThread = null;
+        		}
+        		if (metrics != null) {
+        			metrics.unregisterQueue(queueDepth);
+        		}
+        		Thread.interrupted(); // don't leak our interrupt to the next task run on this thread
+        		current.setName(poolThreadName);
+        		readerFinished.countDown();
         	}
         }
     }
@@ -214,6 +310,6 @@ public class AsyncBufferedIterator<T> implements CloseableIterator<T>, PeekingIt
 		throw new UnsupportedOperationException();
 	}
 	protected String getBackgroundThreadName() {
-		return this.reader.getName();
+		return this.readerName;
 	}
 }
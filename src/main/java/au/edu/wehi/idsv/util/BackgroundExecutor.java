@@ -0,0 +1,73 @@
+package au.edu.wehi.idsv.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import htsjdk.samtools.util.Log;
+
+/**
+ * Shared executor for long-running background pipeline stages such as
+ * asynchronous read-ahead buffers and external process stream readers.
+ *
+ * Background stages spend most of their time blocked waiting for their
+ * consumer so tasks are never queued: idle threads are reused, and new
+ * threads are created only when all existing threads are busy. This bounds
+ * the number of live threads to the number of concurrently active stages
+ * instead of the total number of stages ever created.
+ *
+ * When the runtime supports virtual threads and gridss.threads.virtual
+ * is set, each task is run on its own virtual thread.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class BackgroundExecutor {
+	private static final Log log = Log.getInstance(BackgroundExecutor.class);
+	private static final ExecutorService executor = createExecutor(gridss.Defaults.USE_VIRTUAL_THREADS);
+	/**
+	 * Gets the process-wide background executor
+	 */
+	public static ExecutorService getInstance() {
+		return executor;
+	}
+	private static ExecutorService createExecutor(boolean useVirtualThreads) {
+		if (useVirtualThreads) {
+			ExecutorService virtual = createVirtualThreadExecutor();
+			if (virtual != null) {
+				log.debug("Using virtual threads for background tasks");
+				return virtual;
+			}
+			log.warn("Virtual threads not supported by this JVM. Falling back to pooled background threads.");
+		}
+		return Executors.newCachedThreadPool(new DaemonThreadFactory("gridss-background-"));
+	}
+	/**
+	 * Virtual threads require a newer JVM than we compile against so we
+	 * look them up reflectively.
+	 * @return virtual thread per task executor, null if not supported by the runtime
+	 */
+	private static ExecutorService createVirtualThreadExecutor() {
+		try {
+			Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService)m.invoke(null);
+		} catch (ReflectiveOperationException | UnsupportedOperationException e) {
+			return null;
+		}
+	}
+	private static class DaemonThreadFactory implements ThreadFactory {
+		private final AtomicInteger threadsCreated = new AtomicInteger(0);
+		private final String prefix;
+		public DaemonThreadFactory(String prefix) {
+			this.prefix = prefix;
+		}
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, prefix + threadsCreated.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+}
@@ -46,6 +46,13 @@ public class CachedEnumeratedIntegerDistribution extends EnumeratedIntegerDistri
     	}
 		return cacheCumulativeProbability.get(x);
     }
+    /**
+     * Returns the values of the distribution
+     * @return distinct singleton values in ascending order
+     */
+    public int[] getSingletons() {
+    	return innerDistribution.getPmf().stream().mapToInt(p -> p.getKey()).distinct().sorted().toArray();
+    }
     private Double cacheNumericalMean;
     public double getNumericalMean() {
     	if (cacheNumericalMean == null) {
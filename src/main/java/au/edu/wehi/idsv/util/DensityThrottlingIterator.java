@@ -24,6 +24,10 @@ import it.unimi.dsi.fastutil.longs.LongPriorityQueue;
  * @param <T>
  */
 public abstract class DensityThrottlingIterator<T> implements PeekingIterator<T>, TrackedBuffer {
+	/**
+	 * Number of records between samples of the density scale
+	 */
+	private static final int DENSITY_SCALE_SAMPLE_INTERVAL = 1024;
 	private final Iterator<T> underlying;
 	private final double windowSize;
 	private final double acceptDensity;
@@ -32,6 +36,8 @@ public abstract class DensityThrottlingIterator<T> implements PeekingIterator<T>
 	private final LongPriorityQueue emittedInWindow = new LongArrayFIFOQueue();
 	private final Random random = new Random(0); // Seed set for reproducible results
 	private T nextRecord = null;
+	private double densityScale = 1;
+	private int recordsUntilDensityScaleSample = 0;
 	
 	/**
 	 * @param it iterator to filter. Cannot contain null elements
@@ -46,9 +52,21 @@ public abstract class DensityThrottlingIterator<T> implements PeekingIterator<T>
 		this.maxDensity = targetDensity;
 	}
 	protected abstract long getPosition(T record);
+	/**
+	 * Multiplier applied to the acceptance and target densities.
+	 * Sampled once every DENSITY_SCALE_SAMPLE_INTERVAL records.
+	 * @return density multiplier. Defaults to 1.
+	 */
+	protected double getDensityScale() {
+		return 1;
+	}
 	private void ensureNext() {
 		while (nextRecord == null && underlying.hasNext()) {
 			nextRecord = underlying.next();
+			if (--recordsUntilDensityScaleSample <= 0) {
+				densityScale = getDensityScale();
+				recordsUntilDensityScaleSample = DENSITY_SCALE_SAMPLE_INTERVAL;
+			}
 			long position = getPosition(nextRecord);
 			// remove records
 			while (!inWindow.isEmpty() && inWindow.firstLong() <= position - windowSize) {
@@ -70,7 +88,7 @@ public abstract class DensityThrottlingIterator<T> implements PeekingIterator<T>
 			// accept all record under the threshold
 			return false;
 		}
-		double x = ((inWindow.size() / windowSize) - acceptDensity) / maxDensity;
+		double x = ((inWindow.size() / windowSize) - acceptDensity * densityScale) / (maxDensity * densityScale);
 		if (Math.exp(-x) >= random.nextDouble()) {
 			// exponential back-off did not filter
 			emittedInWindow.enqueue(position);
@@ -79,7 +97,7 @@ public abstract class DensityThrottlingIterator<T> implements PeekingIterator<T>
 		return true;
 	}
 	public boolean isBelowUnconditionalAcceptanceThreshold() {
-		return emittedInWindow.size() / windowSize < acceptDensity;
+		return emittedInWindow.size() / windowSize < acceptDensity * densityScale;
 	}
 	@Override
 	public boolean hasNext() {
@@ -112,8 +130,8 @@ public abstract class DensityThrottlingIterator<T> implements PeekingIterator<T>
 	@Override
 	public List<NamedTrackedBuffer> currentTrackedBufferSizes() {
 		return ImmutableList.of(
-				new NamedTrackedBuffer(trackedBufferName_inWindow, inWindow.size()),
-				new NamedTrackedBuffer(trackedBufferName_emittedInWindow, emittedInWindow.size())
+				new NamedTrackedBuffer(trackedBufferName_inWindow, inWindow.size(), inWindow.size() * (long)Long.BYTES),
+				new NamedTrackedBuffer(trackedBufferName_emittedInWindow, emittedInWindow.size(), emittedInWindow.size() * (long)Long.BYTES)
 				);
 	}
 }
@@ -14,6 +14,7 @@ import htsjdk.samtools.util.Log;
 
 /**
  * Duplicates the given iterator, feeding internal buffers from a background thread
+ * run on the shared {@link BackgroundExecutor}.
  * 
  * This wrapper is thread-safe.
  * 
@@ -32,7 +33,7 @@ public class DuplicatingIterable<T> implements Iterable<T> {
 	private final List<DuplicatingIterableIterator> iterators = new ArrayList<DuplicatingIterableIterator>();
 	private final List<BlockingQueue<Object>> queues = new ArrayList<BlockingQueue<Object>>();
 	private int iteratorsRequested = 0;
-	private FeedingThread thread;
+	private final String feederName;
 	
 	/**
 	 * Duplicates an iterator
@@ -49,9 +50,8 @@ public class DuplicatingIterable<T> implements Iterable<T> {
 			queues.add(new ArrayBlockingQueue<Object>(maxIteratorDifference));
 			iterators.add(new DuplicatingIterableIterator(queues.get(i)));
 		}
-		this.thread = new FeedingThread();
-		this.thread.setName(String.format("DuplicatingIterable-%d", threadCount.incrementAndGet()));
-		this.thread.start();
+		this.feederName = String.format("DuplicatingIterable-%d", threadCount.incrementAndGet());
+		BackgroundExecutor.getInstance().execute(new FeedingTask());
 	}
 	/**
 	 * Creates a new iterator
@@ -61,9 +61,19 @@ public class DuplicatingIterable<T> implements Iterable<T> {
 		if (iteratorsRequested >= iterators.size()) throw new IllegalStateException(String.format("Already created %d iterators", iterators.size()));
 		return iterators.get(iteratorsRequested++);
 	}
-	private class FeedingThread extends Thread {
+	private class FeedingTask implements Runnable {
 		@Override
 		public void run() {
+			Thread current = Thread.currentThread();
+			String poolThreadName = current.getName();
+			current.setName(feederName);
+			try {
+				feed();
+			} finally {
+				current.setName(poolThreadName);
+			}
+		}
+		private void feed() {
 			try {
 				while (it.hasNext()) {
 					T n = it.next();
@@ -0,0 +1,210 @@
+package au.edu.wehi.idsv.util;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Array-backed binary min-heap supporting O(log n) removal of arbitrary elements.
+ *
+ * The heap position of each element is stored in the element itself so
+ * removal does not require a search of the heap. As a consequence, an
+ * element can be contained in at most one heap using a given index accessor
+ * and each element is considered distinct from all other elements, regardless
+ * of its equality under the heap ordering.
+ *
+ * When the ordering is a total ordering of the elements in the heap,
+ * the head of the heap matches first() of a TreeSet using the same ordering.
+ * Iteration order is unspecified.
+ *
+ * @author Daniel Cameron
+ *
+ * @param <T>
+ */
+public class IndexedBinaryHeap<T> extends AbstractCollection<T> {
+	private static final int NOT_IN_HEAP = -1;
+	private final Comparator<? super T> comparator;
+	private final ToIntFunction<T> getIndex;
+	private final ObjIntConsumer<T> setIndex;
+	private Object[] heap = new Object[16];
+	private int size = 0;
+	/**
+	 * Creates a new heap
+	 * @param comparator heap ordering
+	 * @param getIndex returns the heap position recorded against the element.
+	 * Elements not yet added to any heap must return a negative position.
+	 * @param setIndex records the heap position against the element
+	 */
+	public IndexedBinaryHeap(Comparator<? super T> comparator, ToIntFunction<T> getIndex, ObjIntConsumer<T> setIndex) {
+		this.comparator = comparator;
+		this.getIndex = getIndex;
+		this.setIndex = setIndex;
+	}
+	@SuppressWarnings("unchecked")
+	private T at(int i) {
+		return (T)heap[i];
+	}
+	@Override
+	public int size() {
+		return size;
+	}
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	/**
+	 * Adds the given element to the heap
+	 * @return true if the element was added, false if the element was already in the heap
+	 */
+	@Override
+	public boolean add(T e) {
+		if (e == null) throw new NullPointerException();
+		if (indexOf(e) != NOT_IN_HEAP) return false;
+		if (size == heap.length) {
+			heap = Arrays.copyOf(heap, heap.length * 2);
+		}
+		heap[size] = e;
+		setIndex.accept(e, size);
+		size++;
+		siftUp(size - 1);
+		return true;
+	}
+	/**
+	 * Returns the smallest element in the heap
+	 * @return smallest element, null if the heap is empty
+	 */
+	public T peek() {
+		if (size == 0) return null;
+		return at(0);
+	}
+	/**
+	 * Returns the smallest element in the heap
+	 * @throws NoSuchElementException if the heap is empty
+	 */
+	public T first() {
+		if (size == 0) throw new NoSuchElementException();
+		return at(0);
+	}
+	/**
+	 * Removes and returns the smallest element in the heap
+	 * @return smallest element, null if the heap is empty
+	 */
+	public T poll() {
+		if (size == 0) return null;
+		T head = at(0);
+		removeAt(0);
+		return head;
+	}
+	@SuppressWarnings("unchecked")
+	private int indexOf(Object o) {
+		if (o == null) return NOT_IN_HEAP;
+		int i;
+		try {
+			i = getIndex.applyAsInt((T)o);
+		} catch (ClassCastException e) {
+			return NOT_IN_HEAP;
+		}
+		if (i < 0 || i >= size || heap[i] != o) return NOT_IN_HEAP;
+		return i;
+	}
+	@Override
+	public boolean contains(Object o) {
+		return indexOf(o) != NOT_IN_HEAP;
+	}
+	@Override
+	public boolean remove(Object o) {
+		int i = indexOf(o);
+		if (i == NOT_IN_HEAP) return false;
+		removeAt(i);
+		return true;
+	}
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		boolean changed = false;
+		for (Object o : c) {
+			changed |= remove(o);
+		}
+		return changed;
+	}
+	@Override
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			setIndex.accept(at(i), NOT_IN_HEAP);
+			heap[i] = null;
+		}
+		size = 0;
+	}
+	private void removeAt(int i) {
+		T removed = at(i);
+		setIndex.accept(removed, NOT_IN_HEAP);
+		size--;
+		if (i != size) {
+			T last = at(size);
+			heap[i] = last;
+			setIndex.accept(last, i);
+			heap[size] = null;
+			siftDown(i);
+			if (heap[i] == last) {
+				siftUp(i);
+			}
+		} else {
+			heap[size] = null;
+		}
+	}
+	private void siftUp(int i) {
+		T e = at(i);
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			T p = at(parent);
+			if (comparator.compare(e, p) >= 0) break;
+			heap[i] = p;
+			setIndex.accept(p, i);
+			i = parent;
+		}
+		heap[i] = e;
+		setIndex.accept(e, i);
+	}
+	private void siftDown(int i) {
+		T e = at(i);
+		int half = size >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			T c = at(child);
+			int right = child + 1;
+			if (right < size && comparator.compare(c, at(right)) > 0) {
+				child = right;
+				c = at(child);
+			}
+			if (comparator.compare(e, c) <= 0) break;
+			heap[i] = c;
+			setIndex.accept(c, i);
+			i = child;
+		}
+		heap[i] = e;
+		setIndex.accept(e, i);
+	}
+	/**
+	 * Iterates over the heap elements in an unspecified order.
+	 * The heap must not be modified during iteration.
+	 */
+	@Override
+	public Iterator<T> iterator() {
+		return new Iterator<T>() {
+			private int i = 0;
+			@Override
+			public boolean hasNext() {
+				return i < size;
+			}
+			@Override
+			public T next() {
+				if (i >= size) throw new NoSuchElementException();
+				return at(i++);
+			}
+		};
+	}
+}
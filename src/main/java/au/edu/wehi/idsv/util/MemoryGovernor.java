@@ -0,0 +1,244 @@
+package au.edu.wehi.idsv.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import au.edu.wehi.idsv.DirectedEvidence;
+import au.edu.wehi.idsv.NonReferenceReadPair;
+import au.edu.wehi.idsv.SingleReadEvidence;
+import au.edu.wehi.idsv.visualisation.TrackedBuffer;
+import au.edu.wehi.idsv.visualisation.TrackedBuffer.NamedTrackedBuffer;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.util.Log;
+import htsjdk.variant.variantcontext.VariantContext;
+
+/**
+ * Process-wide memory budget shared by all buffering stages.
+ *
+ * Asynchronous read-ahead buffers reserve the estimated size of each batch
+ * against the budget and block when the budget is exhausted. Stages implementing
+ * {@link TrackedBuffer} report the estimated size of their unbounded buffers so
+ * that, for example, a sorting window expanding in an amplified region applies
+ * backpressure to all upstream producers.
+ *
+ * A producer is always permitted to write when its consumer has nothing buffered
+ * so backpressure can slow the pipeline down but never deadlock it.
+ *
+ * The governor is disabled unless gridss.memory.budget is set.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class MemoryGovernor {
+	private static final Log log = Log.getInstance(MemoryGovernor.class);
+	/**
+	 * Portion of the heap remaining live after garbage collection that is considered full memory pressure
+	 */
+	private static final double HEAP_HIGH_WATER_MARK = 0.9;
+	/**
+	 * Interval between recalculation of tracked buffer sizes and heap usage
+	 */
+	private static final long REFRESH_INTERVAL_NS = 100 * 1000 * 1000;
+	private static final long BACKPRESSURE_POLL_INTERVAL_MS = 50;
+	private static final long SAMRECORD_OVERHEAD_BYTES = 256;
+	private static final long EVIDENCE_OVERHEAD_BYTES = 128;
+	private static final long VARIANT_CONTEXT_BYTES = 2048;
+	private static final MemoryGovernor instance = new MemoryGovernor(
+			(long)(gridss.Defaults.MEMORY_BUDGET_HEAP_PORTION * Runtime.getRuntime().maxMemory()),
+			gridss.Defaults.MEMORY_MAX_DENSITY_RELAXATION);
+	private final long budget;
+	private final double maxDensityRelaxation;
+	private final List<WeakReference<TrackedBuffer>> tracked = new ArrayList<>();
+	/**
+	 * Written only when holding this monitor
+	 */
+	private volatile long reserved = 0;
+	private volatile long trackedBytes = 0;
+	private volatile double heapPressure = 0;
+	/**
+	 * Density scale published whenever reservations change or buffer sizes are refreshed
+	 * so readers on the per-record path do not need to acquire any locks.
+	 */
+	private volatile double densityScale;
+	private volatile long lastRefresh = System.nanoTime() - REFRESH_INTERVAL_NS;
+	/**
+	 * Gets the process-wide memory governor
+	 */
+	public static MemoryGovernor getInstance() {
+		return instance;
+	}
+	/**
+	 * Creates a new memory governor
+	 * @param budget memory budget in bytes. Budgets of zero or less disable the governor
+	 * @param maxDensityRelaxation maximum multiplier applied to density throttling thresholds
+	 * when there is no memory pressure
+	 */
+	public MemoryGovernor(long budget, double maxDensityRelaxation) {
+		if (maxDensityRelaxation < 1) throw new IllegalArgumentException("Density relaxation must be at least 1.");
+		this.budget = budget;
+		this.maxDensityRelaxation = maxDensityRelaxation;
+		updateDensityScale();
+		if (isEnabled()) {
+			log.debug(String.format("Memory governor budget: %d bytes", budget));
+		}
+	}
+	public boolean isEnabled() {
+		return budget > 0;
+	}
+	public long getBudget() {
+		return budget;
+	}
+	/**
+	 * Includes the estimated size of the given buffer in the memory budget.
+	 * Tracking stops when the buffer is garbage collected.
+	 */
+	public void register(TrackedBuffer buffer) {
+		if (!isEnabled()) return;
+		synchronized (tracked) {
+			tracked.add(new WeakReference<TrackedBuffer>(buffer));
+		}
+	}
+	/**
+	 * Reserves memory from the budget, blocking until sufficient budget is available.
+	 * @param bytes bytes to reserve
+	 * @param unconditional when true, the reservation is made regardless of the available budget.
+	 * This is checked whenever the budget is reevaluated and is used to ensure that a consumer
+	 * blocked waiting on an empty buffer is always able to make progress.
+	 * @throws InterruptedException
+	 */
+	public void acquire(long bytes, BooleanSupplier unconditional) throws InterruptedException {
+		if (!isEnabled()) return;
+		refresh();
+		synchronized (this) {
+			while (reserved > 0 && reserved + trackedBytes + bytes > budget && !unconditional.getAsBoolean()) {
+				wait(BACKPRESSURE_POLL_INTERVAL_MS);
+				refresh();
+			}
+			reserved += bytes;
+			updateDensityScale();
+		}
+	}
+	/**
+	 * Returns a reservation to the budget
+	 * @param bytes bytes previously reserved
+	 */
+	public synchronized void release(long bytes) {
+		if (!isEnabled() || bytes == 0) return;
+		reserved -= bytes;
+		updateDensityScale();
+		notifyAll();
+	}
+	public long getReservedBytes() {
+		return reserved;
+	}
+	public long getTrackedBytes() {
+		refresh();
+		return trackedBytes;
+	}
+	/**
+	 * Current memory pressure. A pressure of 1 or more indicates that either the
+	 * estimated size of all buffers is at or exceeds the budget, or the live heap
+	 * remaining after garbage collection is close to the maximum heap size.
+	 */
+	public double getMemoryPressure() {
+		if (!isEnabled()) return 0;
+		refresh();
+		return currentMemoryPressure();
+	}
+	private double currentMemoryPressure() {
+		double bufferPressure = (reserved + trackedBytes) / (double)budget;
+		return Math.max(bufferPressure, heapPressure);
+	}
+	/**
+	 * Multiplier to apply to evidence density throttling thresholds.
+	 *
+	 * With no memory pressure, density thresholds are relaxed by up to
+	 * the maximum relaxation factor. As memory pressure increases, the
+	 * thresholds are tightened until the configured densities are applied
+	 * once the memory budget is fully consumed.
+	 * 
+	 * This method does not block and is safe to call frequently.
+	 */
+	public double getDensityScale() {
+		if (!isEnabled()) return 1;
+		refresh();
+		return densityScale;
+	}
+	private void updateDensityScale() {
+		if (!isEnabled()) {
+			densityScale = 1;
+			return;
+		}
+		double headroom = Math.max(0, 1 - currentMemoryPressure());
+		densityScale = 1 + (maxDensityRelaxation - 1) * headroom;
+	}
+	private void refresh() {
+		long now = System.nanoTime();
+		if (now - lastRefresh < REFRESH_INTERVAL_NS) return;
+		synchronized (tracked) {
+			if (now - lastRefresh < REFRESH_INTERVAL_NS) return;
+			lastRefresh = now;
+			long total = 0;
+			Iterator<WeakReference<TrackedBuffer>> it = tracked.iterator();
+			while (it.hasNext()) {
+				TrackedBuffer buffer = it.next().get();
+				if (buffer == null) {
+					it.remove();
+				} else {
+					for (NamedTrackedBuffer ntb : buffer.currentTrackedBufferSizes()) {
+						total += ntb.estimatedBytes;
+					}
+				}
+			}
+			trackedBytes = total;
+			heapPressure = getLiveHeapPortion() / HEAP_HIGH_WATER_MARK;
+			updateDensityScale();
+		}
+	}
+	/**
+	 * Portion of the heap in use immediately after the most recent garbage collection
+	 */
+	private static double getLiveHeapPortion() {
+		double portion = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() != MemoryType.HEAP) continue;
+			MemoryUsage usage = pool.getCollectionUsage();
+			if (usage == null || usage.getMax() <= 0) continue;
+			portion = Math.max(portion, usage.getUsed() / (double)usage.getMax());
+		}
+		return portion;
+	}
+	/**
+	 * Estimates the heap size of the given record
+	 * @param record record
+	 * @return estimated size in bytes
+	 */
+	public static long estimateSize(Object record) {
+		if (record instanceof SAMRecord) {
+			return estimateSize((SAMRecord)record);
+		} else if (record instanceof SingleReadEvidence) {
+			return EVIDENCE_OVERHEAD_BYTES + estimateSize(((SingleReadEvidence)record).getSAMRecord());
+		} else if (record instanceof NonReferenceReadPair) {
+			NonReferenceReadPair nrrp = (NonReferenceReadPair)record;
+			return EVIDENCE_OVERHEAD_BYTES + estimateSize(nrrp.getLocalledMappedRead()) + estimateSize(nrrp.getNonReferenceRead());
+		} else if (record instanceof VariantContext) {
+			return VARIANT_CONTEXT_BYTES;
+		} else if (record instanceof DirectedEvidence) {
+			return EVIDENCE_OVERHEAD_BYTES;
+		}
+		return TrackedBuffer.DEFAULT_RECORD_BYTES;
+	}
+	private static long estimateSize(SAMRecord r) {
+		if (r == null) return 0;
+		String readName = r.getReadName();
+		// bases + qualities + read name (UTF-16) + CIGAR
+		return SAMRECORD_OVERHEAD_BYTES + 2 * r.getReadLength() + (readName == null ? 0 : 2 * readName.length()) + 32 * r.getCigarLength();
+	}
+}
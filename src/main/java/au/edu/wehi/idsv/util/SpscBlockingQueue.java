@@ -0,0 +1,153 @@
+package au.edu.wehi.idsv.util;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded queue for handoff between a single producer thread
+ * and a single consumer thread.
+ *
+ * Blocked threads briefly yield then park until woken by the other side of the queue.
+ *
+ * Adding and removing elements is lock-free. Elements are claimed by advancing the
+ * head index with a compare-and-set so the queue can also be drained from a thread
+ * other than the consumer (such as when closing). Removed elements remain referenced
+ * by the ring buffer until overwritten by the producer.
+ *
+ * @author Daniel Cameron
+ *
+ * @param <E>
+ */
+public class SpscBlockingQueue<E> {
+	/**
+	 * Upper bound on parking time as defence against missed wake-ups
+	 */
+	private static final long MAX_PARK_NS = 10 * 1000 * 1000;
+	/**
+	 * Number of times to yield before parking. When the other side of the
+	 * queue is actively running, yielding is cheaper than parking.
+	 */
+	private static final int YIELDS_BEFORE_PARK = 8;
+	private final AtomicReferenceArray<E> buffer;
+	private final int capacity;
+	/**
+	 * Index of next element to be read. Only advanced by compare-and-set.
+	 */
+	private final AtomicLong head = new AtomicLong(0);
+	/**
+	 * Index of next element to be written. Only written by the producer.
+	 */
+	private final AtomicLong tail = new AtomicLong(0);
+	private volatile Thread waitingProducer = null;
+	private volatile Thread waitingConsumer = null;
+	public SpscBlockingQueue(int capacity) {
+		if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive");
+		this.capacity = capacity;
+		this.buffer = new AtomicReferenceArray<E>(capacity);
+	}
+	/**
+	 * Adds the element to the queue if space is available.
+	 * Must only be called from the producer thread.
+	 * @return true if the element was added, false if the queue is full
+	 */
+	public boolean offer(E e) {
+		if (e == null) throw new NullPointerException();
+		long t = tail.get();
+		if (t - head.get() >= capacity) return false;
+		buffer.lazySet((int)(t % capacity), e);
+		tail.set(t + 1);
+		Thread consumer = waitingConsumer;
+		if (consumer != null) {
+			LockSupport.unpark(consumer);
+		}
+		return true;
+	}
+	/**
+	 * Adds the element to the queue, waiting for space to become available if required.
+	 * Must only be called from the producer thread.
+	 */
+	public void put(E e) throws InterruptedException {
+		for (int i = 0; !offer(e); i++) {
+			if (i < YIELDS_BEFORE_PARK) {
+				Thread.yield();
+			} else {
+				waitingProducer = Thread.currentThread();
+				if (isFull()) {
+					LockSupport.parkNanos(this, MAX_PARK_NS);
+				}
+				waitingProducer = null;
+			}
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+		}
+	}
+	/**
+	 * Removes the head of the queue if present.
+	 * Safe to call from any thread.
+	 * @return head of the queue, null if the queue is empty
+	 */
+	public E poll() {
+		E e;
+		long h;
+		do {
+			h = head.get();
+			if (h >= tail.get()) return null;
+			// the slot cannot be overwritten until head is advanced past h
+			// so e is the element at h if the compare-and-set succeeds
+			e = buffer.get((int)(h % capacity));
+		} while (!head.compareAndSet(h, h + 1));
+		Thread producer = waitingProducer;
+		if (producer != null) {
+			LockSupport.unpark(producer);
+		}
+		return e;
+	}
+	/**
+	 * Removes the head of the queue, waiting for an element to become available if required.
+	 * Must only be called from the consumer thread.
+	 */
+	public E take() throws InterruptedException {
+		E e;
+		for (int i = 0; (e = poll()) == null; i++) {
+			if (i < YIELDS_BEFORE_PARK) {
+				Thread.yield();
+			} else {
+				waitingConsumer = Thread.currentThread();
+				if (isEmpty()) {
+					LockSupport.parkNanos(this, MAX_PARK_NS);
+				}
+				waitingConsumer = null;
+			}
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+		}
+		return e;
+	}
+	/**
+	 * Removes all available elements from the queue.
+	 * Safe to call from any thread.
+	 * @return number of elements drained
+	 */
+	public int drainTo(Collection<? super E> c) {
+		int count = 0;
+		E e;
+		while ((e = poll()) != null) {
+			c.add(e);
+			count++;
+		}
+		return count;
+	}
+	public boolean isEmpty() {
+		return head.get() >= tail.get();
+	}
+	private boolean isFull() {
+		return tail.get() - head.get() >= capacity;
+	}
+	public int size() {
+		return (int)(tail.get() - head.get());
+	}
+}
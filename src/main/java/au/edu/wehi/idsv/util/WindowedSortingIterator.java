@@ -37,6 +37,8 @@ public class WindowedSortingIterator<T> extends AbstractIterator<T> implements T
 	private long lastPosition = Long.MIN_VALUE;
 	private final Comparator<T> sortOrder;
 	private T lastEmitted = null;
+	private final boolean trackBytes = MemoryGovernor.getInstance().isEnabled();
+	private volatile long callsBytes = 0;
 	/**
 	 * Creates a new sorted iterator from a mostly-sorted sequence
 	 * @param it mostly-sorted sequence. Records cannot be out of order by more than windowSize
@@ -56,12 +58,16 @@ public class WindowedSortingIterator<T> extends AbstractIterator<T> implements T
 		this.toCoordinate = transform;
 		this.calls = new PriorityQueue<T>(32, sortOrder);
 		this.sortOrder = sortOrder;
+		MemoryGovernor.getInstance().register(this);
 	}
 	@Override
 	protected T computeNext() {
 		advanceUnderlying();
 		if (calls.isEmpty()) return endOfData();
 		T next = calls.poll();
+		if (trackBytes) {
+			callsBytes -= MemoryGovernor.estimateSize(next);
+		}
 		long nextPos = toCoordinate.apply(next);
 		if (nextPos < lastPosition) {
 			log.error("Sanity check failure: sorting window size too small: evidence out of order at linear coordinate" + nextPos);
@@ -76,6 +82,9 @@ public class WindowedSortingIterator<T> extends AbstractIterator<T> implements T
 		while (it.hasNext() && (calls.isEmpty() || nextRecordCouldBeAtStartOfWindow())) {
 			T next = it.next();
 			calls.add(next);
+			if (trackBytes) {
+				callsBytes += MemoryGovernor.estimateSize(next);
+			}
 		}
 	}
 	private boolean nextRecordCouldBeAtStartOfWindow() {
@@ -91,7 +100,7 @@ public class WindowedSortingIterator<T> extends AbstractIterator<T> implements T
 	@Override
 	public List<NamedTrackedBuffer> currentTrackedBufferSizes() {
 		return ImmutableList.of(
-				new NamedTrackedBuffer(trackedBufferName_calls, calls.size())
+				trackBytes ? new NamedTrackedBuffer(trackedBufferName_calls, calls.size(), callsBytes) : new NamedTrackedBuffer(trackedBufferName_calls, calls.size())
 				);
 	}
 }
@@ -12,6 +12,8 @@ import au.edu.wehi.idsv.IntermediateFileUtil;
 import au.edu.wehi.idsv.ProcessingContext;
 import au.edu.wehi.idsv.util.AsyncBufferedIterator;
 import au.edu.wehi.idsv.util.FileHelper;
+import au.edu.wehi.idsv.visualisation.TimelineTracer;
+import au.edu.wehi.idsv.visualisation.TimelineTracer.Span;
 import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.Log;
@@ -75,6 +77,11 @@ public class VcfFileUtil {
 		}
 		@Override
 		public Void call() throws IOException {
+			try (Span span = TimelineTracer.getInstance().begin("sort", input.getName())) {
+				return doSort();
+			}
+		}
+		private Void doSort() throws IOException {
 			if (IntermediateFileUtil.checkIntermediate(output)) {
 				log.info("Not sorting as output already exists: " + output);
 				return null;
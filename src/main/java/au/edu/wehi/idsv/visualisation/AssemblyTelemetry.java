@@ -49,6 +49,14 @@ public class AssemblyTelemetry implements Closeable {
 			String str = String.format("%d,%s,flushReferenceNodes,%s,%d,%d,%d,,%d\n", chunk, direction.toChar(), dict.getSequence(referenceIndex).getSequenceName(), flushStart, flushEnd, readsFlushed, nsSinceLast / 1000);
 			put(str);
 		}
+		/**
+		 * Records the memoization work performed before a contig could be called
+		 * @param nodesRememoized number of frontier nodes visited since the previous contig was called
+		 */
+		public void rememoize(int referenceIndex, int contigStart, int contigEnd, long nodesRememoized, long nsSinceLast) {
+			String str = String.format("%d,%s,rememoize,%s,%d,%d,%d,,%d\n", chunk, direction.toChar(), dict.getSequence(referenceIndex).getSequenceName(), contigStart, contigEnd, nodesRememoized, nsSinceLast / 1000);
+			put(str);
+		}
 		public void callContig(int referenceIndex, int start, int end, int nodes, int reads, boolean repeatsSimplified) {
 		}
 	}
@@ -0,0 +1,82 @@
+package au.edu.wehi.idsv.visualisation;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Processing time of a single chunk.
+ * 
+ * Timing must be started and stopped on the thread processing the chunk.
+ * 
+ * @author Daniel Cameron
+ *
+ */
+public class ChunkMetrics implements ChunkMetricsMXBean {
+	private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+	private final String operation;
+	private final String chunk;
+	private final long startNanos;
+	private final long startCpuNanos;
+	private final long startGcMillis;
+	private volatile long wallNanos = -1;
+	private volatile long cpuNanos = -1;
+	private volatile long gcMillis = -1;
+	public ChunkMetrics(String operation, String chunk) {
+		this.operation = operation;
+		this.chunk = chunk;
+		this.startNanos = System.nanoTime();
+		this.startCpuNanos = currentThreadCpuTime();
+		this.startGcMillis = totalGcMillis();
+	}
+	/**
+	 * Completes timing of this chunk
+	 */
+	public void stop() {
+		if (isComplete()) return;
+		cpuNanos = currentThreadCpuTime() - startCpuNanos;
+		gcMillis = totalGcMillis() - startGcMillis;
+		wallNanos = System.nanoTime() - startNanos;
+	}
+	@Override
+	public String getOperation() {
+		return operation;
+	}
+	@Override
+	public String getChunk() {
+		return chunk;
+	}
+	@Override
+	public boolean isComplete() {
+		return wallNanos >= 0;
+	}
+	@Override
+	public double getWallSeconds() {
+		long wall = wallNanos;
+		if (wall < 0) wall = System.nanoTime() - startNanos;
+		return wall / 1e9;
+	}
+	@Override
+	public double getCpuSeconds() {
+		// CPU time of in-progress chunks is not available from other threads
+		return Math.max(0, cpuNanos) / 1e9;
+	}
+	@Override
+	public double getGcSeconds() {
+		long gc = gcMillis;
+		if (gc < 0) gc = totalGcMillis() - startGcMillis;
+		return gc / 1e3;
+	}
+	private static long currentThreadCpuTime() {
+		if (!threadBean.isCurrentThreadCpuTimeSupported()) return 0;
+		return threadBean.getCurrentThreadCpuTime();
+	}
+	static long totalGcMillis() {
+		long total = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			long t = gc.getCollectionTime();
+			if (t > 0) total += t;
+		}
+		return total;
+	}
+}
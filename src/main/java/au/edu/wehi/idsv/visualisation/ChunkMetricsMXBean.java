@@ -0,0 +1,26 @@
+package au.edu.wehi.idsv.visualisation;
+
+/**
+ * JMX view of the processing time of a single chunk
+ * 
+ * @author Daniel Cameron
+ *
+ */
+public interface ChunkMetricsMXBean {
+	public String getOperation();
+	public String getChunk();
+	public boolean isComplete();
+	/**
+	 * Wall time spent processing this chunk, including time spent so far for chunks still in progress
+	 */
+	public double getWallSeconds();
+	/**
+	 * CPU time consumed by the thread processing this chunk
+	 */
+	public double getCpuSeconds();
+	/**
+	 * Garbage collection time elapsed whilst this chunk was being processed.
+	 * Concurrently processed chunks are attributed the same garbage collection pauses.
+	 */
+	public double getGcSeconds();
+}
@@ -0,0 +1,46 @@
+package au.edu.wehi.idsv.visualisation;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency of a repeated operation such as an external aligner round trip
+ * 
+ * @author Daniel Cameron
+ *
+ */
+public class LatencyMetrics implements LatencyMetricsMXBean {
+	private final String name;
+	private final LongAdder count = new LongAdder();
+	private final LongAdder totalNanos = new LongAdder();
+	private final AtomicLong maxNanos = new AtomicLong(0);
+	public LatencyMetrics(String name) {
+		this.name = name;
+	}
+	public void record(long nanos) {
+		count.increment();
+		totalNanos.add(nanos);
+		maxNanos.accumulateAndGet(nanos, Math::max);
+	}
+	@Override
+	public String getName() {
+		return name;
+	}
+	@Override
+	public long getCount() {
+		return count.sum();
+	}
+	@Override
+	public double getTotalSeconds() {
+		return totalNanos.sum() / 1e9;
+	}
+	@Override
+	public double getMeanSeconds() {
+		long n = getCount();
+		return n == 0 ? 0 : getTotalSeconds() / n;
+	}
+	@Override
+	public double getMaxSeconds() {
+		return maxNanos.get() / 1e9;
+	}
+}
@@ -0,0 +1,15 @@
+package au.edu.wehi.idsv.visualisation;
+
+/**
+ * JMX view of the latency of a repeated operation
+ * 
+ * @author Daniel Cameron
+ *
+ */
+public interface LatencyMetricsMXBean {
+	public String getName();
+	public long getCount();
+	public double getTotalSeconds();
+	public double getMeanSeconds();
+	public double getMaxSeconds();
+}
@@ -0,0 +1,250 @@
+package au.edu.wehi.idsv.visualisation;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import htsjdk.samtools.util.Log;
+
+/**
+ * Process-wide registry of pipeline stage throughput, per-chunk timing
+ * and operation latency metrics.
+ *
+ * All metrics are exposed as JMX MXBeans under the au.edu.wehi.idsv domain
+ * and can optionally be periodically written to a file in the Prometheus
+ * text exposition format.
+ *
+ * Metrics are only collected once enabled through visualisation.metrics.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class PipelineMetrics {
+	private static final Log log = Log.getInstance(PipelineMetrics.class);
+	public static final String JMX_DOMAIN = "au.edu.wehi.idsv";
+	private static final PipelineMetrics instance = new PipelineMetrics(true);
+	private final boolean registerMBeans;
+	private final ConcurrentMap<String, StageMetrics> stages = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, LatencyMetrics> latencies = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, ChunkMetrics> chunks = new ConcurrentHashMap<>();
+	private volatile boolean enabled = false;
+	private volatile Worker worker = null;
+	private File output = null;
+	/**
+	 * Gets the process-wide metrics registry
+	 */
+	public static PipelineMetrics getInstance() {
+		return instance;
+	}
+	/**
+	 * Creates a new metrics registry
+	 * @param registerMBeans register metrics with the platform MBean server
+	 */
+	public PipelineMetrics(boolean registerMBeans) {
+		this.registerMBeans = registerMBeans;
+	}
+	public boolean isEnabled() {
+		return enabled;
+	}
+	public void enable() {
+		enabled = true;
+	}
+	/**
+	 * Periodically writes all metrics to the given file
+	 * @param file output file. The file is replaced on each write.
+	 * @param writeIntervalInSeconds interval between writes
+	 */
+	public synchronized void startExport(File file, float writeIntervalInSeconds) {
+		enable();
+		if (worker != null && file.equals(output)) return;
+		stopExport();
+		output = file;
+		worker = new Worker(file, writeIntervalInSeconds);
+		worker.setName("PipelineMetrics");
+		worker.setDaemon(true);
+		worker.start();
+	}
+	public synchronized void stopExport() {
+		if (worker == null) return;
+		Worker currentWorker = worker;
+		worker = null;
+		currentWorker.interrupt();
+	}
+	/**
+	 * Gets the throughput metrics of the given stage
+	 * @param name stage name
+	 */
+	public StageMetrics getStage(String name) {
+		return stages.computeIfAbsent(name, n -> register("PipelineStage", n, new StageMetrics(n)));
+	}
+	/**
+	 * Gets the latency metrics of the given operation
+	 * @param name operation name
+	 */
+	public LatencyMetrics getLatency(String name) {
+		return latencies.computeIfAbsent(name, n -> register("Latency", n, new LatencyMetrics(n)));
+	}
+	/**
+	 * Starts timing the processing of a chunk on the current thread.
+	 * @param operation processing operation
+	 * @param chunk chunk identifier
+	 * @return chunk timer to be stopped on the current thread once processing is complete
+	 */
+	public ChunkMetrics startChunk(String operation, String chunk) {
+		ChunkMetrics cm = new ChunkMetrics(operation, chunk);
+		String name = operation + " " + chunk;
+		ChunkMetrics previous = chunks.put(name, cm);
+		if (previous != null) {
+			unregister("Chunk", name);
+		}
+		register("Chunk", name, cm);
+		return cm;
+	}
+	private <T> T register(String type, String name, T mbean) {
+		if (!registerMBeans) return mbean;
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName on = objectName(type, name);
+			if (server.isRegistered(on)) {
+				server.unregisterMBean(on);
+			}
+			server.registerMBean(mbean, on);
+		} catch (JMException e) {
+			log.debug(e, "Unable to register metrics MBean for ", name);
+		}
+		return mbean;
+	}
+	private void unregister(String type, String name) {
+		if (!registerMBeans) return;
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName on = objectName(type, name);
+			if (server.isRegistered(on)) {
+				server.unregisterMBean(on);
+			}
+		} catch (JMException e) {
+			log.debug(e, "Unable to unregister metrics MBean for ", name);
+		}
+	}
+	private static ObjectName objectName(String type, String name) throws JMException {
+		return new ObjectName(JMX_DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+	}
+	/**
+	 * Renders all metrics in the Prometheus text exposition format
+	 */
+	public String toPrometheusText() {
+		StringBuilder sb = new StringBuilder();
+		List<StageMetrics> stageList = new ArrayList<>(stages.values());
+		stageList.sort(Comparator.comparing(StageMetrics::getName));
+		header(sb, "gridss_stage_records_total", "counter", "Records processed by pipeline stage");
+		for (StageMetrics sm : stageList) {
+			sample(sb, "gridss_stage_records_total", sm.getRecords(), "stage", sm.getName());
+		}
+		header(sb, "gridss_stage_bytes_total", "counter", "Estimated size of records processed by pipeline stage");
+		for (StageMetrics sm : stageList) {
+			sample(sb, "gridss_stage_bytes_total", sm.getBytes(), "stage", sm.getName());
+		}
+		header(sb, "gridss_stage_queue_depth", "gauge", "Records currently queued by pipeline stage");
+		for (StageMetrics sm : stageList) {
+			sample(sb, "gridss_stage_queue_depth", sm.getQueueDepth(), "stage", sm.getName());
+		}
+		List<ChunkMetrics> chunkList = new ArrayList<>(chunks.values());
+		chunkList.sort(Comparator.comparing(ChunkMetrics::getOperation).thenComparing(ChunkMetrics::getChunk));
+		header(sb, "gridss_chunk_wall_seconds", "gauge", "Wall time spent processing chunk");
+		for (ChunkMetrics cm : chunkList) {
+			sample(sb, "gridss_chunk_wall_seconds", cm.getWallSeconds(), "operation", cm.getOperation(), "chunk", cm.getChunk(), "complete", Boolean.toString(cm.isComplete()));
+		}
+		header(sb, "gridss_chunk_cpu_seconds", "gauge", "CPU time spent processing completed chunk");
+		for (ChunkMetrics cm : chunkList) {
+			if (cm.isComplete()) {
+				sample(sb, "gridss_chunk_cpu_seconds", cm.getCpuSeconds(), "operation", cm.getOperation(), "chunk", cm.getChunk());
+			}
+		}
+		header(sb, "gridss_chunk_gc_seconds", "gauge", "Garbage collection time elapsed whilst processing chunk");
+		for (ChunkMetrics cm : chunkList) {
+			sample(sb, "gridss_chunk_gc_seconds", cm.getGcSeconds(), "operation", cm.getOperation(), "chunk", cm.getChunk(), "complete", Boolean.toString(cm.isComplete()));
+		}
+		List<LatencyMetrics> latencyList = new ArrayList<>(latencies.values());
+		latencyList.sort(Comparator.comparing(LatencyMetrics::getName));
+		header(sb, "gridss_latency_seconds", "summary", "Operation latency");
+		for (LatencyMetrics lm : latencyList) {
+			sample(sb, "gridss_latency_seconds_count", lm.getCount(), "operation", lm.getName());
+			sample(sb, "gridss_latency_seconds_sum", lm.getTotalSeconds(), "operation", lm.getName());
+		}
+		header(sb, "gridss_latency_max_seconds", "gauge", "Maximum operation latency");
+		for (LatencyMetrics lm : latencyList) {
+			sample(sb, "gridss_latency_max_seconds", lm.getMaxSeconds(), "operation", lm.getName());
+		}
+		header(sb, "gridss_jvm_gc_seconds_total", "counter", "Total garbage collection time");
+		sample(sb, "gridss_jvm_gc_seconds_total", ChunkMetrics.totalGcMillis() / 1e3);
+		return sb.toString();
+	}
+	private static void header(StringBuilder sb, String metric, String type, String help) {
+		sb.append("# HELP ").append(metric).append(' ').append(help).append('\n');
+		sb.append("# TYPE ").append(metric).append(' ').append(type).append('\n');
+	}
+	private static void sample(StringBuilder sb, String metric, double value, String... labels) {
+		sb.append(metric);
+		if (labels.length > 0) {
+			sb.append('{');
+			for (int i = 0; i < labels.length; i += 2) {
+				if (i > 0) sb.append(',');
+				sb.append(labels[i]).append("=\"").append(escapeLabelValue(labels[i + 1])).append('"');
+			}
+			sb.append('}');
+		}
+		sb.append(' ');
+		if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+			sb.append(Long.toString((long)value));
+		} else {
+			sb.append(String.format(Locale.ROOT, "%.6f", value));
+		}
+		sb.append('\n');
+	}
+	private static String escapeLabelValue(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+	/**
+	 * Replaces the given file with the current metrics
+	 */
+	public void write(File file) throws IOException {
+		File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+		Files.write(tmp.toPath(), toPrometheusText().getBytes(StandardCharsets.UTF_8));
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+	private class Worker extends Thread {
+		private final File file;
+		private final float writeIntervalInSeconds;
+		public Worker(File file, float writeIntervalInSeconds) {
+			this.file = file;
+			this.writeIntervalInSeconds = writeIntervalInSeconds;
+		}
+		@Override
+		public void run() {
+			while (worker == this) {
+				try {
+					Thread.sleep((long)(writeIntervalInSeconds * 1000));
+				} catch (InterruptedException e) {
+				}
+				try {
+					write(file);
+				} catch (IOException e) {
+					log.debug(e, "Unable to write metrics to ", file);
+				}
+			}
+		}
+	}
+}
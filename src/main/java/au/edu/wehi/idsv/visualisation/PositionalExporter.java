@@ -10,6 +10,7 @@ import java.util.Set;
 import java.util.TreeSet;
 import java.util.stream.Collectors;
 
+import au.edu.wehi.idsv.debruijn.Kmer128EncodingHelper;
 import au.edu.wehi.idsv.debruijn.KmerEncodingHelper;
 import au.edu.wehi.idsv.debruijn.positional.ImmutableKmerNode;
 import au.edu.wehi.idsv.debruijn.positional.KmerNode;
@@ -54,7 +55,7 @@ public class PositionalExporter {
 				writer.append(",reference=");
 				writer.append(n.isReference() ? '1' : '0');
 				writer.append(";\n");
-				writer.append(new String(KmerEncodingHelper.baseCalls(n.pathKmers(), k)));
+				writer.append(new String(Kmer128EncodingHelper.baseCalls(k, n.firstKmerHigh(), n.pathKmers())));
 				writer.append('\n');
 			}
 			writer.append("#FASTG:end;\n");
@@ -63,7 +64,7 @@ public class PositionalExporter {
 		}
 	}
 	public static String id(KmerNode n, int k) {
-		String str = String.format("%s_%d", new String(KmerEncodingHelper.encodedToPicardBases(k, n.firstKmer())), n.firstStart());
+		String str = String.format("%s_%d", new String(Kmer128EncodingHelper.encodedToPicardBases(k, n.firstKmerHigh(), n.firstKmer())), n.firstStart());
 		if (n.firstStart() < 0) {
 			str = str.replace('-', '_');
 		}
@@ -100,7 +101,7 @@ public class PositionalExporter {
 				writer.append(id(n, k));
 				writer.append(String.format(" [s=%d,e=%d,wid=%d,w=%d,l=%d,r=%s,alt=%d,seq=\"%s\",contig=%s];\n",
 						n.firstStart(), n.firstEnd(), n.width(), n.weight(), n.length(), n.isReference() ? "true" : "false",
-								n.collapsedKmers().size(), new String(KmerEncodingHelper.baseCalls(n.pathKmers(), k)),
+								n.collapsedKmers().size(), new String(Kmer128EncodingHelper.baseCalls(k, n.firstKmerHigh(), n.pathKmers())),
 								lookup.contains(n) ? "true" : "false"));
 			}
 			// edges
@@ -127,7 +128,7 @@ public class PositionalExporter {
 				writer.append('>');
 				writer.append(id(n, k));
 				writer.append('\n');
-				writer.append(new String(KmerEncodingHelper.baseCalls(n.pathKmers(), k)));
+				writer.append(new String(Kmer128EncodingHelper.baseCalls(k, n.firstKmerHigh(), n.pathKmers())));
 				writer.append('\n');
 			}
 		} finally {
@@ -155,13 +156,14 @@ public class PositionalExporter {
 				writer.append('\t');
 				writer.append(id(n, k));
 				writer.append(String.format(" [s=%d,w=%d,r=%s,seq=\"%s\",contig=%s];\n",
-					n.firstStart(),n.weight(), n.isReference() ? "true" : "false", new String(KmerEncodingHelper.encodedToPicardBases(k, n.firstKmer())),
+					n.firstStart(),n.weight(), n.isReference() ? "true" : "false", new String(Kmer128EncodingHelper.encodedToPicardBases(k, n.firstKmerHigh(), n.firstKmer())),
 					contigLookup.contains(n) ? "true" : "false"));
 			}
 			// edges
 			for (KmerNode n : nodes) {
-				for (long nextkmer : KmerEncodingHelper.nextStates(k, n.lastKmer())) {
-					ImmutableKmerNode next = new ImmutableKmerNode(nextkmer, n.firstEnd() + 1, n.firstEnd() + 1, false, 0);
+				long nextHigh = Kmer128EncodingHelper.nextStateHigh(k, n.lastKmerHigh(), n.lastKmer());
+				for (long nextkmer : KmerEncodingHelper.nextStates(Math.min(k, KmerEncodingHelper.MAX_K), n.lastKmer())) {
+					ImmutableKmerNode next = new ImmutableKmerNode(nextHigh, nextkmer, n.firstEnd() + 1, n.firstEnd() + 1, false, 0);
 					if (lookup.contains(next)) {
 						writer.append('\t');
 						writer.append(id(n,k));
@@ -0,0 +1,73 @@
+package au.edu.wehi.idsv.visualisation;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import au.edu.wehi.idsv.util.MemoryGovernor;
+
+/**
+ * Throughput of a single pipeline stage
+ * 
+ * @author Daniel Cameron
+ *
+ */
+public class StageMetrics implements StageMetricsMXBean {
+	private final String name;
+	private final long createdNanos = System.nanoTime();
+	private final LongAdder records = new LongAdder();
+	private final LongAdder bytes = new LongAdder();
+	private final Set<LongSupplier> queues = ConcurrentHashMap.newKeySet();
+	public StageMetrics(String name) {
+		this.name = name;
+	}
+	/**
+	 * Records the processing of the given record by this stage
+	 */
+	public void record(Object record) {
+		records.increment();
+		bytes.add(MemoryGovernor.estimateSize(record));
+	}
+	/**
+	 * Includes the size of the given queue in the queue depth of this stage
+	 * @param queueDepth number of records in the queue
+	 */
+	public void registerQueue(LongSupplier queueDepth) {
+		queues.add(queueDepth);
+	}
+	public void unregisterQueue(LongSupplier queueDepth) {
+		queues.remove(queueDepth);
+	}
+	@Override
+	public String getName() {
+		return name;
+	}
+	@Override
+	public long getRecords() {
+		return records.sum();
+	}
+	@Override
+	public long getBytes() {
+		return bytes.sum();
+	}
+	@Override
+	public double getRecordsPerSecond() {
+		return getRecords() / elapsedSeconds();
+	}
+	@Override
+	public double getBytesPerSecond() {
+		return getBytes() / elapsedSeconds();
+	}
+	@Override
+	public long getQueueDepth() {
+		long depth = 0;
+		for (LongSupplier q : queues) {
+			depth += q.getAsLong();
+		}
+		return depth;
+	}
+	private double elapsedSeconds() {
+		return Math.max(1, System.nanoTime() - createdNanos) / 1e9;
+	}
+}
@@ -0,0 +1,31 @@
+package au.edu.wehi.idsv.visualisation;
+
+/**
+ * JMX view of the throughput of a single pipeline stage
+ * 
+ * @author Daniel Cameron
+ *
+ */
+public interface StageMetricsMXBean {
+	public String getName();
+	/**
+	 * Total number of records processed by this stage
+	 */
+	public long getRecords();
+	/**
+	 * Estimated total size of the records processed by this stage
+	 */
+	public long getBytes();
+	/**
+	 * Mean records per second since this stage was first registered
+	 */
+	public double getRecordsPerSecond();
+	/**
+	 * Mean bytes per second since this stage was first registered
+	 */
+	public double getBytesPerSecond();
+	/**
+	 * Number of records currently queued by this stage
+	 */
+	public long getQueueDepth();
+}
@@ -0,0 +1,158 @@
+package au.edu.wehi.idsv.visualisation;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.Log;
+
+/**
+ * Records the begin and end of coarse-grained processing spans such as
+ * chunk assembly, variant calling, sorting, gathering and alignment as
+ * Chrome trace events.
+ *
+ * The output file can be loaded into chrome://tracing or any viewer supporting
+ * the trace event format to visualise how processing overlaps across threads.
+ * Events are written incrementally so the file is a valid (unterminated) trace
+ * even if processing does not complete.
+ *
+ * Tracing is only performed when enabled through visualisation.timeline.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class TimelineTracer {
+	private static final Log log = Log.getInstance(TimelineTracer.class);
+	private static final TimelineTracer instance = new TimelineTracer();
+	private static final int PID = 1;
+	private static final Span NO_TRACE = () -> {};
+	private final long originNanos = System.nanoTime();
+	private final Set<Long> namedThreads = new HashSet<>();
+	private volatile boolean enabled = false;
+	private File output = null;
+	private Writer writer = null;
+	private boolean shutdownHookRegistered = false;
+	/**
+	 * Processing span. Closing the span records its end.
+	 */
+	public interface Span extends AutoCloseable {
+		@Override
+		void close();
+	}
+	/**
+	 * Gets the process-wide timeline tracer
+	 */
+	public static TimelineTracer getInstance() {
+		return instance;
+	}
+	public boolean isEnabled() {
+		return enabled;
+	}
+	/**
+	 * Starts writing trace events to the given file.
+	 * @param file trace output file
+	 */
+	public synchronized void start(File file) {
+		if (enabled && file.equals(output)) return;
+		stop();
+		try {
+			writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+			writer.write("[\n");
+			writer.flush();
+			output = file;
+			namedThreads.clear();
+			enabled = true;
+			if (!shutdownHookRegistered) {
+				// terminate the trace event array when the JVM exits
+				Runtime.getRuntime().addShutdownHook(new Thread(this::stop, "TimelineTracer"));
+				shutdownHookRegistered = true;
+			}
+		} catch (IOException e) {
+			log.warn(e, "Unable to write timeline to ", file);
+			CloserUtil.close(writer);
+			writer = null;
+		}
+	}
+	/**
+	 * Stops tracing and closes the trace file
+	 */
+	public synchronized void stop() {
+		if (!enabled) return;
+		enabled = false;
+		try {
+			writer.write("{}]\n");
+		} catch (IOException e) {
+			log.debug(e, "Unable to finalise timeline ", output);
+		}
+		CloserUtil.close(writer);
+		writer = null;
+		output = null;
+	}
+	/**
+	 * Records the start of a span on the current thread
+	 * @param category span category
+	 * @param name span name
+	 * @return span to be closed on the current thread when processing completes
+	 */
+	public Span begin(String category, String name) {
+		if (!enabled) return NO_TRACE;
+		Thread thread = Thread.currentThread();
+		long tid = thread.getId();
+		write(thread, category, name, 'B', tid);
+		return () -> write(null, category, name, 'E', tid);
+	}
+	private synchronized void write(Thread thread, String category, String name, char phase, long tid) {
+		if (!enabled) return;
+		double ts = (System.nanoTime() - originNanos) / 1000.0;
+		StringBuilder sb = new StringBuilder();
+		if (thread != null && namedThreads.add(tid)) {
+			sb.append("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":").append(PID)
+				.append(",\"tid\":").append(tid)
+				.append(",\"args\":{\"name\":\"").append(escape(thread.getName())).append("\"}},\n");
+		}
+		sb.append("{\"name\":\"").append(escape(name))
+			.append("\",\"cat\":\"").append(escape(category))
+			.append("\",\"ph\":\"").append(phase)
+			.append("\",\"ts\":").append(String.format(Locale.ROOT, "%.3f", ts))
+			.append(",\"pid\":").append(PID)
+			.append(",\"tid\":").append(tid)
+			.append("},\n");
+		try {
+			writer.write(sb.toString());
+			writer.flush();
+		} catch (IOException e) {
+			log.warn(e, "Error writing timeline. Disabling timeline tracing.");
+			enabled = false;
+			CloserUtil.close(writer);
+			writer = null;
+		}
+	}
+	private static String escape(String s) {
+		StringBuilder sb = new StringBuilder(s.length());
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+			case '"': sb.append("\\\""); break;
+			case '\\': sb.append("\\\\"); break;
+			case '\n': sb.append("\\n"); break;
+			case '\r': sb.append("\\r"); break;
+			case '\t': sb.append("\\t"); break;
+			default:
+				if (c < 0x20) {
+					sb.append(String.format("\\u%04x", (int)c));
+				} else {
+					sb.append(c);
+				}
+			}
+		}
+		return sb.toString();
+	}
+}
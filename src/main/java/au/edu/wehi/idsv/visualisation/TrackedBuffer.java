@@ -3,13 +3,25 @@ package au.edu.wehi.idsv.visualisation;
 import java.util.List;
 
 public interface TrackedBuffer {
+	/**
+	 * Estimated heap size of a buffered record when no better estimate is available
+	 */
+	public static final long DEFAULT_RECORD_BYTES = 256;
 	public class NamedTrackedBuffer {
 		public NamedTrackedBuffer(String name, int size) {
+			this(name, size, size * DEFAULT_RECORD_BYTES);
+		}
+		public NamedTrackedBuffer(String name, int size, long estimatedBytes) {
 			this.name = name;
 			this.size = size;
+			this.estimatedBytes = estimatedBytes;
 		}
 		public final String name;
 		public final int size;
+		/**
+		 * Estimated heap size of the buffer contents
+		 */
+		public final long estimatedBytes;
 	}
 	public void setTrackedBufferContext(String context);
 	public List<NamedTrackedBuffer> currentTrackedBufferSizes();
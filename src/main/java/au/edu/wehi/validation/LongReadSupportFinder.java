@@ -1,6 +1,17 @@
 package au.edu.wehi.validation;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import au.edu.wehi.idsv.sam.SAMRecordUtil;
 import au.edu.wehi.idsv.util.IntervalUtil;
@@ -13,12 +24,17 @@ import htsjdk.samtools.SamReader;
 import htsjdk.samtools.SamReaderFactory;
 import htsjdk.samtools.SamReaderFactory.Option;
 import htsjdk.samtools.ValidationStringency;
+import htsjdk.samtools.util.Log;
 
 public class LongReadSupportFinder {
+	private static final Log log = Log.getInstance(LongReadSupportFinder.class);
+	private final File file;
+	private final SamReaderFactory factory;
 	private final SamReader reader;
 	private final SAMSequenceDictionary dict;
 	public LongReadSupportFinder(File indexedBam) {
-		SamReaderFactory factory = SamReaderFactory.makeDefault()
+		this.file = indexedBam;
+		this.factory = SamReaderFactory.makeDefault()
 				.enable(Option.CACHE_FILE_BASED_INDEXES)
 				.validationStringency(ValidationStringency.LENIENT);
 		this.reader = factory.open(indexedBam);
@@ -49,23 +65,13 @@ public class LongReadSupportFinder {
 			it = reader.query(chr, start1, end1, false);
 			LongReadSupportLevel support = new LongReadSupportLevel();
 			while (it.hasNext()) {
-				SAMRecord r = it.next();
-				if (SAMRecordUtil.getEndSoftClipLength(r) >= minSoftClipLength && IntervalUtil.overlapsClosed(r.getAlignmentEnd(), r.getAlignmentEnd(), start1 - softClipMargin, end1 + softClipMargin)) {
-					support.startClipLocations.add(r.getAlignmentEnd());
-				}
-				int deletions = countDeletions(r, minDeletionSize, start1, end2);
-				if (deletions > 0) {
-					support.spanningAlignments.add(deletions);
-				}
+				addStartSupport(support, it.next(), start1, end1, end2, softClipMargin, minSoftClipLength, minDeletionSize);
 			}
 			it.close();
 			it = null;
 			it = reader.query(chr, start2, end2, false);
 			while (it.hasNext()) {
-				SAMRecord r = it.next();
-				if (SAMRecordUtil.getStartSoftClipLength(r) >= minSoftClipLength && IntervalUtil.overlapsClosed(r.getAlignmentStart(), r.getAlignmentStart(), start2 - softClipMargin, end2 + softClipMargin)) {
-					support.endClipLocations.add(r.getAlignmentStart());
-				}
+				addEndSupport(support, it.next(), start2, end2, softClipMargin, minSoftClipLength);
 			}
 			it.close();
 			it = null;
@@ -79,6 +85,138 @@ public class LongReadSupportFinder {
 			}
 		}
 	}
+	private static void addStartSupport(LongReadSupportLevel support, SAMRecord r, int start1, int end1, int end2,
+			int softClipMargin,
+			int minSoftClipLength,
+			int minDeletionSize) {
+		if (SAMRecordUtil.getEndSoftClipLength(r) >= minSoftClipLength && IntervalUtil.overlapsClosed(r.getAlignmentEnd(), r.getAlignmentEnd(), start1 - softClipMargin, end1 + softClipMargin)) {
+			support.startClipLocations.add(r.getAlignmentEnd());
+		}
+		int deletions = countDeletions(r, minDeletionSize, start1, end2);
+		if (deletions > 0) {
+			support.spanningAlignments.add(deletions);
+		}
+	}
+	private static void addEndSupport(LongReadSupportLevel support, SAMRecord r, int start2, int end2,
+			int softClipMargin,
+			int minSoftClipLength) {
+		if (SAMRecordUtil.getStartSoftClipLength(r) >= minSoftClipLength && IntervalUtil.overlapsClosed(r.getAlignmentStart(), r.getAlignmentStart(), start2 - softClipMargin, end2 + softClipMargin)) {
+			support.endClipLocations.add(r.getAlignmentStart());
+		}
+	}
+	/**
+	 * Evaluates the long read support for the given deletion events.
+	 * 
+	 * Instead of querying the index for each event, the alignments on each chromosome are
+	 * read in a single sorted sweep and the support accumulated for every event whose
+	 * breakend intervals overlap the alignment. Each chromosome is processed as a separate task.
+	 * Support is identical to calling evaluateDeletion for each event.
+	 * @param deletions deletion events
+	 * @param threadpool thread pool to process chromosomes on
+	 * @return long read support of each event in the same order as the input events.
+	 * Events that could not be evaluated are null.
+	 */
+	public List<LongReadSupportLevel> evaluateDeletions(List<BedpeDeletion> deletions,
+			int softClipMargin,
+			int minSoftClipLength,
+			int spanningWindowMargin,
+			int minDeletionSize,
+			ExecutorService threadpool) {
+		LongReadSupportLevel[] result = new LongReadSupportLevel[deletions.size()];
+		Map<String, List<Integer>> byChr = new LinkedHashMap<>();
+		for (int i = 0; i < deletions.size(); i++) {
+			String chr = translateReference(deletions.get(i).chrom1);
+			if (chr != null) {
+				byChr.computeIfAbsent(chr, k -> new ArrayList<>()).add(i);
+			}
+		}
+		List<Future<?>> tasks = new ArrayList<>();
+		for (Entry<String, List<Integer>> entry : byChr.entrySet()) {
+			tasks.add(threadpool.submit(() -> {
+				try {
+					sweep(entry.getKey(), deletions, entry.getValue(), result, softClipMargin, minSoftClipLength, minDeletionSize);
+				} catch (Exception e) {
+					log.error(e, "Error evaluating deletions on ", entry.getKey());
+					for (int i : entry.getValue()) {
+						result[i] = null;
+					}
+				}
+			}));
+		}
+		for (Future<?> f : tasks) {
+			try {
+				f.get();
+			} catch (InterruptedException | ExecutionException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		return Arrays.asList(result);
+	}
+	/**
+	 * Breakend interval of a deletion event
+	 */
+	private static class SweepInterval {
+		public final int start;
+		public final int end;
+		public final int eventIndex;
+		public final boolean isStartBreakend;
+		public SweepInterval(int start, int end, int eventIndex, boolean isStartBreakend) {
+			this.start = start;
+			this.end = end;
+			this.eventIndex = eventIndex;
+			this.isStartBreakend = isStartBreakend;
+		}
+	}
+	private void sweep(String chr, List<BedpeDeletion> deletions, List<Integer> eventIndexes, LongReadSupportLevel[] result,
+			int softClipMargin,
+			int minSoftClipLength,
+			int minDeletionSize) throws IOException {
+		List<SweepInterval> intervals = new ArrayList<>(2 * eventIndexes.size());
+		for (int i : eventIndexes) {
+			BedpeDeletion del = deletions.get(i);
+			result[i] = new LongReadSupportLevel();
+			intervals.add(new SweepInterval(del.start1, del.end1, i, true));
+			intervals.add(new SweepInterval(del.start2, del.end2, i, false));
+		}
+		intervals.sort(Comparator.comparingInt((SweepInterval si) -> si.start));
+		int queryStart = Math.max(1, intervals.get(0).start);
+		int queryEnd = intervals.stream().mapToInt(si -> si.end).max().getAsInt();
+		if (queryEnd < queryStart) return;
+		List<SweepInterval> active = new ArrayList<>();
+		int next = 0;
+		try (SamReader sweepReader = factory.open(file)) {
+			try (SAMRecordIterator it = sweepReader.query(chr, queryStart, queryEnd, false)) {
+				while (it.hasNext()) {
+					SAMRecord r = it.next();
+					// unmapped reads cannot provide support
+					if (r.getReadUnmappedFlag()) continue;
+					int alignmentStart = r.getAlignmentStart();
+					int alignmentEnd = r.getAlignmentEnd();
+					while (next < intervals.size() && intervals.get(next).start <= alignmentEnd) {
+						active.add(intervals.get(next++));
+					}
+					for (int i = 0; i < active.size(); i++) {
+						SweepInterval si = active.get(i);
+						if (si.end < alignmentStart) {
+							// alignments are sorted so no subsequent alignment can overlap
+							SweepInterval last = active.remove(active.size() - 1);
+							if (i < active.size()) {
+								active.set(i, last);
+							}
+							i--;
+						} else if (si.start <= alignmentEnd) {
+							BedpeDeletion del = deletions.get(si.eventIndex);
+							if (si.isStartBreakend) {
+								addStartSupport(result[si.eventIndex], r, del.start1, del.end1, del.end2, softClipMargin, minSoftClipLength, minDeletionSize);
+							} else {
+								addEndSupport(result[si.eventIndex], r, del.start2, del.end2, softClipMargin, minSoftClipLength);
+							}
+						}
+					}
+				}
+			}
+		}
+	}
 	private String translateReference(String chr) {
 		if (dict.getSequenceIndex(chr) >= 0) return chr;
 		if (dict.getSequenceIndex("chr" + chr) >= 0) return "chr" + chr;
@@ -87,7 +225,7 @@ public class LongReadSupportFinder {
 		if (dict.getSequenceIndex(chr.replace("Chr",  "")) >= 0) return chr.replace("Chr",  "");
 		return null;
 	}
-	private int countDeletions(SAMRecord r, int minDeletionSize, int startPosition, int endPosition) {
+	private static int countDeletions(SAMRecord r, int minDeletionSize, int startPosition, int endPosition) {
 		int position = r.getAlignmentStart();
 		int count = 0;
 		for (CigarElement ce : r.getCigar().getCigarElements()) {
@@ -3,14 +3,21 @@ package au.edu.wehi.validation;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 
 import org.broadinstitute.barclay.argparser.Argument;
 import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import htsjdk.samtools.util.Log;
 import picard.cmdline.CommandLineProgram;
 import picard.cmdline.StandardOptionDefinitions;
 
@@ -24,6 +31,7 @@ import picard.cmdline.StandardOptionDefinitions;
 		oneLineSummary = "Validations deletions 50bp or more from long read alignments.",
         programGroup = gridss.cmdline.programgroups.Benchmarking.class)
 public class ValidateDeletions extends CommandLineProgram {
+	private static final Log log = Log.getInstance(ValidateDeletions.class);
     @Argument(doc="Deletions in BEDPE format", shortName=StandardOptionDefinitions.INPUT_SHORT_NAME)
     public File BEDPE = null;
     @Argument(shortName=StandardOptionDefinitions.OUTPUT_SHORT_NAME)
@@ -41,11 +49,18 @@ public class ValidateDeletions extends CommandLineProgram {
     @Argument(doc="Minimum size of a deletion before it is considered to contribute to a spanning event."
     		+ " This is used to remove PacBio short indel from the deletion signal.", shortName="MDS", optional=true)
     public int MIN_DELETION_LENGTH = 4;
+    @Argument(doc="Evaluate all deletions in a single sorted pass over each chromosome of the long read BAM instead of querying the BAM index for each deletion.", optional=true)
+    public boolean BATCHED = true;
+    @Argument(doc="Number of worker threads to spawn. Defaults to number of cores available.", shortName="THREADS", optional=true)
+    public int WORKER_THREADS = Runtime.getRuntime().availableProcessors();
     private static final String EOF_INDICATOR = "EOF";
     protected int doWork() {
         try {
         	//IOUtil.assertFileIsReadable(REFERENCE);
-        	
+        	if (BATCHED) {
+        		annotateBatched();
+        		return 0;
+        	}
         	List<ArrayBlockingQueue<String>> queues = new ArrayList<ArrayBlockingQueue<String>>();
         	for (int i = 0; i < LONG_READS.size() + 1; i++) {
         		queues.add(new ArrayBlockingQueue<String>(1024));
@@ -82,6 +97,65 @@ public class ValidateDeletions extends CommandLineProgram {
 			e.printStackTrace();
 		}
     }
+    private void annotateBatched() throws IOException {
+    	List<String> lines = Files.readAllLines(BEDPE.toPath());
+    	List<BedpeDeletion> deletions = new ArrayList<>();
+    	for (String line : lines) {
+    		if (!line.startsWith("#")) {
+    			deletions.add(new BedpeDeletion(line));
+    		}
+    	}
+    	List<StringBuilder> output = lines.stream().map(line -> new StringBuilder(line)).collect(Collectors.toList());
+    	ExecutorService threadpool = Executors.newFixedThreadPool(WORKER_THREADS, new ThreadFactoryBuilder().setDaemon(false).setNameFormat("Worker-%d").build());
+    	try {
+	    	for (File lr : LONG_READS) {
+	    		log.info("Evaluating long read support in ", lr);
+	    		List<LongReadSupportLevel> support = new LongReadSupportFinder(lr).evaluateDeletions(deletions,
+	    				SOFT_CLIP_MARGIN, MIN_SOFT_CLIP_LENGTH, SPANNING_WINDOW_SIZE, MIN_DELETION_LENGTH, threadpool);
+	    		int offset = 0;
+	    		for (int i = 0; i < lines.size(); i++) {
+	    			if (lines.get(i).startsWith("#")) {
+	    				appendHeader(output.get(i));
+	    			} else {
+	    				appendSupport(output.get(i), support.get(offset++));
+	    			}
+	    		}
+	    	}
+    	} finally {
+    		threadpool.shutdown();
+    	}
+    	try (BufferedWriter writer = new BufferedWriter(new FileWriter(OUTPUT))) {
+    		for (StringBuilder sb : output) {
+    			writer.append(sb);
+        		writer.write('\n');
+    		}
+    	}
+    }
+    private static void appendHeader(StringBuilder sb) {
+    	sb.append(BedpeDeletion.FS);
+		sb.append("SpanningDeletionSize");
+		sb.append(BedpeDeletion.FS);
+		sb.append("StartClipLocation");
+		sb.append(BedpeDeletion.FS);
+		sb.append("EndClipLocation");
+    }
+    private static void appendSupport(StringBuilder sb, LongReadSupportLevel support) {
+    	if (support == null) {
+			sb.append(BedpeDeletion.FS);
+			sb.append("ERROR");
+    		sb.append(BedpeDeletion.FS);
+    		sb.append("ERROR");
+    		sb.append(BedpeDeletion.FS);
+    		sb.append("ERROR");
+		} else {
+			sb.append(BedpeDeletion.FS);
+			sb.append(support.spanningAlignments.toString());
+			sb.append(BedpeDeletion.FS);
+    		sb.append(support.startClipLocations.toString());
+    		sb.append(BedpeDeletion.FS);
+    		sb.append(support.endClipLocations.toString());
+		}
+    }
     public void annotate(LongReadSupportFinder finder, ArrayBlockingQueue<String> in, ArrayBlockingQueue<String> out) {
     	try {
     		while (true) {
@@ -89,32 +163,13 @@ public class ValidateDeletions extends CommandLineProgram {
 	    		if (line == EOF_INDICATOR) break;
 	    		StringBuilder sb = new StringBuilder(line);
 	    		if (line.startsWith("#")) {
-	    			sb.append(BedpeDeletion.FS);
-	    			sb.append("SpanningDeletionSize");
-	    			sb.append(BedpeDeletion.FS);
-	    			sb.append("StartClipLocation");
-	    			sb.append(BedpeDeletion.FS);
-	    			sb.append("EndClipLocation");
+	    			appendHeader(sb);
 	    		} else {
 		    		BedpeDeletion del = new BedpeDeletion(line);
 		    		LongReadSupportLevel support = finder.evaluateDeletion(
 		    				del.chrom1, del.start1, del.end1, del.start2, del.end2,
 		    				SOFT_CLIP_MARGIN, MIN_SOFT_CLIP_LENGTH, SPANNING_WINDOW_SIZE, MIN_DELETION_LENGTH);
-		    		if (support == null) {
-		    			sb.append(BedpeDeletion.FS);
-		    			sb.append("ERROR");
-		        		sb.append(BedpeDeletion.FS);
-		        		sb.append("ERROR");
-		        		sb.append(BedpeDeletion.FS);
-		        		sb.append("ERROR");
-		    		} else {
-		    			sb.append(BedpeDeletion.FS);
-		    			sb.append(support.spanningAlignments.toString());
-		    			sb.append(BedpeDeletion.FS);
-		        		sb.append(support.startClipLocations.toString());
-		        		sb.append(BedpeDeletion.FS);
-		        		sb.append(support.endClipLocations.toString());
-		    		}
+		    		appendSupport(sb, support);
 	    		}
 	    		out.put(sb.toString());
 	    	}
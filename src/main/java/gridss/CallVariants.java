@@ -18,6 +18,8 @@ import au.edu.wehi.idsv.AssemblyEvidenceSource;
 import au.edu.wehi.idsv.FileSystemContext;
 import au.edu.wehi.idsv.SAMEvidenceSource;
 import au.edu.wehi.idsv.util.FileHelper;
+import au.edu.wehi.idsv.visualisation.TimelineTracer;
+import au.edu.wehi.idsv.visualisation.TimelineTracer.Span;
 import gridss.cmdline.FullEvidenceCommandLineProgram;
 import gridss.cmdline.MultipleSamFileCommandLineProgram;
 import htsjdk.samtools.SamPairUtil.PairOrientation;
@@ -51,7 +53,7 @@ public class CallVariants extends FullEvidenceCommandLineProgram {
 					return new Callable<Void>() {
 						@Override
 						public Void call() throws Exception {
-							try {
+							try (Span span = TimelineTracer.getInstance().begin("extract", input.getFile().getName())) {
 								input.ensureMetrics();
 								InsertSizeMetrics ism = input.getMetrics().getInsertSizeMetrics();
 					    		if (ism != null && ism.PAIR_ORIENTATION != PairOrientation.FR) {
@@ -80,7 +82,7 @@ public class CallVariants extends FullEvidenceCommandLineProgram {
 	private void callVariants(ExecutorService threadpool) throws IOException, InterruptedException, ExecutionException {
 		File rawCalls = getContext().getFileSystemContext().getBreakpointVcf(OUTPUT);
 		if (!OUTPUT.exists()) {
-			if (!rawCalls.exists()) {
+			if (!rawCalls.exists() || getContext().getConfig().incremental) {
 				IdentifyVariants iv = new IdentifyVariants();
 				copyInputs(iv);
 				iv.OUTPUT_VCF = rawCalls;
@@ -123,7 +125,8 @@ public class CallVariants extends FullEvidenceCommandLineProgram {
 			});
 	    	extractEvidence(threadpool, getSamEvidenceSources());
 	    	AssemblyEvidenceSource assemblyEvidence = new AssemblyEvidenceSource(getContext(), getSamEvidenceSources(), ASSEMBLY);
-	    	if (!ASSEMBLY.exists()) {
+	    	if (!ASSEMBLY.exists() || getContext().getConfig().incremental) {
+	    		// in incremental mode, only assembly chunks with changed evidence are reassembled
 	    		assemblyEvidence.assembleBreakends(threadpool);
 	    	}
 	    	// convert breakend assemblies into breakpoint via split read identification
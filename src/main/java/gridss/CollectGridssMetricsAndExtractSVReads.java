@@ -58,6 +58,10 @@ public class CollectGridssMetricsAndExtractSVReads extends CollectGridssMetrics
     public File METRICS_OUTPUT;
     @Argument(shortName = "SVO", doc = "File to write the output to.")
     public File SV_OUTPUT;
+    @Argument(doc = "If true, the alignments of each fragment of coordinate sorted input are grouped "
+    		+ "using the read flags and SA tag before SV read extraction. "
+    		+ "Pending alignments exceeding MAX_RECORDS_IN_RAM are spilled to disk.", optional = true)
+    public boolean GROUP_COORDINATE_SORTED_FRAGMENTS = false;
     public static void main(final String[] args) {
         new CollectGridssMetricsAndExtractSVReads().instanceMainWithExit(args);
     }
@@ -85,6 +89,7 @@ public class CollectGridssMetricsAndExtractSVReads extends CollectGridssMetrics
     	extract.OUTPUT = SV_OUTPUT;
     	extract.INPUT = this.INPUT;
     	extract.ASSUME_SORTED = true;
+    	extract.GROUP_COORDINATE_SORTED_FRAGMENTS = GROUP_COORDINATE_SORTED_FRAGMENTS;
     	return extract;
     }
     public ProgramInterface createExtractSVReads() {
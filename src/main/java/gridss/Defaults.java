@@ -18,6 +18,25 @@ public class Defaults {
 	 * See http://stackoverflow.com/questions/2972986/how-to-unmap-a-file-from-memory-mapped-using-filechannel-in-java
 	 */
 	public static final boolean DEFENSIVE_GC;
+	/**
+	 * Portion of the maximum heap size available to buffering stages before
+	 * backpressure is applied. Zero disables the memory governor.
+	 */
+	public static final float MEMORY_BUDGET_HEAP_PORTION;
+	/**
+	 * Maximum multiplier applied to assembly evidence density throttling
+	 * thresholds when the memory governor reports no memory pressure.
+	 */
+	public static final double MEMORY_MAX_DENSITY_RELAXATION;
+	/**
+	 * Run background pipeline stages on virtual threads when supported by the JVM
+	 */
+	public static final boolean USE_VIRTUAL_THREADS;
+	/**
+	 * Number of threads used to inflate and decode BAM files when iterating over
+	 * entire files. Values of 1 or less use the single-threaded htsjdk reader.
+	 */
+	public static final int BAM_THREADS;
 	static {
 		IGNORE_FILE_TIMESTAMPS = Boolean.valueOf(System.getProperty("gridss.ignoreTimestamps", "true"));
 		ASYNC_BUFFERS = Integer.parseInt(System.getProperty("gridss.async.buffers", "2"));
@@ -27,5 +46,9 @@ public class Defaults {
 		WRITE_ZERO_OR_EMTPY_VCF_FIELDS = Boolean.valueOf(System.getProperty("gridss.writeZeroOrEmptyVcfFields", "true"));
 		DEFENSIVE_GC = Boolean.valueOf(System.getProperty("gridss.defensiveGC", "false"));
 		OUTPUT_TO_TEMP_FILE = Boolean.valueOf(System.getProperty("gridss.output_to_temp_file", "false"));
+		MEMORY_BUDGET_HEAP_PORTION = Float.parseFloat(System.getProperty("gridss.memory.budget", "0"));
+		MEMORY_MAX_DENSITY_RELAXATION = Double.parseDouble(System.getProperty("gridss.memory.maxDensityRelaxation", "4"));
+		USE_VIRTUAL_THREADS = Boolean.valueOf(System.getProperty("gridss.threads.virtual", "false"));
+		BAM_THREADS = Integer.parseInt(System.getProperty("gridss.bam.threads", Integer.toString(Math.min(8, Runtime.getRuntime().availableProcessors()))));
 	}
 }
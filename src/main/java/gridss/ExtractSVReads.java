@@ -21,6 +21,7 @@ import gridss.filter.ClippedReadFilter;
 import gridss.filter.FixedFilter;
 import gridss.filter.IndelReadFilter;
 import gridss.filter.OneEndAnchoredReadFilter;
+import gridss.filter.RawBamRecordPrefilter;
 import gridss.filter.ReadPairConcordanceFilter;
 import gridss.filter.SplitReadFilter;
 import gridss.filter.UnionAggregateFilter;
@@ -39,7 +40,9 @@ import htsjdk.samtools.util.Log;
 		summary = "Extracts reads and read pairs supporting putative structural variations. "
         		+ "If the input file is queryname sorted, a multi-mapping aware extraction is performed "
         		+ "and reads/read pairs are only extracted when all alignments are consistent with the "
-        		+ "presence of of a structural variant.",
+        		+ "presence of of a structural variant. If the input file is coordinate sorted, the "
+        		+ "alignments of each fragment are grouped using the read flags and SA tag and the same "
+        		+ "extraction is performed with the exception of secondary alignments.",
         oneLineSummary = "Extracts reads and read pairs supporting putative structural variations.",
         programGroup = picard.cmdline.programgroups.ReadDataManipulationProgramGroup.class
 )
@@ -47,11 +50,15 @@ public class ExtractSVReads extends ProcessStructuralVariantReadsCommandLineProg
 	private static final Log log = Log.getInstance(ExtractSVReads.class);
     @Argument(shortName="MO", doc="Output file containing SV metrics", optional=true)
     public File METRICS_OUTPUT;
+    @Argument(doc="Skip fully aligned reads from concordant read pairs using only the raw BAM record data. "
+    		+ "Extracted reads are identical regardless of this setting.", optional=true)
+    public boolean PREFILTER = true;
     private CollectStructuralVariantReadMetrics metricsCollector;
     private File tmpoutput;
     private SAMFileWriter writer;
     private SamRecordFilter readfilter;
     private SamRecordFilter pairfilter;
+    private RawBamRecordPrefilter prefilter;
     private int count;
     @Override
     protected void setup(SAMFileHeader header, File samFile) {
@@ -62,11 +69,13 @@ public class ExtractSVReads extends ProcessStructuralVariantReadsCommandLineProg
     		metricsCollector.setup(header, samFile);
     	}
     	SAMFileWriterFactory writerFactory = new SAMFileWriterFactory();
-    	if (header.getSortOrder() != SortOrder.queryname) {
+    	// grouped fragments are not returned in coordinate order
+    	boolean fragmentsGrouped = header.getSortOrder() == SortOrder.coordinate && GROUP_COORDINATE_SORTED_FRAGMENTS;
+    	if (header.getSortOrder() != SortOrder.queryname && !fragmentsGrouped) {
 			log.info("Not considering multiple read alignments as the input file is not queryname sorted.");
 		}
     	tmpoutput = gridss.Defaults.OUTPUT_TO_TEMP_FILE ? FileSystemContext.getWorkingFileFor(OUTPUT, "gridss.tmp.ExtractSVReads.") : OUTPUT;
-    	writer = writerFactory.makeSAMOrBAMWriter(header, true, tmpoutput);
+    	writer = writerFactory.makeSAMOrBAMWriter(header, !fragmentsGrouped, tmpoutput);
     	
     	IndelReadFilter indelFilter = new IndelReadFilter(INDELS ? MIN_INDEL_SIZE : Integer.MAX_VALUE);
 		ClippedReadFilter softClipFilter = new ClippedReadFilter(CLIPPED ? MIN_CLIP_LENGTH : Integer.MAX_VALUE); 
@@ -88,6 +97,7 @@ public class ExtractSVReads extends ProcessStructuralVariantReadsCommandLineProg
 		if (!SINGLE_MAPPED_PAIRED && !DISCORDANT_READ_PAIRS) {
 			pairfilter = new FixedFilter(true);
 		}
+		prefilter = PREFILTER ? new RawBamRecordPrefilter(getReadPairConcordanceCalculator(), INCLUDE_DUPLICATES, SINGLE_MAPPED_PAIRED, DISCORDANT_READ_PAIRS) : null;
 		count = 0;
     }
 	public static boolean[] hasReadAlignmentConsistentWithReference(List<SAMRecord> records) {
@@ -194,6 +204,17 @@ public class ExtractSVReads extends ProcessStructuralVariantReadsCommandLineProg
 	}
 	@Override
 	protected void acceptFragment(List<SAMRecord> records, ReferenceLookup lookup) {
+		if (prefilter != null && prefilter.filterOut(records)) {
+			// prefiltered fragments consist only of duplicates and alignments consistent
+			// with the reference so contribute nothing to the structural variant read metrics
+			return;
+		}
+		extract(records, lookup);
+		if (metricsCollector != null) {
+			metricsCollector.acceptFragment(records, lookup);
+		}
+	}
+	private void extract(List<SAMRecord> records, ReferenceLookup lookup) {
 		boolean[] extract = shouldExtract(records, lookup);
 		for (int i = 0; i < records.size(); i++) {
 			SAMRecord r = records.get(i);
@@ -204,9 +225,6 @@ public class ExtractSVReads extends ProcessStructuralVariantReadsCommandLineProg
 				// ignore remaining reads
 			}
 		}
-		if (metricsCollector != null) {
-			metricsCollector.acceptFragment(records, lookup);
-		}
 	}
 	@Override
 	protected void finish() {
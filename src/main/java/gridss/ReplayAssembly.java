@@ -0,0 +1,113 @@
+package gridss;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import org.broadinstitute.barclay.argparser.Argument;
+import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
+
+import com.google.common.base.Stopwatch;
+
+import au.edu.wehi.idsv.AssemblyEvidenceSnapshot;
+import au.edu.wehi.idsv.AssemblyEvidenceSource;
+import au.edu.wehi.idsv.DirectedEvidence;
+import au.edu.wehi.idsv.ProcessingContext;
+import au.edu.wehi.idsv.SAMEvidenceSource;
+import au.edu.wehi.idsv.SequentialIdGenerator;
+import au.edu.wehi.idsv.debruijn.positional.PositionalAssembler;
+import au.edu.wehi.idsv.visualisation.AssemblyTelemetry;
+import gridss.cmdline.MultipleSamFileCommandLineProgram;
+import htsjdk.samtools.SAMFileHeader.SortOrder;
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMFileWriterFactory;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.Log;
+
+@CommandLineProgramProperties(
+		summary = "Reruns the breakend assembly of a single assembly chunk from an evidence snapshot. "
+				+ "Snapshots are written by AssembleBreakends for chunks overlapping visualisation.assemblySnapshotRegions "
+				+ "or taking longer than visualisation.assemblySnapshotTimeBudgetInSeconds to assemble. "
+				+ "INPUT, REFERENCE_SEQUENCE, WORKING_DIR and CONFIGURATION_FILE must match the values used when creating the snapshot.",
+		oneLineSummary = "Replays the assembly of an evidence snapshot.",
+		programGroup = gridss.cmdline.programgroups.Assembly.class
+)
+public class ReplayAssembly extends MultipleSamFileCommandLineProgram {
+	private static final Log log = Log.getInstance(ReplayAssembly.class);
+	@Argument(doc="Assembly evidence snapshot", optional=false)
+	public File SNAPSHOT;
+	@Argument(doc="Assembly contigs generated by the final replay", optional=true)
+	public File OUTPUT;
+	@Argument(doc="Assembly telemetry of the final replay", optional=true)
+	public File TELEMETRY;
+	@Argument(doc="Number of times to replay the assembly. "
+			+ "Repeating the assembly allows the JIT to warm up before profiling measurements are taken.", optional=true)
+	public int REPEAT = 1;
+	public static void main(String[] argv) {
+		System.exit(new ReplayAssembly().instanceMain(argv));
+	}
+	@Override
+	protected String[] customCommandLineValidation() {
+		if (REPEAT < 1) {
+			return new String[] { "REPEAT must be at least 1" };
+		}
+		return super.customCommandLineValidation();
+	}
+	@Override
+	public int doWork(ExecutorService threadpool) throws IOException {
+		IOUtil.assertFileIsReadable(SNAPSHOT);
+		if (OUTPUT != null) IOUtil.assertFileIsWritable(OUTPUT);
+		if (TELEMETRY != null) IOUtil.assertFileIsWritable(TELEMETRY);
+		ProcessingContext pc = getContext();
+		List<SAMEvidenceSource> sources = getSamEvidenceSources();
+		AssemblyEvidenceSource aes = new AssemblyEvidenceSource(pc, sources, OUTPUT != null ? OUTPUT : SNAPSHOT);
+		List<DirectedEvidence> evidence = new ArrayList<>();
+		int chunkNumber;
+		AssemblyEvidenceSnapshot.Reader reader = new AssemblyEvidenceSnapshot.Reader(SNAPSHOT, pc.getBasicSamHeader(), sources);
+		try {
+			chunkNumber = reader.getChunkNumber();
+			log.info(String.format("Loading chunk %d %s evidence from %s", chunkNumber, reader.getDirection(), SNAPSHOT));
+			while (reader.hasNext()) {
+				evidence.add(reader.next());
+			}
+		} finally {
+			reader.close();
+		}
+		log.info(String.format("Loaded %d evidence", evidence.size()));
+		for (int i = 1; i <= REPEAT; i++) {
+			boolean last = i == REPEAT;
+			AssemblyTelemetry telemetry = last && TELEMETRY != null ? new AssemblyTelemetry(TELEMETRY, pc.getDictionary()) : null;
+			SAMFileWriter writer = null;
+			if (last && OUTPUT != null) {
+				writer = new SAMFileWriterFactory().makeSAMOrBAMWriter(pc.getBasicSamHeader(), false, OUTPUT);
+			}
+			Stopwatch timer = Stopwatch.createStarted();
+			int assemblies = 0;
+			try {
+				PositionalAssembler assembler = new PositionalAssembler(pc, aes, new SequentialIdGenerator(String.format("asm%d-", chunkNumber)), evidence.iterator(), reader.getDirection());
+				if (telemetry != null) {
+					assembler.setTelemetry(telemetry.getTelemetry(chunkNumber, reader.getDirection()));
+				}
+				while (assembler.hasNext()) {
+					SAMRecord asm = assembler.next();
+					assemblies++;
+					if (writer != null) {
+						writer.addAlignment(asm);
+					}
+				}
+			} finally {
+				CloserUtil.close(writer);
+				CloserUtil.close(telemetry);
+			}
+			log.info(String.format("Replay %d of %d: %d assemblies in %s", i, REPEAT, assemblies, timer));
+		}
+		if (OUTPUT != null) {
+			log.info(String.format("Assemblies written to %s (unsorted, %s order)", OUTPUT, SortOrder.unsorted));
+		}
+		return 0;
+	}
+}
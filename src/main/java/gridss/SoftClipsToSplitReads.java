@@ -14,7 +14,10 @@ import com.google.common.collect.Lists;
 import au.edu.wehi.idsv.GenomicProcessingContext;
 import au.edu.wehi.idsv.SplitReadRealigner;
 import au.edu.wehi.idsv.alignment.ExternalProcessFastqAligner;
+import au.edu.wehi.idsv.alignment.AlignerFactory;
 import au.edu.wehi.idsv.alignment.ExternalProcessStreamingAligner;
+import au.edu.wehi.idsv.alignment.ReferenceKmerIndex;
+import au.edu.wehi.idsv.alignment.SeedAndExtendStreamingAligner;
 import gridss.cmdline.ReferenceCommandLineProgram;
 import htsjdk.samtools.SAMFileWriterFactory;
 import htsjdk.samtools.SamReaderFactory;
@@ -31,6 +34,12 @@ import picard.cmdline.StandardOptionDefinitions;
 public class SoftClipsToSplitReads extends ReferenceCommandLineProgram {
 	private static final Log log = Log.getInstance(SoftClipsToSplitReads.class);
 	public static final List<String> BWA_COMMAND_LINE = ImmutableList.of("bwa", "mem", "-t", "%3$d", "%2$s", "%1$s");
+	/**
+	 * In-process alignment seed length. Exact matches of at least
+	 * IN_PROCESS_SEED_LENGTH + IN_PROCESS_SEED_STRIDE - 1 bases are found.
+	 */
+	private static final int IN_PROCESS_SEED_LENGTH = 16;
+	private static final int IN_PROCESS_SEED_STRIDE = 8;
 	public static final List<String> BOWTIE2_COMMAND_LINE = ImmutableList.of("bowtie2", "--threads", "%3$d", "--local", "--mm", "--reorder", "-x", "%2$s", "-U", "%1$s");
     @Argument(shortName=StandardOptionDefinitions.INPUT_SHORT_NAME, doc="Input file", optional=false)
     public File INPUT;
@@ -57,6 +66,11 @@ public class SoftClipsToSplitReads extends ReferenceCommandLineProgram {
 			+ " The aligner must support using \"-\" as the input filename when reading from stdin."
 			+ " The sort order of the input file will not be retained.", optional=true)
 	public boolean ALIGNER_STREAMING = false;
+    @Argument(doc="Align soft clips using an in-process seed and extend aligner before falling back to the external aligner."
+    		+ " Only soft clips that cannot be confidently aligned in-process are sent to the external aligner."
+    		+ " Implies ALIGNER_STREAMING. The reference seed index requires approximately one byte per reference base"
+    		+ " and is reused by subsequent in-process alignment of the same reference whilst sufficient memory is available.", optional=true)
+    public boolean IN_PROCESS_ALIGNMENT = false;
     @Argument(doc="Command line arguments to run external aligner. Aligner output should be written to stdout and the records MUST match the input fastq order."
     		+ "Java argument formatting is used with %1$s being the fastq file to align, "
     		+ "%2$s the reference genome, and %3$d the number of threads to use.", optional=true)
@@ -82,7 +96,17 @@ public class SoftClipsToSplitReads extends ReferenceCommandLineProgram {
     		SamReaderFactory readerFactory = SamReaderFactory.makeDefault().referenceSequence(REFERENCE_SEQUENCE);
         	SAMFileWriterFactory writerFactory = new SAMFileWriterFactory();
         	
-        	if (ALIGNER_STREAMING) {
+        	if (IN_PROCESS_ALIGNMENT) {
+        		log.info("Indexing reference genome for in-process alignment");
+        		ReferenceKmerIndex index = ReferenceKmerIndex.getInstance(REFERENCE_SEQUENCE, getReference(), IN_PROCESS_SEED_LENGTH, IN_PROCESS_SEED_STRIDE);
+        		ExternalProcessStreamingAligner fallback = new ExternalProcessStreamingAligner(readerFactory, ALIGNER_COMMAND_LINE, REFERENCE_SEQUENCE, WORKER_THREADS);
+        		SeedAndExtendStreamingAligner aligner = new SeedAndExtendStreamingAligner(getReference(), index, AlignerFactory.create(), fallback, WORKER_THREADS);
+        		try {
+        			realigner.createSupplementaryAlignments(aligner, INPUT, OUTPUT, MAX_RECORDS_IN_RAM);
+        		} finally {
+        			aligner.close();
+        		}
+        	} else if (ALIGNER_STREAMING) {
         		ExternalProcessStreamingAligner aligner = new ExternalProcessStreamingAligner(readerFactory, ALIGNER_COMMAND_LINE, REFERENCE_SEQUENCE, WORKER_THREADS);
         		realigner.createSupplementaryAlignments(aligner, INPUT, OUTPUT, MAX_RECORDS_IN_RAM);
         	} else {
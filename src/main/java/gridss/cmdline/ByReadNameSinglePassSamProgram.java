@@ -12,8 +12,11 @@ import org.broadinstitute.barclay.argparser.Argument;
 
 import com.google.common.collect.ImmutableList;
 
+import au.edu.wehi.idsv.FileSystemContext;
 import au.edu.wehi.idsv.picard.ReferenceLookup;
 import au.edu.wehi.idsv.picard.TwoBitBufferedReferenceSequenceFile;
+import au.edu.wehi.idsv.sam.CoordinateSortedFragmentIterator;
+import au.edu.wehi.idsv.sam.ParallelBAMRecordIterator;
 import au.edu.wehi.idsv.util.AsyncBufferedIterator;
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMFileHeader.SortOrder;
@@ -54,6 +57,12 @@ public abstract class ByReadNameSinglePassSamProgram extends ReferenceCommandLin
     @Argument(doc = "Stop after processing N reads, mainly for debugging.")
     public long STOP_AFTER = 0;
 
+    @Argument(doc = "If true, the alignments of each fragment of coordinate sorted input are grouped "
+    		+ "using the read flags and SA tag. Pending alignments exceeding MAX_RECORDS_IN_RAM are spilled to disk. "
+    		+ "Grouped fragments are not processed in coordinate order so programs writing coordinate sorted output "
+    		+ "will need to sort their output.", optional = true)
+    public boolean GROUP_COORDINATE_SORTED_FRAGMENTS = false;
+
         /**
      * Final implementation of doWork() that checks and loads the input and optionally reference
      * sequence files and the runs the sublcass through the setup() acceptRead() and finish() steps.
@@ -63,7 +72,7 @@ public abstract class ByReadNameSinglePassSamProgram extends ReferenceCommandLin
     	log.debug("Setting language-neutral locale");
     	java.util.Locale.setDefault(Locale.ROOT);
         try {
-			makeItSo(INPUT, REFERENCE_SEQUENCE, ASSUME_SORTED, STOP_AFTER, Arrays.asList(this));
+			makeItSo(INPUT, REFERENCE_SEQUENCE, ASSUME_SORTED, STOP_AFTER, GROUP_COORDINATE_SORTED_FRAGMENTS ? getFileSystemContext() : null, Arrays.asList(this));
 		} catch (FileNotFoundException e) {
 			throw new RuntimeException(e);
 		}
@@ -75,9 +84,22 @@ public abstract class ByReadNameSinglePassSamProgram extends ReferenceCommandLin
                                 final boolean assumeSorted,
                                 final long stopAfter,
                                 final Collection<ByReadNameSinglePassSamProgram> programs) throws FileNotFoundException {
+    	makeItSo(input, referenceSequence, assumeSorted, stopAfter, null, programs);
+    }
+    /**
+     * @param fsc file system context used to group the fragments of coordinate sorted input.
+     * If null, coordinate sorted input is processed as if it was queryname sorted.
+     */
+    public static void makeItSo(final File input,
+                                final File referenceSequence,
+                                final boolean assumeSorted,
+                                final long stopAfter,
+                                final FileSystemContext fsc,
+                                final Collection<ByReadNameSinglePassSamProgram> programs) throws FileNotFoundException {
         // Setup the standard inputs
         IOUtil.assertFileIsReadable(input);
-        SamReader in = SamReaderFactory.makeDefault().referenceSequence(referenceSequence).open(input);
+        SamReaderFactory factory = SamReaderFactory.makeDefault().referenceSequence(referenceSequence);
+        SamReader in = factory.open(input);
         // Optionally load up the reference sequence and double check sequence dictionaries
         final ReferenceLookup lookup;
         if (referenceSequence == null) {
@@ -93,7 +115,10 @@ public abstract class ByReadNameSinglePassSamProgram extends ReferenceCommandLin
         }
         // Check on the sort order of the BAM file
         final SortOrder sort = in.getFileHeader().getSortOrder();
-        if (sort != SortOrder.queryname) {
+        final boolean groupCoordinateSorted = sort == SortOrder.coordinate && fsc != null;
+        if (groupCoordinateSorted) {
+        	log.info("Grouping fragment alignments of coordinate sorted input " + input.getName());
+        } else if (sort != SortOrder.queryname) {
             if (assumeSorted) {
                 log.warn("File reports sort order '" + sort + "', assuming it's queryname sorted anyway.");
             } else {
@@ -107,35 +132,14 @@ public abstract class ByReadNameSinglePassSamProgram extends ReferenceCommandLin
             program.setup(in.getFileHeader(), input);
         }
         final ProgressLogger progress = new ProgressLogger(log);
-        final SAMRecordIterator rawit = in.iterator();
+        final SAMRecordIterator rawit = ParallelBAMRecordIterator.iterator(in, input, factory.validationStringency());
         final CloseableIterator<SAMRecord> it = new AsyncBufferedIterator<SAMRecord>(rawit, "ByReadNameSinglePassSamProgram " + input.getName());
         try {
-	        List<SAMRecord> currentRecords = new ArrayList<>();
-	        String currentReadName = null;
-	        while (it.hasNext()) {
-	        	SAMRecord r = it.next();
-	        	String readname = r.getReadName();
-	        	// if read name we have to just treat it as a single read
-	        	if (readname == null || !readname.equals(currentReadName)) {
-	        		if (currentRecords.size() > 0) {
-		        		for (final ByReadNameSinglePassSamProgram program : programs) {
-		        			program.acceptFragment(currentRecords, lookup);
-			            }
-	        		}
-	        		currentRecords.clear();
-	        		currentReadName = readname;
-	        		if (stopAfter > 0 && progress.getCount() >= stopAfter) {
-		                break;
-		            }
-	        	}
-	        	currentRecords.add(r);
-	        	progress.record(r);
-	        }
-	        if (currentRecords.size() > 0) {
-	        	for (final ByReadNameSinglePassSamProgram program : programs) {
-	    			program.acceptFragment(currentRecords, lookup);
-	            }
-	        }
+        	if (groupCoordinateSorted) {
+        		processCoordinateSorted(it, in.getFileHeader(), fsc, lookup, stopAfter, progress, programs);
+        	} else {
+        		processQueryNameSorted(it, lookup, stopAfter, progress, programs);
+        	}
         } finally {
 	        CloserUtil.close(it);
 	        CloserUtil.close(rawit);
@@ -145,6 +149,62 @@ public abstract class ByReadNameSinglePassSamProgram extends ReferenceCommandLin
             program.finish();
         }
     }
+    private static void processCoordinateSorted(
+    		final CloseableIterator<SAMRecord> it,
+    		final SAMFileHeader header,
+    		final FileSystemContext fsc,
+    		final ReferenceLookup lookup,
+    		final long stopAfter,
+    		final ProgressLogger progress,
+    		final Collection<ByReadNameSinglePassSamProgram> programs) {
+    	try (CoordinateSortedFragmentIterator fit = new CoordinateSortedFragmentIterator(it, header, fsc.getMaxBufferedRecordsPerFile(), fsc.getTemporaryDirectory())) {
+    		while (fit.hasNext()) {
+    			List<SAMRecord> records = fit.next();
+    			for (final ByReadNameSinglePassSamProgram program : programs) {
+    				program.acceptFragment(records, lookup);
+    			}
+    			for (SAMRecord r : records) {
+    				progress.record(r);
+    			}
+    			if (stopAfter > 0 && progress.getCount() >= stopAfter) {
+    				break;
+    			}
+    		}
+    	}
+    }
+    private static void processQueryNameSorted(
+    		final CloseableIterator<SAMRecord> it,
+    		final ReferenceLookup lookup,
+    		final long stopAfter,
+    		final ProgressLogger progress,
+    		final Collection<ByReadNameSinglePassSamProgram> programs) {
+        List<SAMRecord> currentRecords = new ArrayList<>();
+        String currentReadName = null;
+        while (it.hasNext()) {
+        	SAMRecord r = it.next();
+        	String readname = r.getReadName();
+        	// if read name we have to just treat it as a single read
+        	if (readname == null || !readname.equals(currentReadName)) {
+        		if (currentRecords.size() > 0) {
+		        		for (final ByReadNameSinglePassSamProgram program : programs) {
+		        			program.acceptFragment(currentRecords, lookup);
+			            }
+        		}
+        		currentRecords.clear();
+        		currentReadName = readname;
+        		if (stopAfter > 0 && progress.getCount() >= stopAfter) {
+		                break;
+		            }
+        	}
+        	currentRecords.add(r);
+        	progress.record(r);
+        }
+        if (currentRecords.size() > 0) {
+        	for (final ByReadNameSinglePassSamProgram program : programs) {
+	    			program.acceptFragment(currentRecords, lookup);
+            }
+        }
+    }
     /** Should be implemented by subclasses to do one-time initialization work. */
     protected abstract void setup(final SAMFileHeader header, final File samFile);
     /**
@@ -160,24 +220,62 @@ public abstract class ByReadNameSinglePassSamProgram extends ReferenceCommandLin
     	to.OUTPUT = OUTPUT;
     	to.ASSUME_SORTED = ASSUME_SORTED;
     	to.STOP_AFTER = STOP_AFTER;
+    	to.GROUP_COORDINATE_SORTED_FRAGMENTS = GROUP_COORDINATE_SORTED_FRAGMENTS;
     }
     public SinglePassSamProgram asSinglePassSamProgram() {
     	return new WrappedSinglePassSamProgram();
     }
+    /**
+     * Adapts this program to a SinglePassSamProgram.
+     * 
+     * If GROUP_COORDINATE_SORTED_FRAGMENTS is set, the alignments of each fragment of coordinate
+     * sorted input are grouped before being passed to this program. Otherwise each record is
+     * passed to this program as a separate fragment.
+     */
     private class WrappedSinglePassSamProgram extends SinglePassSamProgram {
+    	private CoordinateSortedFragmentIterator grouper = null;
+    	private ReferenceLookup lookup = null;
 
 		@Override
 		protected void setup(SAMFileHeader header, File samFile) {
 			ByReadNameSinglePassSamProgram.this.setup(header, samFile);
+			if (GROUP_COORDINATE_SORTED_FRAGMENTS && header.getSortOrder() == SortOrder.coordinate) {
+				log.info("Grouping fragment alignments of coordinate sorted input " + samFile.getName());
+				FileSystemContext fsc = getFileSystemContext();
+				grouper = new CoordinateSortedFragmentIterator(header, fsc.getMaxBufferedRecordsPerFile(), fsc.getTemporaryDirectory());
+			}
 		}
 
 		@Override
 		protected void acceptRead(SAMRecord rec, ReferenceSequence ref) {
-			ByReadNameSinglePassSamProgram.this.acceptFragment(ImmutableList.of(rec), ref == null ? null : ByReadNameSinglePassSamProgram.this.getReference());
+			if (ref != null) {
+				lookup = ByReadNameSinglePassSamProgram.this.getReference();
+			}
+			if (grouper == null) {
+				ByReadNameSinglePassSamProgram.this.acceptFragment(ImmutableList.of(rec), ref == null ? null : lookup);
+			} else {
+				grouper.add(rec);
+				acceptGroupedFragments();
+			}
+		}
+		
+		private void acceptGroupedFragments() {
+			while (grouper.hasNext()) {
+				ByReadNameSinglePassSamProgram.this.acceptFragment(grouper.next(), lookup);
+			}
 		}
 
 		@Override
 		protected void finish() {
+			if (grouper != null) {
+				try {
+					grouper.finishAdding();
+					acceptGroupedFragments();
+				} finally {
+					grouper.close();
+					grouper = null;
+				}
+			}
 			ByReadNameSinglePassSamProgram.this.finish();
 		}
     }
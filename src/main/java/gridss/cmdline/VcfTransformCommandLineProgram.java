@@ -15,10 +15,13 @@ import au.edu.wehi.idsv.DirectEvidenceWindowedSortingIterator;
 import au.edu.wehi.idsv.FileSystemContext;
 import au.edu.wehi.idsv.IdsvVariantContext;
 import au.edu.wehi.idsv.SAMEvidenceSource;
+import au.edu.wehi.idsv.VariantContextBreakendTee;
 import au.edu.wehi.idsv.VariantContextDirectedEvidence;
 import au.edu.wehi.idsv.VariantContextWindowedSortingIterator;
 import au.edu.wehi.idsv.util.AutoClosingIterator;
 import au.edu.wehi.idsv.util.FileHelper;
+import au.edu.wehi.idsv.visualisation.TimelineTracer;
+import au.edu.wehi.idsv.visualisation.TimelineTracer.Span;
 import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.samtools.util.Log;
@@ -48,12 +51,39 @@ public abstract class VcfTransformCommandLineProgram extends FullEvidenceCommand
 		IOUtil.assertFileIsReadable(INPUT_VCF);
 		IOUtil.assertFileIsWritable(OUTPUT_VCF);
 		log.info("Annotating variants in " + INPUT_VCF);
-		try (CloseableIterator<VariantContextDirectedEvidence> it = iterator(getBreakends(INPUT_VCF), threadpool)) {
-			saveVcf(OUTPUT_VCF, getAllCalls(INPUT_VCF, it));
+		try (Span span = TimelineTracer.getInstance().begin("annotation", getClass().getSimpleName());
+				VariantContextBreakendTee calls = openCalls(INPUT_VCF);
+				CloseableIterator<VariantContextDirectedEvidence> it = iterator(getBreakends(calls), threadpool)) {
+			saveVcf(OUTPUT_VCF, getAllCalls(calls, it));
 		}
 		log.info("Annotated variants written to " + OUTPUT_VCF);
 		return 0;
 	}
+	/**
+	 * Opens the given VCF for a single pass transformation
+	 */
+	public VariantContextBreakendTee openCalls(File file) {
+		VCFFileReader vcfReader = new VCFFileReader(file, false);
+		CloseableIterator<VariantContext> it = vcfReader.iterator();
+		Iterator<IdsvVariantContext> idsvIt = Iterators.transform(it, variant -> IdsvVariantContext.create(getContext(), null, variant));
+		return new VariantContextBreakendTee(idsvIt, it, vcfReader);
+	}
+	public CloseableIterator<VariantContextDirectedEvidence> getBreakends(VariantContextBreakendTee calls) {
+		Iterator<VariantContextDirectedEvidence> beit = calls.breakends();
+		// resort by evidence start
+		beit = new DirectEvidenceWindowedSortingIterator<>(getContext(), SAMEvidenceSource.maximumWindowSize(getContext(), getSamEvidenceSources(), getAssemblySource()), beit);
+		// underlying VCF is closed by the tee
+		return new AutoClosingIterator<VariantContextDirectedEvidence>(beit);
+	}
+	public Iterator<IdsvVariantContext> getAllCalls(VariantContextBreakendTee calls, CloseableIterator<VariantContextDirectedEvidence> breakendCalls) {
+		// sort back to nominal VCF position
+		Iterator<VariantContextDirectedEvidence> bpit = new VariantContextWindowedSortingIterator<>(getContext(), SAMEvidenceSource.maximumWindowSize(getContext(), getSamEvidenceSources(), getAssemblySource()), breakendCalls);
+		return calls.merge(bpit);
+	}
+	/**
+	 * Breakend calls of the given VCF. Use with getAllCalls(File, CloseableIterator)
+	 * to transform the VCF in two passes.
+	 */
 	public CloseableIterator<VariantContextDirectedEvidence> getBreakends(File file) {
 		VCFFileReader vcfReader = new VCFFileReader(file, false);
 		CloseableIterator<VariantContext> it = vcfReader.iterator();
@@ -0,0 +1,311 @@
+package gridss.filter;
+
+import java.util.List;
+
+import au.edu.wehi.idsv.FixedSizeReadPairConcordanceCalculator;
+import au.edu.wehi.idsv.ReadPairConcordanceCalculator;
+import au.edu.wehi.idsv.SAMFlagReadPairConcordanceCalculator;
+import htsjdk.samtools.BAMRecord;
+import htsjdk.samtools.Cigar;
+import htsjdk.samtools.CigarElement;
+import htsjdk.samtools.SAMFlag;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.filter.SamRecordFilter;
+
+/**
+ * Fast path filter that identifies reads that ExtractSVReads will never extract
+ * using only the fixed-width BAM record fields and the undecoded variable length
+ * BAM record data.
+ *
+ * A read is filtered out if it is a filtered duplicate, or if it is a non-supplementary
+ * alignment with no clipping or indels (and is thus consistent with the reference)
+ * that is not part of a one end anchored or discordant read pair. Since htsjdk decodes
+ * BAM records lazily, the CIGAR, tags, bases and qualities of filtered BAM records are
+ * never decoded.
+ *
+ * Reads are only filtered if ExtractSVReads would not extract them regardless of the
+ * other alignments of the fragment. Reads not filtered must still be processed by
+ * the full ExtractSVReads filters. Filtered reads are not counted in any
+ * CollectStructuralVariantReadMetrics metric.
+ *
+ * @author Daniel Cameron
+ *
+ */
+public class RawBamRecordPrefilter implements SamRecordFilter {
+	private static final int CIGAR_OP_M = 0;
+	private static final int CIGAR_OP_P = 6;
+	private static final int CIGAR_OP_EQ = 7;
+	private static final int CIGAR_OP_X = 8;
+	private static final int TAG_NOT_FOUND = -1;
+	private static final int TAG_UNKNOWN = -2;
+	private final ReadPairConcordanceCalculator rpcc;
+	private final boolean includeDuplicates;
+	private final boolean includeOneEndAnchored;
+	private final boolean includeDiscordant;
+	/**
+	 * @param rpcc read pair concordance calculator. Can be null.
+	 * @param includeDuplicates duplicate reads are extracted
+	 * @param includeOneEndAnchored one end anchored read pairs are extracted
+	 * @param includeDiscordant discordant read pairs are extracted
+	 */
+	public RawBamRecordPrefilter(ReadPairConcordanceCalculator rpcc, boolean includeDuplicates, boolean includeOneEndAnchored, boolean includeDiscordant) {
+		this.rpcc = rpcc;
+		this.includeDuplicates = includeDuplicates;
+		this.includeOneEndAnchored = includeOneEndAnchored;
+		this.includeDiscordant = includeDiscordant && rpcc != null;
+	}
+	/**
+	 * Determines whether every alignment of the given fragment can be filtered
+	 * @param records fragment alignments
+	 * @return true if no alignment of the fragment will be extracted
+	 */
+	public boolean filterOut(List<SAMRecord> records) {
+		for (SAMRecord r : records) {
+			if (!filterOut(r)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	@Override
+	public boolean filterOut(SAMRecord first, SAMRecord second) {
+		return filterOut(first) && filterOut(second);
+	}
+	@Override
+	public boolean filterOut(SAMRecord record) {
+		int flags = record.getFlags();
+		if ((flags & SAMFlag.DUPLICATE_READ.intValue()) != 0 && !includeDuplicates) return true;
+		// supplementary alignments require the SA tag to determine read pair concordance
+		if ((flags & (SAMFlag.READ_UNMAPPED.intValue() | SAMFlag.SUPPLEMENTARY_ALIGNMENT.intValue())) != 0) return false;
+		byte[] data = record instanceof BAMRecord ? ((BAMRecord)record).getVariableBinaryRepresentation() : null;
+		int alignedLength;
+		if (data != null) {
+			alignedLength = fullyAlignedLength(data, readNameSize(data), record.getCigarLength());
+		} else {
+			alignedLength = fullyAlignedLength(record.getCigar());
+		}
+		if (alignedLength < 0) return false;
+		// alignment is consistent with the reference so will only be extracted as read pair evidence
+		if ((flags & SAMFlag.READ_PAIRED.intValue()) == 0) return true;
+		if ((flags & SAMFlag.MATE_UNMAPPED.intValue()) != 0) return !includeOneEndAnchored;
+		if (!includeDiscordant) return true;
+		if (data != null) {
+			return isConcordant(record, data, alignedLength);
+		}
+		return rpcc.isConcordant(record);
+	}
+	private static int readNameSize(byte[] data) {
+		int i = 0;
+		while (i < data.length && data[i] != 0) i++;
+		return i + 1;
+	}
+	/**
+	 * Length of a fully aligned CIGAR
+	 * @return length of alignment, -1 if the alignment contains any operators other than M, =, X or P
+	 */
+	private static int fullyAlignedLength(byte[] data, int offset, int cigarLength) {
+		if (cigarLength == 0) return -1;
+		int length = 0;
+		for (int i = 0; i < cigarLength; i++) {
+			int packed = readInt(data, offset + 4 * i);
+			switch (packed & 0xF) {
+				case CIGAR_OP_M:
+				case CIGAR_OP_EQ:
+				case CIGAR_OP_X:
+					length += packed >>> 4;
+					break;
+				case CIGAR_OP_P:
+					break;
+				default:
+					return -1;
+			}
+		}
+		return length;
+	}
+	private static int fullyAlignedLength(Cigar cigar) {
+		if (cigar == null || cigar.isEmpty()) return -1;
+		int length = 0;
+		for (CigarElement ce : cigar.getCigarElements()) {
+			switch (ce.getOperator()) {
+				case M:
+				case EQ:
+				case X:
+					length += ce.getLength();
+					break;
+				case P:
+					break;
+				default:
+					return -1;
+			}
+		}
+		return length;
+	}
+	private static int readInt(byte[] data, int offset) {
+		return (data[offset] & 0xFF)
+				| ((data[offset + 1] & 0xFF) << 8)
+				| ((data[offset + 2] & 0xFF) << 16)
+				| ((data[offset + 3] & 0xFF) << 24);
+	}
+	/**
+	 * Determines read pair concordance of a fully aligned read directly from the BAM record data.
+	 * Matches the result of rpcc.isConcordant(record)
+	 * @param alignedLength number of read and reference bases in the alignment
+	 * @return true if concordant, false if discordant or concordance could not be determined
+	 */
+	private boolean isConcordant(SAMRecord record, byte[] data, int alignedLength) {
+		if (rpcc instanceof SAMFlagReadPairConcordanceCalculator) {
+			return rpcc.isConcordant(record);
+		}
+		if (!(rpcc instanceof FixedSizeReadPairConcordanceCalculator)) {
+			return false;
+		}
+		if (record.getReferenceIndex().intValue() != record.getMateReferenceIndex().intValue()
+				|| record.getReadNegativeStrandFlag() == record.getMateNegativeStrandFlag()) {
+			return false;
+		}
+		int mcOffset = findStringTag(record, data, 'M', 'C');
+		if (mcOffset == TAG_UNKNOWN) return false;
+		int fragmentSize;
+		if (record.getReadNegativeStrandFlag()) {
+			int r1end = record.getAlignmentStart() + alignedLength - 1;
+			int r2start = record.getMateAlignmentStart();
+			if (mcOffset >= 0) {
+				long clip = mateClipping(data, mcOffset, true);
+				if (clip < 0) return false;
+				r2start -= (int)clip;
+			}
+			fragmentSize = r1end - r2start + 1;
+		} else {
+			int r1start = record.getAlignmentStart();
+			int r2end;
+			if (mcOffset >= 0) {
+				long refLengthAndClip = mateClipping(data, mcOffset, false);
+				if (refLengthAndClip < 0) return false;
+				r2end = record.getMateAlignmentStart() + (int)(refLengthAndClip >>> 32) - 1 + (int)refLengthAndClip;
+			} else {
+				r2end = record.getMateAlignmentStart() + alignedLength - 1;
+			}
+			fragmentSize = r2end - r1start + 1;
+		}
+		return rpcc.minConcordantFragmentSize() <= fragmentSize && fragmentSize <= rpcc.maxConcordantFragmentSize();
+	}
+	/**
+	 * Finds the given string tag
+	 * @return offset of the tag value, TAG_NOT_FOUND if the tag is not found,
+	 * TAG_UNKNOWN if the tag is not a string or the tag data is malformed
+	 */
+	private static int findStringTag(SAMRecord record, byte[] data, char tag1, char tag2) {
+		int readLength = record.getReadLength();
+		int offset = readNameSize(data) + 4 * record.getCigarLength() + (readLength + 1) / 2 + readLength;
+		while (offset + 3 <= data.length) {
+			boolean match = data[offset] == tag1 && data[offset + 1] == tag2;
+			byte type = data[offset + 2];
+			offset += 3;
+			if (match) {
+				return type == 'Z' ? offset : TAG_UNKNOWN;
+			}
+			switch (type) {
+				case 'A':
+				case 'c':
+				case 'C':
+					offset += 1;
+					break;
+				case 's':
+				case 'S':
+					offset += 2;
+					break;
+				case 'i':
+				case 'I':
+				case 'f':
+					offset += 4;
+					break;
+				case 'Z':
+				case 'H':
+					while (offset < data.length && data[offset] != 0) offset++;
+					offset++;
+					break;
+				case 'B':
+					if (offset + 5 > data.length) return TAG_UNKNOWN;
+					int elementSize;
+					switch (data[offset]) {
+						case 'c':
+						case 'C':
+							elementSize = 1;
+							break;
+						case 's':
+						case 'S':
+							elementSize = 2;
+							break;
+						default:
+							elementSize = 4;
+							break;
+					}
+					offset += 5 + elementSize * readInt(data, offset + 1);
+					break;
+				default:
+					return TAG_UNKNOWN;
+			}
+		}
+		return offset == data.length ? TAG_NOT_FOUND : TAG_UNKNOWN;
+	}
+	/**
+	 * Parses a text CIGAR
+	 * @param atStart return the clipping at the start of the alignment
+	 * @return number of clipped bases at the start of the alignment if atStart, otherwise
+	 * the reference length in the high 32 bits and the clipping at the end of the alignment
+	 * in the low 32 bits. Returns -1 if the CIGAR could not be parsed.
+	 */
+	private static long mateClipping(byte[] data, int offset, boolean atStart) {
+		if (offset + 1 < data.length && data[offset] == '*' && data[offset + 1] == 0) {
+			// htsjdk treats a missing mate CIGAR as an empty CIGAR
+			return 0;
+		}
+		long refLength = 0;
+		long startClip = 0;
+		long endClip = 0;
+		boolean aligned = false;
+		long length = 0;
+		boolean hasLength = false;
+		for (; offset < data.length && data[offset] != 0; offset++) {
+			byte b = data[offset];
+			if (b >= '0' && b <= '9') {
+				length = length * 10 + (b - '0');
+				if (length > Integer.MAX_VALUE) return -1;
+				hasLength = true;
+				continue;
+			}
+			if (!hasLength) return -1;
+			switch (b) {
+				case 'S':
+				case 'H':
+					if (aligned) {
+						endClip += length;
+					} else {
+						startClip += length;
+					}
+					break;
+				case 'M':
+				case 'D':
+				case 'N':
+				case '=':
+				case 'X':
+					refLength += length;
+					aligned = true;
+					endClip = 0;
+					break;
+				case 'I':
+				case 'P':
+					aligned = true;
+					endClip = 0;
+					break;
+				default:
+					return -1;
+			}
+			length = 0;
+			hasLength = false;
+		}
+		if (hasLength || !aligned || refLength > Integer.MAX_VALUE || endClip > Integer.MAX_VALUE || startClip > Integer.MAX_VALUE) return -1;
+		if (atStart) return startClip;
+		return (refLength << 32) | endClip;
+	}
+}
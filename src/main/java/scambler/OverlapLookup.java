@@ -1,57 +1,187 @@
 package scambler;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import au.edu.wehi.idsv.debruijn.PackedSequence;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
 
+/**
+ * Windowed minimizer index of read prefixes.
+ *
+ * Each read is indexed by the minimizer of its first minOverlap bases. Any read
+ * whose prefix exactly overlaps the query read at offset i shares that prefix with
+ * the query window starting at i, and hence shares the window minimizer. Candidate
+ * overlaps are found by looking up the minimizers of every query window and are
+ * verified along the overlap diagonal implied by the minimizer positions.
+ *
+ * Posting lists are primitive slot arrays supporting constant time removal.
+ *
+ * @author Daniel Cameron
+ *
+ */
 public class OverlapLookup {
+	private static final int MAX_KMER_SIZE = 15;
+	private static final int NO_SLOT = -1;
 	private final int MAX_MISMATCHES = 0;
 	private final int minOverlap;
 	private final int kmerSize;
-	private final Long2ObjectOpenHashMap<List<Read>> lookup = new Long2ObjectOpenHashMap<>();
+	/**
+	 * Number of kmers in each minOverlap window
+	 */
+	private final int windowKmers;
+	private final Long2ObjectOpenHashMap<IntArrayList> lookup = new Long2ObjectOpenHashMap<>();
+	private final Reference2IntOpenHashMap<Read> slotLookup = new Reference2IntOpenHashMap<>();
+	private final IntArrayList freeSlots = new IntArrayList();
+	private Read[] slotRead = new Read[16];
+	private long[] slotKmer = new long[16];
+	private int[] slotMinimizerOffset = new int[16];
+	private int[] slotPostingIndex = new int[16];
+	private long[] slotInsertionOrder = new long[16];
+	private int slotCount = 0;
+	private long insertionOrder = 0;
 	public OverlapLookup(int minOverlap) {
 		this.minOverlap = minOverlap;
-		this.kmerSize = Math.min(32, minOverlap);
+		this.kmerSize = Math.min(MAX_KMER_SIZE, minOverlap);
+		this.windowKmers = minOverlap - kmerSize + 1;
+		this.slotLookup.defaultReturnValue(NO_SLOT);
+	}
+	/**
+	 * Minimizer ordering. Uses the bijective MurmurHash3 finaliser to prevent low complexity
+	 * kmers from always being selected as minimizers.
+	 */
+	private static long hash(long kmer) {
+		kmer ^= kmer >>> 33;
+		kmer *= 0xff51afd7ed558ccdL;
+		kmer ^= kmer >>> 33;
+		kmer *= 0xc4ceb9fe1a85ec53L;
+		kmer ^= kmer >>> 33;
+		return kmer;
+	}
+	private int allocateSlot() {
+		if (!freeSlots.isEmpty()) {
+			return freeSlots.popInt();
+		}
+		if (slotCount == slotRead.length) {
+			int size = 2 * slotRead.length;
+			slotRead = Arrays.copyOf(slotRead, size);
+			slotKmer = Arrays.copyOf(slotKmer, size);
+			slotMinimizerOffset = Arrays.copyOf(slotMinimizerOffset, size);
+			slotPostingIndex = Arrays.copyOf(slotPostingIndex, size);
+			slotInsertionOrder = Arrays.copyOf(slotInsertionOrder, size);
+		}
+		return slotCount++;
 	}
 	public void add(Read r) {
-		long key = r.getSeq().getKmer(0, kmerSize);
-		List<Read> entry = lookup.get(key);
-		if (entry == null) {
-			entry = new ArrayList<>(4);
-			lookup.put(key, entry);
+		PackedSequence seq = r.getSeq();
+		// reads shorter than the minimum overlap cannot overlap any other read
+		if (seq.length() < minOverlap) return;
+		int minOffset = 0;
+		long minKmer = seq.getKmer(0, kmerSize);
+		long minHash = hash(minKmer);
+		for (int i = 1; i < windowKmers; i++) {
+			long kmer = seq.getKmer(i, kmerSize);
+			long h = hash(kmer);
+			if (Long.compareUnsigned(h, minHash) < 0) {
+				minOffset = i;
+				minKmer = kmer;
+				minHash = h;
+			}
 		}
-		entry.add(r);
+		int slot = allocateSlot();
+		IntArrayList posting = lookup.get(minKmer);
+		if (posting == null) {
+			posting = new IntArrayList(4);
+			lookup.put(minKmer, posting);
+		}
+		slotRead[slot] = r;
+		slotKmer[slot] = minKmer;
+		slotMinimizerOffset[slot] = minOffset;
+		slotPostingIndex[slot] = posting.size();
+		slotInsertionOrder[slot] = insertionOrder++;
+		posting.add(slot);
+		slotLookup.put(r, slot);
 	}
 	public void remove(Read r) {
-		long key = r.getSeq().getKmer(0, kmerSize);
-		List<Read> entry = lookup.get(key);
-		assert(entry != null);
-		if (entry.size() == 1) {
-			lookup.remove(key);
-		} else {
-			// TODO: make this operation more efficient
-			entry.remove(r);
+		int slot = slotLookup.removeInt(r);
+		if (slot == NO_SLOT) {
+			assert(r.getSeq().length() < minOverlap);
+			return;
+		}
+		IntArrayList posting = lookup.get(slotKmer[slot]);
+		assert(posting != null);
+		int index = slotPostingIndex[slot];
+		int last = posting.popInt();
+		if (last != slot) {
+			posting.set(index, last);
+			slotPostingIndex[last] = index;
 		}
+		if (posting.isEmpty()) {
+			lookup.remove(slotKmer[slot]);
+		}
+		slotRead[slot] = null;
+		freeSlots.add(slot);
 	}
 	public List<Overlap> successors(Read r) {
 		PackedSequence seq = r.getSeq();
 		List<Overlap> overlaps = new ArrayList<>();
-		for (int i = 0; i <= seq.length() - kmerSize; i++) {
-			long kmer = seq.getKmer(i, kmerSize);
-			List<Read> hits = lookup.get(kmer);
-			if (hits != null) {
-				for (Read hit : hits) {
-					if (hit != r) {
-						Overlap o = new Overlap(r, hit, i);
-						if (o.matchingBases + MAX_MISMATCHES >= o.overlap && o.overlap >= minOverlap) {
-							overlaps.add(o);
-						}
-					}
-				}
+		int kmers = seq.length() - kmerSize + 1;
+		int windows = seq.length() - minOverlap + 1;
+		if (windows <= 0 || lookup.isEmpty()) return overlaps;
+		long[] kmer = new long[kmers];
+		long[] hash = new long[kmers];
+		for (int i = 0; i < kmers; i++) {
+			kmer[i] = seq.getKmer(i, kmerSize);
+			hash[i] = hash(kmer[i]);
+		}
+		// sliding window minimum with the leftmost kmer taking precedence for ties
+		int[] windowMinimizer = new int[windows];
+		int[] deque = new int[kmers];
+		int head = 0;
+		int tail = 0;
+		for (int i = 0; i < kmers; i++) {
+			while (tail > head && Long.compareUnsigned(hash[deque[tail - 1]], hash[i]) > 0) tail--;
+			deque[tail++] = i;
+			int windowStart = i - windowKmers + 1;
+			if (windowStart >= 0) {
+				while (deque[head] < windowStart) head++;
+				windowMinimizer[windowStart] = deque[head];
+			}
+		}
+		List<long[]> candidates = new ArrayList<>();
+		int lastMinimizer = -1;
+		for (int w = 0; w < windows; w++) {
+			int q = windowMinimizer[w];
+			if (q == lastMinimizer) continue;
+			lastMinimizer = q;
+			IntArrayList posting = lookup.get(kmer[q]);
+			if (posting == null) continue;
+			for (int j = 0; j < posting.size(); j++) {
+				int slot = posting.getInt(j);
+				int offset = q - slotMinimizerOffset[slot];
+				// the prefix of the hit must have the same minimizer as the query window
+				if (offset < 0 || offset >= windows || windowMinimizer[offset] != q) continue;
+				if (slotRead[slot] == r) continue;
+				candidates.add(new long[] { offset, slotInsertionOrder[slot], slot });
+			}
+		}
+		// report in query offset then insertion order
+		candidates.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+		for (long[] c : candidates) {
+			Overlap o = new Overlap(r, slotRead[(int)c[2]], (int)c[0]);
+			if (o.matchingBases + MAX_MISMATCHES >= o.overlap && o.overlap >= minOverlap) {
+				overlaps.add(o);
 			}
 		}
 		return overlaps;
 	}
+	/**
+	 * Number of reads in the lookup
+	 */
+	public int size() {
+		return slotLookup.size();
+	}
 }
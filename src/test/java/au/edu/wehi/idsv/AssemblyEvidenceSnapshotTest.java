@@ -0,0 +1,99 @@
+package au.edu.wehi.idsv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import htsjdk.samtools.QueryInterval;
+import htsjdk.samtools.SAMRecord;
+
+public class AssemblyEvidenceSnapshotTest extends TestHelper {
+	@Rule
+	public TemporaryFolder testFolder = new TemporaryFolder();
+	private List<DirectedEvidence> evidence(SAMEvidenceSource ses1, SAMEvidenceSource ses2) {
+		SAMRecord split = Read(2, 1, "7M3S");
+		split.setReadBases(B("ACCTAGAGGG"));
+		split.setBaseQualities(B("1234567890"));
+		split.setMappingQuality(40);
+		split.setAttribute("SA", "polyA,100,+,2S8M,0,0");
+		List<DirectedEvidence> list = new ArrayList<>();
+		list.addAll(ImmutableList.copyOf(new DirectedEvidenceIterator(ImmutableList.of(
+				Read(0, 1, "5S10M5S"),
+				OEA(0, 1, "10M", true)[0],
+				DP(0, 1, "10M", true, 1, 10, "10M", false)[0],
+				split).iterator(), ses1, 0)));
+		list.addAll(ImmutableList.copyOf(new DirectedEvidenceIterator(ImmutableList.of(
+				Read(1, 10, "10M5S")).iterator(), ses2, 0)));
+		return list;
+	}
+	private File write(List<SAMEvidenceSource> sources, List<DirectedEvidence> evidence) throws IOException {
+		File file = new File(testFolder.getRoot(), "test" + AssemblyEvidenceSnapshot.SUFFIX);
+		try (AssemblyEvidenceSnapshot.Writer writer = new AssemblyEvidenceSnapshot.Writer(file, getContext().getBasicSamHeader(), sources,
+				7, new QueryInterval[] { new QueryInterval(0, 1, 100) }, BreakendDirection.Forward)) {
+			Lists.newArrayList(writer.record(evidence.iterator()));
+			assertEquals(evidence.size(), writer.getEvidenceCount());
+		}
+		return file;
+	}
+	@Test
+	public void should_round_trip_evidence() throws IOException {
+		SAMEvidenceSource ses1 = SES();
+		SAMEvidenceSource ses2 = SES(true);
+		List<SAMEvidenceSource> sources = ImmutableList.of(ses1, ses2);
+		List<DirectedEvidence> evidence = evidence(ses1, ses2);
+		assertEquals(6, evidence.size());
+		File file = write(sources, evidence);
+		try (AssemblyEvidenceSnapshot.Reader reader = new AssemblyEvidenceSnapshot.Reader(file, getContext().getBasicSamHeader(), sources)) {
+			assertEquals(7, reader.getChunkNumber());
+			assertEquals(BreakendDirection.Forward, reader.getDirection());
+			assertEquals(1, reader.getIntervals().length);
+			List<DirectedEvidence> result = Lists.newArrayList(reader);
+			assertEquals(evidence.size(), result.size());
+			for (int i = 0; i < evidence.size(); i++) {
+				assertEquals(evidence.get(i).getEvidenceID(), result.get(i).getEvidenceID());
+				assertEquals(evidence.get(i).getClass(), result.get(i).getClass());
+				assertEquals(evidence.get(i).getBreakendSummary(), result.get(i).getBreakendSummary());
+				assertEquals(evidence.get(i).getEvidenceSource(), result.get(i).getEvidenceSource());
+			}
+		}
+	}
+	@Test
+	public void should_replay_truncated_snapshot() throws IOException {
+		SAMEvidenceSource ses1 = SES();
+		SAMEvidenceSource ses2 = SES(true);
+		List<SAMEvidenceSource> sources = ImmutableList.of(ses1, ses2);
+		List<DirectedEvidence> evidence = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			evidence.addAll(evidence(ses1, ses2));
+		}
+		File file = write(sources, evidence);
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			// snapshot of a chunk that never completed
+			raf.setLength(raf.length() / 2);
+		}
+		try (AssemblyEvidenceSnapshot.Reader reader = new AssemblyEvidenceSnapshot.Reader(file, getContext().getBasicSamHeader(), sources)) {
+			int count = Lists.newArrayList(reader).size();
+			assertTrue(count > 0);
+			assertTrue(count < evidence.size());
+		}
+	}
+	@Test(expected=IllegalArgumentException.class)
+	public void should_require_matching_source_categories() throws IOException {
+		SAMEvidenceSource ses1 = SES();
+		SAMEvidenceSource ses2 = SES(true);
+		File file = write(ImmutableList.of(ses1, ses2), evidence(ses1, ses2));
+		new AssemblyEvidenceSnapshot.Reader(file, getContext().getBasicSamHeader(), ImmutableList.of(ses2, ses1)).close();
+	}
+}
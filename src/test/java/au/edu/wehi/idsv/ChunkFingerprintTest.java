@@ -0,0 +1,89 @@
+package au.edu.wehi.idsv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import htsjdk.samtools.QueryInterval;
+import htsjdk.samtools.SAMFileHeader.SortOrder;
+
+public class ChunkFingerprintTest extends IntermediateFilesTest {
+	private static final QueryInterval[] FIRST = new QueryInterval[] { new QueryInterval(0, 1, 1000) };
+	private static final QueryInterval[] SECOND = new QueryInterval[] { new QueryInterval(1, 1, 1000) };
+	/**
+	 * Evidence source with fixed fragment sizes so library metrics are not required
+	 */
+	private static SAMEvidenceSource ses(ProcessingContext pc, File file, int category) {
+		return new SAMEvidenceSource(pc, file, null, category) {
+			@Override
+			public int getMaxConcordantFragmentSize() {
+				return 300;
+			}
+			@Override
+			public int getMinConcordantFragmentSize() {
+				return 1;
+			}
+		};
+	}
+	@Test
+	public void should_ignore_sources_without_evidence_in_chunk() throws IOException {
+		ProcessingContext pc = getCommandlineContext();
+		createInput(Read(0, 100, "50M50S"));
+		File input2 = testFolder.newFile("input2.bam");
+		createBAM(input2, SortOrder.coordinate, Read(1, 100, "50M50S"));
+		SAMEvidenceSource ses1 = ses(pc, input, 0);
+		SAMEvidenceSource ses2 = ses(pc, input2, 1);
+		assertEquals(
+				ChunkFingerprint.calculate(pc.getConfig(), 0, ImmutableList.of(ses1), FIRST),
+				ChunkFingerprint.calculate(pc.getConfig(), 0, ImmutableList.of(ses1, ses2), FIRST));
+		assertNotEquals(
+				ChunkFingerprint.calculate(pc.getConfig(), 0, ImmutableList.of(ses1), SECOND),
+				ChunkFingerprint.calculate(pc.getConfig(), 0, ImmutableList.of(ses1, ses2), SECOND));
+	}
+	@Test
+	public void should_change_with_output_categories() {
+		ProcessingContext pc = getCommandlineContext();
+		createInput(Read(0, 100, "50M50S"));
+		SAMEvidenceSource ses1 = ses(pc, input, 0);
+		assertNotEquals(
+				ChunkFingerprint.calculate(pc.getConfig(), 1, ImmutableList.of(ses1), FIRST),
+				ChunkFingerprint.calculate(pc.getConfig(), 2, ImmutableList.of(ses1), FIRST));
+	}
+	@Test
+	public void should_change_with_evidence() throws IOException {
+		ProcessingContext pc = getCommandlineContext();
+		createInput(Read(0, 100, "50M50S"));
+		String before = ChunkFingerprint.calculate(pc.getConfig(), 0, ImmutableList.of(ses(pc, input, 0)), FIRST);
+		createInput(Read(0, 100, "50M50S"), Read(0, 200, "50M50S"));
+		String after = ChunkFingerprint.calculate(pc.getConfig(), 0, ImmutableList.of(ses(pc, input, 0)), FIRST);
+		assertNotEquals(before, after);
+	}
+	@Test
+	public void should_change_with_record_content() throws IOException {
+		ProcessingContext pc = getCommandlineContext();
+		createInput(withSequence("AAAAAAAAAA", Read(0, 100, "5M5S")));
+		String before = ChunkFingerprint.calculate(pc.getConfig(), 0, ImmutableList.of(ses(pc, input, 0)), FIRST);
+		createInput(withSequence("AAAAAAAAAA", Read(0, 100, "5M5S")));
+		assertEquals(before, ChunkFingerprint.calculate(pc.getConfig(), 0, ImmutableList.of(ses(pc, input, 0)), FIRST));
+		createInput(withSequence("AAAAAAAAAT", Read(0, 100, "5M5S")));
+		assertNotEquals(before, ChunkFingerprint.calculate(pc.getConfig(), 0, ImmutableList.of(ses(pc, input, 0)), FIRST));
+	}
+	@Test
+	public void should_reuse_chunk_with_matching_fingerprint() throws IOException {
+		File chunk = testFolder.newFile("chunk.bam");
+		assertFalse(ChunkFingerprint.isUpToDate(chunk, "abc"));
+		ChunkFingerprint.write(chunk, "abc");
+		assertTrue(ChunkFingerprint.isUpToDate(chunk, "abc"));
+		assertFalse(ChunkFingerprint.isUpToDate(chunk, "def"));
+		chunk.delete();
+		assertFalse(ChunkFingerprint.isUpToDate(chunk, "abc"));
+	}
+}
@@ -21,6 +21,8 @@ import au.edu.wehi.idsv.alignment.AlignerFactory;
 import au.edu.wehi.idsv.alignment.ExternalAlignerTests;
 import au.edu.wehi.idsv.alignment.ExternalProcessStreamingAligner;
 import au.edu.wehi.idsv.alignment.FastqAligner;
+import au.edu.wehi.idsv.alignment.ReferenceKmerIndex;
+import au.edu.wehi.idsv.alignment.SeedAndExtendStreamingAligner;
 import au.edu.wehi.idsv.alignment.SmithWatermanFastqAligner;
 import au.edu.wehi.idsv.alignment.StreamingAligner;
 import au.edu.wehi.idsv.picard.BufferedReferenceSequenceFile;
@@ -185,6 +187,27 @@ public class SplitReadRealignerTest extends IntermediateFilesTest {
 		assertEquals(4, list.size());
 	}
 	@Test
+	public void streaming_should_recursively_align_in_process() throws IOException {
+		SAMRecord r = Read(2, 1, "50S50M");
+		r.setReadBases(B(S(RANDOM).substring(125, 150) + S(RANDOM).substring(75, 100) + S(RANDOM).substring(0, 50)));
+		r.setReadName("r");
+		
+		createBAM(input, SortOrder.coordinate, r);
+		SplitReadRealigner srr = new SplitReadRealigner(getContext());
+		SeedAndExtendStreamingAligner aligner = new SeedAndExtendStreamingAligner(SMALL_FA, new ReferenceKmerIndex(SMALL_FA, 16, 4), AlignerFactory.create(), null);
+		aligner.setMinScore(20);
+		srr.createSupplementaryAlignments(aligner, input, output, 100);
+		
+		List<SAMRecord> result = Lists.newArrayList(getRecords(output));
+		result.sort(SortOrder.coordinate.getComparatorInstance());
+		assertEquals(3, result.size());
+		assertEquals(1, result.get(0).getAlignmentStart());
+		assertEquals(76, result.get(1).getAlignmentStart());
+		assertEquals(126, result.get(2).getAlignmentStart());
+		assertTrue(result.get(1).getSupplementaryAlignmentFlag());
+		assertTrue(result.get(2).getSupplementaryAlignmentFlag());
+	}
+	@Test
 	@Category(ExternalAlignerTests.class)
 	@Ignore("Working 2018-04-08. Currently need to manual check # restarts of external aligner to actually test this functionality. Needs a delayed return stub to test properly.")
 	public void streaming_should_limit_outstanding_records_to_buffer_size() throws IOException, CloneNotSupportedException {
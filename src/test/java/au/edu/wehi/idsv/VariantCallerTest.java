@@ -1,11 +1,14 @@
 package au.edu.wehi.idsv;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -89,4 +92,40 @@ public class VariantCallerTest extends IntermediateFilesTest {
 			assertEquals(3 * ((DirectedBreakpoint)ses.evidence.get(0)).getBreakpointQual(), variant.getPhredScaledQual(), 0.01);
 		}
 	}
+	@Test
+	public void parallel_clique_calling_should_match_serial_calling() throws IOException {
+		final int fragSize = 4;
+		final List<SAMRecord> in = new ArrayList<SAMRecord>();
+		final ProcessingContext pc = getCommandlineContext();
+		pc.getVariantCallingParameters().writeFiltered = true;
+		StubSAMEvidenceSource ses = new StubSAMEvidenceSource(pc, input, 0, 0, fragSize);
+		Random rng = new Random(0);
+		for (int i = 0; i < 1000; i++) {
+			SAMRecord[] dp = DP(rng.nextInt(3), 1 + rng.nextInt(64), "1M", rng.nextBoolean(), rng.nextInt(3), 1 + rng.nextInt(64), "1M", rng.nextBoolean());
+			NonReferenceReadPair e1 = NonReferenceReadPair.create(dp[0], dp[1], ses);
+			NonReferenceReadPair e2 = NonReferenceReadPair.create(dp[1], dp[0], ses);
+			if (e1 == null || e2 == null) continue;
+			ses.evidence.add(e1);
+			ses.evidence.add(e2);
+			in.add(dp[0]);
+			in.add(dp[1]);
+		}
+		StubAssemblyEvidenceSource aes = new StubAssemblyEvidenceSource(pc);
+		aes.fragSize = fragSize;
+		Collections.sort(ses.evidence, DirectedEvidenceOrder.ByNatural);
+		createInput(in);
+		ExecutorService threadpool = Executors.newFixedThreadPool(2);
+		new VariantCaller(pc, ImmutableList.<SAMEvidenceSource>of(ses), aes).callBreakends(output, threadpool);
+		List<IdsvVariantContext> serial = getVcf(output, null);
+		File parallelOutput = new File(testFolder.getRoot(), "parallel.vcf");
+		pc.getVariantCallingParameters().parallelCliqueCalling = true;
+		new VariantCaller(pc, ImmutableList.<SAMEvidenceSource>of(ses), aes).callBreakends(parallelOutput, threadpool);
+		threadpool.shutdown();
+		List<IdsvVariantContext> parallel = getVcf(parallelOutput, null);
+		assertTrue(serial.size() > 0);
+		assertEquals(serial.size(), parallel.size());
+		for (int i = 0; i < serial.size(); i++) {
+			assertEquals(serial.get(i).toString(), parallel.get(i).toString());
+		}
+	}
 }
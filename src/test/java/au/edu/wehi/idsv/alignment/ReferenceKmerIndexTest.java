@@ -0,0 +1,82 @@
+package au.edu.wehi.idsv.alignment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import au.edu.wehi.idsv.TestHelper;
+import au.edu.wehi.idsv.debruijn.KmerEncodingHelper;
+import au.edu.wehi.idsv.picard.InMemoryReferenceSequenceFile;
+
+public class ReferenceKmerIndexTest extends TestHelper {
+	@Test
+	public void encode_should_match_kmer_encoding() {
+		assertEquals(KmerEncodingHelper.picardBaseToEncoded(4, B("AAAA")), ReferenceKmerIndex.encode(B("AAAA"), 0, 4));
+		assertEquals(KmerEncodingHelper.picardBaseToEncoded(4, B("ACGT")), ReferenceKmerIndex.encode(B("ACGT"), 0, 4));
+		assertEquals(KmerEncodingHelper.picardBaseToEncoded(4, B("ACGT")), ReferenceKmerIndex.encode(B("acgt"), 0, 4));
+		assertEquals(KmerEncodingHelper.picardBaseToEncoded(2, B("CG")), ReferenceKmerIndex.encode(B("ACGT"), 1, 2));
+	}
+	@Test
+	public void encode_should_reject_ambiguous_bases() {
+		assertEquals(-1, ReferenceKmerIndex.encode(B("ACNT"), 0, 4));
+	}
+	@Test
+	public void should_find_all_indexed_occurrences() {
+		ReferenceKmerIndex index = new ReferenceKmerIndex(SMALL_FA, 16, 1);
+		String random = S(RANDOM);
+		for (int pos = 0; pos < 1000; pos += 37) {
+			long kmer = ReferenceKmerIndex.encode(B(random), pos, 16);
+			boolean found = false;
+			for (int i = index.firstOccurrence(kmer); i < index.endOccurrence(kmer); i++) {
+				long position = index.position(i);
+				int referenceIndex = index.referenceIndex(position);
+				if (referenceIndex == 2 && position - index.contigOffset(referenceIndex) == pos) {
+					found = true;
+				}
+			}
+			assertTrue(found);
+		}
+	}
+	@Test
+	public void should_count_repetitive_kmers() {
+		ReferenceKmerIndex index = new ReferenceKmerIndex(SMALL_FA, 16, 1);
+		assertTrue(index.occurrences(ReferenceKmerIndex.encode(POLY_A, 0, 16)) >= 10000 - 16 + 1);
+		assertEquals(0, index.occurrences(ReferenceKmerIndex.encode(B("ACGTTGCAACGTTGCA"), 0, 16)));
+	}
+	@Test
+	public void should_index_every_stride_position() {
+		int fullSize = new ReferenceKmerIndex(SMALL_FA, 8, 1).size();
+		int strideSize = new ReferenceKmerIndex(SMALL_FA, 8, 4).size();
+		assertTrue(strideSize * 4 >= fullSize - 4 * SMALL_FA.getSequenceDictionary().size());
+		assertTrue(strideSize * 4 <= fullSize + 4 * SMALL_FA.getSequenceDictionary().size());
+	}
+	@Test
+	public void should_not_index_ambiguous_positions() {
+		InMemoryReferenceSequenceFile ref = new InMemoryReferenceSequenceFile(new String[] { "Ns" }, new byte[][] { B("NNNNNNNNACGTACGT") });
+		ReferenceKmerIndex index = new ReferenceKmerIndex(ref, 4, 1);
+		assertEquals(5, index.size());
+		// unused space is not searched
+		assertEquals(0, index.occurrences(0));
+		assertEquals(2, index.occurrences(ReferenceKmerIndex.encode(B("ACGT"), 0, 4)));
+	}
+	@Test
+	public void getInstance_should_reuse_index() {
+		ReferenceKmerIndex index = ReferenceKmerIndex.getInstance(SMALL_FA_FILE, SMALL_FA, 16, 8);
+		assertTrue(index == ReferenceKmerIndex.getInstance(SMALL_FA_FILE, SMALL_FA, 16, 8));
+		assertEquals(4, ReferenceKmerIndex.getInstance(SMALL_FA_FILE, SMALL_FA, 16, 4).getStride());
+	}
+	@Test
+	public void referenceIndex_should_convert_concatenated_position() {
+		ReferenceKmerIndex index = new ReferenceKmerIndex(SMALL_FA, 16, 1);
+		for (int i = 0; i < SMALL_FA.getSequenceDictionary().size(); i++) {
+			long offset = index.contigOffset(i);
+			assertEquals(i, index.referenceIndex(offset));
+			assertEquals(i, index.referenceIndex(offset + SMALL_FA.getSequenceDictionary().getSequence(i).getSequenceLength() - 1));
+		}
+	}
+	@Test(expected = IllegalArgumentException.class)
+	public void should_not_allow_kmers_longer_than_16() {
+		new ReferenceKmerIndex(SMALL_FA, 17, 1);
+	}
+}
@@ -0,0 +1,207 @@
+package au.edu.wehi.idsv.alignment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import org.junit.Test;
+
+import au.edu.wehi.idsv.TestHelper;
+import au.edu.wehi.idsv.picard.InMemoryReferenceSequenceFile;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMTag;
+import htsjdk.samtools.fastq.FastqRecord;
+import htsjdk.samtools.util.SequenceUtil;
+
+public class SeedAndExtendStreamingAlignerTest extends TestHelper {
+	// small.fa contains a near-identical copy of the random contig so a reference is constructed in which it is unique
+	private static final InMemoryReferenceSequenceFile REFERENCE = new InMemoryReferenceSequenceFile(new String[] { "polyA", "random" }, new byte[][] { POLY_A, RANDOM });
+	private static final ReferenceKmerIndex INDEX = new ReferenceKmerIndex(REFERENCE, 16, 4);
+	private static FastqRecord fq(String name, String seq) {
+		return new FastqRecord(name, seq, "", S("5", seq.length()));
+	}
+	private static SeedAndExtendStreamingAligner create(StreamingAligner fallback) {
+		return new SeedAndExtendStreamingAligner(REFERENCE, INDEX, AlignerFactory.create(), fallback);
+	}
+	private static class RecordingStreamingAligner implements StreamingAligner {
+		private final List<FastqRecord> in = new ArrayList<>();
+		private final Queue<SAMRecord> out = new ArrayDeque<>();
+		private boolean closed = false;
+		@Override
+		public void asyncAlign(FastqRecord fq) throws IOException {
+			in.add(fq);
+			SAMRecord r = new SAMRecord(null);
+			r.setReadName(fq.getReadName());
+			r.setReadUnmappedFlag(true);
+			out.add(r);
+		}
+		@Override
+		public void flush() throws IOException {
+		}
+		@Override
+		public boolean hasAlignmentRecord() {
+			return !out.isEmpty();
+		}
+		@Override
+		public int processedAlignmentRecords() {
+			return out.size();
+		}
+		@Override
+		public int outstandingAlignmentRecord() {
+			return 0;
+		}
+		@Override
+		public SAMRecord getAlignment() {
+			return out.poll();
+		}
+		@Override
+		public void close() throws IOException {
+			closed = true;
+		}
+	}
+	@Test
+	public void should_align_exact_match() {
+		SAMRecord r = create(null).align(fq("r", S(RANDOM).substring(1000, 1050)));
+		assertFalse(r.getReadUnmappedFlag());
+		assertEquals("r", r.getReadName());
+		assertEquals(1, (int)r.getReferenceIndex());
+		assertEquals(1001, r.getAlignmentStart());
+		assertFalse(r.getReadNegativeStrandFlag());
+		assertEquals("50M", r.getCigarString());
+		assertEquals(0, (int)r.getIntegerAttribute(SAMTag.NM.name()));
+		assertEquals(50, (int)r.getIntegerAttribute(SAMTag.AS.name()));
+		assertTrue(r.getMappingQuality() > 0);
+	}
+	@Test
+	public void should_align_reverse_complement() {
+		String seq = SequenceUtil.reverseComplement(S(RANDOM).substring(2000, 2060));
+		FastqRecord fq = new FastqRecord("r", seq, "", "0123456789" + S("5", 50));
+		SAMRecord r = create(null).align(fq);
+		assertEquals(1, (int)r.getReferenceIndex());
+		assertEquals(2001, r.getAlignmentStart());
+		assertTrue(r.getReadNegativeStrandFlag());
+		assertEquals("60M", r.getCigarString());
+		assertEquals(S(RANDOM).substring(2000, 2060), r.getReadString());
+		assertEquals(S("5", 50) + "9876543210", r.getBaseQualityString());
+	}
+	@Test
+	public void should_report_edit_distance() {
+		String ref = S(RANDOM).substring(3000, 3080);
+		String seq = ref.substring(0, 40) + ref.substring(42, 80);
+		SAMRecord r = create(null).align(fq("r", seq));
+		assertEquals(3001, r.getAlignmentStart());
+		assertEquals(2, r.getCigar().getReferenceLength() - r.getReadLength());
+		assertEquals(3, r.getCigarLength());
+		assertEquals(2, (int)r.getIntegerAttribute(SAMTag.NM.name()));
+		assertEquals(78 - 6 - 2, (int)r.getIntegerAttribute(SAMTag.AS.name()));
+	}
+	@Test
+	public void should_soft_clip_unaligned_bases() {
+		String seq = "ACGTTGCAACGTTGCATTGC" + S(RANDOM).substring(4000, 4050);
+		SAMRecord r = create(null).align(fq("r", seq));
+		assertEquals(4001, r.getAlignmentStart());
+		assertEquals("20S50M", r.getCigarString());
+	}
+	@Test
+	public void should_not_align_repetitive_sequence() {
+		SAMRecord r = create(null).align(fq("r", S(POLY_A).substring(0, 50)));
+		assertTrue(r.getReadUnmappedFlag());
+		assertEquals(S(POLY_A).substring(0, 50), r.getReadString());
+	}
+	@Test
+	public void should_not_resolve_multimapping_reads() throws IOException {
+		InMemoryReferenceSequenceFile ref = new InMemoryReferenceSequenceFile(new String[] { "random", "copy" }, new byte[][] { RANDOM, RANDOM });
+		RecordingStreamingAligner fallback = new RecordingStreamingAligner();
+		SeedAndExtendStreamingAligner aligner = new SeedAndExtendStreamingAligner(ref, new ReferenceKmerIndex(ref, 16, 4), AlignerFactory.create(), fallback);
+		FastqRecord fq = fq("r", S(RANDOM).substring(1000, 1050));
+		SAMRecord r = aligner.align(fq);
+		assertFalse(r.getReadUnmappedFlag());
+		assertEquals(0, r.getMappingQuality());
+		aligner.asyncAlign(fq);
+		assertEquals(1, fallback.in.size());
+	}
+	@Test
+	public void should_not_align_below_min_score() {
+		SeedAndExtendStreamingAligner aligner = create(null);
+		String seq = S(RANDOM).substring(5000, 5025);
+		assertTrue(aligner.align(fq("r", seq)).getReadUnmappedFlag());
+		aligner.setMinScore(20);
+		assertFalse(aligner.align(fq("r", seq)).getReadUnmappedFlag());
+	}
+	@Test
+	public void should_not_align_sequences_shorter_than_seed() {
+		assertTrue(create(null).align(fq("r", S(RANDOM).substring(0, 15))).getReadUnmappedFlag());
+	}
+	@Test
+	public void should_pass_unresolved_reads_to_fallback() throws IOException {
+		RecordingStreamingAligner fallback = new RecordingStreamingAligner();
+		SeedAndExtendStreamingAligner aligner = create(fallback);
+		aligner.asyncAlign(fq("unique", S(RANDOM).substring(1000, 1050)));
+		aligner.asyncAlign(fq("repeat", S(POLY_A).substring(0, 50)));
+		assertEquals(1, fallback.in.size());
+		assertEquals("repeat", fallback.in.get(0).getReadName());
+		assertEquals(2, aligner.processedAlignmentRecords());
+		List<String> names = new ArrayList<>();
+		while (aligner.hasAlignmentRecord()) {
+			names.add(aligner.getAlignment().getReadName());
+		}
+		assertEquals(2, names.size());
+		assertTrue(names.contains("unique"));
+		assertTrue(names.contains("repeat"));
+		aligner.close();
+		assertTrue(fallback.closed);
+	}
+	@Test
+	public void should_return_unmapped_record_without_fallback() throws IOException {
+		SeedAndExtendStreamingAligner aligner = create(null);
+		aligner.asyncAlign(fq("repeat", S(POLY_A).substring(0, 50)));
+		assertTrue(aligner.hasAlignmentRecord());
+		assertTrue(aligner.getAlignment().getReadUnmappedFlag());
+		assertFalse(aligner.hasAlignmentRecord());
+		assertEquals(0, aligner.outstandingAlignmentRecord());
+	}
+	@Test
+	public void should_not_resolve_reads_with_repetitive_seeds() throws IOException {
+		FastqRecord unique = fq("unique", S(RANDOM).substring(1000, 1070));
+		FastqRecord partialRepeat = fq("repeat", S(POLY_A).substring(0, 20) + S(RANDOM).substring(1020, 1070));
+		SAMRecord uniqueAlignment = create(null).align(unique);
+		SAMRecord repeatAlignment = create(null).align(partialRepeat);
+		assertFalse(repeatAlignment.getReadUnmappedFlag());
+		assertEquals(1, (int)repeatAlignment.getReferenceIndex());
+		assertTrue(repeatAlignment.getMappingQuality() < uniqueAlignment.getMappingQuality());
+		RecordingStreamingAligner fallback = new RecordingStreamingAligner();
+		SeedAndExtendStreamingAligner aligner = create(fallback);
+		aligner.asyncAlign(unique);
+		aligner.asyncAlign(partialRepeat);
+		assertEquals(1, fallback.in.size());
+		assertEquals("repeat", fallback.in.get(0).getReadName());
+	}
+	@Test
+	public void should_align_in_batches_when_multithreaded() throws IOException {
+		SeedAndExtendStreamingAligner aligner = new SeedAndExtendStreamingAligner(REFERENCE, INDEX, AlignerFactory.create(), null, 2);
+		for (int i = 0; i < 10; i++) {
+			aligner.asyncAlign(fq(Integer.toString(i), S(RANDOM).substring(1000 + 100 * i, 1050 + 100 * i)));
+		}
+		assertEquals(10, aligner.outstandingAlignmentRecord());
+		assertFalse(aligner.hasAlignmentRecord());
+		aligner.flush();
+		assertEquals(0, aligner.outstandingAlignmentRecord());
+		for (int i = 0; i < 10; i++) {
+			SAMRecord r = aligner.getAlignment();
+			assertEquals(Integer.toString(i), r.getReadName());
+			assertEquals(1001 + 100 * i, r.getAlignmentStart());
+		}
+		assertFalse(aligner.hasAlignmentRecord());
+		aligner.close();
+	}
+	@Test(expected = IllegalStateException.class)
+	public void getAlignment_should_require_available_alignment() {
+		create(null).getAlignment();
+	}
+}
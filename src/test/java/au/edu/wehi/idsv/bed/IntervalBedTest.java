@@ -6,6 +6,7 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Random;
 
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -89,4 +90,84 @@ public class IntervalBedTest extends TestHelper {
 			assertEquals(qi[i].end, result[i].end);
 		}
 	}
+	private static IntervalBed randomBed(Random rng, int n) {
+		IntervalBed bed = new IntervalBed(getContext().getDictionary(), getContext().getLinear());
+		for (int i = 0; i < n; i++) {
+			int start = 1 + rng.nextInt(1000);
+			bed.addInterval(rng.nextInt(3), start, start + rng.nextInt(20));
+		}
+		return bed;
+	}
+	@Test
+	public void frozen_overlap_should_match_unfrozen() {
+		Random rng = new Random(0);
+		for (int n : new int[] { 0, 1, 2, 3, 10, 100 }) {
+			IntervalBed bed = randomBed(rng, n);
+			IntervalBed frozen = bed.freeze();
+			assertTrue(frozen.isFrozen());
+			assertEquals(bed.size(), frozen.size());
+			for (int referenceIndex = 0; referenceIndex < 3; referenceIndex++) {
+				for (int start = 1; start < 1030; start++) {
+					for (int length = 0; length < 4; length++) {
+						assertEquals(bed.overlaps(referenceIndex, start, start + length), frozen.overlaps(referenceIndex, start, start + length));
+					}
+				}
+			}
+		}
+	}
+	@Test
+	public void cursor_should_match_overlap_for_sorted_queries() {
+		Random rng = new Random(0);
+		for (int n : new int[] { 0, 1, 10, 100, 500 }) {
+			IntervalBed bed = randomBed(rng, n);
+			IntervalBed.Cursor cursor = bed.freeze().cursor();
+			for (int referenceIndex = 0; referenceIndex < 3; referenceIndex++) {
+				for (int start = 1; start < 1030; start += rng.nextInt(40)) {
+					int end = start + rng.nextInt(50);
+					assertEquals(bed.overlaps(referenceIndex, start, end), cursor.overlaps(referenceIndex, start, end));
+				}
+			}
+		}
+	}
+	@Test
+	public void cursor_should_match_overlap_for_unsorted_queries() {
+		Random rng = new Random(0);
+		IntervalBed bed = randomBed(rng, 100);
+		IntervalBed.Cursor cursor = bed.cursor();
+		for (int i = 0; i < 10000; i++) {
+			int referenceIndex = rng.nextInt(3);
+			int start = 1 + rng.nextInt(1030);
+			int end = start + rng.nextInt(50);
+			assertEquals(bed.overlaps(referenceIndex, start, end), cursor.overlaps(referenceIndex, start, end));
+		}
+	}
+	@Test
+	public void cursor_should_be_snapshot() {
+		IntervalBed bed = new IntervalBed(getContext().getDictionary(), getContext().getLinear());
+		IntervalBed.Cursor cursor = bed.cursor();
+		bed.addInterval(1, 3, 5);
+		assertFalse(cursor.overlaps(1, 3, 5));
+		assertTrue(bed.cursor().overlaps(1, 3, 5));
+	}
+	@Test
+	public void freeze_should_not_copy_frozen_bed() {
+		IntervalBed frozen = randomBed(new Random(0), 10).freeze();
+		assertTrue(frozen == frozen.freeze());
+	}
+	@Test
+	public void freeze_should_retain_intervals() {
+		IntervalBed bed = new IntervalBed(getContext().getDictionary(), getContext().getLinear());
+		bed.addInterval(0, 1, 10);
+		bed.addInterval(2, 4, 8);
+		QueryInterval[] qi = bed.freeze().asQueryInterval();
+		assertEquals(2, qi.length);
+		assertEquals(2, qi[1].referenceIndex);
+		assertEquals(4, qi[1].start);
+		assertEquals(8, qi[1].end);
+	}
+	@Test(expected = UnsupportedOperationException.class)
+	public void frozen_bed_should_be_immutable() {
+		IntervalBed bed = new IntervalBed(getContext().getDictionary(), getContext().getLinear());
+		bed.freeze().addInterval(0, 1, 10);
+	}
 }
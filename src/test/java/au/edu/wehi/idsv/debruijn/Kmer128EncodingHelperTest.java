@@ -0,0 +1,85 @@
+package au.edu.wehi.idsv.debruijn;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import au.edu.wehi.idsv.TestHelper;
+import htsjdk.samtools.util.SequenceUtil;
+
+public class Kmer128EncodingHelperTest extends TestHelper {
+	private static byte[] randomBases(Random rng, int length) {
+		byte[] b = new byte[length];
+		for (int i = 0; i < length; i++) {
+			b[i] = "ACGT".getBytes()[rng.nextInt(4)];
+		}
+		return b;
+	}
+	@Test
+	public void should_match_KmerEncodingHelper_for_small_k() {
+		Random rng = new Random(0);
+		for (int k = 1; k <= KmerEncodingHelper.MAX_K; k++) {
+			byte[] b = randomBases(rng, k);
+			assertEquals(0, Kmer128EncodingHelper.picardBaseToEncodedHigh(k, b, 0));
+			assertEquals(KmerEncodingHelper.picardBaseToEncoded(k, b), Kmer128EncodingHelper.picardBaseToEncodedLow(k, b, 0));
+		}
+	}
+	@Test
+	public void encodedToPicardBases_should_round_trip() {
+		Random rng = new Random(0);
+		for (int k = 1; k <= Kmer128EncodingHelper.MAX_K; k++) {
+			byte[] b = randomBases(rng, k);
+			long high = Kmer128EncodingHelper.picardBaseToEncodedHigh(k, b, 0);
+			long low = Kmer128EncodingHelper.picardBaseToEncodedLow(k, b, 0);
+			assertEquals(S(b), Kmer128EncodingHelper.toString(k, high, low));
+		}
+	}
+	@Test
+	public void nextState_should_match_encoding_of_next_kmer() {
+		Random rng = new Random(0);
+		for (int k : new int[] { 1, 25, 31, 32, 33, 41, 51, 63, 64 }) {
+			byte[] b = randomBases(rng, k + 10);
+			long high = Kmer128EncodingHelper.picardBaseToEncodedHigh(k, b, 0);
+			long low = Kmer128EncodingHelper.picardBaseToEncodedLow(k, b, 0);
+			for (int i = 1; i + k <= b.length; i++) {
+				long nextHigh = Kmer128EncodingHelper.nextStateHigh(k, high, low);
+				long nextLow = Kmer128EncodingHelper.nextStateLow(k, low, b[i + k - 1]);
+				assertEquals(Kmer128EncodingHelper.picardBaseToEncodedHigh(k, b, i), nextHigh);
+				assertEquals(Kmer128EncodingHelper.picardBaseToEncodedLow(k, b, i), nextLow);
+				assertTrue(Kmer128EncodingHelper.isNext(k, high, low, nextHigh, nextLow));
+				assertFalse(Kmer128EncodingHelper.isNext(k, high, low, nextHigh, nextLow ^ 4L));
+				high = nextHigh;
+				low = nextLow;
+			}
+		}
+	}
+	@Test
+	public void reverseComplement_should_match_sequence_reverse_complement() {
+		Random rng = new Random(0);
+		for (int k = 1; k <= Kmer128EncodingHelper.MAX_K; k++) {
+			byte[] b = randomBases(rng, k);
+			byte[] rc = b.clone();
+			SequenceUtil.reverseComplement(rc);
+			long high = Kmer128EncodingHelper.picardBaseToEncodedHigh(k, b, 0);
+			long low = Kmer128EncodingHelper.picardBaseToEncodedLow(k, b, 0);
+			assertEquals(Kmer128EncodingHelper.picardBaseToEncodedHigh(k, rc, 0), Kmer128EncodingHelper.reverseComplementHigh(k, high, low));
+			assertEquals(Kmer128EncodingHelper.picardBaseToEncodedLow(k, rc, 0), Kmer128EncodingHelper.reverseComplementLow(k, high, low));
+		}
+	}
+	@Test
+	public void basesDifference_should_count_mismatches_in_both_words() {
+		byte[] a = B("ACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTA");
+		byte[] b = a.clone();
+		b[0] = 'T';
+		b[20] = 'T';
+		b[40] = 'C';
+		int k = a.length;
+		assertEquals(3, Kmer128EncodingHelper.basesDifference(k,
+				Kmer128EncodingHelper.picardBaseToEncodedHigh(k, a, 0), Kmer128EncodingHelper.picardBaseToEncodedLow(k, a, 0),
+				Kmer128EncodingHelper.picardBaseToEncodedHigh(k, b, 0), Kmer128EncodingHelper.picardBaseToEncodedLow(k, b, 0)));
+	}
+}
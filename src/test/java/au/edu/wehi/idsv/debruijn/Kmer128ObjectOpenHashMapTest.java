@@ -0,0 +1,60 @@
+package au.edu.wehi.idsv.debruijn;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class Kmer128ObjectOpenHashMapTest {
+	@Test
+	public void should_distinguish_high_and_low_words() {
+		Kmer128ObjectOpenHashMap<String> map = new Kmer128ObjectOpenHashMap<>();
+		assertNull(map.put(1, 2, "a"));
+		assertNull(map.put(2, 1, "b"));
+		assertEquals("a", map.put(1, 2, "c"));
+		assertEquals(2, map.size());
+		assertEquals("c", map.get(1, 2));
+		assertEquals("b", map.get(2, 1));
+		assertFalse(map.containsKey(1, 1));
+	}
+	@Test
+	public void should_match_HashMap() {
+		Random rng = new Random(0);
+		Kmer128ObjectOpenHashMap<Integer> map = new Kmer128ObjectOpenHashMap<>();
+		Map<String, Integer> expected = new HashMap<>();
+		for (int i = 0; i < 200000; i++) {
+			// small key space to ensure collisions and removal of clustered entries
+			long high = rng.nextInt(64);
+			long low = rng.nextInt(64) << 20;
+			String key = high + ":" + low;
+			if (rng.nextInt(3) == 0) {
+				assertEquals(expected.remove(key), map.remove(high, low));
+			} else {
+				assertEquals(expected.put(key, i), map.put(high, low, i));
+			}
+			assertEquals(expected.size(), map.size());
+			assertEquals(expected.get(key), map.get(high, low));
+		}
+		for (long high = 0; high < 64; high++) {
+			for (long low = 0; low < 64; low++) {
+				assertEquals(expected.containsKey(high + ":" + (low << 20)), map.containsKey(high, low << 20));
+			}
+		}
+		List<Integer> expectedValues = new ArrayList<>(expected.values());
+		List<Integer> values = new ArrayList<>(map.values());
+		Collections.sort(expectedValues);
+		Collections.sort(values);
+		assertEquals(expectedValues, values);
+		map.clear();
+		assertTrue(map.isEmpty());
+	}
+}
@@ -45,6 +45,22 @@ public class AggregateNodeIteratorTest extends TestHelper {
 		assertTrue(KmerNodeUtil.ByLastStart.isOrdered(anList));
 		assertEquals(2, anList.size());
 	}
+	@Test
+	public void should_not_aggregate_kmers_differing_only_in_high_word() {
+		List<KmerNode> input = new ArrayList<KmerNode>();
+		input.add(new ImmutableKmerNode(0, 7, 1, 1, false, 3));
+		input.add(new ImmutableKmerNode(1, 7, 1, 1, false, 3));
+		input.add(new ImmutableKmerNode(1, 7, 1, 1, false, 2));
+		Collections.sort(input, KmerNodeUtil.ByLastStart);
+		List<KmerNode> anList = Lists.newArrayList(new AggregateNodeIterator(input.iterator()));
+		assertTrue(KmerNodeUtil.ByLastStart.isOrdered(anList));
+		assertEquals(2, anList.size());
+		anList.sort(KmerNodeUtil.ByLastStartEndKmerReferenceWeight);
+		assertEquals(0, anList.get(0).lastKmerHigh());
+		assertIs(anList.get(0), 7, 1, 1, 3, false);
+		assertEquals(1, anList.get(1).lastKmerHigh());
+		assertIs(anList.get(1), 7, 1, 1, 5, false);
+	}
 	/**
 	 * Not critical to merge adjacent nodes as we reduce
 	 * after simplification
@@ -0,0 +1,90 @@
+package au.edu.wehi.idsv.debruijn.positional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import au.edu.wehi.idsv.DirectedEvidence;
+import au.edu.wehi.idsv.TestHelper;
+import au.edu.wehi.idsv.debruijn.positional.AssemblyBudget.Degradation;
+import htsjdk.samtools.SAMRecord;
+
+
+public class AssemblyBudgetTest extends TestHelper {
+	private static LeafBubbleCollapseIterator collapseIterator(int maxBasesMismatch) {
+		return new LeafBubbleCollapseIterator(ImmutableList.<KmerPathNode>of().iterator(), 4, 10, maxBasesMismatch);
+	}
+	@Test
+	public void should_be_disabled_by_default() {
+		assertFalse(new AssemblyBudget(0, 0).isEnabled());
+		assertTrue(new AssemblyBudget(1, 0).isEnabled());
+		assertTrue(new AssemblyBudget(0, 1).isEnabled());
+	}
+	@Test
+	public void should_degrade_progressively_when_over_node_budget() {
+		CollapseIterator collapseIt = collapseIterator(2);
+		AssemblyBudget budget = new AssemblyBudget(0, 10);
+		budget.setCollapseIterator(collapseIt);
+		budget.setRegionWidth(100);
+		assertEquals(Degradation.NONE, budget.update(1, 10));
+		assertEquals(Degradation.DOWNSAMPLE, budget.update(1, 11));
+		assertEquals(Degradation.RAISE_COLLAPSE_THRESHOLD, budget.update(1, 12));
+		assertEquals(4, collapseIt.getMaxBasesMismatch());
+		assertEquals(Degradation.SKIP, budget.update(1, 12));
+		assertEquals(Degradation.SKIP, budget.update(1, 1000));
+		assertEquals(1, budget.tracking_regionsDegraded());
+		assertEquals(1, budget.tracking_regionsSkipped());
+	}
+	@Test
+	public void should_not_escalate_while_node_count_falls() {
+		AssemblyBudget budget = new AssemblyBudget(0, 10);
+		budget.setCollapseIterator(collapseIterator(1));
+		budget.setRegionWidth(100);
+		assertEquals(Degradation.DOWNSAMPLE, budget.update(1, 20));
+		assertEquals(Degradation.DOWNSAMPLE, budget.update(1, 15));
+		assertEquals(Degradation.RAISE_COLLAPSE_THRESHOLD, budget.update(1, 20));
+	}
+	@Test
+	public void should_skip_instead_of_raising_threshold_if_not_collapsing() {
+		AssemblyBudget budget = new AssemblyBudget(0, 10);
+		budget.setRegionWidth(100);
+		assertEquals(Degradation.DOWNSAMPLE, budget.update(1, 11));
+		assertEquals(Degradation.SKIP, budget.update(1, 11));
+	}
+	@Test
+	public void should_restore_full_budget_for_next_region() {
+		CollapseIterator collapseIt = collapseIterator(2);
+		AssemblyBudget budget = new AssemblyBudget(0, 10);
+		budget.setCollapseIterator(collapseIt);
+		budget.setRegionWidth(100);
+		budget.update(1, 11);
+		budget.update(1, 12);
+		assertEquals(Degradation.RAISE_COLLAPSE_THRESHOLD, budget.update(50, 5));
+		assertEquals(Degradation.NONE, budget.update(101, 5));
+		assertEquals(101, budget.getRegionStart());
+		assertEquals(2, collapseIt.getMaxBasesMismatch());
+	}
+	@Test
+	public void should_downsample_deterministically_once_degraded() {
+		List<DirectedEvidence> list = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			SAMRecord r = Read(0, 1, "5M5S");
+			r.setReadName("r" + i);
+			list.add(SCE(FWD, r));
+		}
+		AssemblyBudget budget = new AssemblyBudget(0, 10);
+		assertTrue(list.stream().allMatch(budget));
+		budget.update(1, 11);
+		long retained = list.stream().filter(budget).count();
+		assertTrue(retained > 0);
+		assertTrue(retained < list.size() / 2);
+		assertEquals(retained, list.stream().filter(budget).count());
+	}
+}
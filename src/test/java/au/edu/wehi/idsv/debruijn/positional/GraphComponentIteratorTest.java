@@ -0,0 +1,72 @@
+package au.edu.wehi.idsv.debruijn.positional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+
+import au.edu.wehi.idsv.DirectedEvidence;
+import au.edu.wehi.idsv.DirectedEvidenceOrder;
+import au.edu.wehi.idsv.TestHelper;
+
+
+public class GraphComponentIteratorTest extends TestHelper {
+	private static List<DirectedEvidence> evidence(int... positions) {
+		List<DirectedEvidence> list = new ArrayList<>();
+		for (int position : positions) {
+			list.add(SCE(FWD, Read(0, position, "5M5S")));
+		}
+		list.sort(DirectedEvidenceOrder.ByStartEnd);
+		return list;
+	}
+	private static List<List<DirectedEvidence>> components(List<DirectedEvidence> input, int minComponentEvidence, int maxComponentEvidence) {
+		GraphComponentIterator it = new GraphComponentIterator(Iterators.peekingIterator(input.iterator()), 10, 20, minComponentEvidence, maxComponentEvidence);
+		List<List<DirectedEvidence>> result = new ArrayList<>();
+		while (it.hasNext()) {
+			result.add(Lists.newArrayList(it.next()));
+		}
+		return result;
+	}
+	@Test
+	public void should_split_at_positions_without_support() {
+		// breakend at 104 supported from 94 to 124 
+		List<List<DirectedEvidence>> result = components(evidence(100, 110, 200, 300), 1, 1000);
+		assertEquals(3, result.size());
+		assertEquals(2, result.get(0).size());
+		assertEquals(1, result.get(1).size());
+		assertEquals(1, result.get(2).size());
+	}
+	@Test
+	public void should_not_split_when_support_could_be_adjacent() {
+		// first support ends at 104+20=124
+		// second support starts at 136-10=126 
+		assertEquals(2, components(evidence(100, 132), 1, 1000).size());
+		// second support starts at 135-10=125 
+		assertEquals(1, components(evidence(100, 131), 1, 1000).size());
+	}
+	@Test
+	public void should_merge_components_until_minimum_size() {
+		List<List<DirectedEvidence>> result = components(evidence(100, 200, 300, 400, 500), 2, 1000);
+		assertEquals(3, result.size());
+		assertEquals(2, result.get(0).size());
+		assertEquals(2, result.get(1).size());
+		assertEquals(1, result.get(2).size());
+	}
+	@Test
+	public void should_return_remainder_when_component_exceeds_maximum_size() {
+		List<DirectedEvidence> input = evidence(100, 101, 102, 103, 104, 500);
+		GraphComponentIterator it = new GraphComponentIterator(Iterators.peekingIterator(input.iterator()), 10, 20, 1, 3);
+		Iterator<DirectedEvidence> remainder = it.next();
+		assertTrue(GraphComponentIterator.isUnbuffered(remainder));
+		assertEquals(6, Iterators.size(remainder));
+		assertFalse(it.hasNext());
+	}
+}
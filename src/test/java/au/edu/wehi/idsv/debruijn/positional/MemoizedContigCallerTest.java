@@ -5,13 +5,27 @@ import static org.junit.Assert.assertNull;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
 
 import org.junit.Assert;
 import org.junit.Test;
 
 import com.google.common.collect.Sets;
 
+import au.edu.wehi.idsv.util.IndexedBinaryHeap;
+import au.edu.wehi.idsv.util.IntervalUtil;
+
 
 public class MemoizedContigCallerTest extends ContigCallerTest {
 	@Override
@@ -151,6 +165,84 @@ public class MemoizedContigCallerTest extends ContigCallerTest {
 		Assert.assertNotNull(caller.bestContig(Integer.MAX_VALUE));
 	}
 	@Test
+	public void invalidate_should_recalculate_descendants() {
+		int k = 4;
+		List<KmerPathNode> input = new ArrayList<KmerPathNode>();
+		input.add(KPN(k, "AAAA", 1, 1, false));
+		input.add(KPN(k, "AAAA", 2, 2, false));
+		input.add(KPN(k, "AAAA", 3, 3, false));
+		input.add(KPN(k, "TTTT", 3, 3, true));
+		input.add(KPN(k, "AAAA", 4, 4, false));
+		input.add(KPN(k, "AAAA", 5, 5, false));
+		input.add(KPN(k, "AAAA", 6, 6, false));
+		input.add(KPN(k, "AAAA", 7, 7, false));
+		KmerPathNode.addEdge(input.get(0), input.get(1));
+		KmerPathNode.addEdge(input.get(1), input.get(2));
+		KmerPathNode.addEdge(input.get(1), input.get(3));
+		KmerPathNode.addEdge(input.get(2), input.get(4));
+		KmerPathNode.addEdge(input.get(3), input.get(4));
+		KmerPathNode.addEdge(input.get(4), input.get(5));
+		KmerPathNode.addEdge(input.get(5), input.get(6));
+		KmerPathNode.addEdge(input.get(6), input.get(7));
+		MemoizedContigCaller caller = (MemoizedContigCaller)getCaller(input, 10);
+		ArrayDeque<KmerPathSubnode> pre = caller.bestContig(Integer.MAX_VALUE);
+		assertEquals(4, pre.size());
+		KmerPathNode ref = input.get(3);
+		caller.invalidate(Sets.newHashSet(ref));
+		ref.remove();
+		caller.sanityCheck();
+		ArrayDeque<KmerPathSubnode> post = caller.bestContig(Integer.MAX_VALUE);
+		assertEquals(7, post.size());
+	}
+	@Test
+	public void invalidate_should_not_rememoize_before_removed_nodes() {
+		List<KmerPathNode> input = new ArrayList<KmerPathNode>();
+		for (int i = 1; i <= 10; i++) {
+			input.add(KPN(4, "AAAA", i, i, false));
+		}
+		for (int i = 1; i < input.size(); i++) {
+			KmerPathNode.addEdge(input.get(i - 1), input.get(i));
+		}
+		MemoizedContigCaller caller = (MemoizedContigCaller)getCaller(input, 10);
+		caller.bestContig(Integer.MAX_VALUE);
+		long visited = caller.tracking_rememoizedNodeCount();
+		KmerPathNode removed = input.get(7);
+		caller.invalidate(Sets.newHashSet(removed));
+		removed.remove();
+		caller.sanityCheck();
+		ArrayDeque<KmerPathSubnode> post = caller.bestContig(Integer.MAX_VALUE);
+		assertEquals(7, post.size());
+		// only the nodes after the removed node need revisiting
+		assertEquals(2, caller.tracking_rememoizedNodeCount() - visited);
+	}
+	@Test
+	public void invalidate_should_match_full_recalculation() {
+		List<KmerPathNode> input = new ArrayList<KmerPathNode>();
+		input.add(KPN(4, "AAAA", 1, 10, false));
+		input.add(KPN(4, "CCCC", 2, 11, false));
+		input.add(KPN(4, "GGGG", 3, 12, true));
+		input.add(KPN(4, "TTTT", 3, 12, false));
+		input.add(KPN(4, "ACGT", 4, 13, false));
+		input.add(KPN(4, "CGTA", 5, 14, false));
+		KmerPathNode.addEdge(input.get(0), input.get(1));
+		KmerPathNode.addEdge(input.get(1), input.get(2));
+		KmerPathNode.addEdge(input.get(1), input.get(3));
+		KmerPathNode.addEdge(input.get(2), input.get(4));
+		KmerPathNode.addEdge(input.get(3), input.get(4));
+		KmerPathNode.addEdge(input.get(4), input.get(5));
+		MemoizedContigCaller caller = (MemoizedContigCaller)getCaller(input, 10);
+		caller.bestContig(Integer.MAX_VALUE);
+		KmerPathNode removed = input.get(3);
+		caller.invalidate(Sets.newHashSet(removed));
+		removed.remove();
+		input.remove(removed);
+		caller.bestContig(Integer.MAX_VALUE);
+		MemoizedContigCaller full = (MemoizedContigCaller)getCaller(input, 10);
+		full.bestContig(Integer.MAX_VALUE);
+		caller.sanityCheckMatches(full);
+		assertEquals(new ArrayList<>(full.bestContig(Integer.MAX_VALUE)), new ArrayList<>(caller.bestContig(Integer.MAX_VALUE)));
+	}
+	@Test
 	public void add_should_recalculate_self() {
 		int k = 4;
 		List<KmerPathNode> input = new ArrayList<KmerPathNode>();
@@ -263,4 +355,165 @@ public class MemoizedContigCallerTest extends ContigCallerTest {
 		caller.add(n3);
 		caller.frontierPath(6, 2);
 	}
+	/**
+	 * Path ordering prior to the use of heaps
+	 */
+	private static class TreeSetOrdering extends IndexedBinaryHeap<TraversalNode> {
+		private final TreeSet<TraversalNode> set;
+		public TreeSetOrdering(Comparator<TraversalNode> comparator, ToIntFunction<TraversalNode> getIndex, ObjIntConsumer<TraversalNode> setIndex) {
+			super(comparator, getIndex, setIndex);
+			this.set = new TreeSet<>(comparator);
+		}
+		@Override
+		public int size() {
+			return set.size();
+		}
+		@Override
+		public boolean isEmpty() {
+			return set.isEmpty();
+		}
+		@Override
+		public boolean add(TraversalNode e) {
+			return set.add(e);
+		}
+		@Override
+		public TraversalNode peek() {
+			return set.isEmpty() ? null : set.first();
+		}
+		@Override
+		public TraversalNode first() {
+			return set.first();
+		}
+		@Override
+		public TraversalNode poll() {
+			return set.pollFirst();
+		}
+		@Override
+		public boolean contains(Object o) {
+			return set.contains(o);
+		}
+		@Override
+		public boolean remove(Object o) {
+			return set.remove(o);
+		}
+		@Override
+		public boolean removeAll(Collection<?> c) {
+			return set.removeAll(c);
+		}
+		@Override
+		public void clear() {
+			set.clear();
+		}
+		@Override
+		public Iterator<TraversalNode> iterator() {
+			return set.iterator();
+		}
+	}
+	/**
+	 * Generates a positional graph in which no two nodes with a common first
+	 * or last kmer overlap
+	 * @param kmers number of distinct kmers. Low values result in a repetitive graph
+	 */
+	private static List<KmerPathNode> randomGraph(long seed, int nodeCount, int kmers, int maxNodeLength) {
+		int k = 8;
+		Random rng = new Random(seed);
+		List<String> kmerPool = new ArrayList<>();
+		for (int i = 0; i < kmers; i++) {
+			kmerPool.add(randomBases(rng, k));
+		}
+		List<KmerPathNode> list = new ArrayList<>();
+		while (list.size() < nodeCount) {
+			StringBuilder sb = new StringBuilder(kmerPool.get(rng.nextInt(kmerPool.size())));
+			int length = 1 + rng.nextInt(maxNodeLength);
+			if (length > 1) {
+				sb.append(randomBases(rng, length - 2));
+				sb.append(kmerPool.get(rng.nextInt(kmerPool.size())));
+			}
+			int start = 1 + rng.nextInt(200);
+			int end = start + rng.nextInt(20);
+			KmerPathNode node = KPN(k, sb.toString(), start, end, rng.nextInt(8) == 0, 1 + rng.nextInt(10));
+			boolean overlapsExisting = false;
+			for (KmerPathNode existing : list) {
+				overlapsExisting |= existing.firstKmer() == node.firstKmer() && IntervalUtil.overlapsClosed(existing.firstStart(), existing.firstEnd(), node.firstStart(), node.firstEnd());
+				overlapsExisting |= existing.lastKmer() == node.lastKmer() && IntervalUtil.overlapsClosed(existing.lastStart(), existing.lastEnd(), node.lastStart(), node.lastEnd());
+			}
+			if (!overlapsExisting) {
+				list.add(node);
+			}
+		}
+		for (KmerPathNode prev : list) {
+			for (KmerPathNode next : list) {
+				if (prev != next && IntervalUtil.overlapsClosed(prev.lastStart() + 1, prev.lastEnd() + 1, next.firstStart(), next.firstEnd()) && rng.nextInt(4) != 0) {
+					KmerPathNode.addEdge(prev, next);
+				}
+			}
+		}
+		list.sort(KmerNodeUtil.ByFirstStart);
+		return list;
+	}
+	private static String randomBases(Random rng, int length) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			sb.append("ACGT".charAt(rng.nextInt(4)));
+		}
+		return sb.toString();
+	}
+	/**
+	 * Calls contigs in the same manner as the assembler, returning the called contigs
+	 * as graph node offsets and intervals
+	 */
+	private static List<String> callContigs(List<KmerPathNode> graph, MemoizedContigCaller caller) {
+		Map<KmerPathNode, Integer> offset = new IdentityHashMap<>();
+		for (int i = 0; i < graph.size(); i++) {
+			offset.put(graph.get(i), i);
+		}
+		List<String> calls = new ArrayList<>();
+		int i = 0;
+		while (true) {
+			int unprocessedPosition = i < graph.size() ? graph.get(i).firstStart() : Integer.MAX_VALUE;
+			ArrayDeque<KmerPathSubnode> contig = caller.bestContig(unprocessedPosition);
+			if (contig == null && unprocessedPosition != Integer.MAX_VALUE) {
+				contig = caller.callBestContigStartingBefore(unprocessedPosition, unprocessedPosition - 50);
+			}
+			if (contig != null) {
+				calls.add(contig.stream()
+						.map(sn -> String.format("%d:%d-%d", offset.get(sn.node()), sn.firstStart(), sn.firstEnd()))
+						.collect(Collectors.joining(",")));
+				Set<KmerPathNode> called = contig.stream().map(sn -> sn.node()).collect(Collectors.toCollection(Sets::newIdentityHashSet));
+				caller.remove(called);
+				for (KmerPathNode node : called) {
+					node.remove();
+				}
+			} else if (i < graph.size()) {
+				for (; i < graph.size() && graph.get(i).firstStart() == unprocessedPosition; i++) {
+					if (graph.get(i).isValid()) {
+						caller.add(graph.get(i));
+					}
+				}
+			} else {
+				break;
+			}
+		}
+		return calls;
+	}
+	private static void assertMatchesTreeSetOrdering(long seed, int nodeCount, int kmers, int maxNodeLength) {
+		List<String> expected = callContigs(randomGraph(seed, nodeCount, kmers, maxNodeLength),
+				new MemoizedContigCaller(NonReferenceContigAssembler.ANCHORED_SCORE, 10, TreeSetOrdering::new));
+		List<String> actual = callContigs(randomGraph(seed, nodeCount, kmers, maxNodeLength),
+				new MemoizedContigCaller(NonReferenceContigAssembler.ANCHORED_SCORE, 10));
+		Assert.assertFalse(expected.isEmpty());
+		assertEquals(expected, actual);
+	}
+	@Test
+	public void heap_ordering_should_match_treeset_ordering_random_graph() {
+		for (int seed = 0; seed < 16; seed++) {
+			assertMatchesTreeSetOrdering(seed, 200, 1000, 8);
+		}
+	}
+	@Test
+	public void heap_ordering_should_match_treeset_ordering_repetitive_graph() {
+		for (int seed = 0; seed < 16; seed++) {
+			assertMatchesTreeSetOrdering(seed, 100, 4, 3);
+		}
+	}
 }
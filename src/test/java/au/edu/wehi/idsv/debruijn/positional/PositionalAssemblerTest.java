@@ -1,12 +1,17 @@
 package au.edu.wehi.idsv.debruijn.positional;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import org.junit.Test;
 
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 
 import au.edu.wehi.idsv.AssemblyAttributes;
@@ -143,4 +148,130 @@ public class PositionalAssemblerTest extends TestHelper {
 			assertEquals(BreakendDirection.Forward, new AssemblyAttributes(r).getAssemblyDirection());
 		}
 	}
+	private List<DirectedEvidence> independentBreakends(int readsPerBreakend, int... positions) {
+		List<DirectedEvidence> input = new ArrayList<DirectedEvidence>();
+		for (int position : positions) {
+			for (int i = 0; i < readsPerBreakend; i++) {
+				SAMRecord r = withSequence("ACGTTGGTTA", Read(0, position, "5M5S"))[0];
+				r.setReadName(String.format("r%d-%d", position, i));
+				input.add(SCE(FWD, r));
+			}
+		}
+		input.sort(DirectedEvidenceOrder.ByStartEnd);
+		return input;
+	}
+	private static List<String> summarise(List<SAMRecord> assemblies) {
+		return assemblies.stream()
+				.map(r -> String.format("%d %s %s", r.getAlignmentStart(), r.getCigarString(), S(r.getReadBases())))
+				.sorted()
+				.collect(Collectors.toList());
+	}
+	@Test
+	public void component_parallel_assembly_should_match_sequential_assembly() {
+		ProcessingContext pc = getContext();
+		AssemblyEvidenceSource aes = AES(pc);
+		pc.getAssemblyParameters().k = 4;
+		List<DirectedEvidence> input = independentBreakends(300, 1000, 3500, 6000, 8500);
+		List<SAMRecord> sequential = Lists.newArrayList(new PositionalAssembler(pc, aes, new SequentialIdGenerator("asm"), input.iterator()));
+		pc.getAssemblyParameters().positional.componentParallelism = 4;
+		List<SAMRecord> parallel = Lists.newArrayList(new PositionalAssembler(pc, aes, new SequentialIdGenerator("asm"), input.iterator()));
+		assertEquals(4, parallel.size());
+		assertEquals(summarise(sequential), summarise(parallel));
+	}
+	@Test
+	public void component_parallel_assembly_should_stream_final_component() {
+		ProcessingContext pc = getContext();
+		AssemblyEvidenceSource aes = AES(pc);
+		pc.getAssemblyParameters().k = 4;
+		List<DirectedEvidence> input = independentBreakends(10, 1000, 2000, 3000, 4000, 5000, 6000, 7000, 8000, 9000);
+		List<SAMRecord> sequential = Lists.newArrayList(new PositionalAssembler(pc, aes, new SequentialIdGenerator("asm"), input.iterator()));
+		pc.getAssemblyParameters().positional.componentParallelism = 4;
+		pc.getAssemblyParameters().positional.maxComponentEvidence = 1;
+		AtomicInteger consumed = new AtomicInteger();
+		PositionalAssembler pa = new PositionalAssembler(pc, aes, new SequentialIdGenerator("asm"), Iterators.transform(input.iterator(), e -> {
+			consumed.incrementAndGet();
+			return e;
+		}));
+		List<SAMRecord> parallel = new ArrayList<>();
+		parallel.add(pa.next());
+		// the final component is not buffered before assembly starts
+		assertTrue(consumed.get() < input.size());
+		Iterators.addAll(parallel, pa);
+		assertEquals(summarise(sequential), summarise(parallel));
+		for (int i = 0; i < parallel.size(); i++) {
+			assertEquals("asm" + (i + 1), parallel.get(i).getReadName());
+		}
+	}
+	@Test
+	public void component_parallel_assembly_should_name_assemblies_in_output_order() {
+		ProcessingContext pc = getContext();
+		AssemblyEvidenceSource aes = AES(pc);
+		pc.getAssemblyParameters().k = 4;
+		pc.getAssemblyParameters().positional.componentParallelism = 4;
+		List<DirectedEvidence> input = independentBreakends(300, 1000, 3500, 6000, 8500);
+		List<SAMRecord> parallel = Lists.newArrayList(new PositionalAssembler(pc, aes, new SequentialIdGenerator("asm"), input.iterator()));
+		for (int i = 0; i < parallel.size(); i++) {
+			assertEquals("asm" + (i + 1), parallel.get(i).getReadName());
+			if (i > 0) {
+				assertTrue(parallel.get(i - 1).getAlignmentStart() < parallel.get(i).getAlignmentStart());
+			}
+		}
+	}
+	@Test
+	public void should_skip_and_record_regions_exceeding_assembly_budget() {
+		ProcessingContext pc = getContext();
+		AssemblyEvidenceSource aes = AES(pc);
+		pc.getAssemblyParameters().k = 4;
+		Random rng = new Random(0);
+		List<DirectedEvidence> input = new ArrayList<DirectedEvidence>();
+		for (int i = 0; i < 1000; i++) {
+			byte[] seq = new byte[15];
+			for (int j = 0; j < seq.length; j++) {
+				seq[j] = "ACGT".getBytes()[rng.nextInt(4)];
+			}
+			for (int j = 0; j < 5; j++) {
+				SAMRecord r = withSequence(seq, Read(0, 1000 + 10 * i, "5M10S"))[0];
+				r.setReadName(String.format("r%d-%d", i, j));
+				input.add(SCE(FWD, r));
+			}
+		}
+		input.sort(DirectedEvidenceOrder.ByStartEnd);
+		List<SAMRecord> unbudgeted = Lists.newArrayList(new PositionalAssembler(pc, aes, new SequentialIdGenerator("asm"), input.iterator()));
+		assertEquals(0, aes.getThrottledIntervals().size());
+		pc.getAssemblyParameters().positional.maxLiveNodes = 16;
+		List<SAMRecord> budgeted = Lists.newArrayList(new PositionalAssembler(pc, aes, new SequentialIdGenerator("asm"), input.iterator()));
+		assertTrue(budgeted.size() < unbudgeted.size());
+		assertTrue(aes.getThrottledIntervals().size() > 0);
+		assertTrue(aes.getThrottledIntervals().overlaps(0, 1000, 1500));
+	}
+	@Test
+	public void should_assemble_kmers_longer_than_32_bases() {
+		Random rng = new Random(0);
+		String repeat = randomSequence(rng, 36);
+		String anchor = randomSequence(rng, 80);
+		String breakend = randomSequence(rng, 20) + repeat + randomSequence(rng, 20) + repeat + randomSequence(rng, 8);
+		for (int k : new int[] { 41, 51 }) {
+			ProcessingContext pc = getContext();
+			pc.getAssemblyParameters().anchorLength = 1;
+			AssemblyEvidenceSource aes = AES(pc);
+			pc.getAssemblyParameters().k = k;
+			List<DirectedEvidence> input = new ArrayList<DirectedEvidence>();
+			for (int i = 0; i < 3; i++) {
+				SAMRecord r = withSequence(anchor + breakend, Read(0, 100, "80M120S"))[0];
+				r.setReadName("r" + i);
+				input.add(SCE(FWD, r));
+			}
+			List<SingleReadEvidence> r = asAssemblyEvidence(aes, Lists.newArrayList(new PositionalAssembler(pc, aes, new SequentialIdGenerator("asm"), input.iterator())));
+			assertEquals(1, r.size());
+			assertEquals(new BreakendSummary(0, FWD, 179), r.get(0).getBreakendSummary());
+			assertEquals(breakend, S(r.get(0).getBreakendSequence()));
+		}
+	}
+	private static String randomSequence(Random rng, int length) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			sb.append("ACGT".charAt(rng.nextInt(4)));
+		}
+		return sb.toString();
+	}
 }
@@ -5,6 +5,7 @@ import static org.junit.Assert.assertEquals;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -17,15 +18,19 @@ public class RectangleGraphMaximalCliqueCalculatorTest {
 	private RectangleGraphNode N(long startX, long endX, long startY, long endY, int weight) {
 		return new RectangleGraphNode(startX, endX, startY, endY, weight);
 	}
-	RectangleGraphMaximalCliqueCalculator graph; 
-	private RectangleGraphNode[] getCliques(RectangleGraphNode[] nodes) {
-		Arrays.sort(nodes, 0, nodes.length, RectangleGraphNode.ByStartXYEndXY);
-		graph = new RectangleGraphMaximalCliqueCalculator();
+	private static List<RectangleGraphNode> getCliques(RectangleGraphCliqueCalculator graph, RectangleGraphNode[] nodes) {
 		List<RectangleGraphNode> result = Lists.newArrayList();
 		for (int i = 0; i < nodes.length; i++) {
 			result.addAll(graph.next(nodes[i]));
 		}
 		result.addAll(graph.complete());
+		return result;
+	}
+	private RectangleGraphNode[] getCliques(RectangleGraphNode[] nodes) {
+		Arrays.sort(nodes, 0, nodes.length, RectangleGraphNode.ByStartXYEndXY);
+		List<RectangleGraphNode> result = getCliques(new RectangleGraphMaximalCliqueCalculator(), nodes);
+		// indexed scanline should call the same cliques in the same order
+		assertEquals(result.toString(), getCliques(new RectangleGraphIndexedMaximalCliqueCalculator(), nodes).toString());
 		return result.toArray(new RectangleGraphNode[0]);
 	}
 	private RectangleGraphNode[] flipXY(RectangleGraphNode[] a) {
@@ -273,4 +278,21 @@ public class RectangleGraphMaximalCliqueCalculatorTest {
 		RectangleGraphNode[] cliques = getCliques(nodes.toArray(new RectangleGraphNode[nodes.size()]));
 		assertEquals(size * size, cliques.length); // clique at every grid position
 	}
+	@Test
+	public void indexed_scanline_should_match_linked_list_scanline() {
+		Random rng = new Random(0);
+		for (int size : new int[] { 4, 16, 64, 1024 }) {
+			for (int maxWidth : new int[] { 1, 4, 32 }) {
+				for (int count : new int[] { 1, 10, 100, 1000 }) {
+					RectangleGraphNode[] nodes = new RectangleGraphNode[count];
+					for (int i = 0; i < count; i++) {
+						long startX = rng.nextInt(size);
+						long startY = rng.nextInt(size);
+						nodes[i] = N(startX, startX + rng.nextInt(maxWidth), startY, startY + rng.nextInt(maxWidth), 1 + rng.nextInt(3));
+					}
+					getCliques(nodes);
+				}
+			}
+		}
+	}
 }
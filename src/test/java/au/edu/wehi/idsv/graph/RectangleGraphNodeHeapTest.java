@@ -0,0 +1,80 @@
+package au.edu.wehi.idsv.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Comparator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class RectangleGraphNodeHeapTest {
+	@Test
+	public void poll_should_return_nodes_in_order() {
+		RectangleGraphNodeStore store = new RectangleGraphNodeStore();
+		RectangleGraphNodeHeap heap = new RectangleGraphNodeHeap(store::compareByEndXStartYEndY);
+		for (long endX : new long[] { 5, 3, 8, 1, 9, 2 }) {
+			heap.add(store.add(0, endX, 0, 0, 1));
+		}
+		assertEquals(6, heap.size());
+		for (long endX : new long[] { 1, 2, 3, 5, 8, 9 }) {
+			assertEquals(endX, store.endX(heap.poll()));
+		}
+		assertTrue(heap.isEmpty());
+		assertEquals(RectangleGraphNodeStore.NO_NODE, heap.peek());
+	}
+	@Test
+	public void add_should_ignore_node_already_in_heap() {
+		RectangleGraphNodeStore store = new RectangleGraphNodeStore();
+		RectangleGraphNodeHeap heap = new RectangleGraphNodeHeap(store::compareByEndXStartYEndY);
+		int id = store.add(1, 2, 3, 4, 5);
+		assertTrue(heap.add(id));
+		assertFalse(heap.add(id));
+		assertEquals(1, heap.size());
+	}
+	@Test
+	public void should_match_treeset() {
+		Random rng = new Random(0);
+		RectangleGraphNodeStore store = new RectangleGraphNodeStore();
+		Comparator<Integer> order = (a, b) -> {
+			int cmp = store.compareByStartXYEndXY(a, b);
+			if (cmp == 0) cmp = Integer.compare(a, b);
+			return cmp;
+		};
+		RectangleGraphNodeHeap heap = new RectangleGraphNodeHeap(order::compare);
+		TreeSet<Integer> expected = new TreeSet<>(order);
+		for (int i = 0; i < 10000; i++) {
+			switch (rng.nextInt(4)) {
+				case 0:
+				case 1:
+					int id = store.add(rng.nextInt(16), rng.nextInt(16), rng.nextInt(16), rng.nextInt(16), 1);
+					assertTrue(heap.add(id));
+					expected.add(id);
+					break;
+				case 2:
+					if (!expected.isEmpty()) {
+						int head = heap.poll();
+						assertEquals((int)expected.pollFirst(), head);
+						store.release(head);
+					}
+					break;
+				case 3:
+					if (store.capacity() > 0) {
+						int remove = rng.nextInt(store.capacity());
+						assertEquals(expected.remove(remove), heap.remove(remove));
+						if (!heap.contains(remove) && store.weight(remove) > 0) {
+							store.release(remove);
+						}
+					}
+					break;
+			}
+			assertEquals(expected.size(), heap.size());
+			assertEquals(expected.size(), store.size());
+			if (!expected.isEmpty()) {
+				assertEquals((int)expected.first(), heap.peek());
+			}
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package au.edu.wehi.idsv.graph;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import au.edu.wehi.idsv.util.WindowedSortingIterator;
+
+public class RectangleGraphNodeStoreMaximalCliqueIteratorTest {
+	private static List<RectangleGraphNode> callObjects(List<RectangleGraphNode> nodes, long windowSize) {
+		return Lists.newArrayList(new RectangleGraphMaximalCliqueIterator(
+				new RectangleGraphNodeMergingIterator(RectangleGraphNode.ByStartXYEndXY,
+						new WindowedSortingIterator<RectangleGraphNode>(nodes.iterator(), n -> n.startX, windowSize, RectangleGraphNode.ByStartXYEndXY))));
+	}
+	private static List<RectangleGraphNode> callStore(List<RectangleGraphNode> nodes, long windowSize) {
+		return Lists.newArrayList(new RectangleGraphNodeStoreMaximalCliqueIterator<RectangleGraphNode>(
+				nodes.iterator(),
+				(n, store) -> n.weight % 7 == 0 ? RectangleGraphNodeStore.NO_NODE : store.add(n.startX, n.endX, n.startY, n.endY, n.weight),
+				windowSize));
+	}
+	@Test
+	public void should_match_object_pipeline() {
+		Random rng = new Random(0);
+		for (int windowSize : new int[] { 0, 1, 4 }) {
+			for (int size : new int[] { 4, 16, 64 }) {
+				for (int count : new int[] { 1, 10, 100, 1000 }) {
+					List<RectangleGraphNode> nodes = new ArrayList<>();
+					long x = 0;
+					for (int i = 0; i < count; i++) {
+						x += rng.nextInt(3);
+						// jitter start position within the sorting window
+						long startX = Math.max(0, x - rng.nextInt(windowSize + 1));
+						long startY = rng.nextInt(size);
+						nodes.add(new RectangleGraphNode(startX, startX + rng.nextInt(size), startY, startY + rng.nextInt(size), 1 + rng.nextInt(10)));
+						if (rng.nextInt(4) == 0) {
+							// duplicate coordinates
+							nodes.add(new RectangleGraphNode(startX, nodes.get(nodes.size() - 1).endX, startY, nodes.get(nodes.size() - 1).endY, 1 + rng.nextInt(10)));
+						}
+					}
+					List<RectangleGraphNode> filtered = new ArrayList<>();
+					for (RectangleGraphNode n : nodes) {
+						if (n.weight % 7 != 0) filtered.add(n);
+					}
+					assertEquals(callObjects(filtered, windowSize).toString(), callStore(nodes, windowSize).toString());
+				}
+			}
+		}
+	}
+	@Test(expected = IllegalStateException.class)
+	public void should_fail_if_outside_sorting_window() {
+		List<RectangleGraphNode> nodes = Lists.newArrayList(
+				new RectangleGraphNode(10, 11, 1, 2, 1),
+				new RectangleGraphNode(20, 21, 1, 2, 1),
+				new RectangleGraphNode(1, 2, 1, 2, 1));
+		callStore(nodes, 1);
+	}
+}
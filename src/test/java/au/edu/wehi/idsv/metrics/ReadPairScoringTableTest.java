@@ -0,0 +1,121 @@
+package au.edu.wehi.idsv.metrics;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+import au.edu.wehi.idsv.TestHelper;
+import au.edu.wehi.idsv.model.EmpiricalLlrModel;
+import au.edu.wehi.idsv.model.EmpiricalReferenceLikelihoodModel;
+import au.edu.wehi.idsv.model.FastEmpiricalReferenceLikelihoodModel;
+import au.edu.wehi.idsv.model.VariantScoringModel;
+import au.edu.wehi.idsv.util.MathUtil;
+import gridss.analysis.CigarDetailMetrics;
+import gridss.analysis.IdsvMetrics;
+import gridss.analysis.InsertSizeDistribution;
+import gridss.analysis.MapqMetrics;
+import picard.analysis.InsertSizeMetrics;
+
+public class ReadPairScoringTableTest extends TestHelper {
+	/**
+	 * Direct calculation from the insert size distribution
+	 */
+	private static double readPairFoldedCumulativeDistribution(IdsvMetrics idsvMetrics, InsertSizeDistribution insertDistribution, int fragmentSize) {
+		double pairsFromFragmentDistribution = 0;
+		if (fragmentSize > 0) {
+			if (fragmentSize >= insertDistribution.getSupportLowerBound() && fragmentSize <= insertDistribution.getSupportUpperBound()) {
+				double prUpper = 1.0 - insertDistribution.cumulativeProbability(fragmentSize - 1);
+				double prLower = insertDistribution.cumulativeProbability(fragmentSize);
+				double pr = Math.min(prUpper, prLower);
+				pairsFromFragmentDistribution = pr * insertDistribution.getTotalMappedPairs();
+			}
+		}
+		double totalPairs = idsvMetrics.READ_PAIRS_BOTH_MAPPED;
+		double dpPairs = totalPairs - insertDistribution.getTotalMappedPairs() + pairsFromFragmentDistribution;
+		return dpPairs / totalPairs;
+	}
+	private static void assertBitIdentical(double expected, double actual) {
+		assertEquals(Double.doubleToLongBits(expected), Double.doubleToLongBits(actual));
+	}
+	private static IdsvSamFileMetrics randomMetrics(Random rng) {
+		int n = 1 + rng.nextInt(200);
+		int[] singletons = new int[n];
+		double[] counts = new double[n];
+		for (int i = 0; i < n; i++) {
+			// unsorted, with duplicates
+			singletons[i] = 1 + rng.nextInt(1000);
+			counts[i] = 1 + rng.nextInt(1000);
+		}
+		InsertSizeDistribution isd = new InsertSizeDistribution(singletons, counts);
+		IdsvMetrics im = new IdsvMetrics();
+		im.READ_PAIRS_BOTH_MAPPED = isd.getTotalMappedPairs() + rng.nextInt(10000);
+		im.READ_PAIRS_ONE_MAPPED = rng.nextInt(10000);
+		im.READ_PAIRS_ZERO_MAPPED = rng.nextInt(10000);
+		im.READ_PAIRS = im.READ_PAIRS_BOTH_MAPPED + im.READ_PAIRS_ONE_MAPPED + im.READ_PAIRS_ZERO_MAPPED;
+		im.READS = 2 * im.READ_PAIRS;
+		im.MAPPED_READS = im.READS - im.READ_PAIRS_ONE_MAPPED - 2 * im.READ_PAIRS_ZERO_MAPPED;
+		return new IdsvSamFileMetrics(new InsertSizeMetrics(), im, new MapqMetrics(), isd, new ArrayList<CigarDetailMetrics>());
+	}
+	private static void assertMatchesDirectCalculation(IdsvSamFileMetrics metrics) {
+		IdsvMetrics im = metrics.getIdsvMetrics();
+		InsertSizeDistribution isd = metrics.getInsertSizeDistribution();
+		for (int fragmentSize = -2; fragmentSize <= isd.getSupportUpperBound() + 2; fragmentSize++) {
+			double expected = readPairFoldedCumulativeDistribution(im, isd, fragmentSize);
+			assertBitIdentical(expected, metrics.readPairFoldedCumulativeDistribution(fragmentSize));
+			assertBitIdentical(MathUtil.prToPhred(expected), metrics.getReadPairPhred(fragmentSize));
+		}
+	}
+	@Test
+	public void read_pair_phred_should_be_bit_identical_to_direct_calculation() {
+		assertMatchesDirectCalculation(new MockMetrics());
+		Random rng = new Random(0);
+		for (int i = 0; i < 100; i++) {
+			assertMatchesDirectCalculation(randomMetrics(rng));
+		}
+	}
+	@Test
+	public void unmapped_mate_scores_should_be_bit_identical_to_direct_calculation() {
+		Random rng = new Random(0);
+		for (int i = 0; i < 100; i++) {
+			IdsvSamFileMetrics metrics = randomMetrics(rng);
+			IdsvMetrics im = metrics.getIdsvMetrics();
+			for (int mapq = 0; mapq < 60; mapq += 7) {
+				assertBitIdentical(
+						Math.min(MathUtil.prToPhred((double)im.READ_PAIRS_ONE_MAPPED / (double)(im.MAPPED_READS)), mapq),
+						new FastEmpiricalReferenceLikelihoodModel().scoreUnmappedMate(metrics, mapq));
+				assertBitIdentical(
+						MathUtil.phredOr(MathUtil.prToPhred((double)im.READ_PAIRS_ONE_MAPPED / (double)(im.READ_PAIRS - im.READ_PAIRS_ZERO_MAPPED)), mapq),
+						new EmpiricalReferenceLikelihoodModel().scoreUnmappedMate(metrics, mapq));
+				double readPairs = im.READ_PAIRS - im.READ_PAIRS_ZERO_MAPPED;
+				double prEgivenMR = im.READ_PAIRS_ONE_MAPPED / readPairs;
+				double prEgivenMV = 0.5 * im.READ_PAIRS_BOTH_MAPPED / readPairs;
+				// scoreUnmappedMate resolves to the llr(double, double, double) overload
+				double prM = mapq;
+				assertBitIdentical(
+						Math.log10((prEgivenMR + prM * (prEgivenMV - prEgivenMR)) / prEgivenMR),
+						new EmpiricalLlrModel().scoreUnmappedMate(metrics, mapq));
+			}
+		}
+	}
+	@Test
+	public void read_pair_scores_should_be_bit_identical_to_direct_calculation() {
+		Random rng = new Random(0);
+		for (int i = 0; i < 20; i++) {
+			IdsvSamFileMetrics metrics = randomMetrics(rng);
+			for (VariantScoringModel model : new VariantScoringModel[] { new FastEmpiricalReferenceLikelihoodModel(), new EmpiricalReferenceLikelihoodModel() }) {
+				for (int fragmentSize = 0; fragmentSize < 1100; fragmentSize += 3) {
+					double phred = MathUtil.prToPhred(readPairFoldedCumulativeDistribution(metrics.getIdsvMetrics(), metrics.getInsertSizeDistribution(), fragmentSize));
+					double expected = model instanceof FastEmpiricalReferenceLikelihoodModel ? Math.min(Math.min(phred, 20), 30) : MathUtil.phredOr(phred, 20, 30);
+					assertBitIdentical(expected, model.scoreReadPair(metrics, fragmentSize, 20, 30));
+				}
+			}
+		}
+	}
+	@Test(expected = IllegalStateException.class)
+	public void read_pair_phred_should_require_insert_size_distribution() {
+		new ReadPairScoringTable(new IdsvMetrics(), null).getReadPairPhred(1);
+	}
+}
@@ -1,12 +1,17 @@
 package au.edu.wehi.idsv.sam;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.util.List;
+import java.util.Random;
 
 import org.junit.Test;
 
+import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.TextCigarCodec;
 
 
@@ -38,4 +43,121 @@ public class ChimericAlignmentTest {
 		assertEquals(1, new ChimericAlignment(null, 0, false, TextCigarCodec.decode("1S2M3S4H"), 0, 0).getFirstAlignedBaseReadOffset());
 		assertEquals(7, new ChimericAlignment(null, 0, true, TextCigarCodec.decode("1S2M3S4H"), 0, 0).getFirstAlignedBaseReadOffset());
 	}
+	@Test
+	public void should_allow_nm_field_to_be_omitted() {
+		ChimericAlignment ca = new ChimericAlignment("chr1,100,+,10M,60");
+		assertEquals(null, ca.nm);
+		assertEquals(60, ca.mapq);
+	}
+	@Test
+	public void should_treat_non_numeric_nm_as_missing() {
+		assertEquals(null, new ChimericAlignment("chr1,100,+,10M,60,NA").nm);
+		assertEquals(null, new ChimericAlignment("chr1,100,+,10M,60,").nm);
+	}
+	@Test
+	public void should_ignore_fields_after_nm() {
+		ChimericAlignment ca = new ChimericAlignment("chr1,100,+,10M,60,3,extra");
+		assertEquals(3, (int)ca.nm);
+	}
+	@Test
+	public void should_ignore_empty_and_whitespace_elements() {
+		List<ChimericAlignment> list = ChimericAlignment.getChimericAlignments(";chr1,100,+,10M,60,0;; chr2,200,-,5S5M,10,1 ;;");
+		assertEquals(2, list.size());
+		assertEquals("chr1", list.get(0).rname);
+		assertEquals("chr2", list.get(1).rname);
+		assertEquals(200, list.get(1).pos);
+		assertTrue(list.get(1).isNegativeStrand);
+	}
+	@Test
+	public void should_treat_any_strand_other_than_minus_as_positive() {
+		assertFalse(new ChimericAlignment("chr1,100,+,10M,60,0").isNegativeStrand);
+		assertFalse(new ChimericAlignment("chr1,100,--,10M,60,0").isNegativeStrand);
+		assertTrue(new ChimericAlignment("chr1,100,-,10M,60,0").isNegativeStrand);
+	}
+	@Test
+	public void should_decode_unusual_cigars() {
+		for (String cigar : new String[] { "*", "10H5S3=1X2P4N1I2D0M6S7H", "0M", "2147483647N" }) {
+			ChimericAlignment ca = new ChimericAlignment("chr1,100,+," + cigar + ",60,0");
+			assertEquals(TextCigarCodec.decode(cigar), ca.cigar);
+		}
+		assertEquals(0, new ChimericAlignment("chr1,100,+,*,60,0").cigar.numCigarElements());
+	}
+	@Test
+	public void should_decode_signed_integers() {
+		assertEquals(-5, new ChimericAlignment("chr1,-5,+,1M,+3,0").pos);
+		assertEquals(3, new ChimericAlignment("chr1,-5,+,1M,+3,0").mapq);
+	}
+	@Test
+	public void should_reject_malformed_alignments() {
+		for (String sa : new String[] {
+				"chr1",
+				"chr1,100,+,10M",
+				"chr1,100,+,10M,",
+				"chr1,,+,10M,60,0",
+				"chr1,x100,+,10M,60,0",
+				"chr1,100,+,10M,sixty,0",
+				"chr1,21474836470,+,10M,60,0",
+				"chr1,100,+,M,60,0",
+				"chr1,100,+,10,60,0",
+				"chr1,100,+,10Q,60,0",
+				"chr1,100,+,99999999999M,60,0",
+				"chr1,-,+,10M,60,0",
+				}) {
+			try {
+				ChimericAlignment.getChimericAlignments(sa);
+				fail(sa);
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+	@Test
+	public void should_match_split_based_parsing() {
+		Random rng = new Random(0);
+		String ops = "MIDNSHP=X";
+		for (int i = 0; i < 1000; i++) {
+			StringBuilder cigar = new StringBuilder();
+			for (int j = 1 + rng.nextInt(8); j > 0; j--) {
+				cigar.append(rng.nextInt(10000));
+				cigar.append(ops.charAt(rng.nextInt(ops.length())));
+			}
+			String str = String.format("chr%d,%d,%s,%s,%d,%d", rng.nextInt(25), rng.nextInt(Integer.MAX_VALUE), rng.nextBoolean() ? "+" : "-", cigar, rng.nextInt(256), rng.nextInt(100));
+			String[] splits = str.split(",");
+			ChimericAlignment ca = new ChimericAlignment(str);
+			assertEquals(splits[0], ca.rname);
+			assertEquals(Integer.parseInt(splits[1]), ca.pos);
+			assertEquals("-".equals(splits[2]), ca.isNegativeStrand);
+			assertEquals(TextCigarCodec.decode(splits[3]), ca.cigar);
+			assertEquals(Integer.parseInt(splits[4]), ca.mapq);
+			assertEquals(Integer.parseInt(splits[5]), (int)ca.nm);
+			assertEquals(str, ca.toString());
+		}
+	}
+	@Test
+	public void should_cache_parsed_record_sa_tag() {
+		SAMRecord r = new SAMRecord(null);
+		r.setAttribute("SA", "chr1,100,+,10M,60,0;chr2,200,-,10M,60,0");
+		List<ChimericAlignment> list = ChimericAlignment.getChimericAlignments(r);
+		assertEquals(2, list.size());
+		assertSame(list, ChimericAlignment.getChimericAlignments(r));
+		assertEquals(list, ChimericAlignment.getChimericAlignments(r.deepCopy()));
+	}
+	@Test
+	public void should_reparse_updated_record_sa_tag() {
+		SAMRecord r = new SAMRecord(null);
+		r.setAttribute("SA", "chr1,100,+,10M,60,0;chr2,200,-,10M,60,0");
+		assertEquals(2, ChimericAlignment.getChimericAlignments(r).size());
+		r.setAttribute("SA", "chr3,300,+,10M,60,0");
+		List<ChimericAlignment> list = ChimericAlignment.getChimericAlignments(r);
+		assertEquals(1, list.size());
+		assertEquals("chr3", list.get(0).rname);
+		r.setAttribute("SA", null);
+		assertEquals(0, ChimericAlignment.getChimericAlignments(r).size());
+	}
+	@Test(expected = UnsupportedOperationException.class)
+	public void record_alignments_should_be_unmodifiable() {
+		SAMRecord r = new SAMRecord(null);
+		r.setAttribute("SA", "chr1,100,+,10M,60,0");
+		ChimericAlignment.getChimericAlignments(r).clear();
+	}
 }
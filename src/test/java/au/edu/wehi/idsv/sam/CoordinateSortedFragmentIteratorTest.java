@@ -0,0 +1,158 @@
+package au.edu.wehi.idsv.sam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import au.edu.wehi.idsv.IntermediateFilesTest;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordCoordinateComparator;
+
+public class CoordinateSortedFragmentIteratorTest extends IntermediateFilesTest {
+	private long spilled;
+	private List<List<SAMRecord>> group(int maxRecordsInRam, SAMRecord[]... records) {
+		List<SAMRecord> sorted = new ArrayList<>();
+		for (SAMRecord[] r : records) {
+			sorted.addAll(Arrays.asList(r));
+		}
+		sorted.sort(new SAMRecordCoordinateComparator());
+		try (CoordinateSortedFragmentIterator it = new CoordinateSortedFragmentIterator(sorted.iterator(), getHeader(), maxRecordsInRam, testFolder.getRoot())) {
+			List<List<SAMRecord>> result = Lists.newArrayList(it);
+			spilled = it.getSpilledFragmentCount();
+			return result;
+		}
+	}
+	private static List<String> names(List<List<SAMRecord>> fragments) {
+		return fragments.stream()
+				.map(f -> f.get(0).getReadName() + ":" + f.size())
+				.collect(Collectors.toList());
+	}
+	private static SAMRecord[] split(String readName) {
+		SAMRecord primary = withName(readName, Read(0, 100, "50M50S"))[0];
+		SAMRecord supp = withName(readName, Read(1, 500, "50S50M"))[0];
+		supp.setSupplementaryAlignmentFlag(true);
+		primary.setAttribute("SA", new ChimericAlignment(supp).toString() + ";");
+		supp.setAttribute("SA", new ChimericAlignment(primary).toString() + ";");
+		return new SAMRecord[] { primary, supp };
+	}
+	@Test
+	public void should_group_read_pairs() {
+		List<List<SAMRecord>> result = group(1000,
+				withName("a", DP(0, 1, "10M", true, 1, 1000, "10M", false)),
+				withName("b", DP(0, 500, "10M", true, 0, 600, "10M", false)));
+		assertEquals(2, result.size());
+		assertEquals(Lists.newArrayList("b:2", "a:2"), names(result));
+	}
+	@Test
+	public void should_return_unpaired_reads_immediately() {
+		List<List<SAMRecord>> result = group(1000,
+				withName("a", Read(0, 1, "10M")),
+				withName("b", Read(0, 2, "10M")));
+		assertEquals(Lists.newArrayList("a:1", "b:1"), names(result));
+	}
+	@Test
+	public void should_wait_for_split_read_alignments() {
+		List<List<SAMRecord>> result = group(1000,
+				split("a"),
+				withName("b", Read(0, 200, "10M")));
+		assertEquals(Lists.newArrayList("b:1", "a:2"), names(result));
+	}
+	@Test
+	public void should_return_incomplete_fragments() {
+		SAMRecord[] dp = withName("a", DP(0, 1, "10M", true, 1, 1000, "10M", false));
+		List<List<SAMRecord>> result = group(1000, new SAMRecord[] { dp[0] });
+		assertEquals(Lists.newArrayList("a:1"), names(result));
+	}
+	@Test
+	public void should_return_unpending_secondary_alignment_by_itself() {
+		SAMRecord secondary = withName("a", Read(0, 1000, "10M"))[0];
+		secondary.setSecondaryAlignment(true);
+		SAMRecord pendingSecondary = withName("b", Read(0, 101, "10M"))[0];
+		pendingSecondary.setSecondaryAlignment(true);
+		List<List<SAMRecord>> result = group(1000, withName("a", Read(0, 1, "10M")), split("b"), new SAMRecord[] { secondary, pendingSecondary });
+		assertEquals(Lists.newArrayList("a:1", "a:1", "b:3"), names(result));
+	}
+	@Test
+	public void should_spill_to_disk() {
+		List<SAMRecord> records = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			records.addAll(Lists.newArrayList(withName("dp" + i, DP(0, 1 + i, "10M", true, 1, 1000 + i, "10M", false))));
+			records.addAll(Lists.newArrayList(split("sr" + i)));
+		}
+		List<List<SAMRecord>> expected = group(Integer.MAX_VALUE, records.toArray(new SAMRecord[0]));
+		List<List<SAMRecord>> result = group(10, records.toArray(new SAMRecord[0]));
+		assertTrue(spilled > 0);
+		assertEquals(200, expected.size());
+		assertEquals(200, result.size());
+		Comparator<String> c = Comparator.naturalOrder();
+		List<String> expectedNames = names(expected);
+		List<String> resultNames = names(result);
+		expectedNames.sort(c);
+		resultNames.sort(c);
+		assertEquals(expectedNames, resultNames);
+	}
+	@Test
+	public void should_not_retain_spilled_fragments_with_missing_mates() {
+		List<SAMRecord> sorted = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			// mate never encountered
+			sorted.add(withName("missing" + i, DP(0, 1 + i, "10M", true, 1, 1000 + i, "10M", false))[0]);
+			if (i % 10 == 0) {
+				sorted.addAll(Arrays.asList(withName("dp" + i, DP(0, 1 + i, "10M", true, 0, 50 + i, "10M", false))));
+			}
+		}
+		sorted.sort(new SAMRecordCoordinateComparator());
+		List<List<SAMRecord>> result = new ArrayList<>();
+		try (CoordinateSortedFragmentIterator it = new CoordinateSortedFragmentIterator(getHeader(), 10, testFolder.getRoot())) {
+			for (SAMRecord r : sorted) {
+				it.add(r);
+				assertTrue(it.getPendingRecordCount() <= 10);
+				while (it.hasNext()) {
+					result.add(it.next());
+				}
+			}
+			it.finishAdding();
+			while (it.hasNext()) {
+				result.add(it.next());
+			}
+			assertTrue(it.getSpilledFragmentCount() > 0);
+		}
+		assertEquals(1100, result.size());
+		for (List<SAMRecord> f : result) {
+			assertEquals(f.get(0).getReadName().startsWith("dp") ? 2 : 1, f.size());
+		}
+	}
+	@Test
+	public void should_group_pushed_records() {
+		List<SAMRecord> sorted = new ArrayList<>();
+		sorted.addAll(Arrays.asList(withName("a", DP(0, 1, "10M", true, 1, 1000, "10M", false))));
+		sorted.addAll(Arrays.asList(split("b")));
+		sorted.addAll(Arrays.asList(withName("c", Read(0, 2, "10M"))));
+		sorted.sort(new SAMRecordCoordinateComparator());
+		List<List<SAMRecord>> result = new ArrayList<>();
+		try (CoordinateSortedFragmentIterator it = new CoordinateSortedFragmentIterator(getHeader(), 1, testFolder.getRoot())) {
+			for (SAMRecord r : sorted) {
+				it.add(r);
+				while (it.hasNext()) {
+					result.add(it.next());
+				}
+			}
+			assertEquals(Lists.newArrayList("c:1"), names(result));
+			it.finishAdding();
+			while (it.hasNext()) {
+				result.add(it.next());
+			}
+		}
+		assertEquals(3, result.size());
+		assertTrue(names(result).containsAll(Lists.newArrayList("a:2", "b:2", "c:1")));
+	}
+}
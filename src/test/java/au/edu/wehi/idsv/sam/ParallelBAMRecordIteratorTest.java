@@ -0,0 +1,109 @@
+package au.edu.wehi.idsv.sam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import au.edu.wehi.idsv.IntermediateFilesTest;
+import htsjdk.samtools.SAMException;
+import htsjdk.samtools.SAMFileHeader.SortOrder;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordIterator;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.ValidationStringency;
+
+public class ParallelBAMRecordIteratorTest extends IntermediateFilesTest {
+	private static List<String> expected(File file) throws IOException {
+		try (SamReader reader = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT).open(file)) {
+			List<String> list = new ArrayList<>();
+			for (SAMRecord r : reader) {
+				list.add(r.getSAMString());
+			}
+			return list;
+		}
+	}
+	private static List<String> actual(File file) throws IOException {
+		try (SamReader reader = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT).open(file)) {
+			try (SAMRecordIterator it = new ParallelBAMRecordIterator(file, reader.getFileHeader(), ValidationStringency.SILENT)) {
+				List<String> list = new ArrayList<>();
+				while (it.hasNext()) {
+					list.add(it.next().getSAMString());
+				}
+				return list;
+			}
+		}
+	}
+	@Test
+	public void should_match_htsjdk_reader() throws IOException {
+		for (String filename : new String[] {
+				"src/test/resources/chr12.1527326.DEL1024.bam",
+				"src/test/resources/pacbiona12989chem1chr1_196132675-196183463.bam",
+				"src/test/resources/203541.bam",
+			}) {
+			File file = new File(filename);
+			List<String> expected = expected(file);
+			assertTrue(expected.size() > 0);
+			assertEquals(expected, actual(file));
+		}
+	}
+	@Test
+	public void should_decode_records_spanning_blocks() throws IOException {
+		Random rng = new Random(0);
+		List<SAMRecord> records = new ArrayList<>();
+		for (int i = 0; i < 20000; i++) {
+			SAMRecord r = Read(rng.nextInt(2), 1 + rng.nextInt(5000), String.format("%dM", 1 + rng.nextInt(1000)));
+			r.setReadName("r" + i);
+			byte[] bases = new byte[r.getCigar().getReadLength()];
+			for (int j = 0; j < bases.length; j++) {
+				bases[j] = "ACGT".getBytes()[rng.nextInt(4)];
+			}
+			r.setReadBases(bases);
+			r.setAttribute("XX", new String(bases));
+			records.add(r);
+		}
+		createBAM(input, SortOrder.coordinate, records);
+		List<String> expected = expected(input);
+		assertEquals(records.size(), expected.size());
+		assertEquals(expected, actual(input));
+	}
+	@Test
+	public void isBAMFile_should_require_bam_file() {
+		assertTrue(ParallelBAMRecordIterator.isBAMFile(new File("src/test/resources/203541.bam")));
+		assertFalse(ParallelBAMRecordIterator.isBAMFile(new File("src/test/resources/fullymappedsplitread.sam")));
+		assertFalse(ParallelBAMRecordIterator.isBAMFile(new File("src/test/resources/does_not_exist.bam")));
+		assertFalse(ParallelBAMRecordIterator.isBAMFile(null));
+	}
+	@Test(expected = IllegalStateException.class)
+	public void should_assert_sort_order() throws IOException {
+		createBAM(input, SortOrder.unsorted, Read(0, 10, "1M"), Read(0, 1, "1M"));
+		try (SamReader reader = SamReaderFactory.makeDefault().open(input)) {
+			try (SAMRecordIterator it = new ParallelBAMRecordIterator(input, reader.getFileHeader(), ValidationStringency.STRICT).assertSorted(SortOrder.coordinate)) {
+				Lists.newArrayList(it);
+			}
+		}
+	}
+	@Test(expected = SAMException.class)
+	public void should_fail_on_truncated_file() throws IOException {
+		List<SAMRecord> records = new ArrayList<>();
+		for (int i = 0; i < 10000; i++) {
+			records.add(Read(0, 1 + i % 5000, "100M"));
+		}
+		createBAM(input, SortOrder.coordinate, records);
+		try (RandomAccessFile raf = new RandomAccessFile(input, "rw")) {
+			raf.setLength(raf.length() / 2);
+		}
+		actual(input);
+	}
+}
@@ -0,0 +1,154 @@
+package au.edu.wehi.idsv.sim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import au.edu.wehi.idsv.IntermediateFilesTest;
+import au.edu.wehi.idsv.sam.ChimericAlignment;
+import htsjdk.samtools.AlignmentBlock;
+import htsjdk.samtools.CigarElement;
+import htsjdk.samtools.CigarOperator;
+import htsjdk.samtools.SAMFileHeader.SortOrder;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordCoordinateComparator;
+import htsjdk.samtools.SAMTag;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+
+public class ReadSimulatorTest extends IntermediateFilesTest {
+	private static final int REFERENCE_INDEX = 2;
+	private static Fragment fragment(int start, int length, boolean negative) {
+		return new Fragment(REFERENCE_INDEX, start, Arrays.copyOfRange(RANDOM, start - 1, start - 1 + length), negative);
+	}
+	private static List<Fragment> haplotype() {
+		return Lists.newArrayList(
+				fragment(1, 2000, false),
+				Fragment.novel(B("ACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGT")),
+				fragment(3001, 1000, true),
+				fragment(5001, 500, false),
+				// 10bp deletion
+				fragment(5511, 500, false),
+				// tandem duplication
+				fragment(5811, 500, false),
+				fragment(8001, 5, false),
+				fragment(9001, 995, false));
+	}
+	private List<SAMRecord> simulate(double errorRate, double duplicateRate) {
+		ReadSimulator sim = new ReadSimulator(getSequenceDictionary(), "sample", 0);
+		sim.coverage = 20;
+		sim.readLength = 100;
+		sim.errorRateStart = errorRate;
+		sim.errorRateEnd = errorRate;
+		sim.duplicateRate = duplicateRate;
+		List<SAMRecord> list = new ArrayList<>();
+		sim.simulate(haplotype(), "r", list::add);
+		return list;
+	}
+	private static int mismatches(SAMRecord r) {
+		int mismatches = 0;
+		for (AlignmentBlock block : r.getAlignmentBlocks()) {
+			for (int i = 0; i < block.getLength(); i++) {
+				if (r.getReadBases()[block.getReadStart() - 1 + i] != RANDOM[block.getReferenceStart() - 1 + i]) {
+					mismatches++;
+				}
+			}
+		}
+		return mismatches;
+	}
+	private static int indelLength(SAMRecord r) {
+		return r.getCigar().getCigarElements().stream()
+				.filter(ce -> ce.getOperator().isIndel())
+				.mapToInt(CigarElement::getLength)
+				.sum();
+	}
+	@Test
+	public void should_align_reads_to_reference() {
+		List<SAMRecord> reads = simulate(0, 0);
+		assertTrue(reads.size() > 0);
+		for (SAMRecord r : reads) {
+			assertFalse(r.getReadUnmappedFlag());
+			assertEquals(100, r.getReadLength());
+			assertEquals(0, mismatches(r));
+			assertEquals(indelLength(r), (int)r.getIntegerAttribute(SAMTag.NM.name()));
+		}
+	}
+	@Test
+	public void should_report_nm_of_sequencing_errors() {
+		List<SAMRecord> reads = simulate(0.05, 0);
+		int mismatches = 0;
+		for (SAMRecord r : reads) {
+			mismatches += mismatches(r);
+			assertEquals(mismatches(r) + indelLength(r), (int)r.getIntegerAttribute(SAMTag.NM.name()));
+		}
+		assertTrue(mismatches > 0);
+	}
+	@Test
+	public void should_report_small_events_as_indels() {
+		List<SAMRecord> reads = simulate(0, 0);
+		assertTrue(reads.stream().anyMatch(r -> r.getCigar().getCigarElements().stream().anyMatch(ce -> ce.getOperator() == CigarOperator.D && ce.getLength() == 10)));
+		assertFalse(reads.stream().anyMatch(r -> r.getCigar().getCigarElements().stream().anyMatch(ce -> ce.getOperator() == CigarOperator.D && ce.getLength() == 995)));
+	}
+	@Test
+	public void should_report_split_reads() {
+		List<SAMRecord> reads = simulate(0, 0);
+		List<SAMRecord> supplementary = reads.stream().filter(r -> r.getSupplementaryAlignmentFlag()).collect(Collectors.toList());
+		assertTrue(supplementary.size() > 0);
+		for (SAMRecord r : reads) {
+			for (ChimericAlignment ca : ChimericAlignment.getChimericAlignments(r)) {
+				// SA tag must match the other alignments of the read
+				assertEquals(1, reads.stream()
+					.filter(x -> x.getReadName().equals(r.getReadName()) && x.getFirstOfPairFlag() == r.getFirstOfPairFlag() && x != r)
+					.filter(x -> new ChimericAlignment(x).equals(ca))
+					.count());
+			}
+			if (r.getSupplementaryAlignmentFlag()) {
+				assertTrue(r.getCigar().isClipped());
+				assertEquals(1, ChimericAlignment.getChimericAlignments(r).size());
+			}
+		}
+	}
+	@Test
+	public void should_report_discordant_pairs() {
+		List<SAMRecord> reads = simulate(0, 0);
+		assertTrue(reads.stream().anyMatch(r -> r.getProperPairFlag()));
+		assertTrue(reads.stream().anyMatch(r -> !r.getProperPairFlag()));
+		for (SAMRecord r : reads) {
+			assertTrue(r.getReadPairedFlag());
+			assertFalse(r.getMateUnmappedFlag());
+			assertEquals(r.getReferenceIndex(), r.getMateReferenceIndex());
+		}
+	}
+	@Test
+	public void should_mark_duplicates() {
+		List<SAMRecord> reads = simulate(0, 1);
+		assertEquals(reads.size(), 2 * reads.stream().filter(r -> r.getDuplicateReadFlag()).count());
+	}
+	@Test
+	public void should_write_coordinate_sorted_bam() throws IOException {
+		ReadSimulator sim = new ReadSimulator(getSequenceDictionary(), "sample", 0);
+		sim.coverage = 5;
+		sim.readLength = 100;
+		sim.simulate(Lists.newArrayList(haplotype(), Lists.newArrayList(fragment(1, 10000, false))), output, getContext().getSamFileWriterFactory(true));
+		List<SAMRecord> reads = getRecords(output);
+		assertTrue(reads.size() > 500);
+		List<SAMRecord> sorted = new ArrayList<>(reads);
+		sorted.sort(new SAMRecordCoordinateComparator());
+		assertEquals(sorted, reads);
+		try (SamReader reader = SamReaderFactory.makeDefault().open(output)) {
+			assertEquals(SortOrder.coordinate, reader.getFileHeader().getSortOrder());
+		}
+		assertTrue(reads.stream().anyMatch(r -> r.getReadName().startsWith("h0_")));
+		assertTrue(reads.stream().anyMatch(r -> r.getReadName().startsWith("h1_")));
+	}
+}
@@ -6,6 +6,7 @@ import static org.junit.Assert.assertTrue;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import org.junit.Test;
 
@@ -87,4 +88,13 @@ public class SimpleVariantChromosomeTest extends IntermediateFilesTest {
 		assertEquals(3, vcf.get(0).getStart());
 		assertTrue(vcf.get(0).getFilters().contains("REF"));
 	}
+	@Test
+	public void haplotype_fragments_should_match_output_sequence() throws IOException {
+		SimpleVariantChromosome svc = new SimpleVariantChromosome(getContext(), "random", 5, 0);
+		svc.assemble(input, output, true, Lists.newArrayList(SvType.DEL, SvType.INS, SvType.INV, SvType.DUP), Lists.newArrayList(1, 10, 100), 2);
+		List<String> fa = Files.readLines(input, StandardCharsets.US_ASCII);
+		assertEquals(2, svc.getHaplotypes().size());
+		assertEquals(fa.get(1), svc.getHaplotypes().get(0).stream().map(f -> f.getSequence()).collect(Collectors.joining()));
+		assertEquals(fa.get(3), svc.getHaplotypes().get(1).stream().map(f -> f.getSequence()).collect(Collectors.joining()));
+	}
 }
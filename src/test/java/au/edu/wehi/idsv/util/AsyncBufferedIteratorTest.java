@@ -62,7 +62,10 @@ public class AsyncBufferedIteratorTest {
 		abi.next(); assertFalse(it.isClosed);
 		abi.next(); assertFalse(it.isClosed);
 		abi.next(); // next 4 records removed
-		Thread.sleep(1); // let the consumer thread fill up the newly opened buffer slot with the final two records
+		// let the background thread fill up the newly opened buffer slot with the final two records
+		for (int i = 0; i < 10000 && !it.isClosed; i++) {
+			Thread.sleep(1);
+		}
 		assertTrue(it.isClosed); // should have now closed
 		abi.close();
 	}
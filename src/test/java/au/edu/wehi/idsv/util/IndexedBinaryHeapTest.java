@@ -0,0 +1,99 @@
+package au.edu.wehi.idsv.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class IndexedBinaryHeapTest {
+	private static class Element {
+		public final int value;
+		public final int id;
+		public int index = -1;
+		public Element(int value, int id) {
+			this.value = value;
+			this.id = id;
+		}
+	}
+	private static final Comparator<Element> ByValueId = Comparator.<Element>comparingInt(e -> e.value).thenComparingInt(e -> e.id);
+	private static IndexedBinaryHeap<Element> heap() {
+		return new IndexedBinaryHeap<>(ByValueId, e -> e.index, (e, i) -> e.index = i);
+	}
+	@Test
+	public void poll_should_return_elements_in_order() {
+		IndexedBinaryHeap<Element> heap = heap();
+		for (int i : new int[] { 5, 3, 8, 1, 9, 2 }) {
+			heap.add(new Element(i, i));
+		}
+		assertEquals(6, heap.size());
+		for (int i : new int[] { 1, 2, 3, 5, 8, 9 }) {
+			assertEquals(i, heap.poll().value);
+		}
+		assertTrue(heap.isEmpty());
+		assertNull(heap.poll());
+		assertNull(heap.peek());
+	}
+	@Test
+	public void add_should_ignore_element_already_in_heap() {
+		IndexedBinaryHeap<Element> heap = heap();
+		Element e = new Element(1, 1);
+		assertTrue(heap.add(e));
+		assertFalse(heap.add(e));
+		assertEquals(1, heap.size());
+	}
+	@Test
+	public void remove_should_ignore_element_not_in_heap() {
+		IndexedBinaryHeap<Element> heap = heap();
+		heap.add(new Element(1, 1));
+		assertFalse(heap.remove(new Element(1, 1)));
+		assertFalse(heap.remove("not an element"));
+		assertEquals(1, heap.size());
+	}
+	@Test
+	public void clear_should_reset_element_position() {
+		IndexedBinaryHeap<Element> heap = heap();
+		Element e = new Element(1, 1);
+		heap.add(e);
+		heap.add(new Element(2, 2));
+		heap.clear();
+		assertEquals(-1, e.index);
+		assertFalse(heap.contains(e));
+		assertTrue(heap.add(e));
+	}
+	@Test
+	public void should_match_sorted_set_head() {
+		Random rng = new Random(0);
+		IndexedBinaryHeap<Element> heap = heap();
+		TreeSet<Element> set = new TreeSet<>(ByValueId);
+		List<Element> elements = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			elements.add(new Element(rng.nextInt(100), i));
+		}
+		for (int i = 0; i < 100000; i++) {
+			Element e = elements.get(rng.nextInt(elements.size()));
+			switch (rng.nextInt(4)) {
+			case 0:
+			case 1:
+				assertEquals(set.add(e), heap.add(e));
+				break;
+			case 2:
+				assertEquals(set.remove(e), heap.remove(e));
+				break;
+			case 3:
+				assertEquals(set.pollFirst(), heap.poll());
+				break;
+			}
+			assertEquals(set.size(), heap.size());
+			assertEquals(set.isEmpty() ? null : set.first(), heap.peek());
+			assertEquals(set.contains(e), heap.contains(e));
+		}
+	}
+}
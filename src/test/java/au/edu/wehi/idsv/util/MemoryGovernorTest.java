@@ -0,0 +1,123 @@
+package au.edu.wehi.idsv.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import au.edu.wehi.idsv.TestHelper;
+import au.edu.wehi.idsv.visualisation.TrackedBuffer;
+
+public class MemoryGovernorTest extends TestHelper {
+	private static class FixedSizeBuffer implements TrackedBuffer {
+		public volatile long bytes;
+		public FixedSizeBuffer(long bytes) { this.bytes = bytes; }
+		@Override
+		public void setTrackedBufferContext(String context) {
+		}
+		@Override
+		public List<NamedTrackedBuffer> currentTrackedBufferSizes() {
+			return ImmutableList.of(new NamedTrackedBuffer("fixed", 1, bytes));
+		}
+	}
+	@Test
+	public void should_be_disabled_with_no_budget() throws InterruptedException {
+		MemoryGovernor mg = new MemoryGovernor(0, 4);
+		assertFalse(mg.isEnabled());
+		mg.acquire(Long.MAX_VALUE, () -> false);
+		assertEquals(0, mg.getReservedBytes());
+		assertEquals(1, mg.getDensityScale(), 0);
+	}
+	@Test
+	public void should_track_reservations() throws InterruptedException {
+		MemoryGovernor mg = new MemoryGovernor(1000, 4);
+		mg.acquire(100, () -> false);
+		mg.acquire(200, () -> false);
+		assertEquals(300, mg.getReservedBytes());
+		mg.release(100);
+		assertEquals(200, mg.getReservedBytes());
+	}
+	@Test
+	public void should_always_allow_first_reservation() throws InterruptedException {
+		MemoryGovernor mg = new MemoryGovernor(1000, 4);
+		mg.acquire(5000, () -> false);
+		assertEquals(5000, mg.getReservedBytes());
+	}
+	@Test
+	public void should_allow_unconditional_reservation_over_budget() throws InterruptedException {
+		MemoryGovernor mg = new MemoryGovernor(1000, 4);
+		mg.acquire(900, () -> false);
+		mg.acquire(900, () -> true);
+		assertEquals(1800, mg.getReservedBytes());
+	}
+	@Test(timeout = 10000)
+	public void should_block_until_released() throws InterruptedException {
+		MemoryGovernor mg = new MemoryGovernor(1000, 4);
+		mg.acquire(900, () -> false);
+		AtomicBoolean acquired = new AtomicBoolean(false);
+		Thread t = new Thread(() -> {
+			try {
+				mg.acquire(900, () -> false);
+				acquired.set(true);
+			} catch (InterruptedException e) {
+			}
+		});
+		t.start();
+		Thread.sleep(200);
+		assertFalse(acquired.get());
+		mg.release(900);
+		t.join();
+		assertTrue(acquired.get());
+	}
+	@Test(timeout = 10000)
+	public void should_count_tracked_buffers_towards_budget() throws InterruptedException {
+		MemoryGovernor mg = new MemoryGovernor(1000, 4);
+		FixedSizeBuffer fsb = new FixedSizeBuffer(950);
+		mg.register(fsb);
+		assertEquals(950, mg.getTrackedBytes());
+		mg.acquire(100, () -> false);
+		AtomicBoolean acquired = new AtomicBoolean(false);
+		Thread t = new Thread(() -> {
+			try {
+				mg.acquire(100, () -> false);
+				acquired.set(true);
+			} catch (InterruptedException e) {
+			}
+		});
+		t.start();
+		Thread.sleep(200);
+		assertFalse(acquired.get());
+		fsb.bytes = 0;
+		t.join();
+		assertTrue(acquired.get());
+	}
+	@Test
+	public void density_scale_should_decrease_with_memory_pressure() throws InterruptedException {
+		MemoryGovernor mg = new MemoryGovernor(Long.MAX_VALUE / 2, 4);
+		double unconstrained = mg.getDensityScale();
+		assertTrue(unconstrained > 1);
+		assertTrue(unconstrained <= 4);
+		mg.acquire(Long.MAX_VALUE / 2, () -> false);
+		assertEquals(1, mg.getDensityScale(), 0);
+	}
+	@Test
+	public void density_scale_should_be_updated_when_reservation_released() throws InterruptedException {
+		MemoryGovernor mg = new MemoryGovernor(Long.MAX_VALUE / 2, 4);
+		mg.acquire(Long.MAX_VALUE / 2, () -> false);
+		assertEquals(1, mg.getDensityScale(), 0);
+		mg.release(Long.MAX_VALUE / 2);
+		assertTrue(mg.getDensityScale() > 1);
+	}
+	@Test
+	public void should_estimate_record_size() {
+		assertTrue(MemoryGovernor.estimateSize(Read(0, 1, "100M")) > 200);
+		assertTrue(MemoryGovernor.estimateSize(Read(0, 1, "100M")) < MemoryGovernor.estimateSize(Read(0, 1, "1000M")));
+		assertTrue(MemoryGovernor.estimateSize(SR(Read(0, 1, "50M50S"), Read(1, 1, "50M"))) > MemoryGovernor.estimateSize(Read(0, 1, "50M50S")));
+	}
+}
@@ -0,0 +1,117 @@
+package au.edu.wehi.idsv.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import com.google.common.collect.Sets;
+
+
+public class SpscBlockingQueueTest {
+	@Test
+	public void should_return_elements_in_fifo_order() {
+		SpscBlockingQueue<Integer> q = new SpscBlockingQueue<>(3);
+		assertTrue(q.offer(1));
+		assertTrue(q.offer(2));
+		assertEquals(1, (int)q.poll());
+		assertTrue(q.offer(3));
+		assertTrue(q.offer(4));
+		assertEquals(2, (int)q.poll());
+		assertEquals(3, (int)q.poll());
+		assertEquals(4, (int)q.poll());
+		assertNull(q.poll());
+	}
+	@Test
+	public void should_not_exceed_capacity() {
+		SpscBlockingQueue<Integer> q = new SpscBlockingQueue<>(2);
+		assertTrue(q.offer(1));
+		assertTrue(q.offer(2));
+		assertFalse(q.offer(3));
+		assertEquals(2, q.size());
+	}
+	@Test
+	public void drainTo_should_empty_queue() {
+		SpscBlockingQueue<Integer> q = new SpscBlockingQueue<>(4);
+		q.offer(1);
+		q.offer(2);
+		List<Integer> list = new ArrayList<>();
+		assertEquals(2, q.drainTo(list));
+		assertTrue(q.isEmpty());
+		assertEquals(2, list.size());
+	}
+	@Test(timeout = 10000)
+	public void should_hand_off_between_threads() throws InterruptedException {
+		int n = 100000;
+		SpscBlockingQueue<Integer> q = new SpscBlockingQueue<>(4);
+		Thread producer = new Thread(() -> {
+			try {
+				for (int i = 0; i < n; i++) {
+					q.put(i);
+				}
+			} catch (InterruptedException e) {
+			}
+		});
+		producer.start();
+		for (int i = 0; i < n; i++) {
+			assertEquals(i, (int)q.take());
+		}
+		producer.join();
+	}
+	@Test(timeout = 10000)
+	public void put_should_be_interruptible() throws InterruptedException {
+		SpscBlockingQueue<Integer> q = new SpscBlockingQueue<>(1);
+		q.offer(1);
+		AtomicBoolean interrupted = new AtomicBoolean(false);
+		Thread producer = new Thread(() -> {
+			try {
+				q.put(2);
+			} catch (InterruptedException e) {
+				interrupted.set(true);
+			}
+		});
+		producer.start();
+		Thread.sleep(50);
+		producer.interrupt();
+		producer.join();
+		assertTrue(interrupted.get());
+	}
+	@Test(timeout = 10000)
+	public void drainTo_should_be_safe_from_another_thread() throws InterruptedException {
+		int n = 10000;
+		SpscBlockingQueue<Integer> q = new SpscBlockingQueue<>(4);
+		List<Integer> drained = new ArrayList<>();
+		Thread producer = new Thread(() -> {
+			try {
+				for (int i = 0; i < n; i++) {
+					q.put(i);
+				}
+			} catch (InterruptedException e) {
+			}
+		});
+		Thread drainer = new Thread(() -> {
+			while (producer.isAlive() || !q.isEmpty()) {
+				q.drainTo(drained);
+				Thread.yield();
+			}
+		});
+		producer.start();
+		drainer.start();
+		List<Integer> taken = new ArrayList<>();
+		while (drainer.isAlive()) {
+			Integer e = q.poll();
+			if (e != null) taken.add(e);
+			Thread.yield();
+		}
+		drainer.join();
+		producer.join();
+		assertEquals(n, taken.size() + drained.size());
+		assertEquals(n, Sets.union(Sets.newHashSet(taken), Sets.newHashSet(drained)).size());
+	}
+}
@@ -0,0 +1,72 @@
+package au.edu.wehi.idsv.visualisation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import au.edu.wehi.idsv.TestHelper;
+
+public class PipelineMetricsTest extends TestHelper {
+	@Test
+	public void should_count_stage_records() {
+		PipelineMetrics pm = new PipelineMetrics(false);
+		StageMetrics sm = pm.getStage("stage");
+		sm.record(Read(0, 1, "100M"));
+		sm.record(Read(0, 1, "100M"));
+		assertEquals(2, sm.getRecords());
+		assertTrue(sm.getBytes() > 0);
+		assertTrue(pm.toPrometheusText().contains("gridss_stage_records_total{stage=\"stage\"} 2\n"));
+	}
+	@Test
+	public void should_report_queue_depth() {
+		PipelineMetrics pm = new PipelineMetrics(false);
+		StageMetrics sm = pm.getStage("stage");
+		sm.registerQueue(() -> 3);
+		sm.registerQueue(() -> 4);
+		assertEquals(7, sm.getQueueDepth());
+		assertTrue(pm.toPrometheusText().contains("gridss_stage_queue_depth{stage=\"stage\"} 7\n"));
+	}
+	@Test
+	public void should_escape_label_values() {
+		PipelineMetrics pm = new PipelineMetrics(false);
+		pm.getStage("a\"b\\c");
+		assertTrue(pm.toPrometheusText().contains("{stage=\"a\\\"b\\\\c\"}"));
+	}
+	@Test
+	public void should_report_completed_chunk_timing() {
+		PipelineMetrics pm = new PipelineMetrics(false);
+		ChunkMetrics cm = pm.startChunk("assembly", "chunk 1");
+		assertEquals(false, cm.isComplete());
+		cm.stop();
+		assertTrue(cm.isComplete());
+		assertTrue(cm.getWallSeconds() >= 0);
+		String text = pm.toPrometheusText();
+		assertTrue(text.contains("gridss_chunk_wall_seconds{operation=\"assembly\",chunk=\"chunk 1\",complete=\"true\"}"));
+		assertTrue(text.contains("gridss_chunk_cpu_seconds{operation=\"assembly\",chunk=\"chunk 1\"}"));
+	}
+	@Test
+	public void should_summarise_latency() {
+		PipelineMetrics pm = new PipelineMetrics(false);
+		LatencyMetrics lm = pm.getLatency("aligner");
+		lm.record(1000000000L);
+		lm.record(3000000000L);
+		assertEquals(2, lm.getCount());
+		assertEquals(2, lm.getMeanSeconds(), 0);
+		assertEquals(3, lm.getMaxSeconds(), 0);
+		String text = pm.toPrometheusText();
+		assertTrue(text.contains("gridss_latency_seconds_count{operation=\"aligner\"} 2\n"));
+		assertTrue(text.contains("gridss_latency_seconds_sum{operation=\"aligner\"} 4\n"));
+	}
+	@Test
+	public void should_register_mbeans() throws Exception {
+		PipelineMetrics pm = new PipelineMetrics(true);
+		pm.getStage("PipelineMetricsTest");
+		assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(
+				new ObjectName(PipelineMetrics.JMX_DOMAIN + ":type=PipelineStage,name=" + ObjectName.quote("PipelineMetricsTest"))));
+	}
+}
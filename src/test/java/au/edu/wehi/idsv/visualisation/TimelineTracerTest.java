@@ -0,0 +1,46 @@
+package au.edu.wehi.idsv.visualisation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import au.edu.wehi.idsv.visualisation.TimelineTracer.Span;
+
+public class TimelineTracerTest {
+	@Rule
+	public TemporaryFolder testFolder = new TemporaryFolder();
+	@Test
+	public void should_not_trace_when_disabled() {
+		TimelineTracer tt = new TimelineTracer();
+		assertEquals(false, tt.isEnabled());
+		try (Span span = tt.begin("cat", "name")) {
+		}
+	}
+	@Test
+	public void should_write_begin_and_end_events() throws IOException {
+		File f = testFolder.newFile("timeline.json");
+		TimelineTracer tt = new TimelineTracer();
+		tt.start(f);
+		try (Span outer = tt.begin("assembly", "chunk 1")) {
+			try (Span inner = tt.begin("sort", "a\"b")) {
+			}
+		}
+		tt.stop();
+		String json = new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
+		assertTrue(json.startsWith("["));
+		assertTrue(json.trim().endsWith("]"));
+		assertTrue(json.contains("\"name\":\"thread_name\""));
+		assertTrue(json.contains("\"name\":\"chunk 1\",\"cat\":\"assembly\",\"ph\":\"B\""));
+		assertTrue(json.contains("\"name\":\"chunk 1\",\"cat\":\"assembly\",\"ph\":\"E\""));
+		assertTrue(json.contains("\"name\":\"a\\\"b\",\"cat\":\"sort\",\"ph\":\"B\""));
+		assertTrue(json.indexOf("\"ph\":\"E\"") > json.indexOf("\"name\":\"a\\\"b\",\"cat\":\"sort\",\"ph\":\"B\""));
+	}
+}
@@ -1,8 +1,15 @@
 package au.edu.wehi.validation;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Test;
 
@@ -17,4 +24,44 @@ public class LongReadSupportFinderTest {
 		//read m130208_134627_42137_c100474062550000001823070606131326_s1_p0/79081/0_10472
 		assertTrue(support.spanningAlignments.contains(272));
 	}
+	@Test
+	public void evaluateDeletions_should_match_evaluateDeletion() {
+		File file = new File("src/test/resources/pacbiona12989chem1chr1_196132675-196183463.bam");
+		ValidateDeletions vd = new ValidateDeletions();
+		LongReadSupportFinder lr = new LongReadSupportFinder(file);
+		Random rng = new Random(0);
+		List<BedpeDeletion> deletions = new ArrayList<>();
+		deletions.add(deletion("chr1", 196158052, 196158052, 196158331, 196158331));
+		deletions.add(deletion("chrUn", 1, 10, 100, 110));
+		for (int i = 0; i < 200; i++) {
+			int start = 196132675 + rng.nextInt(50000);
+			int end = start + 50 + rng.nextInt(2000);
+			int width = rng.nextInt(100);
+			deletions.add(deletion(i % 2 == 0 ? "chr1" : "1", start, start + width, end, end + width));
+		}
+		ExecutorService threadpool = Executors.newFixedThreadPool(2);
+		List<LongReadSupportLevel> batched = lr.evaluateDeletions(deletions, vd.SOFT_CLIP_MARGIN, vd.MIN_SOFT_CLIP_LENGTH, vd.SPANNING_WINDOW_SIZE, vd.MIN_DELETION_LENGTH, threadpool);
+		threadpool.shutdown();
+		assertEquals(deletions.size(), batched.size());
+		assertNull(batched.get(1));
+		assertTrue(batched.get(0).spanningAlignments.contains(272));
+		int supported = 0;
+		for (int i = 0; i < deletions.size(); i++) {
+			BedpeDeletion del = deletions.get(i);
+			LongReadSupportLevel expected = lr.evaluateDeletion(del.chrom1, del.start1, del.end1, del.start2, del.end2, vd.SOFT_CLIP_MARGIN, vd.MIN_SOFT_CLIP_LENGTH, vd.SPANNING_WINDOW_SIZE, vd.MIN_DELETION_LENGTH);
+			LongReadSupportLevel actual = batched.get(i);
+			if (expected == null) {
+				assertNull(actual);
+			} else {
+				assertEquals(expected.spanningAlignments, actual.spanningAlignments);
+				assertEquals(expected.startClipLocations, actual.startClipLocations);
+				assertEquals(expected.endClipLocations, actual.endClipLocations);
+				supported += expected.startClipLocations.size() + expected.endClipLocations.size() + expected.spanningAlignments.size();
+			}
+		}
+		assertTrue(supported > 0);
+	}
+	private static BedpeDeletion deletion(String chr, int start1, int end1, int start2, int end2) {
+		return new BedpeDeletion(String.join(BedpeDeletion.FS, chr, Integer.toString(start1), Integer.toString(end1), chr, Integer.toString(start2), Integer.toString(end2), "del", "0", "+", "-", Integer.toString(start2 - end1)));
+	}
 }
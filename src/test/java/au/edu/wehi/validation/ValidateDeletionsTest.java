@@ -0,0 +1,46 @@
+package au.edu.wehi.validation;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.io.Files;
+
+import au.edu.wehi.idsv.IntermediateFilesTest;
+
+public class ValidateDeletionsTest extends IntermediateFilesTest {
+	private List<String> run(File bedpe, boolean batched) throws IOException {
+		ValidateDeletions vd = new ValidateDeletions();
+		File out = new File(testFolder.getRoot(), "out." + batched + ".bedpe");
+		assertEquals(0, vd.instanceMain(new String[] {
+				"BEDPE=" + bedpe.getAbsolutePath(),
+				"OUTPUT=" + out.getAbsolutePath(),
+				"LONG_READS=src/test/resources/pacbiona12989chem1chr1_196132675-196183463.bam",
+				"LONG_READS=src/test/resources/pacbiona12989chem1chr1_196132675-196183463.bam",
+				"BATCHED=" + batched,
+				}));
+		return Files.readLines(out, StandardCharsets.US_ASCII);
+	}
+	@Test
+	public void batched_should_match_per_deletion_queries() throws IOException {
+		List<String> lines = new ArrayList<>();
+		lines.add("#chrom1\tstart1\tend1\tchrom2\tstart2\tend2\tname\tscore\tstrand1\tstrand2\tlength");
+		lines.add("chr1\t196158052\t196158052\tchr1\t196158331\t196158331\tdel1\t0\t+\t-\t279");
+		lines.add("chrUn\t1\t1\tchrUn\t100\t100\tdel2\t0\t+\t-\t99");
+		for (int i = 0; i < 50; i++) {
+			int start = 196183000 - 1000 * i;
+			lines.add(String.format("chr1\t%d\t%d\tchr1\t%d\t%d\tdel%d\t0\t+\t-\t%d", start, start + 10, start + 500, start + 510, i + 3, 490));
+		}
+		File bedpe = new File(testFolder.getRoot(), "in.bedpe");
+		Files.asCharSink(bedpe, StandardCharsets.US_ASCII).write(String.join("\n", lines) + "\n");
+		List<String> batched = run(bedpe, true);
+		assertEquals(lines.size(), batched.size());
+		assertEquals(run(bedpe, false), batched);
+	}
+}
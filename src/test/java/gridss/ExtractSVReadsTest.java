@@ -3,11 +3,15 @@ package gridss;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 import java.util.stream.Collectors;
 
 import org.junit.Assert;
@@ -28,9 +32,15 @@ import au.edu.wehi.idsv.picard.ReferenceLookup;
 import au.edu.wehi.idsv.picard.SynchronousReferenceLookupAdapter;
 import au.edu.wehi.idsv.sam.ChimericAlignment;
 import gridss.analysis.StructuralVariantReadMetrics;
+import gridss.filter.RawBamRecordPrefilter;
+import gridss.filter.RawBamRecordPrefilterTest;
+import htsjdk.samtools.BAMRecord;
+import htsjdk.samtools.SAMFileHeader.SortOrder;
 import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordQueryNameComparator;
 import htsjdk.samtools.SamReader;
 import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.SamPairUtil;
 import htsjdk.samtools.metrics.MetricsFile;
 import htsjdk.samtools.reference.IndexedFastaSequenceFile;
 
@@ -245,4 +255,199 @@ public class ExtractSVReadsTest extends IntermediateFilesTest {
 		});
 		assertTrue(output.exists());
 	}
+	private ExtractSVReads prefilterTestExtract(ReadPairConcordanceMethod method, boolean includeOea, boolean includeDiscordant, boolean includeDuplicates) {
+		ExtractSVReads extract = new ExtractSVReads();
+		extract.INPUT = input;
+		extract.OUTPUT = output;
+		extract.READ_PAIR_CONCORDANCE_METHOD = method;
+		extract.FIXED_READ_PAIR_CONCORDANCE_MIN_FRAGMENT_SIZE = 100;
+		extract.FIXED_READ_PAIR_CONCORDANCE_MAX_FRAGMENT_SIZE = 300;
+		extract.SINGLE_MAPPED_PAIRED = includeOea;
+		extract.DISCORDANT_READ_PAIRS = includeDiscordant;
+		extract.INCLUDE_DUPLICATES = includeDuplicates;
+		extract.setup(getHeader(), input);
+		return extract;
+	}
+	@Test
+	public void should_match_decoded_record_filters() {
+		createInput();
+		List<SAMRecord> records = RawBamRecordPrefilterTest.randomRecords(new Random(0), 4000);
+		for (ReadPairConcordanceMethod method : new ReadPairConcordanceMethod[] { ReadPairConcordanceMethod.SAM_FLAG, ReadPairConcordanceMethod.FIXED }) {
+			for (int options = 0; options < 8; options++) {
+				ExtractSVReads extract = prefilterTestExtract(method, (options & 1) != 0, (options & 2) != 0, (options & 4) != 0);
+				RawBamRecordPrefilter filter = new RawBamRecordPrefilter(extract.getReadPairConcordanceCalculator(), extract.INCLUDE_DUPLICATES, extract.SINGLE_MAPPED_PAIRED, extract.DISCORDANT_READ_PAIRS);
+				int filtered = 0;
+				for (SAMRecord r : records) {
+					BAMRecord bam = RawBamRecordPrefilterTest.toBAMRecord(r);
+					boolean filterOut = filter.filterOut(bam);
+					assertEquals(filter.filterOut(r), filterOut);
+					if (filterOut) {
+						filtered++;
+						assertFalse(extract.shouldExtract(ImmutableList.of(r), null)[0]);
+						assertFalse(extract.shouldExtract(ImmutableList.of(RawBamRecordPrefilterTest.toBAMRecord(r)), null)[0]);
+					}
+				}
+				assertTrue(filtered > 0);
+			}
+		}
+	}
+	@Test
+	public void should_not_change_extracted_reads() {
+		List<SAMRecord> records = RawBamRecordPrefilterTest.randomRecords(new Random(1), 4000).stream()
+				.filter(r -> r.isValid() == null)
+				.collect(Collectors.toList());
+		createBAM(input, SortOrder.unsorted, records);
+		ExtractSVReads extract = new ExtractSVReads();
+		extract.instanceMain(new String[] {
+				"INPUT=" + input.getAbsolutePath(),
+				"OUTPUT=" + output.getAbsolutePath(),
+				"READ_PAIR_CONCORDANCE_METHOD=FIXED",
+				"FIXED_READ_PAIR_CONCORDANCE_MIN_FRAGMENT_SIZE=100",
+				"FIXED_READ_PAIR_CONCORDANCE_MAX_FRAGMENT_SIZE=300",
+				"PREFILTER=false",
+		});
+		List<SAMRecord> expected = getRecords(output);
+		output.delete();
+		extract = new ExtractSVReads();
+		extract.instanceMain(new String[] {
+				"INPUT=" + input.getAbsolutePath(),
+				"OUTPUT=" + output.getAbsolutePath(),
+				"READ_PAIR_CONCORDANCE_METHOD=FIXED",
+				"FIXED_READ_PAIR_CONCORDANCE_MIN_FRAGMENT_SIZE=100",
+				"FIXED_READ_PAIR_CONCORDANCE_MAX_FRAGMENT_SIZE=300",
+				"PREFILTER=true",
+		});
+		List<SAMRecord> actual = getRecords(output);
+		assertTrue(expected.size() > 0);
+		assertTrue(expected.size() < records.size());
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getSAMString(), actual.get(i).getSAMString());
+		}
+	}
+	private StructuralVariantReadMetrics extractMetrics(boolean prefilter, String... args) {
+		output.delete();
+		File metrics = new File(output.getAbsolutePath() + ".sv_metrics");
+		metrics.delete();
+		List<String> fullArgs = Lists.newArrayList(
+				"INPUT=" + input.getAbsolutePath(),
+				"OUTPUT=" + output.getAbsolutePath(),
+				"METRICS_OUTPUT=" + metrics.getAbsolutePath(),
+				"READ_PAIR_CONCORDANCE_METHOD=FIXED",
+				"FIXED_READ_PAIR_CONCORDANCE_MIN_FRAGMENT_SIZE=100",
+				"FIXED_READ_PAIR_CONCORDANCE_MAX_FRAGMENT_SIZE=300",
+				"PREFILTER=" + prefilter);
+		fullArgs.addAll(Arrays.asList(args));
+		new ExtractSVReads().instanceMain(fullArgs.toArray(new String[0]));
+		return Iterators.getOnlyElement(Iterables.filter(MetricsFile.readBeans(metrics), StructuralVariantReadMetrics.class).iterator());
+	}
+	@Test
+	public void prefilter_should_not_change_metrics() {
+		List<SAMRecord> records = RawBamRecordPrefilterTest.randomRecords(new Random(2), 4000).stream()
+				.filter(r -> r.isValid() == null)
+				.collect(Collectors.toList());
+		records.addAll(randomFragments(new Random(2), 1000));
+		records.sort(new SAMRecordQueryNameComparator());
+		createBAM(input, SortOrder.queryname, records);
+		for (int options = 0; options < 8; options++) {
+			String[] args = new String[] {
+					"SINGLE_MAPPED_PAIRED=" + ((options & 1) != 0),
+					"DISCORDANT_READ_PAIRS=" + ((options & 2) != 0),
+					"INCLUDE_DUPLICATES=" + ((options & 4) != 0),
+			};
+			StructuralVariantReadMetrics expected = extractMetrics(false, args);
+			StructuralVariantReadMetrics actual = extractMetrics(true, args);
+			assertTrue(expected.STRUCTURAL_VARIANT_READ_ALIGNMENTS > 0);
+			assertEquals(expected, actual);
+		}
+	}
+	private static List<SAMRecord> randomFragments(Random rng, int count) {
+		List<SAMRecord> records = new ArrayList<>();
+		String[] cigars = { "100M", "100M", "100M", "60M40S", "95M5I" };
+		for (int i = 0; i < count; i++) {
+			int pos = 1 + rng.nextInt(5000);
+			SAMRecord[] dp = withName("f" + i, DP(0, pos, cigars[rng.nextInt(cigars.length)], true,
+					rng.nextInt(8) == 0 ? 1 : 0, Math.max(1, pos + rng.nextInt(600) - 200), cigars[rng.nextInt(cigars.length)], false));
+			if (rng.nextInt(8) == 0) {
+				dp[1].setReadUnmappedFlag(true);
+			}
+			SamPairUtil.setMateInfo(dp[0], dp[1], true);
+			records.addAll(Arrays.asList(dp));
+			if (rng.nextInt(4) == 0) {
+				// split read
+				SAMRecord primary = dp[0];
+				SAMRecord supp = withName("f" + i, Read(rng.nextInt(2), 1 + rng.nextInt(5000), rng.nextBoolean() ? "60S40M" : "60S30M10S"))[0];
+				supp.setReadPairedFlag(true);
+				supp.setFirstOfPairFlag(true);
+				supp.setSupplementaryAlignmentFlag(true);
+				supp.setMateReferenceIndex(primary.getMateReferenceIndex());
+				supp.setMateAlignmentStart(primary.getMateAlignmentStart());
+				supp.setMateUnmappedFlag(primary.getMateUnmappedFlag());
+				supp.setMateNegativeStrandFlag(primary.getMateNegativeStrandFlag());
+				primary.setCigarString("60M40S");
+				SamPairUtil.setMateInfo(dp[0], dp[1], true);
+				primary.setAttribute("SA", new ChimericAlignment(supp).toString() + ";");
+				supp.setAttribute("SA", new ChimericAlignment(primary).toString() + ";");
+				records.add(supp);
+			}
+		}
+		return records.stream().filter(r -> r.isValid() == null).collect(Collectors.toList());
+	}
+	private List<String> extractSorted(File in, String... args) {
+		output.delete();
+		List<String> fullArgs = Lists.newArrayList(
+				"INPUT=" + in.getAbsolutePath(),
+				"OUTPUT=" + output.getAbsolutePath(),
+				"READ_PAIR_CONCORDANCE_METHOD=FIXED",
+				"FIXED_READ_PAIR_CONCORDANCE_MIN_FRAGMENT_SIZE=100",
+				"FIXED_READ_PAIR_CONCORDANCE_MAX_FRAGMENT_SIZE=300");
+		fullArgs.addAll(Arrays.asList(args));
+		new ExtractSVReads().instanceMain(fullArgs.toArray(new String[0]));
+		return getRecords(output).stream().map(r -> r.getSAMString()).sorted().collect(Collectors.toList());
+	}
+	@Test
+	public void should_extract_same_reads_from_coordinate_and_queryname_sorted_input() {
+		List<SAMRecord> records = randomFragments(new Random(0), 1000);
+		File querynameInput = new File(testFolder.getRoot(), "queryname.bam");
+		List<SAMRecord> querynameSorted = Lists.newArrayList(records);
+		querynameSorted.sort(new SAMRecordQueryNameComparator());
+		createBAM(querynameInput, SortOrder.queryname, querynameSorted);
+		createBAM(input, SortOrder.coordinate, records);
+		List<String> expected = extractSorted(querynameInput);
+		List<String> actual = extractSorted(input, "GROUP_COORDINATE_SORTED_FRAGMENTS=true");
+		List<String> spilled = extractSorted(input, "GROUP_COORDINATE_SORTED_FRAGMENTS=true", "MAX_RECORDS_IN_RAM=16");
+		List<String> ungrouped = extractSorted(input);
+		assertTrue(expected.size() > 0);
+		assertEquals(expected, actual);
+		assertEquals(expected, spilled);
+		assertNotEquals(expected, ungrouped);
+	}
+	@Test
+	public void metrics_pipeline_should_group_coordinate_sorted_fragments() {
+		List<SAMRecord> records = randomFragments(new Random(0), 1000);
+		File querynameInput = new File(testFolder.getRoot(), "queryname.bam");
+		List<SAMRecord> querynameSorted = Lists.newArrayList(records);
+		querynameSorted.sort(new SAMRecordQueryNameComparator());
+		createBAM(querynameInput, SortOrder.queryname, querynameSorted);
+		createBAM(input, SortOrder.coordinate, records);
+		List<String> expected = extractSorted(querynameInput);
+		output.delete();
+		new CollectGridssMetricsAndExtractSVReads().instanceMain(new String[] {
+				"INPUT=" + input.getAbsolutePath(),
+				"OUTPUT=" + new File(testFolder.getRoot(), "metrics").getAbsolutePath(),
+				"SV_OUTPUT=" + output.getAbsolutePath(),
+				"PROGRAM=null",
+				"PROGRAM=CollectAlignmentSummaryMetrics",
+				"GRIDSS_PROGRAM=null",
+				"GRIDSS_PROGRAM=CollectCigarMetrics",
+				"READ_PAIR_CONCORDANCE_METHOD=FIXED",
+				"FIXED_READ_PAIR_CONCORDANCE_MIN_FRAGMENT_SIZE=100",
+				"FIXED_READ_PAIR_CONCORDANCE_MAX_FRAGMENT_SIZE=300",
+				"GROUP_COORDINATE_SORTED_FRAGMENTS=true",
+				"MAX_RECORDS_IN_RAM=16",
+		});
+		List<String> actual = getRecords(output).stream().map(r -> r.getSAMString()).sorted().collect(Collectors.toList());
+		assertTrue(expected.size() > 0);
+		assertEquals(expected, actual);
+	}
 }
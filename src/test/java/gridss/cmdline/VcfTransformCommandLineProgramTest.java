@@ -0,0 +1,155 @@
+package gridss.cmdline;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+
+import au.edu.wehi.idsv.BreakendDirection;
+import au.edu.wehi.idsv.BreakendSummary;
+import au.edu.wehi.idsv.BreakpointSummary;
+import au.edu.wehi.idsv.IdsvVariantContext;
+import au.edu.wehi.idsv.IdsvVariantContextBuilder;
+import au.edu.wehi.idsv.IntermediateFilesTest;
+import au.edu.wehi.idsv.ProcessingContext;
+import au.edu.wehi.idsv.SAMEvidenceSource;
+import au.edu.wehi.idsv.VariantContextBreakendTee;
+import au.edu.wehi.idsv.VariantContextDirectedEvidence;
+import au.edu.wehi.idsv.util.AsyncBufferedIterator;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.variant.variantcontext.VariantContext;
+
+public class VcfTransformCommandLineProgramTest extends IntermediateFilesTest {
+	/**
+	 * Passes breakend calls through unchanged on a background thread
+	 */
+	private static class PassthroughTransform extends VcfTransformCommandLineProgram {
+		@Override
+		public CloseableIterator<VariantContextDirectedEvidence> iterator(CloseableIterator<VariantContextDirectedEvidence> calls, ExecutorService threadpool) {
+			return new AsyncBufferedIterator<>(calls, "passthrough", 2, 16);
+		}
+	}
+	private List<IdsvVariantContext> randomCalls(ProcessingContext pc, Random rng, int count) {
+		List<IdsvVariantContext> calls = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			int referenceIndex = rng.nextInt(3);
+			int position = 1 + rng.nextInt(count < 100 ? 10 : 2000);
+			// single position records with the same ID compare equal
+			String id = rng.nextBoolean() ? "tie" : Integer.toString(i);
+			switch (rng.nextInt(4)) {
+				case 0:
+					calls.add((IdsvVariantContext)new IdsvVariantContextBuilder(pc)
+							.chr(pc.getDictionary().getSequence(referenceIndex).getSequenceName())
+							.start(position).stop(position).alleles("A", "C").id(id).make());
+					break;
+				case 1:
+					calls.add((IdsvVariantContext)minimalBreakend()
+							.breakend(new BreakendSummary(referenceIndex, rng.nextBoolean() ? BreakendDirection.Forward : BreakendDirection.Backward, position), "")
+							.id(id).make());
+					break;
+				default:
+					BreakpointSummary bp = new BreakpointSummary(
+							referenceIndex, rng.nextBoolean() ? BreakendDirection.Forward : BreakendDirection.Backward, position,
+							rng.nextInt(3), rng.nextBoolean() ? BreakendDirection.Forward : BreakendDirection.Backward, 1 + rng.nextInt(2000));
+					calls.add(BP("bp" + i + "o", bp));
+					calls.add(BP("bp" + i + "h", bp.remoteBreakpoint()));
+					break;
+			}
+		}
+		// VCF order is only defined by position
+		Collections.shuffle(calls, rng);
+		calls.sort(Comparator.comparing((IdsvVariantContext v) -> v.getReferenceIndex()).thenComparing(v -> v.getStart()));
+		return calls;
+	}
+	private PassthroughTransform createCommand(ProcessingContext pc, File vcf, File outputVcf) {
+		PassthroughTransform cmd = new PassthroughTransform();
+		cmd.setContext(pc);
+		cmd.setSamEvidenceSources(ImmutableList.<SAMEvidenceSource>of());
+		cmd.setAssemblySource(AES(pc));
+		cmd.ASSEMBLY = vcf;
+		cmd.INPUT_VCF = vcf;
+		cmd.OUTPUT_VCF = outputVcf;
+		return cmd;
+	}
+	private void saveTwoPass(PassthroughTransform cmd, File vcf, File outputVcf, ExecutorService threadpool) throws IOException {
+		try (CloseableIterator<VariantContextDirectedEvidence> it = cmd.iterator(cmd.getBreakends(vcf), threadpool)) {
+			cmd.saveVcf(outputVcf, cmd.getAllCalls(vcf, it));
+		}
+	}
+	@Test
+	public void single_pass_output_should_be_byte_identical_to_two_pass_output() throws IOException, InterruptedException, ExecutionException {
+		ProcessingContext pc = getCommandlineContext();
+		ExecutorService threadpool = Executors.newSingleThreadExecutor();
+		Random rng = new Random(0);
+		for (int i = 0; i < 4; i++) {
+			File vcf = new File(testFolder.getRoot(), "input" + i + ".vcf");
+			File singlePass = new File(testFolder.getRoot(), "single" + i + ".vcf");
+			File twoPass = new File(testFolder.getRoot(), "two" + i + ".vcf");
+			List<IdsvVariantContext> calls = randomCalls(pc, rng, 50 + 500 * i);
+			createVCF(pc, vcf, calls.toArray(new VariantContext[0]));
+			createCommand(pc, vcf, singlePass).doWork(threadpool);
+			saveTwoPass(createCommand(pc, vcf, twoPass), vcf, twoPass, threadpool);
+			assertEquals(calls.size(), getVcf(singlePass, null).size());
+			assertArrayEquals(Files.readAllBytes(twoPass.toPath()), Files.readAllBytes(singlePass.toPath()));
+		}
+		threadpool.shutdown();
+	}
+	@Test
+	public void single_pass_should_handle_vcf_without_breakends() throws IOException, InterruptedException, ExecutionException {
+		ProcessingContext pc = getCommandlineContext();
+		ExecutorService threadpool = Executors.newSingleThreadExecutor();
+		File vcf = new File(testFolder.getRoot(), "input.vcf");
+		File singlePass = new File(testFolder.getRoot(), "single.vcf");
+		File twoPass = new File(testFolder.getRoot(), "two.vcf");
+		createVCF(pc, vcf, minimalVariant().make(), minimalVariant().start(2).stop(2).make());
+		createCommand(pc, vcf, singlePass).doWork(threadpool);
+		saveTwoPass(createCommand(pc, vcf, twoPass), vcf, twoPass, threadpool);
+		assertEquals(2, getVcf(singlePass, null).size());
+		assertArrayEquals(Files.readAllBytes(twoPass.toPath()), Files.readAllBytes(singlePass.toPath()));
+		threadpool.shutdown();
+	}
+	@Test
+	public void merge_should_match_mergeSorted_tie_breaking() {
+		ProcessingContext pc = getContext();
+		Random rng = new Random(0);
+		for (int i = 0; i < 100; i++) {
+			List<IdsvVariantContext> calls = randomCalls(pc, rng, 1 + rng.nextInt(20));
+			List<VariantContextDirectedEvidence> breakends = new ArrayList<>();
+			List<IdsvVariantContext> other = new ArrayList<>();
+			for (IdsvVariantContext v : calls) {
+				if (v instanceof VariantContextDirectedEvidence) {
+					breakends.add((VariantContextDirectedEvidence)v);
+				} else {
+					other.add(v);
+				}
+			}
+			breakends.sort(IdsvVariantContext.ByLocationStart);
+			List<IdsvVariantContext> expected = new ArrayList<>();
+			Iterators.mergeSorted(ImmutableList.of(breakends.iterator(), other.iterator()), IdsvVariantContext.ByLocationStart).forEachRemaining(expected::add);
+			VariantContextBreakendTee tee = new VariantContextBreakendTee(calls.iterator());
+			List<IdsvVariantContext> actual = new ArrayList<>();
+			Iterator<IdsvVariantContext> it = tee.merge(breakends.iterator());
+			it.forEachRemaining(actual::add);
+			assertEquals(expected.size(), actual.size());
+			for (int j = 0; j < expected.size(); j++) {
+				assertEquals(expected.get(j).getID(), actual.get(j).getID());
+			}
+		}
+	}
+}
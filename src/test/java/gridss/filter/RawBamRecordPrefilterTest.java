@@ -0,0 +1,117 @@
+package gridss.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import au.edu.wehi.idsv.FixedSizeReadPairConcordanceCalculator;
+import au.edu.wehi.idsv.TestHelper;
+import au.edu.wehi.idsv.SAMFlagReadPairConcordanceCalculator;
+import htsjdk.samtools.BAMRecord;
+import htsjdk.samtools.BAMRecordCodec;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.TextCigarCodec;
+
+public class RawBamRecordPrefilterTest extends TestHelper {
+	private static final String[] CIGARS = { "100M", "100M", "100M", "40M2P60M", "100=", "50=1X49=", "50M50S", "10S90M", "5H95M", "45M10D55M", "45M5I50M", "40M100N60M" };
+	private static final String[] MATE_CIGARS = { null, null, "100M", "10S90M", "90M10S", "5H90M5S", "20M3I77M", "*" };
+	public static BAMRecord toBAMRecord(SAMRecord r) {
+		BAMRecordCodec codec = new BAMRecordCodec(r.getHeader());
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		codec.setOutputStream(out);
+		codec.encode(r);
+		codec.setInputStream(new ByteArrayInputStream(out.toByteArray()));
+		return (BAMRecord)codec.decode();
+	}
+	public static List<SAMRecord> randomRecords(Random rng, int count) {
+		List<SAMRecord> list = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			SAMRecord r = new SAMRecord(getHeader());
+			r.setReadName("r" + i);
+			r.setReadPairedFlag(rng.nextInt(10) != 0);
+			r.setReadUnmappedFlag(rng.nextInt(20) == 0);
+			r.setReferenceIndex(rng.nextInt(2));
+			r.setAlignmentStart(1 + rng.nextInt(1000));
+			r.setReadNegativeStrandFlag(rng.nextBoolean());
+			r.setCigarString(CIGARS[rng.nextInt(CIGARS.length)]);
+			r.setMappingQuality(rng.nextInt(60));
+			if (r.getReadPairedFlag()) {
+				r.setMateUnmappedFlag(rng.nextInt(10) == 0);
+				r.setMateReferenceIndex(rng.nextInt(8) == 0 ? 1 - r.getReferenceIndex() : r.getReferenceIndex());
+				r.setMateAlignmentStart(Math.max(1, r.getAlignmentStart() + rng.nextInt(600) - 300));
+				r.setMateNegativeStrandFlag(rng.nextInt(8) == 0 ? r.getReadNegativeStrandFlag() : !r.getReadNegativeStrandFlag());
+				r.setProperPairFlag(rng.nextBoolean());
+				r.setFirstOfPairFlag(rng.nextBoolean());
+				r.setSecondOfPairFlag(!r.getFirstOfPairFlag());
+				String mc = MATE_CIGARS[rng.nextInt(MATE_CIGARS.length)];
+				if (mc != null) {
+					r.setAttribute("MC", mc);
+				}
+			}
+			r.setDuplicateReadFlag(rng.nextInt(10) == 0);
+			r.setSupplementaryAlignmentFlag(rng.nextInt(20) == 0);
+			r.setNotPrimaryAlignmentFlag(rng.nextInt(20) == 0);
+			if (rng.nextInt(10) == 0) {
+				r.setAttribute("SA", String.format("polyA,%d,+,50S50M,10,0;", 1 + rng.nextInt(1000)));
+			}
+			if (rng.nextBoolean()) {
+				r.setAttribute("NM", rng.nextInt(5));
+				r.setAttribute("XA", "polyA,+1,100M,0;");
+				r.setAttribute("ZB", new int[] { 1, 2, 3 });
+			}
+			int readLength = TextCigarCodec.decode(r.getCigarString()).getReadLength();
+			byte[] bases = new byte[readLength];
+			byte[] quals = new byte[readLength];
+			for (int j = 0; j < readLength; j++) {
+				bases[j] = "ACGT".getBytes()[rng.nextInt(4)];
+				quals[j] = (byte)rng.nextInt(40);
+			}
+			r.setReadBases(bases);
+			r.setBaseQualities(quals);
+			if (r.getReadUnmappedFlag()) {
+				r.setMappingQuality(0);
+				r.setCigarString("*");
+			}
+			list.add(r);
+		}
+		return list;
+	}
+	@Test
+	public void should_filter_fully_aligned_concordant_read_pairs() {
+		SAMRecord[] dp = DP(0, 1, "100M", true, 0, 200, "100M", false);
+		RawBamRecordPrefilter filter = new RawBamRecordPrefilter(new FixedSizeReadPairConcordanceCalculator(100, 300), false, true, true);
+		assertTrue(filter.filterOut(dp[0]));
+		assertTrue(filter.filterOut(toBAMRecord(dp[0])));
+		filter = new RawBamRecordPrefilter(new FixedSizeReadPairConcordanceCalculator(100, 200), false, true, true);
+		assertFalse(filter.filterOut(dp[0]));
+		assertFalse(filter.filterOut(toBAMRecord(dp[0])));
+	}
+	@Test
+	public void should_not_filter_clipped_reads() {
+		RawBamRecordPrefilter filter = new RawBamRecordPrefilter(new SAMFlagReadPairConcordanceCalculator(null), false, true, true);
+		assertTrue(filter.filterOut(Read(0, 1, "100M")));
+		assertFalse(filter.filterOut(Read(0, 1, "50M50S")));
+		assertFalse(filter.filterOut(toBAMRecord(Read(0, 1, "50M50S"))));
+	}
+	@Test
+	public void should_filter_duplicates() {
+		SAMRecord r = Read(0, 1, "50M50S");
+		r.setDuplicateReadFlag(true);
+		assertTrue(new RawBamRecordPrefilter(null, false, true, true).filterOut(toBAMRecord(r)));
+		assertFalse(new RawBamRecordPrefilter(null, true, true, true).filterOut(toBAMRecord(r)));
+	}
+	@Test
+	public void should_not_filter_one_end_anchored_reads() {
+		SAMRecord r = OEA(0, 1, "100M", true)[0];
+		assertFalse(new RawBamRecordPrefilter(null, false, true, true).filterOut(toBAMRecord(r)));
+		assertTrue(new RawBamRecordPrefilter(null, false, false, true).filterOut(toBAMRecord(r)));
+	}
+}
@@ -0,0 +1,85 @@
+package performancetesting;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.google.common.base.Stopwatch;
+
+import au.edu.wehi.idsv.util.AsyncBufferedIterator;
+import au.edu.wehi.idsv.util.AsyncBufferedIteratorTest.CIT;
+
+/**
+ * Measures thread usage and record handoff rate of asynchronous buffers
+ * arranged as per chunked CallVariants processing: each worker processes
+ * a sequence of chunks, each chunk using a pipeline of asynchronous stages.
+ * 
+ * Compare -Dgridss.threads.virtual=true against the default pooled threads.
+ */
+@Category(PerformanceTests.class)
+public class AsyncBufferedIteratorBenchmark {
+	private static final int WORKERS = 32;
+	private static final int CHUNKS_PER_WORKER = 4;
+	private static final int STAGES_PER_CHUNK = 8;
+	private static final int RECORDS_PER_CHUNK = 100000;
+	@Test
+	public void chunked_pipeline() throws Exception {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		threads.resetPeakThreadCount();
+		int baselineThreads = threads.getThreadCount();
+		long baselineStarted = threads.getTotalStartedThreadCount();
+		ExecutorService workers = Executors.newFixedThreadPool(WORKERS);
+		Stopwatch sw = Stopwatch.createStarted();
+		List<Future<Long>> results = new ArrayList<>();
+		for (int i = 0; i < WORKERS; i++) {
+			results.add(workers.submit(() -> {
+				long count = 0;
+				for (int chunk = 0; chunk < CHUNKS_PER_WORKER; chunk++) {
+					count += processChunk();
+				}
+				return count;
+			}));
+		}
+		long total = 0;
+		for (Future<Long> f : results) {
+			total += f.get();
+		}
+		sw.stop();
+		workers.shutdown();
+		long handoffs = total * STAGES_PER_CHUNK;
+		System.out.println(String.format("%d records through %d stages in %s: %.0f ns per handoff. Threads started: %d, peak live threads: %d (baseline %d)",
+				total,
+				WORKERS * CHUNKS_PER_WORKER * STAGES_PER_CHUNK,
+				sw,
+				sw.elapsed(TimeUnit.NANOSECONDS) / (double)handoffs,
+				threads.getTotalStartedThreadCount() - baselineStarted,
+				threads.getPeakThreadCount(),
+				baselineThreads));
+	}
+	private static long processChunk() {
+		List<AsyncBufferedIterator<Integer>> stages = new ArrayList<>();
+		AsyncBufferedIterator<Integer> it = new AsyncBufferedIterator<Integer>(new CIT(RECORDS_PER_CHUNK), 2, 300);
+		stages.add(it);
+		for (int j = 1; j < STAGES_PER_CHUNK; j++) {
+			it = new AsyncBufferedIterator<Integer>(it, 2, 300);
+			stages.add(it);
+		}
+		long count = 0;
+		while (it.hasNext()) {
+			it.next();
+			count++;
+		}
+		for (AsyncBufferedIterator<Integer> stage : stages) {
+			stage.close();
+		}
+		return count;
+	}
+}
@@ -1,22 +1,53 @@
 package performancetesting;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
-import org.junit.Ignore;
 import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.google.common.base.Stopwatch;
 
 import au.edu.wehi.idsv.TestHelper;
+import au.edu.wehi.idsv.sam.ParallelBAMRecordIterator;
 import htsjdk.samtools.SAMRecord;
-import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.SAMRecordIterator;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.ValidationStringency;
 
+/**
+ * Raw BAM read throughput of the htsjdk reader and the parallel BAM reader.
+ *
+ * The input BAM can be specified with -Dgridss.benchmark.bam=file.bam
+ * and the number of decompression threads with -Dgridss.bam.threads
+ */
+@Category(PerformanceTests.class)
 public class BamReadTest extends TestHelper {
-	@Ignore // TODO: performance testing group
+	private static final int REPEATS = 3;
 	@Test
-	public void read() {
-		//String file = "W:/i/archive/data.na12878/00000000000000000000000000000000.sc.bam";
-		String file = "W:/projects/DREAM/download/PCSI_0072_Si_R_PE_762_WG_NoIndex_6_130905_SN801_0125_AC2D9BACXX.bam";
-		CloseableIterator<SAMRecord> it = getContext().getSamReaderIterator(new File(file));
-		while (it.hasNext()) it.next();
-		it.close();
+	public void read() throws IOException {
+		File file = new File(System.getProperty("gridss.benchmark.bam", "src/test/resources/pacbiona12989chem1chr1_196132675-196183463.bam"));
+		for (ValidationStringency stringency : new ValidationStringency[] { ValidationStringency.SILENT, ValidationStringency.LENIENT }) {
+			for (int i = 0; i < REPEATS; i++) {
+				long htsjdk = read(file, stringency, false);
+				long parallel = read(file, stringency, true);
+				System.out.println(String.format("%s %s: htsjdk %dms, parallel %dms", file.getName(), stringency, htsjdk, parallel));
+			}
+		}
+	}
+	private static long read(File file, ValidationStringency stringency, boolean parallel) throws IOException {
+		Stopwatch sw = Stopwatch.createStarted();
+		long count = 0;
+		try (SamReader reader = SamReaderFactory.makeDefault().validationStringency(stringency).open(file)) {
+			try (SAMRecordIterator it = parallel ? new ParallelBAMRecordIterator(file, reader.getFileHeader(), stringency) : reader.iterator()) {
+				while (it.hasNext()) {
+					SAMRecord r = it.next();
+					count += r.getFlags();
+				}
+			}
+		}
+		return count < 0 ? -1 : sw.elapsed(TimeUnit.MILLISECONDS);
 	}
 }
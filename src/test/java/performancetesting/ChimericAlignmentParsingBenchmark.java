@@ -0,0 +1,105 @@
+package performancetesting;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.google.common.base.Stopwatch;
+
+import au.edu.wehi.idsv.sam.ChimericAlignment;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMTag;
+import htsjdk.samtools.TextCigarCodec;
+
+/**
+ * SA tag parsing throughput and allocation of String.split parsing compared to
+ * ChimericAlignment parsing and the per-record parsed SA tag cache.
+ *
+ * Each record is parsed as many times as the split read evidence, SAM tag
+ * and metrics code paths typically request the SA tag of a record.
+ */
+@Category(PerformanceTests.class)
+public class ChimericAlignmentParsingBenchmark {
+	private static final int RECORDS = 200000;
+	private static final int CALLS_PER_RECORD = 4;
+	private static final int REPEATS = 3;
+	@Test
+	public void multi_segment_sa_tags() {
+		List<SAMRecord> records = generate();
+		for (int i = 0; i < REPEATS; i++) {
+			report("split", records, r -> splitParse(r.getStringAttribute(SAMTag.SA.name())).size());
+			report("parser", records, r -> ChimericAlignment.getChimericAlignments(r.getStringAttribute(SAMTag.SA.name())).size());
+			report("cached", records, r -> ChimericAlignment.getChimericAlignments(r).size());
+		}
+	}
+	/**
+	 * SA tag parsing using String.split
+	 */
+	private static List<ChimericAlignment> splitParse(String sa) {
+		List<ChimericAlignment> list = new ArrayList<ChimericAlignment>();
+		for (String s : sa.split(";")) {
+			String[] splits = s.replace(';', ' ').trim().split(",");
+			list.add(new ChimericAlignment(splits[0], Integer.parseInt(splits[1]), "-".equals(splits[2]), TextCigarCodec.decode(splits[3]), Integer.parseInt(splits[4]), Integer.parseInt(splits[5])));
+		}
+		return list;
+	}
+	/**
+	 * Generates records with SA tags of between 1 and 5 split alignments of a 150bp read
+	 */
+	private static List<SAMRecord> generate() {
+		Random rng = new Random(0);
+		List<SAMRecord> records = new ArrayList<>(RECORDS);
+		for (int i = 0; i < RECORDS; i++) {
+			StringBuilder sb = new StringBuilder();
+			int segments = 1 + rng.nextInt(5);
+			for (int j = 0; j < segments; j++) {
+				int startClip = rng.nextInt(100);
+				int aligned = 20 + rng.nextInt(130 - startClip);
+				int endClip = 150 - startClip - aligned;
+				sb.append("chr");
+				sb.append(1 + rng.nextInt(22));
+				sb.append(',');
+				sb.append(1 + rng.nextInt(200000000));
+				sb.append(rng.nextBoolean() ? ",+," : ",-,");
+				if (startClip > 0) sb.append(startClip).append('S');
+				if (rng.nextInt(4) == 0 && aligned > 10) {
+					sb.append(aligned / 2).append("M1D").append(aligned - aligned / 2).append('M');
+				} else {
+					sb.append(aligned).append('M');
+				}
+				if (endClip > 0) sb.append(endClip).append('S');
+				sb.append(',');
+				sb.append(rng.nextInt(61));
+				sb.append(',');
+				sb.append(rng.nextInt(10));
+				sb.append(';');
+			}
+			SAMRecord r = new SAMRecord(null);
+			r.setAttribute(SAMTag.SA.name(), sb.toString());
+			records.add(r);
+		}
+		return records;
+	}
+	private static void report(String name, List<SAMRecord> records, ToIntFunction<SAMRecord> parse) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+		long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+		Stopwatch sw = Stopwatch.createStarted();
+		long alignments = 0;
+		for (SAMRecord r : records) {
+			for (int i = 0; i < CALLS_PER_RECORD; i++) {
+				alignments += parse.applyAsInt(r);
+			}
+		}
+		long ms = sw.elapsed(TimeUnit.MILLISECONDS);
+		long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+		System.out.println(String.format("%s: %d alignments, %dms, %.0f ns/record, %.1f bytes allocated/record",
+				name, alignments, ms, ms * 1000000.0 / records.size(), allocated / (double)records.size()));
+	}
+}
@@ -0,0 +1,179 @@
+package performancetesting;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+
+import gridss.ExtractSVReads;
+import gridss.analysis.CollectStructuralVariantReadMetrics;
+import gridss.analysis.StructuralVariantReadMetrics;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileHeader.SortOrder;
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMFileWriterFactory;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.SAMTag;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.ValidationStringency;
+import htsjdk.samtools.metrics.MetricsFile;
+
+/**
+ * Compares ExtractSVReads run time with and without the raw BAM record prefilter.
+ * Structural variant read metrics are collected as per the GRIDSS pipeline.
+ *
+ * The input BAM can be specified with -Dgridss.benchmark.bam=file.bam. If not specified,
+ * a coordinate sorted BAM resembling whole genome sequencing is generated containing
+ * -Dgridss.benchmark.pairs=1000000 2x150bp read pairs, of which around 98% are fully
+ * aligned concordant pairs and the remainder are soft clipped, discordant or one end
+ * anchored.
+ */
+@Category(PerformanceTests.class)
+public class ExtractSVReadsPrefilterBenchmark {
+	private static final int REPEATS = 5;
+	@Rule
+	public TemporaryFolder testFolder = new TemporaryFolder();
+	@Test
+	public void prefilter() throws IOException {
+		File input;
+		if (System.getProperty("gridss.benchmark.bam") != null) {
+			input = new File(System.getProperty("gridss.benchmark.bam"));
+		} else {
+			input = testFolder.newFile("wgs.bam");
+			createWgsLikeBam(input, Integer.parseInt(System.getProperty("gridss.benchmark.pairs", "1000000")));
+		}
+		File unfiltered = testFolder.newFile("unfiltered.bam");
+		File prefiltered = testFolder.newFile("prefiltered.bam");
+		for (int i = 0; i < REPEATS; i++) {
+			long unfilteredTime = run(input, unfiltered, false);
+			long prefilteredTime = run(input, prefiltered, true);
+			System.out.println(String.format("%s: %dms without prefilter, %dms with prefilter", input.getName(), unfilteredTime, prefilteredTime));
+		}
+		List<SAMRecord> expected = read(unfiltered);
+		List<SAMRecord> actual = read(prefiltered);
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getSAMString(), actual.get(i).getSAMString());
+		}
+		assertEquals(readMetrics(unfiltered), readMetrics(prefiltered));
+	}
+	private static File metricsFile(File output) {
+		return new File(output.getAbsolutePath() + CollectStructuralVariantReadMetrics.METRICS_SUFFIX);
+	}
+	private static StructuralVariantReadMetrics readMetrics(File output) {
+		return Iterables.getOnlyElement(Iterables.filter(MetricsFile.readBeans(metricsFile(output)), StructuralVariantReadMetrics.class));
+	}
+	private static long run(File input, File output, boolean prefilter) {
+		output.delete();
+		Stopwatch sw = Stopwatch.createStarted();
+		new ExtractSVReads().instanceMain(new String[] {
+				"INPUT=" + input.getAbsolutePath(),
+				"OUTPUT=" + output.getAbsolutePath(),
+				"METRICS_OUTPUT=" + metricsFile(output).getAbsolutePath(),
+				"VALIDATION_STRINGENCY=SILENT",
+				"PREFILTER=" + prefilter,
+		});
+		return sw.elapsed(TimeUnit.MILLISECONDS);
+	}
+	private static List<SAMRecord> read(File file) throws IOException {
+		try (SamReader reader = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT).open(file)) {
+			return Lists.newArrayList(reader.iterator());
+		}
+	}
+	private static void createWgsLikeBam(File file, int pairs) {
+		Random rng = new Random(0);
+		SAMSequenceDictionary dict = new SAMSequenceDictionary();
+		for (int i = 1; i <= 4; i++) {
+			dict.addSequence(new SAMSequenceRecord("chr" + i, 50000000));
+		}
+		SAMFileHeader header = new SAMFileHeader();
+		header.setSequenceDictionary(dict);
+		header.setSortOrder(SortOrder.coordinate);
+		try (SAMFileWriter writer = new SAMFileWriterFactory().makeBAMWriter(header, false, file)) {
+			for (int i = 0; i < pairs; i++) {
+				int referenceIndex = rng.nextInt(dict.size());
+				int start = 1 + rng.nextInt(49000000);
+				int fragmentSize = 300 + (int)(rng.nextGaussian() * 30);
+				SAMRecord r1 = read(header, rng, "r" + i, referenceIndex, start);
+				SAMRecord r2 = read(header, rng, "r" + i, referenceIndex, start + fragmentSize - 150);
+				int type = rng.nextInt(200);
+				if (type == 0) {
+					r2.setReferenceIndex((referenceIndex + 1) % dict.size());
+				} else if (type == 1) {
+					r2.setReadUnmappedFlag(true);
+				} else if (type == 2 || type == 3) {
+					r1.setCigarString("100M50S");
+				}
+				pair(r1, r2, type > 1);
+				writer.addAlignment(r1);
+				writer.addAlignment(r2);
+			}
+		}
+	}
+	private static SAMRecord read(SAMFileHeader header, Random rng, String name, int referenceIndex, int start) {
+		SAMRecord r = new SAMRecord(header);
+		r.setReadName(name);
+		r.setReferenceIndex(referenceIndex);
+		r.setAlignmentStart(start);
+		r.setCigarString("150M");
+		r.setMappingQuality(60);
+		byte[] bases = new byte[150];
+		byte[] quals = new byte[150];
+		for (int i = 0; i < bases.length; i++) {
+			bases[i] = (byte)"ACGT".charAt(rng.nextInt(4));
+			quals[i] = (byte)(2 + rng.nextInt(39));
+		}
+		r.setReadBases(bases);
+		r.setBaseQualities(quals);
+		r.setAttribute(SAMTag.NM.name(), rng.nextInt(3));
+		r.setAttribute(SAMTag.AS.name(), 150 - rng.nextInt(10));
+		r.setAttribute("XS", rng.nextInt(100));
+		return r;
+	}
+	private static void pair(SAMRecord r1, SAMRecord r2, boolean proper) {
+		r1.setReadPairedFlag(true);
+		r2.setReadPairedFlag(true);
+		r1.setFirstOfPairFlag(true);
+		r2.setSecondOfPairFlag(true);
+		r2.setReadNegativeStrandFlag(true);
+		r1.setProperPairFlag(proper);
+		r2.setProperPairFlag(proper);
+		if (r2.getReadUnmappedFlag()) {
+			r2.setReferenceIndex(r1.getReferenceIndex());
+			r2.setAlignmentStart(r1.getAlignmentStart());
+			r2.setCigarString("*");
+			r2.setMappingQuality(0);
+		}
+		r1.setMateReferenceIndex(r2.getReferenceIndex());
+		r1.setMateAlignmentStart(r2.getAlignmentStart());
+		r1.setMateUnmappedFlag(r2.getReadUnmappedFlag());
+		r1.setMateNegativeStrandFlag(r2.getReadNegativeStrandFlag());
+		r2.setMateReferenceIndex(r1.getReferenceIndex());
+		r2.setMateAlignmentStart(r1.getAlignmentStart());
+		r2.setMateNegativeStrandFlag(r1.getReadNegativeStrandFlag());
+		if (!r2.getReadUnmappedFlag()) {
+			r1.setAttribute(SAMTag.MC.name(), r2.getCigarString());
+		}
+		r2.setAttribute(SAMTag.MC.name(), r1.getCigarString());
+		if (proper) {
+			int fragmentSize = r2.getAlignmentEnd() - r1.getAlignmentStart() + 1;
+			r1.setInferredInsertSize(fragmentSize);
+			r2.setInferredInsertSize(-fragmentSize);
+		}
+	}
+}
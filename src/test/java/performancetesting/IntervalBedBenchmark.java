@@ -0,0 +1,86 @@
+package performancetesting;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.google.common.base.Stopwatch;
+
+import au.edu.wehi.idsv.GenomicProcessingContext;
+import au.edu.wehi.idsv.LinearGenomicCoordinate;
+import au.edu.wehi.idsv.PaddedLinearGenomicCoordinate;
+import au.edu.wehi.idsv.bed.IntervalBed;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+
+/**
+ * Blacklist overlap throughput of the TreeRangeSet backed IntervalBed compared to
+ * frozen binary search and cursor lookups for a coordinate sorted whole genome read stream.
+ */
+@Category(PerformanceTests.class)
+public class IntervalBedBenchmark {
+	private static final int[] HG19_LENGTHS = {
+		249250621, 243199373, 198022430, 191154276, 180915260, 171115067, 159138663, 146364022,
+		141213431, 135534747, 135006516, 133851895, 115169878, 107349540, 102531392, 90354753,
+		81195210, 78077248, 59128983, 63025520, 48129895, 51304566, 155270560, 59373566 };
+	private static final int READS = 20000000;
+	private static final int READ_LENGTH = 100;
+	private static final int REPEATS = 3;
+	@FunctionalInterface
+	private interface OverlapLookup {
+		boolean overlaps(int referenceIndex, int start, int end);
+	}
+	@Test
+	public void whole_genome_read_stream() {
+		SAMSequenceDictionary dictionary = new SAMSequenceDictionary();
+		for (int i = 0; i < HG19_LENGTHS.length; i++) {
+			dictionary.addSequence(new SAMSequenceRecord("chr" + (i + 1), HG19_LENGTHS[i]));
+		}
+		LinearGenomicCoordinate linear = new PaddedLinearGenomicCoordinate(dictionary, GenomicProcessingContext.LINEAR_COORDINATE_CHROMOSOME_BUFFER, true);
+		// ENCODE DAC blacklist scale, and the larger size of a typical coverage blacklist
+		for (int intervals : new int[] { 500, 50000 }) {
+			IntervalBed bed = createBlacklist(dictionary, linear, intervals);
+			IntervalBed frozen = bed.freeze();
+			System.out.println(String.format("%d blacklisted intervals", bed.size()));
+			for (int i = 0; i < REPEATS; i++) {
+				report("TreeRangeSet", bed::overlaps);
+				report("frozen", frozen::overlaps);
+				report("cursor", frozen.cursor()::overlaps);
+			}
+		}
+	}
+	private static IntervalBed createBlacklist(SAMSequenceDictionary dictionary, LinearGenomicCoordinate linear, int intervals) {
+		Random rng = new Random(0);
+		IntervalBed bed = new IntervalBed(dictionary, linear);
+		for (int i = 0; i < intervals; i++) {
+			int referenceIndex = rng.nextInt(HG19_LENGTHS.length);
+			int length = 100 + rng.nextInt(10000);
+			int start = 1 + rng.nextInt(HG19_LENGTHS[referenceIndex] - length);
+			bed.addInterval(referenceIndex, start, start + length);
+		}
+		return bed;
+	}
+	private static void report(String name, OverlapLookup lookup) {
+		long genomeLength = 0;
+		for (int length : HG19_LENGTHS) {
+			genomeLength += length;
+		}
+		double readsPerBase = READS / (double)genomeLength;
+		Stopwatch sw = Stopwatch.createStarted();
+		long overlapping = 0;
+		for (int referenceIndex = 0; referenceIndex < HG19_LENGTHS.length; referenceIndex++) {
+			int reads = (int)(HG19_LENGTHS[referenceIndex] * readsPerBase);
+			double step = (HG19_LENGTHS[referenceIndex] - READ_LENGTH) / (double)reads;
+			for (int i = 0; i < reads; i++) {
+				int start = 1 + (int)(i * step);
+				if (lookup.overlaps(referenceIndex, start, start + READ_LENGTH - 1)) {
+					overlapping++;
+				}
+			}
+		}
+		long ms = sw.elapsed(TimeUnit.MILLISECONDS);
+		System.out.println(String.format("%s: %dms, %.0f ns/read (%d overlapping)", name, ms, ms * 1000000.0 / READS, overlapping));
+	}
+}
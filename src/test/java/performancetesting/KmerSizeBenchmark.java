@@ -0,0 +1,146 @@
+package performancetesting;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Iterators;
+
+import au.edu.wehi.idsv.AssemblyEvidenceSource;
+import au.edu.wehi.idsv.DirectedEvidence;
+import au.edu.wehi.idsv.DirectedEvidenceOrder;
+import au.edu.wehi.idsv.ProcessingContext;
+import au.edu.wehi.idsv.SequentialIdGenerator;
+import au.edu.wehi.idsv.SingleReadEvidence;
+import au.edu.wehi.idsv.TestHelper;
+import au.edu.wehi.idsv.debruijn.positional.AggregateNodeIterator;
+import au.edu.wehi.idsv.debruijn.positional.EvidenceTracker;
+import au.edu.wehi.idsv.debruijn.positional.KmerNode;
+import au.edu.wehi.idsv.debruijn.positional.PathNodeIterator;
+import au.edu.wehi.idsv.debruijn.positional.PositionalAssembler;
+import au.edu.wehi.idsv.debruijn.positional.SupportNodeIterator;
+import htsjdk.samtools.SAMRecord;
+
+/**
+ * Compares positional de Bruijn graph size, assembly time and assembled breakend
+ * length across kmer sizes.
+ *
+ * Breakend sequences contain copies of a repeat unit longer than 32 bases so
+ * only kmers longer than the repeat unit are unique within the breakend sequence.
+ * Graph size is reported as the number of aggregated kmer nodes and the number
+ * of path nodes after compression of unbranched kmer chains.
+ */
+@Category(PerformanceTests.class)
+public class KmerSizeBenchmark extends TestHelper {
+	private static final int REFERENCE_INDEX = 2;
+	private static final int CONTIG_LENGTH = 10000;
+	private static final int BREAKPOINT_SPACING = 250;
+	private static final int BREAKEND_LENGTH = 300;
+	private static final int REPEAT_UNIT_LENGTH = 36;
+	private static final int REPEAT_SPACING = 20;
+	private static final double REPEAT_DIVERGENCE = 0.01;
+	private static final int READ_LENGTH = 150;
+	private static final int READS_PER_BREAKPOINT = 30;
+	private static final double ERROR_RATE = 0.002;
+	private static final int REPEATS = 3;
+	private static final byte[] BASES = { 'A', 'C', 'G', 'T' };
+	@Test
+	public void kmer_size() {
+		Random rng = new Random(0);
+		List<DirectedEvidence> evidence = evidence(rng);
+		// JIT warm-up
+		assemble(25, evidence);
+		assemble(51, evidence);
+		for (int i = 0; i < REPEATS; i++) {
+			for (int k : new int[] { 25, 31, 41, 51 }) {
+				report(k, evidence);
+			}
+		}
+	}
+	private static ProcessingContext context(int k) {
+		ProcessingContext pc = getContext();
+		pc.getAssemblyParameters().k = k;
+		return pc;
+	}
+	private static List<SAMRecord> assemble(int k, List<DirectedEvidence> evidence) {
+		ProcessingContext pc = context(k);
+		AssemblyEvidenceSource aes = AES(pc);
+		List<SAMRecord> contigs = new ArrayList<>();
+		Iterators.addAll(contigs, new PositionalAssembler(pc, aes, new SequentialIdGenerator("asm"), evidence.iterator()));
+		return contigs;
+	}
+	private static void report(int k, List<DirectedEvidence> evidence) {
+		ProcessingContext pc = context(k);
+		AssemblyEvidenceSource aes = AES(pc);
+		SupportNodeIterator supportIt = new SupportNodeIterator(k, evidence.iterator(), aes.getMaxConcordantFragmentSize(), new EvidenceTracker(), pc.getAssemblyParameters().includePairAnchors, pc.getAssemblyParameters().pairAnchorMismatchIgnoreEndBases);
+		List<KmerNode> aggregated = new ArrayList<>();
+		Iterators.addAll(aggregated, new AggregateNodeIterator(supportIt));
+		int pathNodes = Iterators.size(new PathNodeIterator(aggregated.iterator(), pc.getAssemblyParameters().positional.maxPathLengthInBases(READ_LENGTH), k));
+		Stopwatch sw = Stopwatch.createStarted();
+		List<SAMRecord> contigs = assemble(k, evidence);
+		sw.stop();
+		long breakendBases = 0;
+		for (SingleReadEvidence e : asAssemblyEvidence(aes, contigs)) {
+			breakendBases += e.getBreakendSequence().length;
+		}
+		System.out.println(String.format("k=%d\tkmerNodes=%d\tpathNodes=%d\tcontigs=%d\tmeanBreakendLength=%.1f\ttime=%s",
+				k, aggregated.size(), pathNodes, contigs.size(), contigs.isEmpty() ? 0 : breakendBases / (double)contigs.size(), sw));
+	}
+	private static List<DirectedEvidence> evidence(Random rng) {
+		byte[] ref = SMALL_FA.getSequence(SMALL_FA.getSequenceDictionary().getSequence(REFERENCE_INDEX).getSequenceName()).getBases();
+		List<DirectedEvidence> evidence = new ArrayList<>();
+		boolean forward = true;
+		for (int breakpoint = READ_LENGTH; breakpoint < CONTIG_LENGTH - READ_LENGTH; breakpoint += BREAKPOINT_SPACING) {
+			byte[] breakend = repetitiveSequence(rng);
+			for (int i = 0; i < READS_PER_BREAKPOINT; i++) {
+				int anchorLength = 10 + rng.nextInt(READ_LENGTH - 20);
+				int clipLength = READ_LENGTH - anchorLength;
+				byte[] read = new byte[READ_LENGTH];
+				SAMRecord r;
+				if (forward) {
+					System.arraycopy(ref, breakpoint - anchorLength, read, 0, anchorLength);
+					System.arraycopy(breakend, 0, read, anchorLength, clipLength);
+					r = Read(REFERENCE_INDEX, breakpoint - anchorLength + 1, String.format("%dM%dS", anchorLength, clipLength));
+				} else {
+					System.arraycopy(breakend, BREAKEND_LENGTH - clipLength, read, 0, clipLength);
+					System.arraycopy(ref, breakpoint, read, clipLength, anchorLength);
+					r = Read(REFERENCE_INDEX, breakpoint + 1, String.format("%dS%dM", clipLength, anchorLength));
+				}
+				for (int j = 0; j < read.length; j++) {
+					if (rng.nextDouble() < ERROR_RATE) {
+						read[j] = BASES[rng.nextInt(4)];
+					}
+				}
+				withSequence(S(read), r);
+				r.setReadName(String.format("bp%d-r%d", breakpoint, i));
+				evidence.add(SCE(forward ? FWD : BWD, r));
+			}
+			forward = !forward;
+		}
+		evidence.sort(DirectedEvidenceOrder.ByStartEnd);
+		return evidence;
+	}
+	/**
+	 * Random sequence interspersed with diverged copies of a repeat unit
+	 */
+	private static byte[] repetitiveSequence(Random rng) {
+		byte[] unit = new byte[REPEAT_UNIT_LENGTH];
+		for (int i = 0; i < unit.length; i++) {
+			unit[i] = BASES[rng.nextInt(4)];
+		}
+		byte[] seq = new byte[BREAKEND_LENGTH];
+		for (int i = 0; i < seq.length; i++) {
+			int offset = i % (REPEAT_UNIT_LENGTH + REPEAT_SPACING);
+			if (offset < REPEAT_UNIT_LENGTH && rng.nextDouble() >= REPEAT_DIVERGENCE) {
+				seq[i] = unit[offset];
+			} else {
+				seq[i] = BASES[rng.nextInt(4)];
+			}
+		}
+		return seq;
+	}
+}
@@ -0,0 +1,12 @@
+package performancetesting;
+
+/**
+ * Benchmarks that are too slow to run as part of the unit test suite.
+ * 
+ * Run explicitly with -Dtest=<benchmark class> -DexcludedTestGroups=
+ * 
+ * @author Daniel Cameron
+ *
+ */
+public interface PerformanceTests {
+}
@@ -0,0 +1,116 @@
+package performancetesting;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntToDoubleFunction;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.google.common.base.Stopwatch;
+
+import au.edu.wehi.idsv.metrics.IdsvSamFileMetrics;
+import au.edu.wehi.idsv.model.EmpiricalReferenceLikelihoodModel;
+import au.edu.wehi.idsv.util.MathUtil;
+import gridss.analysis.CigarDetailMetrics;
+import gridss.analysis.IdsvMetrics;
+import gridss.analysis.InsertSizeDistribution;
+import gridss.analysis.MapqMetrics;
+import picard.analysis.InsertSizeMetrics;
+
+/**
+ * Multithreaded read pair scoring throughput using the synchronised insert size
+ * distribution compared to the precomputed read pair scoring table.
+ *
+ * Thread counts double up to -Dgridss.benchmark.threads, which defaults to the
+ * greater of 4 and the number of available processors.
+ */
+@Category(PerformanceTests.class)
+public class ReadPairScoringBenchmark {
+	private static final int PAIRS_PER_THREAD = 2000000;
+	private static final int REPEATS = 3;
+	@Test
+	public void concurrent_read_pair_scoring() throws InterruptedException, ExecutionException {
+		IdsvSamFileMetrics metrics = createMetrics();
+		InsertSizeDistribution isd = metrics.getInsertSizeDistribution();
+		IdsvMetrics im = metrics.getIdsvMetrics();
+		EmpiricalReferenceLikelihoodModel model = new EmpiricalReferenceLikelihoodModel();
+		IntToDoubleFunction distribution = fragmentSize -> MathUtil.phredOr(MathUtil.prToPhred(distributionFoldedCumulativeDistribution(im, isd, fragmentSize)), 40, 40);
+		IntToDoubleFunction table = fragmentSize -> model.scoreReadPair(metrics, fragmentSize, 40, 40);
+		// JIT warm-up so the single threaded results are comparable
+		score(distribution, 0);
+		score(table, 0);
+		int maxThreads = Integer.parseInt(System.getProperty("gridss.benchmark.threads", Integer.toString(Math.max(4, Runtime.getRuntime().availableProcessors()))));
+		for (int threads = 1; threads <= maxThreads; threads *= 2) {
+			for (int i = 0; i < REPEATS; i++) {
+				report("distribution", threads, distribution);
+				report("table", threads, table);
+			}
+		}
+	}
+	private static double score(IntToDoubleFunction score, int seed) {
+		Random rng = new Random(seed);
+		double total = 0;
+		for (int i = 0; i < PAIRS_PER_THREAD; i++) {
+			total += score.applyAsDouble(rng.nextInt(1200));
+		}
+		return total;
+	}
+	private static IdsvSamFileMetrics createMetrics() {
+		int[] fragmentSize = new int[1000];
+		double[] count = new double[fragmentSize.length];
+		for (int i = 0; i < fragmentSize.length; i++) {
+			fragmentSize[i] = i + 1;
+			count[i] = 1000 * Math.exp(-(i - 300) * (i - 300) / 5000.0) + 1;
+		}
+		InsertSizeDistribution isd = new InsertSizeDistribution(fragmentSize, count);
+		IdsvMetrics im = new IdsvMetrics();
+		im.READ_PAIRS_BOTH_MAPPED = isd.getTotalMappedPairs() + 1000;
+		im.READ_PAIRS_ONE_MAPPED = 100;
+		im.READ_PAIRS = im.READ_PAIRS_BOTH_MAPPED + im.READ_PAIRS_ONE_MAPPED;
+		return new IdsvSamFileMetrics(new InsertSizeMetrics(), im, new MapqMetrics(), isd, new ArrayList<CigarDetailMetrics>());
+	}
+	/**
+	 * Read pair scoring calculation prior to precomputing the scoring table
+	 */
+	private static double distributionFoldedCumulativeDistribution(IdsvMetrics idsvMetrics, InsertSizeDistribution insertDistribution, int fragmentSize) {
+		double pairsFromFragmentDistribution = 0;
+		if (fragmentSize > 0) {
+			if (fragmentSize >= insertDistribution.getSupportLowerBound() && fragmentSize <= insertDistribution.getSupportUpperBound()) {
+				double prUpper = 1.0 - insertDistribution.cumulativeProbability(fragmentSize - 1);
+				double prLower = insertDistribution.cumulativeProbability(fragmentSize);
+				double pr = Math.min(prUpper, prLower);
+				pairsFromFragmentDistribution = pr * insertDistribution.getTotalMappedPairs();
+			}
+		}
+		double totalPairs = idsvMetrics.READ_PAIRS_BOTH_MAPPED;
+		double dpPairs = totalPairs - insertDistribution.getTotalMappedPairs() + pairsFromFragmentDistribution;
+		return dpPairs / totalPairs;
+	}
+	private static void report(String name, int threads, IntToDoubleFunction score) throws InterruptedException, ExecutionException {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			Stopwatch sw = Stopwatch.createStarted();
+			List<Future<Double>> results = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				int seed = t;
+				results.add(pool.submit(() -> score(score, seed)));
+			}
+			double checksum = 0;
+			for (Future<Double> f : results) {
+				checksum += f.get();
+			}
+			long ms = sw.elapsed(TimeUnit.MILLISECONDS);
+			System.out.println(String.format("%d threads %s: %dms, %.0f pairs/s (checksum %f)",
+					threads, name, ms, threads * (double)PAIRS_PER_THREAD * 1000.0 / Math.max(1, ms), checksum));
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package performancetesting;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.google.common.base.Stopwatch;
+
+import au.edu.wehi.idsv.graph.RectangleGraphCliqueCalculator;
+import au.edu.wehi.idsv.graph.RectangleGraphIndexedMaximalCliqueCalculator;
+import au.edu.wehi.idsv.graph.RectangleGraphMaximalCliqueCalculator;
+import au.edu.wehi.idsv.graph.RectangleGraphNode;
+
+/**
+ * Maximal clique calling time of the linked list and indexed scanlines
+ * as the number of overlapping rectangles increases.
+ */
+@Category(PerformanceTests.class)
+public class RectangleGraphMaximalCliqueBenchmark {
+	private static final int NODES = 100000;
+	private static final int REPEATS = 3;
+	@Test
+	public void overlap_depth() {
+		for (int depth : new int[] { 1, 10, 100, 1000, 10000 }) {
+			List<RectangleGraphNode> nodes = generate(depth);
+			for (int i = 0; i < REPEATS; i++) {
+				long linked = time(RectangleGraphMaximalCliqueCalculator::new, nodes);
+				long indexed = time(RectangleGraphIndexedMaximalCliqueCalculator::new, nodes);
+				System.out.println(String.format("depth %d: linked list %dms, indexed %dms", depth, linked, indexed));
+			}
+		}
+	}
+	/**
+	 * Generates rectangles such that each scanline intersects approximately depth rectangles
+	 */
+	private static List<RectangleGraphNode> generate(int depth) {
+		Random rng = new Random(0);
+		int width = 2000;
+		long span = (long)NODES * width / depth;
+		List<RectangleGraphNode> nodes = new ArrayList<>(NODES);
+		for (int i = 0; i < NODES; i++) {
+			long x = (long)(rng.nextDouble() * span);
+			long y = (long)(rng.nextDouble() * NODES * width);
+			nodes.add(new RectangleGraphNode(x, x + rng.nextInt(width), y, y + rng.nextInt(width), 1 + rng.nextInt(10)));
+		}
+		nodes.sort(RectangleGraphNode.ByStartXYEndXY);
+		return nodes;
+	}
+	private static long time(Supplier<RectangleGraphCliqueCalculator> factory, List<RectangleGraphNode> nodes) {
+		Stopwatch sw = Stopwatch.createStarted();
+		RectangleGraphCliqueCalculator calc = factory.get();
+		long cliques = 0;
+		for (RectangleGraphNode node : nodes) {
+			cliques += calc.next(node).size();
+		}
+		cliques += calc.complete().size();
+		return cliques < 0 ? -1 : sw.elapsed(TimeUnit.MILLISECONDS);
+	}
+}
@@ -0,0 +1,84 @@
+package performancetesting;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Iterators;
+
+import au.edu.wehi.idsv.graph.RectangleGraphMaximalCliqueIterator;
+import au.edu.wehi.idsv.graph.RectangleGraphNode;
+import au.edu.wehi.idsv.graph.RectangleGraphNodeMergingIterator;
+import au.edu.wehi.idsv.graph.RectangleGraphNodeStoreMaximalCliqueIterator;
+import au.edu.wehi.idsv.util.WindowedSortingIterator;
+
+/**
+ * Allocation and throughput of maximal clique calling using a RectangleGraphNode
+ * per record compared to the primitive RectangleGraphNodeStore pipeline.
+ *
+ * Records are discordant read pairs from dense clusters supporting the same breakpoint.
+ */
+@Category(PerformanceTests.class)
+public class RectangleGraphNodeStoreBenchmark {
+	private static final int CLUSTERS = 2000;
+	private static final int FRAGMENT_SIZE = 300;
+	private static final int REPEATS = 3;
+	@Test
+	public void dense_discordant_pair_clusters() {
+		for (int readsPerCluster : new int[] { 10, 100, 1000 }) {
+			List<long[]> records = generate(readsPerCluster);
+			for (int i = 0; i < REPEATS; i++) {
+				report("objects", readsPerCluster, records, it -> new RectangleGraphMaximalCliqueIterator(
+						new RectangleGraphNodeMergingIterator(RectangleGraphNode.ByStartXYEndXY,
+								new WindowedSortingIterator<RectangleGraphNode>(
+										Iterators.transform(it, r -> new RectangleGraphNode(r[0], r[1], r[2], r[3], r[4])),
+										n -> n.startX, 1, RectangleGraphNode.ByStartXYEndXY))));
+				report("store", readsPerCluster, records, it -> new RectangleGraphNodeStoreMaximalCliqueIterator<long[]>(
+						it, (r, store) -> store.add(r[0], r[1], r[2], r[3], r[4]), 1));
+			}
+		}
+	}
+	/**
+	 * Generates discordant read pair rectangles sorted by start X
+	 */
+	private static List<long[]> generate(int readsPerCluster) {
+		Random rng = new Random(0);
+		List<long[]> records = new ArrayList<>();
+		for (int i = 0; i < CLUSTERS; i++) {
+			long breakpointX = 10L * i * FRAGMENT_SIZE;
+			long breakpointY = breakpointX + 1000000;
+			for (int j = 0; j < readsPerCluster; j++) {
+				long x = breakpointX - rng.nextInt(FRAGMENT_SIZE);
+				long y = breakpointY + rng.nextInt(FRAGMENT_SIZE);
+				int width = FRAGMENT_SIZE - (int)(breakpointX - x) - (int)(y - breakpointY);
+				records.add(new long[] { x, x + Math.max(0, width), y - Math.max(0, width), y, 1 + rng.nextInt(30) });
+			}
+		}
+		records.sort((a, b) -> Long.compare(a[0], b[0]));
+		return records;
+	}
+	private static void report(String name, int readsPerCluster, List<long[]> records, Function<Iterator<long[]>, Iterator<RectangleGraphNode>> pipeline) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+		long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+		Stopwatch sw = Stopwatch.createStarted();
+		long cliques = 0;
+		Iterator<RectangleGraphNode> it = pipeline.apply(records.iterator());
+		while (it.hasNext()) {
+			it.next();
+			cliques++;
+		}
+		long ms = sw.elapsed(TimeUnit.MILLISECONDS);
+		long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+		System.out.println(String.format("%d reads/cluster %s: %d cliques, %dms, %.0f records/s, %.1f bytes allocated/record",
+				readsPerCluster, name, cliques, ms, records.size() * 1000.0 / Math.max(1, ms), allocated / (double)records.size()));
+	}
+}
@@ -2,7 +2,9 @@ package scambler;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 import java.util.stream.Collectors;
 
 import org.junit.Test;
@@ -20,4 +22,67 @@ public class OverlapLookupTest extends StringGraphTestHelper {
 				.collect(Collectors.toList());
 		assertEquals(2, lookup.successors(reads.get(0)).size());
 	}
+	private static List<String> bruteForceSuccessors(List<Read> reads, Read r, int minOverlap) {
+		List<String> result = new ArrayList<>();
+		for (int i = 0; i <= r.getSeq().length() - minOverlap; i++) {
+			for (Read hit : reads) {
+				if (hit == r) continue;
+				Overlap o = new Overlap(r, hit, i);
+				if (o.matchingBases >= o.overlap && o.overlap >= minOverlap) {
+					result.add(hit.getRead().getReadName() + "@" + i);
+				}
+			}
+		}
+		return result;
+	}
+	private static List<String> successors(OverlapLookup lookup, Read r) {
+		return lookup.successors(r).stream()
+				.map(o -> o.read2.getRead().getReadName() + "@" + o.read2StartRelativeToRead1)
+				.collect(Collectors.toList());
+	}
+	@Test
+	public void should_match_all_exact_overlaps() {
+		Random rng = new Random(0);
+		// short repetitive sequence to ensure repeated kmers and many overlaps
+		byte[] seq = new byte[300];
+		for (int i = 0; i < seq.length; i++) {
+			seq[i] = i >= 100 && i < 150 ? seq[i - 7] : (byte)"ACGT".charAt(rng.nextInt(4));
+		}
+		for (int minOverlap : new int[] { 5, 15, 20, 40 }) {
+			OverlapLookup lookup = new OverlapLookup(minOverlap);
+			List<Read> reads = new ArrayList<>();
+			for (int i = 0; i < 200; i++) {
+				int length = 10 + rng.nextInt(60);
+				int start = rng.nextInt(seq.length - length);
+				SAMRecord sam = new SAMRecord(getHeader());
+				sam.setReadName("r" + i);
+				byte[] b = new byte[length];
+				System.arraycopy(seq, start, b, 0, length);
+				sam.setReadBases(b);
+				sam.setCigarString(String.format("%dM", length));
+				sam.setReferenceIndex(0);
+				sam.setAlignmentStart(start + 1);
+				Read r = Read.create(getContext().getLinear(), sam);
+				reads.add(r);
+				lookup.add(r);
+			}
+			assertEquals(reads.stream().filter(r -> r.getSeq().length() >= minOverlap).count(), lookup.size());
+			for (Read r : reads) {
+				assertEquals(bruteForceSuccessors(reads, r, minOverlap), successors(lookup, r));
+			}
+			// remove reads in a different order to their addition
+			List<Read> remaining = new ArrayList<>(reads);
+			for (int i = 0; i < reads.size(); i += 2) {
+				lookup.remove(reads.get(i));
+				remaining.remove(reads.get(i));
+			}
+			for (Read r : reads) {
+				assertEquals(bruteForceSuccessors(remaining, r, minOverlap), successors(lookup, r));
+			}
+			for (Read r : remaining) {
+				lookup.remove(r);
+			}
+			assertEquals(0, lookup.size());
+		}
+	}
 }